@@ -0,0 +1,33 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.picketlink.authentication;
+
+/**
+ * <p>Thrown during the authentication process to indicate that the login attempt was rejected without validating the
+ * credentials, because of too many failed attempts for the account or the client address.</p>
+ */
+public class LoginAttemptsExceededException extends LockedAccountException {
+
+    private static final long serialVersionUID = 4925018117271290347L;
+
+    public LoginAttemptsExceededException(String message) {
+        super(message);
+    }
+
+}
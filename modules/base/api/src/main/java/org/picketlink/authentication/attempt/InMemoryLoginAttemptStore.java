@@ -0,0 +1,165 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.authentication.attempt;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>{@link LoginAttemptStore} that keeps the failed attempts in memory.</p>
+ *
+ * <p>Keys are spread across a fixed number of stripes, each one guarded by its own lock, so concurrent logins for
+ * different accounts or addresses rarely contend. Each stripe holds a bounded number of keys, which limits the memory
+ * used when attempts come from many different addresses.</p>
+ *
+ * <p>When a stripe is full, the keys whose period is over are discarded first. If none is, the least recently used key
+ * of the stripe is discarded, so failures for new keys are always recorded. An account or address that is being
+ * attacked is looked up on every attempt and stays in the store, while flooding it with new keys only evicts the keys
+ * that were not used for the longest time.</p>
+ */
+public class InMemoryLoginAttemptStore implements LoginAttemptStore {
+
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    private static final int STRIPES = 32;
+
+    private final Stripe[] stripes;
+
+    public InMemoryLoginAttemptStore() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries the maximum number of keys kept in memory
+     */
+    public InMemoryLoginAttemptStore(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The maximum number of entries must be greater than zero.");
+        }
+
+        this.stripes = new Stripe[STRIPES];
+
+        int maxEntriesPerStripe = Math.max(1, maxEntries / STRIPES);
+
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new Stripe(maxEntriesPerStripe);
+        }
+    }
+
+    @Override
+    public LoginAttempts getAttempts(String key, long period) {
+        Stripe stripe = getStripe(key);
+
+        synchronized (stripe) {
+            LoginAttempts attempts = stripe.entries.get(key);
+
+            if (attempts != null && attempts.isExpired(System.currentTimeMillis(), period)) {
+                stripe.entries.remove(key);
+                return null;
+            }
+
+            return attempts;
+        }
+    }
+
+    @Override
+    public LoginAttempts recordFailure(String key, long period) {
+        Stripe stripe = getStripe(key);
+
+        synchronized (stripe) {
+            long now = System.currentTimeMillis();
+            LoginAttempts current = stripe.entries.get(key);
+            LoginAttempts attempts = LoginAttempts.failed(current, now, period);
+
+            if (current == null) {
+                stripe.makeRoom(now, period);
+            }
+
+            stripe.entries.put(key, attempts);
+
+            return attempts;
+        }
+    }
+
+    @Override
+    public void reset(String key) {
+        Stripe stripe = getStripe(key);
+
+        synchronized (stripe) {
+            stripe.entries.remove(key);
+        }
+    }
+
+    private Stripe getStripe(String key) {
+        int hash = key.hashCode();
+
+        hash ^= (hash >>> 16);
+
+        return this.stripes[hash & (STRIPES - 1)];
+    }
+
+    private static class Stripe {
+
+        // in access order, the least recently used key comes first
+        private final Map<String, LoginAttempts> entries = new LinkedHashMap<String, LoginAttempts>(16, 0.75f, true);
+
+        private final int maxEntries;
+
+        // the earliest time at which a key of this stripe expires, no key can be discarded before it
+        private long nextExpiration;
+
+        private Stripe(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        /**
+         * <p>Makes room for a new key if the stripe is full, discarding the keys whose period is over or else the least
+         * recently used key.</p>
+         */
+        private void makeRoom(long now, long period) {
+            if (this.entries.size() < this.maxEntries) {
+                return;
+            }
+
+            if (now >= this.nextExpiration) {
+                long nextExpiration = Long.MAX_VALUE;
+                Iterator<LoginAttempts> iterator = this.entries.values().iterator();
+
+                while (iterator.hasNext()) {
+                    LoginAttempts attempts = iterator.next();
+
+                    if (attempts.isExpired(now, period)) {
+                        iterator.remove();
+                    } else {
+                        nextExpiration = Math.min(nextExpiration, attempts.getFirstFailure() + period);
+                    }
+                }
+
+                this.nextExpiration = nextExpiration;
+            }
+
+            if (this.entries.size() >= this.maxEntries) {
+                Iterator<LoginAttempts> iterator = this.entries.values().iterator();
+
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.authentication.attempt;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>{@link LoginAttemptStore} that keeps the failed attempts in a database table, so they are shared by all nodes of a
+ * cluster.</p>
+ *
+ * <p>The table must be created with the following columns:</p>
+ *
+ * <pre>
+ * CREATE TABLE PL_LOGIN_ATTEMPTS (
+ *     ATTEMPT_KEY VARCHAR(255) NOT NULL PRIMARY KEY,
+ *     FAILURES INTEGER NOT NULL,
+ *     FIRST_FAILURE BIGINT NOT NULL,
+ *     LAST_FAILURE BIGINT NOT NULL
+ * )
+ * </pre>
+ *
+ * <p>Updates are done with conditional statements instead of locks, so concurrent failures recorded by different
+ * nodes do not block each other.</p>
+ *
+ * <p>Rows whose period is over are deleted while failures are recorded, at most once per minute by each node. They can
+ * also be deleted by a scheduled job calling {@link #purgeExpired(long)}.</p>
+ */
+public class JDBCLoginAttemptStore implements LoginAttemptStore {
+
+    public static final String DEFAULT_TABLE_NAME = "PL_LOGIN_ATTEMPTS";
+
+    private static final int MAX_RETRIES = 3;
+
+    private static final long PURGE_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private final DataSource dataSource;
+    private final String selectSql;
+    private final String insertSql;
+    private final String incrementSql;
+    private final String restartSql;
+    private final String deleteSql;
+    private final String purgeSql;
+    private final AtomicLong nextPurge = new AtomicLong();
+
+    public JDBCLoginAttemptStore(DataSource dataSource) {
+        this(dataSource, DEFAULT_TABLE_NAME);
+    }
+
+    public JDBCLoginAttemptStore(DataSource dataSource, String tableName) {
+        if (dataSource == null) {
+            throw new IllegalArgumentException("You must provide a data source.");
+        }
+
+        if (tableName == null) {
+            throw new IllegalArgumentException("You must provide a table name.");
+        }
+
+        this.dataSource = dataSource;
+        this.selectSql = "SELECT FAILURES, FIRST_FAILURE, LAST_FAILURE FROM " + tableName + " WHERE ATTEMPT_KEY = ?";
+        this.insertSql = "INSERT INTO " + tableName + " (ATTEMPT_KEY, FAILURES, FIRST_FAILURE, LAST_FAILURE) VALUES (?, 1, ?, ?)";
+        this.incrementSql = "UPDATE " + tableName + " SET FAILURES = FAILURES + 1, LAST_FAILURE = ? WHERE ATTEMPT_KEY = ? AND FIRST_FAILURE = ?";
+        this.restartSql = "UPDATE " + tableName + " SET FAILURES = 1, FIRST_FAILURE = ?, LAST_FAILURE = ? WHERE ATTEMPT_KEY = ? AND FIRST_FAILURE = ?";
+        this.deleteSql = "DELETE FROM " + tableName + " WHERE ATTEMPT_KEY = ?";
+        this.purgeSql = "DELETE FROM " + tableName + " WHERE FIRST_FAILURE <= ?";
+    }
+
+    @Override
+    public LoginAttempts getAttempts(String key, long period) {
+        Connection connection = null;
+
+        try {
+            connection = this.dataSource.getConnection();
+
+            LoginAttempts attempts = select(connection, key);
+
+            if (attempts == null || attempts.isExpired(System.currentTimeMillis(), period)) {
+                return null;
+            }
+
+            return attempts;
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not load login attempts for [" + key + "].", e);
+        } finally {
+            safeClose(connection);
+        }
+    }
+
+    @Override
+    public LoginAttempts recordFailure(String key, long period) {
+        Connection connection = null;
+
+        try {
+            connection = this.dataSource.getConnection();
+
+            purgeIfNeeded(connection, period);
+
+            SQLException lastError = null;
+
+            for (int i = 0; i < MAX_RETRIES; i++) {
+                long now = System.currentTimeMillis();
+                LoginAttempts current = select(connection, key);
+                LoginAttempts attempts = LoginAttempts.failed(current, now, period);
+
+                try {
+                    if (current == null) {
+                        execute(connection, this.insertSql, key, now, now);
+                        return attempts;
+                    }
+
+                    int updated;
+
+                    if (attempts.getFailures() == 1) {
+                        updated = execute(connection, this.restartSql, now, now, key, current.getFirstFailure());
+                    } else {
+                        updated = execute(connection, this.incrementSql, now, key, current.getFirstFailure());
+                    }
+
+                    if (updated > 0) {
+                        return attempts;
+                    }
+                } catch (SQLException e) {
+                    // another node probably inserted the same key, try again.
+                    lastError = e;
+                }
+            }
+
+            throw new RuntimeException("Could not record login attempt for [" + key + "].", lastError);
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not record login attempt for [" + key + "].", e);
+        } finally {
+            safeClose(connection);
+        }
+    }
+
+    @Override
+    public void reset(String key) {
+        Connection connection = null;
+
+        try {
+            connection = this.dataSource.getConnection();
+            execute(connection, this.deleteSql, key);
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not reset login attempts for [" + key + "].", e);
+        } finally {
+            safeClose(connection);
+        }
+    }
+
+    /**
+     * <p>Deletes the rows whose period is over.</p>
+     *
+     * @param period the period, in milliseconds, during which failures are counted
+     *
+     * @return the number of deleted rows
+     */
+    public int purgeExpired(long period) {
+        Connection connection = null;
+
+        try {
+            connection = this.dataSource.getConnection();
+            return execute(connection, this.purgeSql, System.currentTimeMillis() - period);
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not purge expired login attempts.", e);
+        } finally {
+            safeClose(connection);
+        }
+    }
+
+    private void purgeIfNeeded(Connection connection, long period) {
+        long now = System.currentTimeMillis();
+        long nextPurge = this.nextPurge.get();
+
+        // only one thread of this node purges, the others go on recording their failure
+        if (now >= nextPurge && this.nextPurge.compareAndSet(nextPurge, now + PURGE_INTERVAL)) {
+            try {
+                execute(connection, this.purgeSql, now - period);
+            } catch (SQLException ignore) {
+                // the failure is still recorded, expired rows are deleted by the next purge
+            }
+        }
+    }
+
+    private LoginAttempts select(Connection connection, String key) throws SQLException {
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+
+        try {
+            statement = connection.prepareStatement(this.selectSql);
+            statement.setString(1, key);
+
+            resultSet = statement.executeQuery();
+
+            if (resultSet.next()) {
+                return new LoginAttempts(resultSet.getInt(1), resultSet.getLong(2), resultSet.getLong(3));
+            }
+
+            return null;
+        } finally {
+            safeClose(resultSet);
+            safeClose(statement);
+        }
+    }
+
+    private int execute(Connection connection, String sql, Object... parameters) throws SQLException {
+        PreparedStatement statement = null;
+
+        try {
+            statement = connection.prepareStatement(sql);
+
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+
+            return statement.executeUpdate();
+        } finally {
+            safeClose(statement);
+        }
+    }
+
+    private void safeClose(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException ignore) {
+            }
+        }
+    }
+
+    private void safeClose(ResultSet resultSet) {
+        if (resultSet != null) {
+            try {
+                resultSet.close();
+            } catch (SQLException ignore) {
+            }
+        }
+    }
+
+    private void safeClose(Statement statement) {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException ignore) {
+            }
+        }
+    }
+}
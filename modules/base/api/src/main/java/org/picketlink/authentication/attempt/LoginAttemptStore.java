@@ -0,0 +1,56 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.authentication.attempt;
+
+/**
+ * <p>Stores the failed login attempts used to limit the login attempts of accounts and client addresses.</p>
+ *
+ * <p>Keys are opaque strings that identify an account or a client address. Implementations must be thread-safe.</p>
+ *
+ * @see InMemoryLoginAttemptStore
+ * @see JDBCLoginAttemptStore
+ */
+public interface LoginAttemptStore {
+
+    /**
+     * <p>Returns the failed attempts recorded for the given key.</p>
+     *
+     * @param key the key of an account or client address
+     * @param period the period, in milliseconds, during which failures are counted
+     *
+     * @return the attempts, or null if there are no failures in the current period
+     */
+    LoginAttempts getAttempts(String key, long period);
+
+    /**
+     * <p>Records a failed attempt for the given key.</p>
+     *
+     * @param key the key of an account or client address
+     * @param period the period, in milliseconds, during which failures are counted
+     *
+     * @return the attempts, including the new failure
+     */
+    LoginAttempts recordFailure(String key, long period);
+
+    /**
+     * <p>Discards the failed attempts recorded for the given key.</p>
+     *
+     * @param key the key of an account or client address
+     */
+    void reset(String key);
+}
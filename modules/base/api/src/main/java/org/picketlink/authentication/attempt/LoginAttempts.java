@@ -0,0 +1,87 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.authentication.attempt;
+
+import java.io.Serializable;
+
+/**
+ * <p>The failed login attempts recorded by a {@link LoginAttemptStore} for an account or a client address.</p>
+ */
+public class LoginAttempts implements Serializable {
+
+    private static final long serialVersionUID = -2286424011427318396L;
+
+    private final int failures;
+    private final long firstFailure;
+    private final long lastFailure;
+
+    public LoginAttempts(int failures, long firstFailure, long lastFailure) {
+        this.failures = failures;
+        this.firstFailure = firstFailure;
+        this.lastFailure = lastFailure;
+    }
+
+    /**
+     * @return the number of failed attempts since {@link #getFirstFailure()}
+     */
+    public int getFailures() {
+        return this.failures;
+    }
+
+    /**
+     * @return the time, in milliseconds, of the first failed attempt of the current period
+     */
+    public long getFirstFailure() {
+        return this.firstFailure;
+    }
+
+    /**
+     * @return the time, in milliseconds, of the last failed attempt
+     */
+    public long getLastFailure() {
+        return this.lastFailure;
+    }
+
+    /**
+     * <p>Returns the attempts after a new failure. If the period started by the first failure is over, a new period
+     * is started.</p>
+     *
+     * @param attempts the current attempts, or null if no failure was recorded
+     * @param now the time of the failure
+     * @param period the period, in milliseconds, during which failures are counted
+     *
+     * @return
+     */
+    public static LoginAttempts failed(LoginAttempts attempts, long now, long period) {
+        if (attempts == null || attempts.isExpired(now, period)) {
+            return new LoginAttempts(1, now, now);
+        }
+
+        return new LoginAttempts(attempts.failures + 1, attempts.firstFailure, now);
+    }
+
+    /**
+     * @param now the current time
+     * @param period the period, in milliseconds, during which failures are counted
+     *
+     * @return true if the period started by the first failure is over
+     */
+    public boolean isExpired(long now, long period) {
+        return now - this.firstFailure >= period;
+    }
+}
@@ -32,8 +32,9 @@ import java.lang.annotation.Annotation;
 public class IdentityBeanConfiguration {
 
     private final Class<? extends Annotation> scope;
+    private final LoginAttemptConfiguration loginAttemptConfiguration;
 
-    IdentityBeanConfiguration(Class<? extends Annotation> scope) {
+    IdentityBeanConfiguration(Class<? extends Annotation> scope, LoginAttemptConfiguration loginAttemptConfiguration) {
         if (scope == null) {
             throw new IllegalArgumentException("You must provide the Identity bean scope.");
         }
@@ -43,9 +44,17 @@ public class IdentityBeanConfiguration {
         }
 
         this.scope = scope;
+        this.loginAttemptConfiguration = loginAttemptConfiguration;
     }
 
     public Class<? extends Annotation> getScope() {
         return this.scope;
     }
+
+    /**
+     * @return the configuration used to limit login attempts, or null if login attempts are not limited
+     */
+    public LoginAttemptConfiguration getLoginAttemptConfiguration() {
+        return this.loginAttemptConfiguration;
+    }
 }
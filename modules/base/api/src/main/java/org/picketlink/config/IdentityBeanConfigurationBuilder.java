@@ -36,6 +36,7 @@ import java.lang.annotation.Annotation;
 public class IdentityBeanConfigurationBuilder extends AbstractSecurityConfigurationBuilder<IdentityBeanConfiguration> {
 
     private Class<? extends Annotation> scope = SessionScoped.class;
+    private LoginAttemptConfigurationBuilder loginAttemptConfigurationBuilder;
 
     public IdentityBeanConfigurationBuilder(SecurityConfigurationBuilder builder) {
         super(builder);
@@ -65,9 +66,31 @@ public class IdentityBeanConfigurationBuilder extends AbstractSecurityConfigurat
         return this;
     }
 
+    /**
+     * <p>Limits the failed login attempts of accounts and client addresses. Once the limit is reached, login attempts
+     * are rejected before validating any credential.</p>
+     *
+     * <p>Default is no limit.</p>
+     *
+     * @return
+     */
+    public LoginAttemptConfigurationBuilder limitLoginAttempts() {
+        if (this.loginAttemptConfigurationBuilder == null) {
+            this.loginAttemptConfigurationBuilder = new LoginAttemptConfigurationBuilder(this);
+        }
+
+        return this.loginAttemptConfigurationBuilder;
+    }
+
     @Override
     protected IdentityBeanConfiguration create() throws SecurityConfigurationException {
-        return new IdentityBeanConfiguration(this.scope);
+        LoginAttemptConfiguration loginAttemptConfiguration = null;
+
+        if (this.loginAttemptConfigurationBuilder != null) {
+            loginAttemptConfiguration = this.loginAttemptConfigurationBuilder.create();
+        }
+
+        return new IdentityBeanConfiguration(this.scope, loginAttemptConfiguration);
     }
 
     @Override
@@ -80,6 +103,10 @@ public class IdentityBeanConfigurationBuilder extends AbstractSecurityConfigurat
             this.stateless();
         }
 
+        if (fromConfiguration.getLoginAttemptConfiguration() != null) {
+            limitLoginAttempts().readFrom(fromConfiguration.getLoginAttemptConfiguration());
+        }
+
         return this;
     }
 }
@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.config;
+
+import org.picketlink.authentication.attempt.LoginAttemptStore;
+
+/**
+ * <p>Configures how the failed login attempts of accounts and client addresses are limited.</p>
+ *
+ * <p>Once the maximum number of failed attempts is reached for an account or a client address, new attempts are
+ * rejected without validating the credentials until the delay since the last failure is over. The delay doubles with
+ * each new failure, up to the maximum delay. Failures are counted during a period that starts with the first
+ * failure, and are discarded for an account once it logs in successfully.</p>
+ *
+ * <p>Client addresses are read from {@link javax.servlet.ServletRequest#getRemoteAddr()}. Behind a reverse proxy or a
+ * load balancer that is the address of the proxy, so all clients would share the same failures. In that case a header
+ * set by the proxy, like <code>X-Forwarded-For</code>, must be configured with
+ * {@link LoginAttemptConfigurationBuilder#clientAddressHeader(String)}.</p>
+ */
+public class LoginAttemptConfiguration {
+
+    private final int maxAttemptsPerAccount;
+    private final int maxAttemptsPerAddress;
+    private final long period;
+    private final long delay;
+    private final long maxDelay;
+    private final LoginAttemptStore store;
+    private final boolean failOpen;
+    private final String clientAddressHeader;
+
+    LoginAttemptConfiguration(int maxAttemptsPerAccount, int maxAttemptsPerAddress, long period, long delay,
+                              long maxDelay, LoginAttemptStore store, boolean failOpen, String clientAddressHeader) {
+        this.maxAttemptsPerAccount = maxAttemptsPerAccount;
+        this.maxAttemptsPerAddress = maxAttemptsPerAddress;
+        this.period = period;
+        this.delay = delay;
+        this.maxDelay = maxDelay;
+        this.store = store;
+        this.failOpen = failOpen;
+        this.clientAddressHeader = clientAddressHeader;
+    }
+
+    /**
+     * @return the number of failed attempts allowed for an account before new attempts are delayed, or 0 if accounts
+     * are not limited
+     */
+    public int getMaxAttemptsPerAccount() {
+        return this.maxAttemptsPerAccount;
+    }
+
+    /**
+     * @return the number of failed attempts allowed for a client address before new attempts are delayed, or 0 if
+     * addresses are not limited
+     */
+    public int getMaxAttemptsPerAddress() {
+        return this.maxAttemptsPerAddress;
+    }
+
+    /**
+     * @return the period, in milliseconds, during which failures are counted
+     */
+    public long getPeriod() {
+        return this.period;
+    }
+
+    /**
+     * @return the delay, in milliseconds, after the first failure that exceeds the maximum number of attempts
+     */
+    public long getDelay() {
+        return this.delay;
+    }
+
+    /**
+     * @return the maximum delay, in milliseconds
+     */
+    public long getMaxDelay() {
+        return this.maxDelay;
+    }
+
+    public LoginAttemptStore getStore() {
+        return this.store;
+    }
+
+    /**
+     * @return true if login attempts are allowed when the store can not be accessed, false if they are rejected
+     */
+    public boolean isFailOpen() {
+        return this.failOpen;
+    }
+
+    /**
+     * @return the request header holding the client address, or null if the remote address of the request is used
+     */
+    public String getClientAddressHeader() {
+        return this.clientAddressHeader;
+    }
+}
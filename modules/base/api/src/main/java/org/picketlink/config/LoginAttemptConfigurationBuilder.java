@@ -0,0 +1,199 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.config;
+
+import org.picketlink.authentication.attempt.InMemoryLoginAttemptStore;
+import org.picketlink.authentication.attempt.LoginAttemptStore;
+import org.picketlink.idm.config.Builder;
+import org.picketlink.idm.config.SecurityConfigurationException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A configuration builder to limit the failed login attempts of accounts and client addresses. See
+ * {@link org.picketlink.config.LoginAttemptConfiguration}.</p>
+ *
+ * <p>By default, the failed attempts are kept in memory. Clustered applications should use a shared store, like
+ * {@link org.picketlink.authentication.attempt.JDBCLoginAttemptStore}.</p>
+ */
+public class LoginAttemptConfigurationBuilder extends AbstractSecurityConfigurationBuilder<LoginAttemptConfiguration> {
+
+    private int maxAttemptsPerAccount = 5;
+    private int maxAttemptsPerAddress = 50;
+    private long period = TimeUnit.HOURS.toMillis(1);
+    private long delay = TimeUnit.SECONDS.toMillis(5);
+    private long maxDelay = TimeUnit.MINUTES.toMillis(15);
+    private LoginAttemptStore store;
+    private boolean failOpen = true;
+    private String clientAddressHeader;
+
+    public LoginAttemptConfigurationBuilder(IdentityBeanConfigurationBuilder builder) {
+        super(builder);
+    }
+
+    /**
+     * <p>Number of failed attempts allowed for an account before new attempts are delayed. Use 0 to not limit the
+     * attempts by account.</p>
+     *
+     * <p>Default is 5.</p>
+     *
+     * @param maxAttempts
+     * @return
+     */
+    public LoginAttemptConfigurationBuilder maxAttemptsPerAccount(int maxAttempts) {
+        this.maxAttemptsPerAccount = maxAttempts;
+        return this;
+    }
+
+    /**
+     * <p>Number of failed attempts allowed for a client address before new attempts are delayed. Use 0 to not limit
+     * the attempts by address.</p>
+     *
+     * <p>Default is 50.</p>
+     *
+     * @param maxAttempts
+     * @return
+     */
+    public LoginAttemptConfigurationBuilder maxAttemptsPerAddress(int maxAttempts) {
+        this.maxAttemptsPerAddress = maxAttempts;
+        return this;
+    }
+
+    /**
+     * <p>Period during which failures are counted, starting with the first failure.</p>
+     *
+     * <p>Default is one hour.</p>
+     *
+     * @param period
+     * @param unit
+     * @return
+     */
+    public LoginAttemptConfigurationBuilder period(long period, TimeUnit unit) {
+        this.period = unit.toMillis(period);
+        return this;
+    }
+
+    /**
+     * <p>Delay after the first failure that exceeds the maximum number of attempts. It doubles with each new failure.</p>
+     *
+     * <p>Default is five seconds.</p>
+     *
+     * @param delay
+     * @param unit
+     * @return
+     */
+    public LoginAttemptConfigurationBuilder delay(long delay, TimeUnit unit) {
+        this.delay = unit.toMillis(delay);
+        return this;
+    }
+
+    /**
+     * <p>Maximum delay between attempts.</p>
+     *
+     * <p>Default is fifteen minutes.</p>
+     *
+     * @param maxDelay
+     * @param unit
+     * @return
+     */
+    public LoginAttemptConfigurationBuilder maxDelay(long maxDelay, TimeUnit unit) {
+        this.maxDelay = unit.toMillis(maxDelay);
+        return this;
+    }
+
+    /**
+     * <p>The store used to keep the failed attempts.</p>
+     *
+     * @param store
+     * @return
+     */
+    public LoginAttemptConfigurationBuilder store(LoginAttemptStore store) {
+        this.store = store;
+        return this;
+    }
+
+    /**
+     * <p>Rejects login attempts when the store can not be accessed, instead of allowing them without any limit. Store
+     * failures are logged in both cases.</p>
+     *
+     * @return
+     */
+    public LoginAttemptConfigurationBuilder failClosed() {
+        this.failOpen = false;
+        return this;
+    }
+
+    /**
+     * <p>Reads the client address from the given request header instead of the remote address of the request. It must
+     * only be used when all requests come through a reverse proxy or a load balancer that sets the header, otherwise
+     * clients can send any address.</p>
+     *
+     * <p>If the header holds a list of addresses, like <code>X-Forwarded-For</code>, the last one is used. That is the
+     * address seen by the proxy in front of the application, the others are sent by the client.</p>
+     *
+     * @param headerName
+     * @return
+     */
+    public LoginAttemptConfigurationBuilder clientAddressHeader(String headerName) {
+        this.clientAddressHeader = headerName;
+        return this;
+    }
+
+    @Override
+    protected LoginAttemptConfiguration create() throws SecurityConfigurationException {
+        validate();
+
+        LoginAttemptStore store = this.store;
+
+        if (store == null) {
+            store = new InMemoryLoginAttemptStore();
+        }
+
+        return new LoginAttemptConfiguration(this.maxAttemptsPerAccount, this.maxAttemptsPerAddress, this.period,
+            this.delay, this.maxDelay, store, this.failOpen, this.clientAddressHeader);
+    }
+
+    @Override
+    protected void validate() throws SecurityConfigurationException {
+        if (this.maxAttemptsPerAccount < 0 || this.maxAttemptsPerAddress < 0) {
+            throw new SecurityConfigurationException("The maximum number of login attempts can not be negative.");
+        }
+
+        if (this.period <= 0 || this.delay <= 0 || this.maxDelay < this.delay) {
+            throw new SecurityConfigurationException("Invalid login attempt period or delay. The period and delay must "
+                + "be greater than zero and the maximum delay can not be lesser than the delay.");
+        }
+    }
+
+    @Override
+    protected Builder<LoginAttemptConfiguration> readFrom(LoginAttemptConfiguration fromConfiguration) throws SecurityConfigurationException {
+        this.maxAttemptsPerAccount = fromConfiguration.getMaxAttemptsPerAccount();
+        this.maxAttemptsPerAddress = fromConfiguration.getMaxAttemptsPerAddress();
+        this.period = fromConfiguration.getPeriod();
+        this.delay = fromConfiguration.getDelay();
+        this.maxDelay = fromConfiguration.getMaxDelay();
+        this.store = fromConfiguration.getStore();
+        this.failOpen = fromConfiguration.isFailOpen();
+        this.clientAddressHeader = fromConfiguration.getClientAddressHeader();
+        return this;
+    }
+}
@@ -40,6 +40,7 @@ public class AuthorizationConfiguration implements Serializable {
     private final String[] allowedRealms;
     private final String[] expressions;
     private final List<Class<? extends PathAuthorizer>> authorizers;
+    private final int decisionTimeToLive;
     private final PathConfiguration pathConfiguration;
 
     public AuthorizationConfiguration(
@@ -49,12 +50,24 @@ public class AuthorizationConfiguration implements Serializable {
         String[] allowedRealms,
         String[] expressions,
         List<Class<? extends PathAuthorizer>> authorizers) {
+        this(pathConfiguration, allowedRoles, allowedGroups, allowedRealms, expressions, authorizers, 0);
+    }
+
+    public AuthorizationConfiguration(
+        PathConfiguration pathConfiguration,
+        String[] allowedRoles,
+        String[] allowedGroups,
+        String[] allowedRealms,
+        String[] expressions,
+        List<Class<? extends PathAuthorizer>> authorizers,
+        int decisionTimeToLive) {
         this.pathConfiguration = pathConfiguration;
         this.allowedRoles = allowedRoles;
         this.allowedGroups = allowedGroups;
         this.allowedRealms = allowedRealms;
         this.expressions = expressions;
         this.authorizers = authorizers;
+        this.decisionTimeToLive = decisionTimeToLive;
     }
 
     public String[] getAllowedRoles() {
@@ -76,4 +89,13 @@ public class AuthorizationConfiguration implements Serializable {
     public List<Class<? extends PathAuthorizer>> getAuthorizers() {
         return unmodifiableList(this.authorizers);
     }
+
+    /**
+     * <p>Returns how long, in seconds, the role, group and realm decisions are reused. 0 if they are not reused.</p>
+     *
+     * @return
+     */
+    public int getDecisionTimeToLive() {
+        return this.decisionTimeToLive;
+    }
 }
\ No newline at end of file
@@ -39,6 +39,7 @@ public class AuthorizationConfigurationBuilder extends AbstractPathConfiguration
     private String[] realmsAllowed;
     private String[] elExpresion;
     private List<Class<? extends PathAuthorizer>> authorizers = new ArrayList<Class<? extends PathAuthorizer>>();
+    private int decisionTimeToLive;
 
     AuthorizationConfigurationBuilder(PathConfigurationBuilder parentBuilder) {
         super(parentBuilder);
@@ -106,7 +107,24 @@ public class AuthorizationConfigurationBuilder extends AbstractPathConfiguration
         return this;
     }
 
+    /**
+     * <p>Specifies how long, in seconds, the role, group and realm decisions made for a user are reused by the
+     * following requests to a specific path. Decisions are not reused by default.</p>
+     *
+     * <p>Decisions are discarded when the roles, groups or partitions are changed through this application. Changes
+     * made by other nodes of a cluster or by other applications sharing the identity store are only seen once the
+     * decisions expire, so the time to live bounds how long a revoked role can still be used.</p>
+     *
+     * @param timeToLive
+     * @return
+     */
+    public AuthorizationConfigurationBuilder cacheDecisions(int timeToLive) {
+        this.decisionTimeToLive = timeToLive;
+        return this;
+    }
+
     AuthorizationConfiguration create(PathConfiguration pathConfiguration) {
-        return new AuthorizationConfiguration(pathConfiguration, this.rolesAllowed, this.groupsAllowed, this.realmsAllowed, this.elExpresion, this.authorizers);
+        return new AuthorizationConfiguration(pathConfiguration, this.rolesAllowed, this.groupsAllowed, this.realmsAllowed, this.elExpresion, this.authorizers,
+            this.decisionTimeToLive);
     }
 }
\ No newline at end of file
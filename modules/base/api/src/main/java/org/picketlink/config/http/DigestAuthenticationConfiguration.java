@@ -26,14 +26,39 @@ package org.picketlink.config.http;
  */
 public class DigestAuthenticationConfiguration extends AbstractAuthenticationSchemeConfiguration implements AuthenticationSchemeConfiguration {
 
+    /**
+     * <p>Default time, in milliseconds, during which a nonce is valid.</p>
+     */
+    public static final long DEFAULT_NONCE_MAX_AGE = 3 * 60 * 1000;
+
     private final String realmName;
+    private final String nonceSecret;
+    private final long nonceMaxAge;
 
     public DigestAuthenticationConfiguration(String realmName, AuthenticationConfiguration authenticationConfiguration) {
+        this(realmName, null, DEFAULT_NONCE_MAX_AGE, authenticationConfiguration);
+    }
+
+    public DigestAuthenticationConfiguration(String realmName, String nonceSecret, long nonceMaxAge,
+                                             AuthenticationConfiguration authenticationConfiguration) {
         super(authenticationConfiguration);
         this.realmName = realmName;
+        this.nonceSecret = nonceSecret;
+        this.nonceMaxAge = nonceMaxAge;
     }
 
     public String getRealmName() {
         return this.realmName;
     }
+
+    /**
+     * @return the secret used to sign nonces, or null if a random secret should be used
+     */
+    public String getNonceSecret() {
+        return this.nonceSecret;
+    }
+
+    public long getNonceMaxAge() {
+        return this.nonceMaxAge;
+    }
 }
@@ -29,6 +29,8 @@ package org.picketlink.config.http;
 public class DigestAuthenticationConfigurationBuilder extends AuthenticationMethodConfigurationBuilder {
 
     private String realmName;
+    private String nonceSecret;
+    private long nonceMaxAge = DigestAuthenticationConfiguration.DEFAULT_NONCE_MAX_AGE;
 
     DigestAuthenticationConfigurationBuilder(PathConfigurationBuilder parentBuilder) {
         super(parentBuilder);
@@ -45,8 +47,33 @@ public class DigestAuthenticationConfigurationBuilder extends AuthenticationMeth
         return this;
     }
 
+    /**
+     * <p>Specifies the secret used to sign the nonces sent to clients. Nonces are verified without keeping any state in
+     * the server, so all the nodes of a cluster must share the same secret. If not specified, a random secret is
+     * generated and nonces are only accepted by the node that issued them.</p>
+     *
+     * @param nonceSecret
+     * @return
+     */
+    public DigestAuthenticationConfigurationBuilder nonceSecret(String nonceSecret) {
+        this.nonceSecret = nonceSecret;
+        return this;
+    }
+
+    /**
+     * <p>Specifies the time, in milliseconds, during which a nonce is valid. Defaults to three minutes.</p>
+     *
+     * @param nonceMaxAge
+     * @return
+     */
+    public DigestAuthenticationConfigurationBuilder nonceMaxAge(long nonceMaxAge) {
+        this.nonceMaxAge = nonceMaxAge;
+        return this;
+    }
+
     @Override
     AuthenticationSchemeConfiguration create(AuthenticationConfiguration authenticationConfiguration) {
-        return new DigestAuthenticationConfiguration(this.realmName, authenticationConfiguration);
+        return new DigestAuthenticationConfiguration(this.realmName, this.nonceSecret, this.nonceMaxAge,
+                authenticationConfiguration);
     }
 }
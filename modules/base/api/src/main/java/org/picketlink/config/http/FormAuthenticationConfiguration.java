@@ -27,11 +27,17 @@ package org.picketlink.config.http;
 public class FormAuthenticationConfiguration extends AbstractAuthenticationSchemeConfiguration implements AuthenticationSchemeConfiguration {
 
     public static final String DEFAULT_AUTHENTICATION_URI = "j_security_check";
+    public static final int DEFAULT_SAVED_REQUEST_TIMEOUT = 300;
+    public static final int DEFAULT_MAX_SAVED_REQUESTS = 10000;
+    public static final int DEFAULT_MAX_SAVED_REQUEST_SIZE = 2048;
 
     private final String loginPageUrl;
     private final String errorPageUrl;
     private final String authenticationUri;
     private final boolean restoreOriginalRequest;
+    private final int savedRequestTimeout;
+    private final int maxSavedRequests;
+    private final int maxSavedRequestSize;
 
     public FormAuthenticationConfiguration(
         String loginPageUrl,
@@ -39,6 +45,19 @@ public class FormAuthenticationConfiguration extends AbstractAuthenticationSchem
         boolean restoreOriginalRequest,
         String authenticationUri,
         AuthenticationConfiguration authenticationConfiguration) {
+        this(loginPageUrl, errorPageUrl, restoreOriginalRequest, authenticationUri, DEFAULT_SAVED_REQUEST_TIMEOUT,
+            DEFAULT_MAX_SAVED_REQUESTS, DEFAULT_MAX_SAVED_REQUEST_SIZE, authenticationConfiguration);
+    }
+
+    public FormAuthenticationConfiguration(
+        String loginPageUrl,
+        String errorPageUrl,
+        boolean restoreOriginalRequest,
+        String authenticationUri,
+        int savedRequestTimeout,
+        int maxSavedRequests,
+        int maxSavedRequestSize,
+        AuthenticationConfiguration authenticationConfiguration) {
         super(authenticationConfiguration);
 
         if (loginPageUrl == null) {
@@ -59,6 +78,9 @@ public class FormAuthenticationConfiguration extends AbstractAuthenticationSchem
         }
 
         this.authenticationUri = authenticationUri;
+        this.savedRequestTimeout = savedRequestTimeout;
+        this.maxSavedRequests = maxSavedRequests;
+        this.maxSavedRequestSize = maxSavedRequestSize;
     }
 
     public String getLoginPageUrl() {
@@ -76,4 +98,16 @@ public class FormAuthenticationConfiguration extends AbstractAuthenticationSchem
     public String getAuthenticationUri() {
         return this.authenticationUri;
     }
+
+    public int getSavedRequestTimeout() {
+        return this.savedRequestTimeout;
+    }
+
+    public int getMaxSavedRequests() {
+        return this.maxSavedRequests;
+    }
+
+    public int getMaxSavedRequestSize() {
+        return this.maxSavedRequestSize;
+    }
 }
@@ -32,6 +32,9 @@ public class FormAuthenticationConfigurationBuilder extends AuthenticationMethod
     private String errorPageUrl;
     private boolean restoreOriginalRequest;
     private String authenticationUri;
+    private int savedRequestTimeout = FormAuthenticationConfiguration.DEFAULT_SAVED_REQUEST_TIMEOUT;
+    private int maxSavedRequests = FormAuthenticationConfiguration.DEFAULT_MAX_SAVED_REQUESTS;
+    private int maxSavedRequestSize = FormAuthenticationConfiguration.DEFAULT_MAX_SAVED_REQUEST_SIZE;
 
     FormAuthenticationConfigurationBuilder(PathConfigurationBuilder parentBuilder) {
         super(parentBuilder);
@@ -83,8 +86,48 @@ public class FormAuthenticationConfigurationBuilder extends AuthenticationMethod
         return this;
     }
 
+    /**
+     * <p>Specifies how long, in seconds, an original request is kept while waiting for the user to authenticate.
+     * Defaults to 5 minutes.</p>
+     *
+     * @param savedRequestTimeout
+     * @return
+     */
+    public FormAuthenticationConfigurationBuilder savedRequestTimeout(int savedRequestTimeout) {
+        this.savedRequestTimeout = savedRequestTimeout;
+        return this;
+    }
+
+    /**
+     * <p>Specifies how many original requests can be kept while waiting for users to authenticate. When the limit is
+     * reached the oldest requests are discarded, and their users are redirected to the context path after a successful
+     * authentication.</p>
+     *
+     * @param maxSavedRequests
+     * @return
+     */
+    public FormAuthenticationConfigurationBuilder maxSavedRequests(int maxSavedRequests) {
+        this.maxSavedRequests = maxSavedRequests;
+        return this;
+    }
+
+    /**
+     * <p>Specifies the maximum size, in characters, of the query string and body of an original request. Larger
+     * requests, and requests whose body size is not known in advance, are not kept and their users are redirected to
+     * the context path after a successful authentication. Use 0 to keep all requests without their parameters, only
+     * the URI, the query string and the method. Defaults to 2048.</p>
+     *
+     * @param maxSavedRequestSize
+     * @return
+     */
+    public FormAuthenticationConfigurationBuilder maxSavedRequestSize(int maxSavedRequestSize) {
+        this.maxSavedRequestSize = maxSavedRequestSize;
+        return this;
+    }
+
     @Override
     AuthenticationSchemeConfiguration create(AuthenticationConfiguration authenticationConfiguration) {
-        return new FormAuthenticationConfiguration(this.loginPageUrl, this.errorPageUrl, this.restoreOriginalRequest, this.authenticationUri, authenticationConfiguration);
+        return new FormAuthenticationConfiguration(this.loginPageUrl, this.errorPageUrl, this.restoreOriginalRequest, this.authenticationUri,
+            this.savedRequestTimeout, this.maxSavedRequests, this.maxSavedRequestSize, authenticationConfiguration);
     }
 }
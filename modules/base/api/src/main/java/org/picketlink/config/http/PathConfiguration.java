@@ -171,6 +171,7 @@ public class PathConfiguration implements Serializable {
                 String[] allowedRoles = this.authorizationConfiguration.getAllowedRoles();
                 String[] expressions = this.authorizationConfiguration.getExpressions();
                 List<Class<? extends PathAuthorizer>> authorizers = this.authorizationConfiguration.getAuthorizers();
+                int decisionTimeToLive = this.authorizationConfiguration.getDecisionTimeToLive();
 
                 if (allowedGroups == null) {
                     allowedGroups = groupAuthz.getAllowedGroups();
@@ -192,8 +193,12 @@ public class PathConfiguration implements Serializable {
                     authorizers = groupAuthz.getAuthorizers();
                 }
 
+                if (decisionTimeToLive == 0) {
+                    decisionTimeToLive = groupAuthz.getDecisionTimeToLive();
+                }
+
                 return new AuthorizationConfiguration(this, allowedRoles, allowedGroups, allowedRealms, expressions,
-                        authorizers);
+                        authorizers, decisionTimeToLive);
             } else if (groupAuthz != null) {
                 return groupConfiguration.getAuthorizationConfiguration();
             }
@@ -63,4 +63,8 @@ public interface BaseLog extends Log {
     @LogMessage(level = Logger.Level.WARN)
     @Message(id = 2100, value = "Authentication failed for account [%s].")
     void authenticationFailed(String accountName, @Cause Throwable ae);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 2101, value = "Could not access the login attempts of [%s].")
+    void loginAttemptStoreFailed(String key, @Cause Throwable t);
 }
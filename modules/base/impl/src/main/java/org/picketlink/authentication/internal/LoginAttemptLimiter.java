@@ -0,0 +1,222 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.authentication.internal;
+
+import org.picketlink.authentication.LoginAttemptsExceededException;
+import org.picketlink.authentication.attempt.LoginAttempts;
+import org.picketlink.config.IdentityBeanConfiguration;
+import org.picketlink.config.LoginAttemptConfiguration;
+import org.picketlink.config.SecurityConfiguration;
+import org.picketlink.extension.PicketLinkExtension;
+import org.picketlink.http.internal.HttpServletRequestProducer;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.ContextNotActiveException;
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+
+import static org.picketlink.log.BaseLog.AUTHENTICATION_LOGGER;
+
+/**
+ * <p>Limits the failed login attempts of accounts and client addresses, as configured by
+ * {@link org.picketlink.config.IdentityBeanConfigurationBuilder#limitLoginAttempts()}.</p>
+ *
+ * <p>Attempts are checked before the credentials are validated, so rejected attempts do not cost an account lookup
+ * or a password hash. Rejected attempts are not recorded as failures.</p>
+ *
+ * <p>If the store can not be accessed, a warning is logged and attempts are allowed, unless the limiter was configured
+ * with {@link org.picketlink.config.LoginAttemptConfigurationBuilder#failClosed()}.</p>
+ */
+@ApplicationScoped
+public class LoginAttemptLimiter {
+
+    private static final String ACCOUNT_KEY_PREFIX = "account:";
+    private static final String ADDRESS_KEY_PREFIX = "address:";
+
+    /**
+     * Limits the growth of the delay, it is capped by the maximum delay anyway.
+     */
+    private static final int MAX_DELAY_SHIFT = 30;
+
+    @Inject
+    private PicketLinkExtension picketLinkExtension;
+
+    @Inject
+    private HttpServletRequestProducer servletRequestProducer;
+
+    /**
+     * <p>Checks if a login attempt for the given user is allowed.</p>
+     *
+     * @param userId the user id provided with the credentials, if any
+     * @throws LoginAttemptsExceededException if there were too many failed attempts for the user or the client address
+     */
+    public void checkAttempt(String userId) throws LoginAttemptsExceededException {
+        LoginAttemptConfiguration configuration = getConfiguration();
+
+        if (configuration == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        if (userId != null && configuration.getMaxAttemptsPerAccount() > 0) {
+            checkAttempt(configuration, ACCOUNT_KEY_PREFIX + userId, configuration.getMaxAttemptsPerAccount(), now);
+        }
+
+        String address = getClientAddress(configuration);
+
+        if (address != null && configuration.getMaxAttemptsPerAddress() > 0) {
+            checkAttempt(configuration, ADDRESS_KEY_PREFIX + address, configuration.getMaxAttemptsPerAddress(), now);
+        }
+    }
+
+    /**
+     * <p>Records a failed login attempt for the given user and the current client address.</p>
+     *
+     * @param userId the user id provided with the credentials, if any
+     */
+    public void loginFailed(String userId) {
+        LoginAttemptConfiguration configuration = getConfiguration();
+
+        if (configuration == null) {
+            return;
+        }
+
+        if (userId != null && configuration.getMaxAttemptsPerAccount() > 0) {
+            recordFailure(configuration, ACCOUNT_KEY_PREFIX + userId);
+        }
+
+        String address = getClientAddress(configuration);
+
+        if (address != null && configuration.getMaxAttemptsPerAddress() > 0) {
+            recordFailure(configuration, ADDRESS_KEY_PREFIX + address);
+        }
+    }
+
+    /**
+     * <p>Discards the failed login attempts of the given user. The failures of the client address are kept, so an
+     * attacker can not reset them using a valid account.</p>
+     *
+     * @param userId the user id provided with the credentials, if any
+     */
+    public void loginSucceeded(String userId) {
+        LoginAttemptConfiguration configuration = getConfiguration();
+
+        if (configuration == null || userId == null || configuration.getMaxAttemptsPerAccount() <= 0) {
+            return;
+        }
+
+        String key = ACCOUNT_KEY_PREFIX + userId;
+
+        try {
+            configuration.getStore().reset(key);
+        } catch (RuntimeException e) {
+            AUTHENTICATION_LOGGER.loginAttemptStoreFailed(key, e);
+        }
+    }
+
+    private void checkAttempt(LoginAttemptConfiguration configuration, String key, int maxAttempts, long now) {
+        LoginAttempts attempts;
+
+        try {
+            attempts = configuration.getStore().getAttempts(key, configuration.getPeriod());
+        } catch (RuntimeException e) {
+            AUTHENTICATION_LOGGER.loginAttemptStoreFailed(key, e);
+
+            if (configuration.isFailOpen()) {
+                return;
+            }
+
+            throw new LoginAttemptsExceededException("Login attempts could not be checked.");
+        }
+
+        if (attempts == null || attempts.getFailures() < maxAttempts) {
+            return;
+        }
+
+        int shift = Math.min(attempts.getFailures() - maxAttempts, MAX_DELAY_SHIFT);
+        long delay = Math.min(configuration.getDelay() << shift, configuration.getMaxDelay());
+
+        if (now - attempts.getLastFailure() < delay) {
+            if (AUTHENTICATION_LOGGER.isDebugEnabled()) {
+                AUTHENTICATION_LOGGER.debugf("Login attempt rejected for [%s] after [%s] failures.", key, attempts.getFailures());
+            }
+
+            throw new LoginAttemptsExceededException("Too many failed login attempts.");
+        }
+    }
+
+    private void recordFailure(LoginAttemptConfiguration configuration, String key) {
+        try {
+            configuration.getStore().recordFailure(key, configuration.getPeriod());
+        } catch (RuntimeException e) {
+            AUTHENTICATION_LOGGER.loginAttemptStoreFailed(key, e);
+        }
+    }
+
+    private LoginAttemptConfiguration getConfiguration() {
+        SecurityConfiguration securityConfiguration = this.picketLinkExtension.getSecurityConfiguration();
+
+        if (securityConfiguration == null) {
+            return null;
+        }
+
+        IdentityBeanConfiguration identityBeanConfiguration = securityConfiguration.getIdentityBeanConfiguration();
+
+        if (identityBeanConfiguration == null) {
+            return null;
+        }
+
+        return identityBeanConfiguration.getLoginAttemptConfiguration();
+    }
+
+    private String getClientAddress(LoginAttemptConfiguration configuration) {
+        try {
+            HttpServletRequest request = this.servletRequestProducer.produce();
+
+            if (request == null) {
+                return null;
+            }
+
+            String headerName = configuration.getClientAddressHeader();
+
+            if (headerName != null) {
+                String header = request.getHeader(headerName);
+
+                if (header != null) {
+                    // the last address is the one added by the proxy, the others were sent by the client
+                    String address = header.substring(header.lastIndexOf(',') + 1).trim();
+
+                    if (!address.isEmpty()) {
+                        return address;
+                    }
+                }
+            }
+
+            return request.getRemoteAddr();
+        } catch (ContextNotActiveException ignore) {
+            // not an http request, only the account is limited.
+        }
+
+        return null;
+    }
+}
@@ -22,6 +22,7 @@
 package org.picketlink.extension;
 
 import org.picketlink.Identity;
+import org.picketlink.common.properties.query.PropertyQueries;
 import org.picketlink.config.SecurityConfiguration;
 import org.picketlink.config.SecurityConfigurationBuilder;
 import org.picketlink.event.SecurityConfigurationEvent;
@@ -32,6 +33,7 @@ import javax.enterprise.inject.spi.AfterBeanDiscovery;
 import javax.enterprise.inject.spi.AfterDeploymentValidation;
 import javax.enterprise.inject.spi.AnnotatedType;
 import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.BeforeShutdown;
 import javax.enterprise.inject.spi.Extension;
 import javax.enterprise.inject.spi.ProcessAnnotatedType;
 
@@ -104,6 +106,21 @@ public class PicketLinkExtension implements Extension {
         this.identityBeanDefinition.setSecurityConfiguration(this.securityConfiguration);
     }
 
+    /**
+     * <p>Discards the property queries cached for the classes of the application, so they can be unloaded.</p>
+     *
+     * @param beforeShutdown
+     */
+    void clearPropertyQueryCache(@Observes BeforeShutdown beforeShutdown) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+        if (classLoader != null) {
+            PropertyQueries.clearCache(classLoader);
+        } else {
+            PropertyQueries.clearCache();
+        }
+    }
+
     public SecurityConfigurationBuilder getSecurityConfigurationBuilder() {
         return this.securityConfigurationBuilder;
     }
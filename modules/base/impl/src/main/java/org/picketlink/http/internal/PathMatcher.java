@@ -28,22 +28,33 @@ import org.picketlink.internal.el.ELProcessor;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Pedro Igor
  */
 public class PathMatcher {
 
-    private static final String ANY_RESOURCE_PATTERN = "/*";
-    private final Map<String, List<PathConfiguration>> uriConfiguration;
+    /**
+     * Maximum number of requested URIs for which the matching path is kept in memory. The cache is emptied when the
+     * limit is reached, URIs with identifiers in them would otherwise fill it for good.
+     */
+    private static final int MATCH_CACHE_SIZE = 1000;
+
+    private static final List<PathConfiguration> NO_MATCH = Collections.emptyList();
+
+    private final PathTrie pathTrie;
+    private final Map<String, List<PathConfiguration>> matchCache;
     private final ELProcessor elProcessor;
 
     public PathMatcher(Map<String, List<PathConfiguration>> uriConfiguration, ELProcessor elProcessor) {
-        this.uriConfiguration = uriConfiguration;
+        this.pathTrie = new PathTrie(uriConfiguration);
+        this.matchCache = new ConcurrentHashMap<String, List<PathConfiguration>>();
         this.elProcessor = elProcessor;
     }
 
@@ -55,80 +66,23 @@ public class PathMatcher {
             requestedUri = requestedUri.substring(contextPathIndex + request.getContextPath().length());
         }
 
-        List<PathConfiguration> configurations = null;
-        String actualConfig = null;
-
-        for (Map.Entry<String, List<PathConfiguration>> entry : this.uriConfiguration.entrySet()) {
-            String protectedUri = entry.getKey();
-            String selectedUri = null;
-
-            if (protectedUri.equals(ANY_RESOURCE_PATTERN) && actualConfig == null) {
-                configurations = this.uriConfiguration.get(entry.getKey());
-                selectedUri = protectedUri;
-            }
-
-            int suffixIndex = protectedUri.indexOf(ANY_RESOURCE_PATTERN + ".");
-
-            if (suffixIndex != -1) {
-                String protectedSuffix = protectedUri.substring(suffixIndex + ANY_RESOURCE_PATTERN.length());
-
-                if (requestedUri.endsWith(protectedSuffix)) {
-                    configurations = this.uriConfiguration.get(entry.getKey());
-                    selectedUri = protectedUri;
-                }
-            }
-
-            if (protectedUri.equals(requestedUri)) {
-                configurations = this.uriConfiguration.get(entry.getKey());
-                selectedUri = protectedUri;
-            }
-
-            if (protectedUri.endsWith(ANY_RESOURCE_PATTERN)) {
-                String formattedPattern = removeWildCardsFromUri(protectedUri);
-
-                if (!formattedPattern.equals("/") && requestedUri.startsWith(formattedPattern)) {
-                    configurations = this.uriConfiguration.get(entry.getKey());
-                    selectedUri = protectedUri;
-                }
-
-                if (!formattedPattern.equals("/") && formattedPattern.endsWith("/") && formattedPattern.substring(0, formattedPattern.length() - 1).equals(requestedUri)) {
-                    configurations = this.uriConfiguration.get(entry.getKey());
-                    selectedUri = protectedUri;
-                }
-            }
+        List<PathConfiguration> configurations = this.matchCache.get(requestedUri);
 
-            int startRegex = protectedUri.indexOf('{');
+        if (configurations == null) {
+            configurations = this.pathTrie.match(requestedUri);
 
-            if (startRegex != -1) {
-                String prefix = protectedUri.substring(0, startRegex);
-
-                if (requestedUri.startsWith(prefix)) {
-                    configurations = this.uriConfiguration.get(entry.getKey());
-                    selectedUri = protectedUri;
-                }
+            if (configurations == null) {
+                configurations = NO_MATCH;
             }
 
-            if (selectedUri != null) {
-                configurations = this.uriConfiguration.get(entry.getKey());
-                selectedUri = protectedUri;
+            if (this.matchCache.size() >= MATCH_CACHE_SIZE) {
+                this.matchCache.clear();
             }
 
-            if (selectedUri != null) {
-                if (actualConfig == null) {
-                    actualConfig = entry.getKey();
-                } else {
-                    if (actualConfig.equals(ANY_RESOURCE_PATTERN)) {
-                        actualConfig = entry.getKey();
-                    }
-
-                    if (protectedUri.startsWith(removeWildCardsFromUri(actualConfig))) {
-                        actualConfig = entry.getKey();
-                    }
-                }
-            }
+            this.matchCache.put(requestedUri, configurations);
         }
 
-        if (configurations != null) {
+        if (!configurations.isEmpty()) {
             if (configurations.size() == 1) {
                 return configurations.get(0);
             }
@@ -189,8 +143,4 @@ public class PathMatcher {
 
         return null;
     }
-
-    private String removeWildCardsFromUri(String protectedUri) {
-        return protectedUri.replaceAll("/[*]", "/");
-    }
 }
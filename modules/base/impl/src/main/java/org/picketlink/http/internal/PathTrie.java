@@ -0,0 +1,303 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.http.internal;
+
+import org.picketlink.config.http.PathConfiguration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Index of the protected paths, compiled from the path configuration.</p>
+ *
+ * <p>Paths are indexed by kind of pattern:</p>
+ *
+ * <ul>
+ *     <li>Exact paths, like <code>/admin/users</code>, are looked up by the requested URI.</li>
+ *     <li>Suffix patterns, like <code>/*.jsf</code>, are looked up by the extension of the requested URI.</li>
+ *     <li>Prefix wildcards, like <code>/admin/*</code>, and templated paths, like <code>/user/{identity.account.id}</code>,
+ *     are stored in a trie of path segments that is walked once with the segments of the requested URI.</li>
+ * </ul>
+ *
+ * <p>Patterns that do not fit in the index, for instance with wildcards or templates in the middle of a segment, are
+ * checked one by one.</p>
+ *
+ * <p>When more than one path matches a request, the one declared last takes precedence. The <code>/*</code> pattern
+ * is only used when no other path matches.</p>
+ *
+ * @author Pedro Igor
+ */
+class PathTrie {
+
+    private static final String ANY_RESOURCE_PATTERN = "/*";
+
+    private final Node root = new Node();
+    private final Map<String, Entry> exactPaths = new HashMap<String, Entry>();
+    private final Map<String, List<Entry>> suffixPaths = new HashMap<String, List<Entry>>();
+    private final List<Entry> unindexedPaths = new ArrayList<Entry>();
+    private Entry anyResource;
+
+    PathTrie(Map<String, List<PathConfiguration>> uriConfiguration) {
+        int precedence = 0;
+
+        for (Map.Entry<String, List<PathConfiguration>> entry : uriConfiguration.entrySet()) {
+            add(new Entry(entry.getKey(), entry.getValue(), precedence++));
+        }
+    }
+
+    /**
+     * <p>Returns the configurations of the path that matches the given URI.</p>
+     *
+     * @param requestedUri the requested URI, without the context path
+     * @return the configurations of the matching path, or null if no path matches
+     */
+    List<PathConfiguration> match(String requestedUri) {
+        Entry selected = this.exactPaths.get(requestedUri);
+
+        int extensionIndex = requestedUri.lastIndexOf('.');
+
+        if (extensionIndex != -1) {
+            List<Entry> candidates = this.suffixPaths.get(requestedUri.substring(extensionIndex + 1));
+
+            if (candidates != null) {
+                for (Entry candidate : candidates) {
+                    if (requestedUri.endsWith(candidate.suffix)) {
+                        selected = select(selected, candidate);
+                    }
+                }
+            }
+        }
+
+        if (requestedUri.startsWith("/")) {
+            selected = walk(requestedUri, selected);
+        }
+
+        for (Entry candidate : this.unindexedPaths) {
+            if (candidate.matches(requestedUri)) {
+                selected = select(selected, candidate);
+            }
+        }
+
+        if (selected == null) {
+            selected = this.anyResource;
+        }
+
+        if (selected == null) {
+            return null;
+        }
+
+        return selected.configurations;
+    }
+
+    private Entry walk(String requestedUri, Entry selected) {
+        Node node = this.root;
+        int end = 0;
+        int length = requestedUri.length();
+
+        while (true) {
+            // the uri matched all the segments of this node. prefix wildcards always match from here, templated
+            // paths need at least another segment.
+            selected = select(selected, node.prefix);
+
+            if (end < length) {
+                selected = select(selected, node.template);
+            }
+
+            if (end >= length || node.children == null) {
+                return selected;
+            }
+
+            int start = end + 1;
+            int nextSlash = requestedUri.indexOf('/', start);
+
+            end = nextSlash == -1 ? length : nextSlash;
+            node = node.children.get(requestedUri.substring(start, end));
+
+            if (node == null) {
+                return selected;
+            }
+        }
+    }
+
+    private void add(Entry entry) {
+        String pattern = entry.pattern;
+
+        if (ANY_RESOURCE_PATTERN.equals(pattern)) {
+            this.anyResource = entry;
+            return;
+        }
+
+        boolean indexed = true;
+
+        this.exactPaths.put(pattern, entry);
+
+        if (entry.suffix != null) {
+            String extension = entry.suffix.substring(entry.suffix.lastIndexOf('.') + 1);
+            List<Entry> entries = this.suffixPaths.get(extension);
+
+            if (entries == null) {
+                entries = new ArrayList<Entry>();
+                this.suffixPaths.put(extension, entries);
+            }
+
+            entries.add(entry);
+        }
+
+        if (entry.prefix != null) {
+            // only a single trailing wildcard can be indexed by segments
+            if (pattern.startsWith("/") && pattern.indexOf('*') == pattern.length() - 1) {
+                Node node = getNode(entry.prefix);
+                node.prefix = select(node.prefix, entry);
+            } else {
+                indexed = false;
+            }
+        }
+
+        if (entry.templatePrefix != null) {
+            if (entry.templatePrefix.startsWith("/") && entry.templatePrefix.endsWith("/")) {
+                Node node = getNode(entry.templatePrefix);
+                node.template = select(node.template, entry);
+            } else {
+                indexed = false;
+            }
+        }
+
+        if (!indexed) {
+            this.unindexedPaths.add(entry);
+        }
+    }
+
+    /**
+     * <p>Returns the node for a path that starts and ends with a slash, creating it if necessary.</p>
+     */
+    private Node getNode(String path) {
+        Node node = this.root;
+
+        if (path.length() > 1) {
+            for (String segment : path.substring(1, path.length() - 1).split("/", -1)) {
+                if (node.children == null) {
+                    node.children = new HashMap<String, Node>();
+                }
+
+                Node child = node.children.get(segment);
+
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(segment, child);
+                }
+
+                node = child;
+            }
+        }
+
+        return node;
+    }
+
+    private static Entry select(Entry selected, Entry candidate) {
+        if (candidate == null) {
+            return selected;
+        }
+
+        if (selected == null || candidate.precedence > selected.precedence) {
+            return candidate;
+        }
+
+        return selected;
+    }
+
+    private static class Node {
+        Map<String, Node> children;
+        Entry prefix;
+        Entry template;
+    }
+
+    private static class Entry {
+        final String pattern;
+        final List<PathConfiguration> configurations;
+        final int precedence;
+
+        /**
+         * The suffix of patterns like <code>/*.jsf</code>.
+         */
+        final String suffix;
+
+        /**
+         * The path matched by patterns like <code>/admin/*</code>, without the wildcards.
+         */
+        final String prefix;
+
+        /**
+         * The path before the first template of patterns like <code>/user/{identity.account.id}</code>.
+         */
+        final String templatePrefix;
+
+        Entry(String pattern, List<PathConfiguration> configurations, int precedence) {
+            this.pattern = pattern;
+            this.configurations = configurations;
+            this.precedence = precedence;
+
+            int suffixIndex = pattern.indexOf(ANY_RESOURCE_PATTERN + ".");
+
+            this.suffix = suffixIndex != -1 ? pattern.substring(suffixIndex + ANY_RESOURCE_PATTERN.length()) : null;
+
+            String prefix = null;
+
+            if (pattern.endsWith(ANY_RESOURCE_PATTERN)) {
+                prefix = pattern.replaceAll("/[*]", "/");
+
+                if (prefix.equals("/")) {
+                    prefix = null;
+                }
+            }
+
+            this.prefix = prefix;
+
+            int startRegex = pattern.indexOf('{');
+
+            this.templatePrefix = startRegex != -1 ? pattern.substring(0, startRegex) : null;
+        }
+
+        boolean matches(String requestedUri) {
+            if (this.pattern.equals(requestedUri)) {
+                return true;
+            }
+
+            if (this.suffix != null && requestedUri.endsWith(this.suffix)) {
+                return true;
+            }
+
+            if (this.prefix != null) {
+                if (requestedUri.startsWith(this.prefix)) {
+                    return true;
+                }
+
+                if (this.prefix.endsWith("/") && this.prefix.substring(0, this.prefix.length() - 1).equals(requestedUri)) {
+                    return true;
+                }
+            }
+
+            return this.templatePrefix != null && requestedUri.startsWith(this.templatePrefix);
+        }
+    }
+}
@@ -52,6 +52,7 @@ import org.picketlink.http.internal.authentication.schemes.DigestAuthenticationS
 import org.picketlink.http.internal.authentication.schemes.FormAuthenticationScheme;
 import org.picketlink.http.internal.authentication.schemes.TokenAuthenticationScheme;
 import org.picketlink.http.internal.authentication.schemes.X509AuthenticationScheme;
+import org.picketlink.http.internal.authorization.AuthorizationDecisionCache;
 import org.picketlink.http.internal.authorization.ExpressionPathAuthorizer;
 import org.picketlink.http.internal.authorization.GroupPathAuthorizer;
 import org.picketlink.http.internal.authorization.RealmPathAuthorizer;
@@ -124,11 +125,17 @@ public class SecurityFilter implements Filter {
     @Inject
     private ELProcessor elProcessor;
 
+    @Inject
+    private AuthorizationDecisionCache authorizationDecisionCache;
+
     private HttpSecurityConfiguration configuration;
     private Map<PathConfiguration, HttpAuthenticationScheme> authenticationSchemes = new HashMap<PathConfiguration, HttpAuthenticationScheme>();
     private PathMatcher pathMatcher;
     private Map<PathConfiguration, List<PathAuthorizer>> pathAuthorizers = new HashMap<PathConfiguration, List<PathAuthorizer>>();
 
+    // authorizers whose decisions only depend on the account and are kept by the authorizationDecisionCache
+    private Map<PathConfiguration, List<PathAuthorizer>> cacheablePathAuthorizers = new HashMap<PathConfiguration, List<PathAuthorizer>>();
+
     @Override
     public void init(FilterConfig config) throws ServletException {
         SecurityConfigurationBuilder configurationBuilder = this.picketLinkExtension.getSecurityConfigurationBuilder();
@@ -185,7 +192,7 @@ public class SecurityFilter implements Filter {
                     } else if (isLogoutPath(pathConfiguration)) {
                         performLogout(request, response, identity, pathConfiguration);
                     } else {
-                        if (!isAuthorized(pathConfiguration, request, response)) {
+                        if (!isAuthorized(pathConfiguration, identity, request, response)) {
                             throw new AccessDeniedException("The request for the given path [" + pathConfiguration.getUri()
                                     + "] was forbidden.");
                         }
@@ -332,14 +339,38 @@ public class SecurityFilter implements Filter {
         return pathConfiguration != null && pathConfiguration.getLogoutConfiguration() != null;
     }
 
-    private boolean isAuthorized(PathConfiguration pathConfiguration, HttpServletRequest request, HttpServletResponse response) {
+    private boolean isAuthorized(PathConfiguration pathConfiguration, Identity identity, HttpServletRequest request,
+            HttpServletResponse response) {
         List<PathAuthorizer> authorizers = this.pathAuthorizers.get(pathConfiguration);
 
-        if (authorizers != null) {
-            for (PathAuthorizer authorizer : authorizers) {
-                if (!authorizer.authorize(pathConfiguration, request, response)) {
-                    return false;
-                }
+        if (authorizers != null && !isAuthorized(authorizers, pathConfiguration, request, response)) {
+            return false;
+        }
+
+        List<PathAuthorizer> cacheableAuthorizers = this.cacheablePathAuthorizers.get(pathConfiguration);
+
+        if (cacheableAuthorizers == null) {
+            return true;
+        }
+
+        Boolean authorized = this.authorizationDecisionCache.get(pathConfiguration, identity);
+
+        if (authorized == null) {
+            authorized = isAuthorized(cacheableAuthorizers, pathConfiguration, request, response);
+            this.authorizationDecisionCache.put(pathConfiguration, identity, authorized,
+                    pathConfiguration.getAuthorizationConfiguration().getDecisionTimeToLive() * 1000L);
+        } else if (HTTP_LOGGER.isDebugEnabled()) {
+            HTTP_LOGGER.debugf("Reusing authorization decision [%s] for path [%s].", authorized, pathConfiguration.getUri());
+        }
+
+        return authorized;
+    }
+
+    private boolean isAuthorized(List<PathAuthorizer> authorizers, PathConfiguration pathConfiguration,
+            HttpServletRequest request, HttpServletResponse response) {
+        for (PathAuthorizer authorizer : authorizers) {
+            if (!authorizer.authorize(pathConfiguration, request, response)) {
+                return false;
             }
         }
 
@@ -609,21 +640,36 @@ public class SecurityFilter implements Filter {
 
                     if (authorizationConfiguration != null) {
                         List<PathAuthorizer> pathAuthorizers = new ArrayList<PathAuthorizer>();
+                        List<PathAuthorizer> cacheablePathAuthorizers = new ArrayList<PathAuthorizer>();
                         List<Class<? extends PathAuthorizer>> pathAuthorizerTypes = new ArrayList<Class<? extends PathAuthorizer>>(
                                 authorizationConfiguration.getAuthorizers());
 
                         pathAuthorizerTypes.addAll(getDefaultPathAuthorizers());
 
                         for (Class<? extends PathAuthorizer> authorizerType : pathAuthorizerTypes) {
+                            PathAuthorizer pathAuthorizer;
+
                             try {
-                                pathAuthorizers.add(resolveInstance(this.pathAuthorizerInstance, authorizerType));
+                                pathAuthorizer = resolveInstance(this.pathAuthorizerInstance, authorizerType);
                             } catch (Exception e) {
                                 throw new HttpSecurityConfigurationException("Could not resolve PathAuthorizer ["
                                         + authorizerType + "].", e);
                             }
+
+                            if (getCacheablePathAuthorizers().contains(authorizerType)) {
+                                cacheablePathAuthorizers.add(pathAuthorizer);
+                            } else {
+                                pathAuthorizers.add(pathAuthorizer);
+                            }
                         }
 
                         this.pathAuthorizers.put(pathConfiguration, pathAuthorizers);
+
+                        if (isCacheable(authorizationConfiguration)) {
+                            this.cacheablePathAuthorizers.put(pathConfiguration, cacheablePathAuthorizers);
+                        } else {
+                            pathAuthorizers.addAll(cacheablePathAuthorizers);
+                        }
                     }
                 }
             }
@@ -641,6 +687,21 @@ public class SecurityFilter implements Filter {
         return defaultAuthorizers;
     }
 
+    private Set<Class<? extends PathAuthorizer>> getCacheablePathAuthorizers() {
+        Set<Class<? extends PathAuthorizer>> cacheableAuthorizers = new HashSet<Class<? extends PathAuthorizer>>();
+
+        cacheableAuthorizers.add(RolePathAuthorizer.class);
+        cacheableAuthorizers.add(GroupPathAuthorizer.class);
+        cacheableAuthorizers.add(RealmPathAuthorizer.class);
+
+        return cacheableAuthorizers;
+    }
+
+    private boolean isCacheable(AuthorizationConfiguration authorizationConfiguration) {
+        return authorizationConfiguration.getDecisionTimeToLive() > 0 && (authorizationConfiguration.getAllowedRoles() != null
+                || authorizationConfiguration.getAllowedGroups() != null || authorizationConfiguration.getAllowedRealms() != null);
+    }
+
     private void initializePathMatcher() {
         this.pathMatcher = new PathMatcher(this.configuration.getPaths(), this.elProcessor);
     }
@@ -26,16 +26,23 @@ import org.picketlink.config.http.DigestAuthenticationConfiguration;
 import org.picketlink.credential.DefaultLoginCredentials;
 import org.picketlink.http.authentication.HttpAuthenticationScheme;
 import org.picketlink.http.internal.authentication.schemes.support.HTTPDigestUtil;
-import org.picketlink.http.internal.authentication.schemes.support.NonceCache;
+import org.picketlink.http.internal.authentication.schemes.support.NonceReplayWindow;
+import org.picketlink.http.internal.authentication.schemes.support.SignedNonceGenerator;
 import org.picketlink.idm.credential.Digest;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.Timer;
+import java.nio.charset.Charset;
 
 import static org.picketlink.http.internal.util.RequestUtil.isAjaxRequest;
 
 /**
+ * <p>HTTP DIGEST authentication scheme.</p>
+ *
+ * <p>Nonces are signed and carry the time they were issued, so they are verified without keeping any state in the
+ * server or creating a HTTP session. Replayed requests are detected by tracking the nonce count sent with each nonce
+ * while the nonce is valid.</p>
+ *
  * @author Shane Bryzak
  * @author anil saldhana
  * @author Pedro Igor
@@ -45,9 +52,12 @@ public class DigestAuthenticationScheme implements HttpAuthenticationScheme<Dige
     public static final String REALM_NAME_INIT_PARAM = "realmName";
     public static final String DEFAULT_REALM_NAME = "PicketLink Default Realm";
 
-    private final Timer nonceCleanupTimer = new Timer("PicketLink_Digest_Nonce_Cache_Cleanup");
+    private static final String NONCE_VALIDATION_ATTRIBUTE = DigestAuthenticationScheme.class.getName() + ".NONCE_VALIDATION";
+    private static final String STALE_NONCE_ATTRIBUTE = DigestAuthenticationScheme.class.getName() + ".STALE_NONCE";
 
-    private final NonceCache nonceCache = new NonceCache();
+    private SignedNonceGenerator nonceGenerator;
+
+    private NonceReplayWindow nonceReplayWindow;
 
     private String realm = DEFAULT_REALM_NAME;
 
@@ -59,8 +69,14 @@ public class DigestAuthenticationScheme implements HttpAuthenticationScheme<Dige
             this.realm = providedRealm;
         }
 
-        this.nonceCleanupTimer
-        .schedule(this.nonceCache, this.nonceCache.getNonceMaxValid(), this.nonceCache.getNonceMaxValid());
+        byte[] nonceSecret = null;
+
+        if (config.getNonceSecret() != null) {
+            nonceSecret = config.getNonceSecret().getBytes(Charset.forName("UTF-8"));
+        }
+
+        this.nonceGenerator = new SignedNonceGenerator(nonceSecret, config.getNonceMaxAge());
+        this.nonceReplayWindow = new NonceReplayWindow(config.getNonceMaxAge());
     }
 
     @Override
@@ -73,7 +89,7 @@ public class DigestAuthenticationScheme implements HttpAuthenticationScheme<Dige
 
                 credential.setMethod(request.getMethod());
 
-                if (this.nonceCache.hasValidNonce(credential, request)) {
+                if (hasValidNonce(credential, request)) {
                     creds.setCredential(credential);
                 }
             }
@@ -88,7 +104,7 @@ public class DigestAuthenticationScheme implements HttpAuthenticationScheme<Dige
             if (domain == null)
                 domain = "/";
 
-            String newNonce = this.nonceCache.generateAndCacheNonce(request);
+            String newNonce = this.nonceGenerator.generate();
 
             StringBuilder str = new StringBuilder("Digest realm=\"");
 
@@ -97,7 +113,7 @@ public class DigestAuthenticationScheme implements HttpAuthenticationScheme<Dige
             str.append("nonce=\"").append(newNonce).append("\",");
             str.append("algorithm=MD5,");
             str.append("qop=").append("auth").append(",");
-            str.append("stale=\"").append(false).append("\"");
+            str.append("stale=\"").append(Boolean.TRUE.equals(request.getAttribute(STALE_NONCE_ATTRIBUTE))).append("\"");
 
             response.setHeader("WWW-Authenticate", str.toString());
 
@@ -116,6 +132,52 @@ public class DigestAuthenticationScheme implements HttpAuthenticationScheme<Dige
     public void onPostAuthentication(HttpServletRequest request, HttpServletResponse response) {
     }
 
+    private boolean hasValidNonce(Digest digest, HttpServletRequest request) {
+        // credentials may be extracted more than once for the same request, the nonce count must be used only once.
+        Boolean validNonce = (Boolean) request.getAttribute(NONCE_VALIDATION_ATTRIBUTE);
+
+        if (validNonce == null) {
+            validNonce = validateNonce(digest, request);
+            request.setAttribute(NONCE_VALIDATION_ATTRIBUTE, validNonce);
+        }
+
+        return validNonce;
+    }
+
+    private boolean validateNonce(Digest digest, HttpServletRequest request) {
+        long issueTime = this.nonceGenerator.getIssueTime(digest.getNonce());
+
+        if (issueTime < 0) {
+            return false;
+        }
+
+        if (this.nonceGenerator.hasExpired(issueTime)) {
+            // let the client know it can retry with a new nonce without asking the user for credentials again.
+            request.setAttribute(STALE_NONCE_ATTRIBUTE, Boolean.TRUE);
+            return false;
+        }
+
+        long nonceCount = parseNonceCount(digest.getNonceCount());
+
+        return nonceCount > 0 && this.nonceReplayWindow.accept(digest.getNonce(), issueTime, nonceCount);
+    }
+
+    /**
+     * <p>Parses the hexadecimal nonce count sent by the client. Clients not sending a nonce count can use a nonce only
+     * once.</p>
+     */
+    private long parseNonceCount(String nonceCount) {
+        if (nonceCount == null) {
+            return 1;
+        }
+
+        try {
+            return Long.parseLong(nonceCount.trim(), 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     private String[] extractTokens(HttpServletRequest request) {
         String authorizationHeader = getAuthorizationHeader(request).substring(7).trim();
 
@@ -41,7 +41,7 @@ public class FormAuthenticationScheme implements HttpAuthenticationScheme<FormAu
     public static final String J_USERNAME = "j_username";
     public static final String J_PASSWORD = "j_password";
 
-    private final RequestCache requestCache = new RequestCache();
+    private RequestCache requestCache;
     private FormAuthenticationConfiguration configuration;
 
     @Inject
@@ -50,6 +50,8 @@ public class FormAuthenticationScheme implements HttpAuthenticationScheme<FormAu
     @Override
     public void initialize(FormAuthenticationConfiguration config) {
         this.configuration = config;
+        this.requestCache = new RequestCache(config.getSavedRequestTimeout(), config.getMaxSavedRequests(),
+            config.getMaxSavedRequestSize());
     }
 
     @Override
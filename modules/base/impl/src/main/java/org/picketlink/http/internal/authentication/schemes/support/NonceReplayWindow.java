@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.http.internal.authentication.schemes.support;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>Tracks the nonce counts used with each nonce, rejecting requests that replay a nonce count already seen.</p>
+ *
+ * <p>Nonces are kept in buckets by the time they were issued. Each bucket covers a fixed slice of time and there are
+ * only enough buckets to cover the maximum age of a nonce. A bucket is reused once all its nonces have expired,
+ * discarding them at once, so expired nonces never need to be looked for.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class NonceReplayWindow {
+
+    private static final int BUCKET_COUNT = 16;
+
+    private final long maxAge;
+    private final long bucketDuration;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    /**
+     * @param maxAge the time, in milliseconds, during which a nonce is valid
+     */
+    public NonceReplayWindow(long maxAge) {
+        this.maxAge = maxAge;
+        this.bucketDuration = Math.max(1, maxAge / BUCKET_COUNT);
+        // an extra bucket for the slice in progress and another one for the slice partially expired.
+        this.buckets = new AtomicReferenceArray<Bucket>(BUCKET_COUNT + 2);
+    }
+
+    /**
+     * <p>Records the use of a nonce with the given nonce count.</p>
+     *
+     * @param nonce the nonce
+     * @param issueTime the time the nonce was issued
+     * @param nonceCount the nonce count sent by the client
+     * @return true if the nonce count is greater than any other used before with the same nonce
+     */
+    public boolean accept(String nonce, long issueTime, long nonceCount) {
+        long now = System.currentTimeMillis();
+
+        if (now - issueTime > this.maxAge || issueTime > now) {
+            return false;
+        }
+
+        Bucket bucket = getBucket(issueTime / this.bucketDuration);
+
+        if (bucket == null) {
+            return false;
+        }
+
+        Long previous = bucket.nonceCounts.putIfAbsent(nonce, nonceCount);
+
+        while (previous != null) {
+            if (nonceCount <= previous) {
+                return false;
+            }
+
+            if (bucket.nonceCounts.replace(nonce, previous, nonceCount)) {
+                return true;
+            }
+
+            previous = bucket.nonceCounts.putIfAbsent(nonce, nonceCount);
+        }
+
+        return true;
+    }
+
+    private Bucket getBucket(long index) {
+        int slot = (int) (index % this.buckets.length());
+
+        while (true) {
+            Bucket bucket = this.buckets.get(slot);
+
+            if (bucket != null && bucket.index == index) {
+                return bucket;
+            }
+
+            if (bucket != null && bucket.index > index) {
+                // the slot was already reused by a more recent slice, the nonce has expired.
+                return null;
+            }
+
+            this.buckets.compareAndSet(slot, bucket, new Bucket(index));
+        }
+    }
+
+    private static class Bucket {
+        private final long index;
+        private final ConcurrentMap<String, Long> nonceCounts = new ConcurrentHashMap<String, Long>();
+
+        private Bucket(long index) {
+            this.index = index;
+        }
+    }
+}
@@ -19,7 +19,14 @@ package org.picketlink.http.internal.authentication.schemes.support;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.picketlink.config.http.FormAuthenticationConfiguration.DEFAULT_MAX_SAVED_REQUESTS;
+import static org.picketlink.config.http.FormAuthenticationConfiguration.DEFAULT_MAX_SAVED_REQUEST_SIZE;
+import static org.picketlink.config.http.FormAuthenticationConfiguration.DEFAULT_SAVED_REQUEST_TIMEOUT;
+import static org.picketlink.log.BaseLog.HTTP_LOGGER;
 
 /**
  * <p>
@@ -28,24 +35,88 @@ import java.util.concurrent.ConcurrentHashMap;
  * the authentication process begins. It also stores the cached request in the user session for later use, if necessary.
  * </p>
  *
+ * <p>
+ * Requests are kept until the user authenticates, until they time out, or until the maximum number of requests is
+ * reached, in which case the oldest ones are discarded first. Sessions that never complete an authentication, such as
+ * the ones created by crawlers, can not make the cache grow without bounds.
+ * </p>
+ *
+ * <p>
+ * Requests whose query string and body are larger than the maximum request size are not saved, so their parameters are
+ * never replayed partially. Neither are requests whose body size is not known in advance, like chunked requests, as
+ * their body would have to be parsed to know its size.
+ * </p>
+ *
  * @author <a href="mailto:psilva@redhat.com">Pedro Silva</a>
  */
 public class RequestCache {
 
     public static final String ORIGINAL_REQUEST_ATTRIBUTE_NAME = "org.picketlink.web.original.request";
 
-    private ConcurrentHashMap<String, SavedRequest> requestCache = new ConcurrentHashMap<String, SavedRequest>();
+    private final long timeout;
+    private final int maxRequestSize;
+
+    // kept in insertion order, so that the oldest requests are the first ones to expire or to be discarded
+    private final Map<String, SavedRequest> requestCache;
+
+    public RequestCache() {
+        this(DEFAULT_SAVED_REQUEST_TIMEOUT, DEFAULT_MAX_SAVED_REQUESTS, DEFAULT_MAX_SAVED_REQUEST_SIZE);
+    }
+
+    /**
+     * @param timeout the time, in seconds, a request is kept
+     * @param maxRequests the maximum number of requests kept
+     * @param maxRequestSize the maximum size, in characters, of the query string and body of a saved request, or 0 to
+     * save requests without their parameters
+     */
+    public RequestCache(int timeout, final int maxRequests, int maxRequestSize) {
+        this.timeout = timeout * 1000L;
+        this.maxRequestSize = maxRequestSize;
+        this.requestCache = new LinkedHashMap<String, SavedRequest>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SavedRequest> eldest) {
+                return size() > maxRequests;
+            }
+        };
+    }
 
     /**
      * <p>
-     * Saves a {@link javax.servlet.http.HttpServletRequest} as a {@link SavedRequest} instance. All the state from the original request will be
-     * copied.
+     * Saves a {@link javax.servlet.http.HttpServletRequest} as a {@link SavedRequest} instance. Only the state needed to
+     * replay the request is copied.
      * </p>
      *
      * @param request
+     * @return false if the request is too large to be saved
      */
-    public void saveRequest(HttpServletRequest request) {
-        this.requestCache.put(getCurrentSession(request).getId(), new SavedRequest(request));
+    public boolean saveRequest(HttpServletRequest request) {
+        String sessionId = getCurrentSession(request).getId();
+
+        if (isTooLarge(request)) {
+            if (HTTP_LOGGER.isDebugEnabled()) {
+                HTTP_LOGGER.debugf("Request to [%s] not saved, its parameters exceed [%s] characters.",
+                    request.getRequestURI(), this.maxRequestSize);
+            }
+
+            // a request saved before by the same session must not be replayed instead
+            synchronized (this.requestCache) {
+                this.requestCache.remove(sessionId);
+            }
+
+            return false;
+        }
+
+        SavedRequest savedRequest = new SavedRequest(request, this.maxRequestSize > 0);
+
+        synchronized (this.requestCache) {
+            removeExpired(savedRequest.getCreationTime());
+
+            // removed first to move the session to the end of the insertion order
+            this.requestCache.remove(sessionId);
+            this.requestCache.put(sessionId, savedRequest);
+        }
+
+        return true;
     }
 
     /**
@@ -71,10 +142,67 @@ public class RequestCache {
      */
     public SavedRequest removeAndStoreSavedRequestInSession(HttpServletRequest request) {
         HttpSession session = getCurrentSession(request);
-        SavedRequest originalRequest = this.requestCache.remove(session.getId());
+        SavedRequest originalRequest;
+
+        synchronized (this.requestCache) {
+            originalRequest = this.requestCache.remove(session.getId());
+        }
+
+        if (originalRequest != null && isExpired(originalRequest, System.currentTimeMillis())) {
+            originalRequest = null;
+        }
 
         session.setAttribute(ORIGINAL_REQUEST_ATTRIBUTE_NAME, originalRequest);
 
         return originalRequest;
     }
-}
\ No newline at end of file
+
+    public int size() {
+        synchronized (this.requestCache) {
+            return this.requestCache.size();
+        }
+    }
+
+    /**
+     * <p>
+     * Checks the size of the query string and of the body before the parameters are parsed. Decoded parameters are
+     * never larger than their encoded form.
+     * </p>
+     */
+    private boolean isTooLarge(HttpServletRequest request) {
+        if (this.maxRequestSize <= 0) {
+            return false;
+        }
+
+        long size = request.getContentLength();
+
+        if (size < 0) {
+            if (request.getHeader("Transfer-Encoding") != null) {
+                // chunked body, its size is only known once it is read
+                return true;
+            }
+
+            size = 0;
+        }
+
+        String queryString = request.getQueryString();
+
+        if (queryString != null) {
+            size = size + queryString.length();
+        }
+
+        return size > this.maxRequestSize;
+    }
+
+    private void removeExpired(long now) {
+        Iterator<SavedRequest> iterator = this.requestCache.values().iterator();
+
+        while (iterator.hasNext() && isExpired(iterator.next(), now)) {
+            iterator.remove();
+        }
+    }
+
+    private boolean isExpired(SavedRequest savedRequest, long now) {
+        return savedRequest.getCreationTime() + this.timeout <= now;
+    }
+}
@@ -18,33 +18,34 @@
 
 package org.picketlink.http.internal.authentication.schemes.support;
 
-import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
-import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 
 /**
  * <p>
  * This class is a representation of the state of a previous {@link javax.servlet.http.HttpServletRequest} instance.
  * </p>
  *
+ * <p>
+ * Only what is needed to replay the request is kept: the URI, the query string, the method and the parameters. Headers
+ * and cookies are sent again by the user agent, so they are not kept. {@link RequestCache} makes sure the parameters of
+ * a request are within its limit before creating an instance.
+ * </p>
+ *
  * @author <a href="mailto:psilva@redhat.com">Pedro Silva</a>
  */
 public class SavedRequest {
 
-    private List<Cookie> cookies = new ArrayList<Cookie>();
-    private Map<String, String> headers = new HashMap<String, String>();
-    private Map<String, String[]> parameters = new HashMap<String, String[]>();
-    private String method;
-    private String queryString;
-    private String requestURI;
-    private String scheme;
-    private String contextPath;
+    private final Map<String, String[]> parameters;
+    private final String method;
+    private final String queryString;
+    private final String requestURI;
+    private final String scheme;
+    private final String contextPath;
+    private final long creationTime;
 
     /**
      * <p>
@@ -52,16 +53,31 @@ public class SavedRequest {
      * </p>
      */
     public SavedRequest(HttpServletRequest request) {
-        copyCookies(request);
-        copyHeaders(request);
-        copyParameters(request);
+        this(request, true);
+    }
 
-        // copy general properties from the original request
+    /**
+     * <p>
+     * Create a new instance copying the state from the request passed as argument.
+     * </p>
+     *
+     * @param request
+     * @param copyParameters false to only copy the URI, the query string and the method, without parsing the body
+     */
+    public SavedRequest(HttpServletRequest request, boolean copyParameters) {
         this.method = request.getMethod();
         this.queryString = request.getQueryString();
         this.requestURI = request.getRequestURI();
         this.scheme = request.getScheme();
         this.contextPath = request.getContextPath();
+
+        if (copyParameters) {
+            this.parameters = copyParameters(request);
+        } else {
+            this.parameters = Collections.emptyMap();
+        }
+
+        this.creationTime = System.currentTimeMillis();
     }
 
     /**
@@ -73,24 +89,6 @@ public class SavedRequest {
         return this.parameters;
     }
 
-    /**
-     * <p>
-     * Returns the headers copied from the original request.
-     * </p>
-     */
-    public Map<String, String> getHeaders() {
-        return this.headers;
-    }
-
-    /**
-     * <p>
-     * Returns the cookies copied from the original request.
-     * </p>
-     */
-    public List<Cookie> getCookies() {
-        return this.cookies;
-    }
-
     /**
      * <p>
      * Returns the original HTTP method used by the original request.
@@ -138,47 +136,31 @@ public class SavedRequest {
 
     /**
      * <p>
-     * Copy the parameters from the original {@link javax.servlet.http.HttpServletRequest}.
+     * Returns the time, in milliseconds, this instance was created.
      * </p>
      */
-    private void copyParameters(HttpServletRequest request) {
-        Set<Entry<String, String[]>> parametersEntries = request.getParameterMap().entrySet();
-
-        for (Entry<String, String[]> parameter : parametersEntries) {
-            this.getParameters().put(parameter.getKey(), (String[]) parameter.getValue());
-        }
+    public long getCreationTime() {
+        return this.creationTime;
     }
 
     /**
      * <p>
-     * Copy the headers from the original {@link javax.servlet.http.HttpServletRequest}.
+     * Copy the parameters from the original {@link javax.servlet.http.HttpServletRequest}.
      * </p>
      */
-    private void copyHeaders(HttpServletRequest request) {
-        Enumeration<String> headerNames = request.getHeaderNames();
-
-        while (headerNames.hasMoreElements()) {
-            String headerName = (String) headerNames.nextElement();
-            String headerValue = request.getHeader(headerName);
+    private Map<String, String[]> copyParameters(HttpServletRequest request) {
+        Map<String, String[]> parameterMap = request.getParameterMap();
 
-            this.getHeaders().put(headerName, headerValue);
+        if (parameterMap == null || parameterMap.isEmpty()) {
+            return Collections.emptyMap();
         }
-    }
 
-    /**
-     * <p>
-     * Copy the cookies from the original {@link javax.servlet.http.HttpServletRequest}.
-     * </p>
-     */
-    private void copyCookies(HttpServletRequest request) {
-        Cookie[] cookies = request.getCookies();
+        Map<String, String[]> parameters = new LinkedHashMap<String, String[]>(parameterMap.size());
 
-        if (cookies == null) {
-            return;
+        for (Entry<String, String[]> parameter : parameterMap.entrySet()) {
+            parameters.put(parameter.getKey(), parameter.getValue());
         }
 
-        for (Cookie cookie : cookies) {
-            this.getCookies().add(cookie);
-        }
+        return Collections.unmodifiableMap(parameters);
     }
-}
\ No newline at end of file
+}
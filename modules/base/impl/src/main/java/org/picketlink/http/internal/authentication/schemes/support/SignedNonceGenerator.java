@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.http.internal.authentication.schemes.support;
+
+import org.picketlink.common.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * <p>Generates and verifies HTTP DIGEST nonces without keeping any state in the server.</p>
+ *
+ * <p>A nonce carries the time it was issued and a random value, signed with a HMAC. A nonce is valid if its signature
+ * matches and it is not older than the maximum age. Servers sharing the same secret accept the nonces issued by each
+ * other.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class SignedNonceGenerator {
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int RANDOM_LENGTH = 16;
+    private static final int SIGNATURE_LENGTH = 16;
+    private static final int NONCE_LENGTH = 8 + RANDOM_LENGTH + SIGNATURE_LENGTH;
+
+    private final SecretKeySpec key;
+    private final long maxAge;
+    private final SecureRandom random = new SecureRandom();
+
+    private final ThreadLocal<Mac> mac = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            try {
+                Mac mac = Mac.getInstance(MAC_ALGORITHM);
+
+                mac.init(key);
+
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Could not initialize nonce signature.", e);
+            }
+        }
+    };
+
+    /**
+     * @param secret the secret used to sign nonces, or null to use a random secret
+     * @param maxAge the time, in milliseconds, during which a nonce is valid
+     */
+    public SignedNonceGenerator(byte[] secret, long maxAge) {
+        if (secret == null || secret.length == 0) {
+            secret = new byte[32];
+            this.random.nextBytes(secret);
+        }
+
+        this.key = new SecretKeySpec(secret, MAC_ALGORITHM);
+        this.maxAge = maxAge;
+    }
+
+    public String generate() {
+        ByteBuffer nonce = ByteBuffer.allocate(NONCE_LENGTH);
+        byte[] randomBytes = new byte[RANDOM_LENGTH];
+
+        this.random.nextBytes(randomBytes);
+
+        nonce.putLong(System.currentTimeMillis());
+        nonce.put(randomBytes);
+        nonce.put(sign(nonce.array(), NONCE_LENGTH - SIGNATURE_LENGTH));
+
+        return Base64.encodeBytes(nonce.array());
+    }
+
+    /**
+     * <p>Returns the time the given nonce was issued, if it was issued with the same secret.</p>
+     *
+     * @param nonce
+     * @return the time the nonce was issued, or -1 if the nonce is malformed or its signature does not match
+     */
+    public long getIssueTime(String nonce) {
+        if (nonce == null) {
+            return -1;
+        }
+
+        byte[] decoded;
+
+        try {
+            decoded = Base64.decode(nonce);
+        } catch (Exception e) {
+            return -1;
+        }
+
+        if (decoded == null || decoded.length != NONCE_LENGTH) {
+            return -1;
+        }
+
+        byte[] signature = new byte[SIGNATURE_LENGTH];
+
+        System.arraycopy(decoded, NONCE_LENGTH - SIGNATURE_LENGTH, signature, 0, SIGNATURE_LENGTH);
+
+        if (!MessageDigest.isEqual(signature, sign(decoded, NONCE_LENGTH - SIGNATURE_LENGTH))) {
+            return -1;
+        }
+
+        return ByteBuffer.wrap(decoded).getLong();
+    }
+
+    /**
+     * @param issueTime the time a nonce was issued
+     * @return true if a nonce issued at the given time is no longer valid
+     */
+    public boolean hasExpired(long issueTime) {
+        return System.currentTimeMillis() - issueTime > this.maxAge;
+    }
+
+    public long getMaxAge() {
+        return this.maxAge;
+    }
+
+    private byte[] sign(byte[] data, int length) {
+        Mac mac = this.mac.get();
+
+        mac.update(data, 0, length);
+
+        byte[] signature = new byte[SIGNATURE_LENGTH];
+
+        System.arraycopy(mac.doFinal(), 0, signature, 0, SIGNATURE_LENGTH);
+
+        return signature;
+    }
+}
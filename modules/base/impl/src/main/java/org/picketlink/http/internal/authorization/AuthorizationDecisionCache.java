@@ -0,0 +1,251 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2013, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.http.internal.authorization;
+
+import org.picketlink.Identity;
+import org.picketlink.authentication.event.PreLoggedOutEvent;
+import org.picketlink.config.http.PathConfiguration;
+import org.picketlink.idm.event.AttributedTypesCreatedEvent;
+import org.picketlink.idm.event.AttributedTypesUpdatedEvent;
+import org.picketlink.idm.event.EventBatch;
+import org.picketlink.idm.event.IdentityTypeDeletedEvent;
+import org.picketlink.idm.event.IdentityTypeUpdatedEvent;
+import org.picketlink.idm.event.PartitionDeletedEvent;
+import org.picketlink.idm.event.PartitionUpdatedEvent;
+import org.picketlink.idm.event.RelationshipCreatedEvent;
+import org.picketlink.idm.event.RelationshipDeletedEvent;
+import org.picketlink.idm.event.RelationshipUpdatedEvent;
+import org.picketlink.idm.model.Account;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Keeps the decisions of the authorizers that only depend on the roles, groups and realm of an account, so that
+ * the same checks are not performed again for every request of the same user.</p>
+ *
+ * <p>A decision is kept for a path, an account and a security level, and only for the time to live configured for the
+ * path. The decisions of an account are discarded when it logs out, and all decisions are discarded whenever a
+ * relationship, an identity type or a partition is changed.</p>
+ *
+ * <p>Only the changes made through this application are observed. When the identity store is shared, changes made by
+ * other nodes of a cluster or by other applications are only seen once the decisions expire: the time to live bounds
+ * how long a revoked role can still be used.</p>
+ */
+@ApplicationScoped
+public class AuthorizationDecisionCache {
+
+    private static final int MAX_ENTRIES = 10000;
+
+    private final ConcurrentMap<Key, Decision> decisions = new ConcurrentHashMap<Key, Decision>();
+
+    /**
+     * <p>Returns the decision previously made for the given path and identity.</p>
+     *
+     * @param pathConfiguration
+     * @param identity
+     * @return the decision, or null if no decision was made or if it expired
+     */
+    public Boolean get(PathConfiguration pathConfiguration, Identity identity) {
+        Key key = createKey(pathConfiguration, identity);
+
+        if (key == null) {
+            return null;
+        }
+
+        Decision decision = this.decisions.get(key);
+
+        if (decision == null || decision.expiration <= System.currentTimeMillis()) {
+            return null;
+        }
+
+        return decision.authorized;
+    }
+
+    /**
+     * <p>Keeps the decision made for the given path and identity.</p>
+     *
+     * @param pathConfiguration
+     * @param identity
+     * @param authorized
+     * @param timeToLive how long the decision is kept, in milliseconds
+     */
+    public void put(PathConfiguration pathConfiguration, Identity identity, boolean authorized, long timeToLive) {
+        Key key = createKey(pathConfiguration, identity);
+
+        if (key == null || timeToLive <= 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        if (this.decisions.size() >= MAX_ENTRIES && !this.decisions.containsKey(key)) {
+            removeExpired(now);
+
+            // when still full, the decision is simply made again on the next request
+            if (this.decisions.size() >= MAX_ENTRIES) {
+                return;
+            }
+        }
+
+        this.decisions.put(key, new Decision(authorized, now + timeToLive));
+    }
+
+    public void invalidate(Account account) {
+        if (account == null || account.getId() == null) {
+            return;
+        }
+
+        Iterator<Key> iterator = this.decisions.keySet().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().accountId.equals(account.getId())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        this.decisions.clear();
+    }
+
+    public void onPreLoggedOut(@Observes PreLoggedOutEvent event) {
+        invalidate(event.getAccount());
+    }
+
+    public void onRelationshipCreated(@Observes RelationshipCreatedEvent event) {
+        clear();
+    }
+
+    public void onRelationshipUpdated(@Observes RelationshipUpdatedEvent event) {
+        clear();
+    }
+
+    public void onRelationshipDeleted(@Observes RelationshipDeletedEvent event) {
+        clear();
+    }
+
+    public void onIdentityTypeUpdated(@Observes IdentityTypeUpdatedEvent event) {
+        clear();
+    }
+
+    public void onIdentityTypeDeleted(@Observes IdentityTypeDeletedEvent event) {
+        clear();
+    }
+
+    public void onAttributedTypesCreated(@Observes AttributedTypesCreatedEvent event) {
+        clear();
+    }
+
+    public void onAttributedTypesUpdated(@Observes AttributedTypesUpdatedEvent event) {
+        clear();
+    }
+
+    public void onPartitionUpdated(@Observes PartitionUpdatedEvent event) {
+        clear();
+    }
+
+    public void onPartitionDeleted(@Observes PartitionDeletedEvent event) {
+        clear();
+    }
+
+    public void onEventBatch(@Observes EventBatch event) {
+        clear();
+    }
+
+    private Key createKey(PathConfiguration pathConfiguration, Identity identity) {
+        if (!identity.isLoggedIn()) {
+            return null;
+        }
+
+        Account account = identity.getAccount();
+
+        if (account == null || account.getId() == null) {
+            return null;
+        }
+
+        return new Key(pathConfiguration, account.getId(), String.valueOf(identity.getLevel()));
+    }
+
+    private void removeExpired(long now) {
+        Iterator<Decision> iterator = this.decisions.values().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().expiration <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class Key {
+
+        private final PathConfiguration pathConfiguration;
+        private final String accountId;
+        private final String level;
+
+        private Key(PathConfiguration pathConfiguration, String accountId, String level) {
+            this.pathConfiguration = pathConfiguration;
+            this.accountId = accountId;
+            this.level = level;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+
+            return this.pathConfiguration == other.pathConfiguration && this.accountId.equals(other.accountId)
+                && this.level.equals(other.level);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(this.pathConfiguration);
+
+            result = 31 * result + this.accountId.hashCode();
+            result = 31 * result + this.level.hashCode();
+
+            return result;
+        }
+    }
+
+    private static class Decision {
+
+        private final boolean authorized;
+        private final long expiration;
+
+        private Decision(boolean authorized, long expiration) {
+            this.authorized = authorized;
+            this.expiration = expiration;
+        }
+    }
+}
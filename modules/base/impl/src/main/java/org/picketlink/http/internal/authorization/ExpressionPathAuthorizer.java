@@ -47,6 +47,18 @@ public class ExpressionPathAuthorizer extends AbstractPathAuthorizer {
             return true;
         }
 
+        // all expressions of the path share the results of the built-in functions, like hasRole
+        this.elProcessor.openEvaluationContext();
+
+        try {
+            return evaluateExpressions(pathConfiguration, request);
+        } finally {
+            this.elProcessor.closeEvaluationContext();
+        }
+    }
+
+    private boolean evaluateExpressions(PathConfiguration pathConfiguration, HttpServletRequest request) {
+        AuthorizationConfiguration authorizationConfiguration = pathConfiguration.getAuthorizationConfiguration();
         String protectedUri = request.getContextPath() + pathConfiguration.getUri();
         int startRegex = protectedUri.indexOf("{");
 
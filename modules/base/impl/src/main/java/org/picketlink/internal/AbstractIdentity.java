@@ -26,6 +26,7 @@ import org.picketlink.annotations.PicketLink;
 import org.picketlink.authentication.AuthenticationException;
 import org.picketlink.authentication.Authenticator;
 import org.picketlink.authentication.LockedAccountException;
+import org.picketlink.authentication.LoginAttemptsExceededException;
 import org.picketlink.authentication.UnexpectedCredentialException;
 import org.picketlink.authentication.UserAlreadyLoggedInException;
 import org.picketlink.authentication.event.AlreadyLoggedInEvent;
@@ -37,6 +38,7 @@ import org.picketlink.authentication.event.PostLoggedOutEvent;
 import org.picketlink.authentication.event.PreAuthenticateEvent;
 import org.picketlink.authentication.event.PreLoggedOutEvent;
 import org.picketlink.authentication.internal.IdmAuthenticator;
+import org.picketlink.authentication.internal.LoginAttemptLimiter;
 import org.picketlink.authentication.levels.DifferentUserLoggedInExcpetion;
 import org.picketlink.authentication.levels.Level;
 import org.picketlink.authentication.levels.SecurityLevelManager;
@@ -85,6 +87,9 @@ public abstract class AbstractIdentity implements Identity {
     @Inject
     private Instance<SecurityLevelManager> securityLevelManager;
 
+    @Inject
+    private LoginAttemptLimiter loginAttemptLimiter;
+
     /**
      * Flag indicating whether we are currently authenticating
      */
@@ -114,12 +119,17 @@ public abstract class AbstractIdentity implements Identity {
 
     @Override
     public AuthenticationResult login() {
+        String userId = this.loginCredential.getUserId();
+
         try {
             if (AUTHENTICATION_LOGGER.isDebugEnabled()) {
                 AUTHENTICATION_LOGGER.debugf("Performing authentication using credentials [%s]. User id is [%s].", this.loginCredential
-                    .getCredential(), this.loginCredential.getUserId());
+                    .getCredential(), userId);
             }
 
+            // rejects the attempt before any credential validation if there were too many failures
+            this.loginAttemptLimiter.checkAttempt(userId);
+
             Account validatedAccount = null;
 
             if (isLoggedIn()) {
@@ -151,12 +161,18 @@ public abstract class AbstractIdentity implements Identity {
                 }
 
                 handleSuccessfulLoginAttempt(validatedAccount);
+                this.loginAttemptLimiter.loginSucceeded(userId);
                 return AuthenticationResult.SUCCESS;
             }
 
+            this.loginAttemptLimiter.loginFailed(userId);
             handleUnsuccesfulLoginAttempt(null);
             return AuthenticationResult.FAILED;
         } catch (Exception e) {
+            if (!LoginAttemptsExceededException.class.isInstance(e) && !UserAlreadyLoggedInException.class.isInstance(e)) {
+                this.loginAttemptLimiter.loginFailed(userId);
+            }
+
             handleUnsuccesfulLoginAttempt(e);
 
             if (AuthenticationException.class.isInstance(e)) {
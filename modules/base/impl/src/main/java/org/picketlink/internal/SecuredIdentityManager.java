@@ -18,6 +18,7 @@
 
 package org.picketlink.internal;
 
+import org.picketlink.idm.BatchResult;
 import org.picketlink.idm.IdentityManagementException;
 import org.picketlink.idm.IdentityManager;
 import org.picketlink.idm.credential.Credentials;
@@ -28,6 +29,7 @@ import org.picketlink.idm.query.IdentityQuery;
 import org.picketlink.idm.query.IdentityQueryBuilder;
 
 import javax.enterprise.inject.Typed;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -62,6 +64,16 @@ public class SecuredIdentityManager implements IdentityManager {
         decorated.remove(value);
     }
 
+    @Override
+    public BatchResult<IdentityType> addAll(Collection<? extends IdentityType> identityTypes) {
+        return decorated.addAll(identityTypes);
+    }
+
+    @Override
+    public BatchResult<IdentityType> updateAll(Collection<? extends IdentityType> identityTypes) {
+        return decorated.updateAll(identityTypes);
+    }
+
     @Override
     public <T extends IdentityType> T lookupIdentityById(Class<T> identityType, String id) {
         return decorated.lookupIdentityById(identityType, id);
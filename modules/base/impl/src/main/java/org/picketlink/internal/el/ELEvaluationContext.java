@@ -25,6 +25,9 @@ import org.picketlink.Identity;
 import org.picketlink.authentication.levels.LevelFactory;
 import org.picketlink.idm.PartitionManager;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * <p>{@link java.lang.ThreadLocal} used to share a execution context when invoking EL functions defined by {@link ELFunctionMethods}.</p>
  *
@@ -44,6 +47,8 @@ class ELEvaluationContext {
     private Identity identity;
     private PartitionManager partitionManager;
     private LevelFactory levelFactory;
+    private final Map<String, Boolean> functionResults = new HashMap<String, Boolean>();
+    private int depth;
 
     static ELEvaluationContext get() {
         return evaluationContext.get();
@@ -53,6 +58,33 @@ class ELEvaluationContext {
         evaluationContext.remove();
     }
 
+    /**
+     * @return True if this is the outermost evaluation, and the context must be initialized.
+     */
+    boolean open() {
+        return this.depth++ == 0;
+    }
+
+    /**
+     * @return True if this was the outermost evaluation, and the context must be released.
+     */
+    boolean close() {
+        return --this.depth <= 0;
+    }
+
+    /**
+     * <p>Returns the result of a function previously invoked with the same argument during this evaluation.</p>
+     *
+     * @return The result, or null if the function was not invoked yet.
+     */
+    Boolean getFunctionResult(String functionName, String argument) {
+        return this.functionResults.get(functionName + ':' + argument);
+    }
+
+    void setFunctionResult(String functionName, String argument, boolean result) {
+        this.functionResults.put(functionName + ':' + argument, result);
+    }
+
     void setIdentity(Identity identity) {
         this.identity = identity;
     }
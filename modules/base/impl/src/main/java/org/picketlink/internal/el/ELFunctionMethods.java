@@ -78,10 +78,17 @@ public class ELFunctionMethods {
      */
     public static boolean hasRole(String roleName) {
         ELEvaluationContext evaluationContext = ELEvaluationContext.get();
-        Identity identity = evaluationContext.getIdentity();
-        PartitionManager partitionManager = evaluationContext.getPartitionManager();
+        Boolean result = evaluationContext.getFunctionResult("hasRole", roleName);
+
+        if (result == null) {
+            Identity identity = evaluationContext.getIdentity();
+            PartitionManager partitionManager = evaluationContext.getPartitionManager();
+
+            result = AuthorizationUtil.hasRole(identity, partitionManager, roleName);
+            evaluationContext.setFunctionResult("hasRole", roleName, result);
+        }
 
-        return AuthorizationUtil.hasRole(identity, partitionManager, roleName);
+        return result;
     }
 
     /**
@@ -96,10 +103,17 @@ public class ELFunctionMethods {
      */
     public static boolean isMember(String groupName) {
         ELEvaluationContext evaluationContext = ELEvaluationContext.get();
-        Identity identity = evaluationContext.getIdentity();
-        PartitionManager partitionManager = evaluationContext.getPartitionManager();
+        Boolean result = evaluationContext.getFunctionResult("isMember", groupName);
+
+        if (result == null) {
+            Identity identity = evaluationContext.getIdentity();
+            PartitionManager partitionManager = evaluationContext.getPartitionManager();
 
-        return AuthorizationUtil.isMember(identity, partitionManager, groupName);
+            result = AuthorizationUtil.isMember(identity, partitionManager, groupName);
+            evaluationContext.setFunctionResult("isMember", groupName, result);
+        }
+
+        return result;
     }
 
     /**
@@ -136,9 +150,16 @@ public class ELFunctionMethods {
      */
     public static boolean hasPartition(String partitionName) {
         ELEvaluationContext evaluationContext = ELEvaluationContext.get();
-        Identity identity = evaluationContext.getIdentity();
+        Boolean result = evaluationContext.getFunctionResult("hasPartition", partitionName);
+
+        if (result == null) {
+            Identity identity = evaluationContext.getIdentity();
+
+            result = AuthorizationUtil.hasPartition(identity, null, new String[]{partitionName});
+            evaluationContext.setFunctionResult("hasPartition", partitionName, result);
+        }
 
-        return AuthorizationUtil.hasPartition(identity, null, new String[]{partitionName});
+        return result;
     }
 
     /**
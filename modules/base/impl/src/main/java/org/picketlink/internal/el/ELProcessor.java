@@ -43,15 +43,31 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Instance;
 import javax.enterprise.inject.spi.BeanManager;
 import javax.inject.Inject;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * <p>Provides EL processing.</p>
  *
+ * <p>Expressions are parsed once and the parsed {@link ValueExpression} is reused by subsequent evaluations. The
+ * results of the built-in functions that only depend on the current identity, like <code>hasRole</code>,
+ * <code>isMember</code> and <code>hasPartition</code>, are memoized during an evaluation. To share them between
+ * several evaluations, like the authorization expressions of a single request, the evaluations should be done between
+ * {@link #openEvaluationContext()} and {@link #closeEvaluationContext()}.</p>
+ *
  * @author Pedro Igor
  */
 @ApplicationScoped
 public class ELProcessor {
 
+    /**
+     * Maximum number of parsed expressions kept in memory.
+     */
+    private static final int MAX_CACHED_EXPRESSIONS = 1000;
+
+    private final ConcurrentMap<String, ValueExpression> expressionCache = new ConcurrentHashMap<String, ValueExpression>();
+    private final FunctionMapper functionMapper = new PicketLinkFunctionMapper();
+
     private ExpressionFactory expressionFactory;
     private CompositeELResolver elResolver;
 
@@ -75,20 +91,46 @@ public class ELProcessor {
 
     public <R> R eval(String expression) {
         PicketLinkELContext context = new PicketLinkELContext(this.elResolver);
-        ValueExpression valueExpression = this.expressionFactory.createValueExpression(context, expression, Object.class);
+        ValueExpression valueExpression = getValueExpression(context, expression);
 
         R value;
 
         try {
-            createEvaluationContext();
+            openEvaluationContext();
             value = (R) valueExpression.getValue(context);
         } finally {
-            releaseEvaluationContext();
+            closeEvaluationContext();
         }
 
         return value;
     }
 
+    /**
+     * <p>Opens an evaluation context for the current thread, or joins the one already opened. All evaluations done
+     * until the context is closed share the results of the built-in functions.</p>
+     *
+     * <p>Every call to this method must be followed by a call to {@link #closeEvaluationContext()}.</p>
+     */
+    public void openEvaluationContext() {
+        ELEvaluationContext evaluationContext = ELEvaluationContext.get();
+
+        if (evaluationContext.open()) {
+            evaluationContext.setIdentity(this.identityInstance.get());
+            evaluationContext.setPartitionManager(this.partitionManager.get());
+            evaluationContext.setLevelFactory(this.levelFactoryResolverInstance.get().resolve());
+        }
+    }
+
+    /**
+     * <p>Closes the evaluation context opened by {@link #openEvaluationContext()}. The context is released when the
+     * outermost call is closed.</p>
+     */
+    public void closeEvaluationContext() {
+        if (ELEvaluationContext.get().close()) {
+            ELEvaluationContext.release();
+        }
+    }
+
     @Inject
     private void initialize() {
         this.expressionFactory = this.beanManager.wrapExpressionFactory(ExpressionFactory.newInstance());
@@ -102,16 +144,18 @@ public class ELProcessor {
         this.elResolver.add(new BeanELResolver(false));
     }
 
-    private void createEvaluationContext() {
-        ELEvaluationContext evaluationContext = ELEvaluationContext.get();
+    private ValueExpression getValueExpression(ELContext context, String expression) {
+        ValueExpression valueExpression = this.expressionCache.get(expression);
 
-        evaluationContext.setIdentity(this.identityInstance.get());
-        evaluationContext.setPartitionManager(this.partitionManager.get());
-        evaluationContext.setLevelFactory(this.levelFactoryResolverInstance.get().resolve());
-    }
+        if (valueExpression == null) {
+            valueExpression = this.expressionFactory.createValueExpression(context, expression, Object.class);
+
+            if (this.expressionCache.size() < MAX_CACHED_EXPRESSIONS) {
+                this.expressionCache.putIfAbsent(expression, valueExpression);
+            }
+        }
 
-    private void releaseEvaluationContext() {
-        ELEvaluationContext.release();
+        return valueExpression;
     }
 
     private class PicketLinkELContext extends ELContext {
@@ -129,7 +173,7 @@ public class ELProcessor {
 
         @Override
         public FunctionMapper getFunctionMapper() {
-            return new PicketLinkFunctionMapper();
+            return functionMapper;
         }
 
         @Override
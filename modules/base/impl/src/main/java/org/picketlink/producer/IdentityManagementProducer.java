@@ -26,6 +26,7 @@ import org.picketlink.idm.PermissionManager;
 import org.picketlink.idm.RelationshipManager;
 import org.picketlink.idm.config.IdentityConfiguration;
 import org.picketlink.idm.config.IdentityStoreConfiguration;
+import org.picketlink.idm.event.EventBridge;
 import org.picketlink.idm.internal.DefaultPartitionManager;
 import org.picketlink.idm.model.Partition;
 import org.picketlink.idm.model.basic.Realm;
@@ -78,6 +79,10 @@ public class IdentityManagementProducer {
     @Inject
     private CDIEventBridge eventBridge;
 
+    @Inject
+    @PicketLink
+    private Instance<EventBridge> eventBridgeInstance;
+
     private PartitionManager partitionManager;
 
     @Inject
@@ -143,7 +148,7 @@ public class IdentityManagementProducer {
         }
 
         List<IdentityConfiguration> identityConfiguration = this.identityManagementConfiguration.getIdentityConfiguration();
-        PartitionManager partitionManager = new DefaultPartitionManager(identityConfiguration, this.eventBridge, getPermissionHandlers());
+        PartitionManager partitionManager = new DefaultPartitionManager(identityConfiguration, getEventBridge(), getPermissionHandlers());
 
         this.eventBridge.fireEvent(new PartitionManagerCreateEvent(partitionManager));
 
@@ -152,6 +157,22 @@ public class IdentityManagementProducer {
         return partitionManager;
     }
 
+    /**
+     * <p>Returns the {@link EventBridge} used to deliver the events raised by PicketLink IDM. By default, events are
+     * fired as CDI events by the thread performing the operation. Applications can produce a {@link PicketLink}
+     * {@link EventBridge} to deliver them differently, for instance using an
+     * {@link org.picketlink.idm.event.AsyncEventBridge} decorating the {@link CDIEventBridge}.</p>
+     *
+     * @return
+     */
+    private EventBridge getEventBridge() {
+        if (!this.eventBridgeInstance.isUnsatisfied()) {
+            return this.eventBridgeInstance.get();
+        }
+
+        return this.eventBridge;
+    }
+
     private void createDefaultPartition(PartitionManager partitionManager) {
         Realm defaultPartition = null;
 
@@ -0,0 +1,327 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.authentication.attempt;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.picketlink.authentication.LoginAttemptsExceededException;
+import org.picketlink.authentication.internal.LoginAttemptLimiter;
+import org.picketlink.config.LoginAttemptConfigurationBuilder;
+import org.picketlink.config.SecurityConfigurationBuilder;
+import org.picketlink.extension.PicketLinkExtension;
+import org.picketlink.http.internal.HttpServletRequestProducer;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LoginAttemptLimiterTestCase {
+
+    @Mock
+    private PicketLinkExtension picketLinkExtension;
+
+    @Mock
+    private HttpServletRequestProducer servletRequestProducer;
+
+    @InjectMocks
+    private LoginAttemptLimiter limiter;
+
+    @Before
+    public void onSetup() {
+        MockitoAnnotations.initMocks(this);
+        setClientAddress("10.0.0.1");
+    }
+
+    @Test
+    public void testAccountLimit() {
+        configure(new InMemoryLoginAttemptStore());
+
+        for (int i = 0; i < 3; i++) {
+            this.limiter.checkAttempt("john");
+            this.limiter.loginFailed("john");
+        }
+
+        assertRejected("john");
+
+        // other accounts from the same address are not affected
+        this.limiter.checkAttempt("mary");
+    }
+
+    @Test
+    public void testSuccessfulLoginResetsAccount() {
+        configure(new InMemoryLoginAttemptStore());
+
+        this.limiter.loginFailed("john");
+        this.limiter.loginFailed("john");
+        this.limiter.loginSucceeded("john");
+        this.limiter.loginFailed("john");
+        this.limiter.loginFailed("john");
+
+        this.limiter.checkAttempt("john");
+    }
+
+    @Test
+    public void testAddressLimit() {
+        configure(new InMemoryLoginAttemptStore());
+
+        for (int i = 0; i < 5; i++) {
+            this.limiter.loginFailed("user" + i);
+        }
+
+        assertRejected("mary");
+
+        setClientAddress("10.0.0.2");
+
+        this.limiter.checkAttempt("mary");
+    }
+
+    @Test
+    public void testProgressiveDelay() {
+        FixedLoginAttemptStore store = new FixedLoginAttemptStore();
+
+        configure(store);
+
+        long now = System.currentTimeMillis();
+
+        // the delay is over after the first failure that reached the limit
+        store.attempts.put("account:john", new LoginAttempts(3, now - 180000, now - 90000));
+        this.limiter.checkAttempt("john");
+
+        // the delay doubled after another failure
+        store.attempts.put("account:john", new LoginAttempts(4, now - 180000, now - 90000));
+        assertRejected("john");
+
+        store.attempts.put("account:john", new LoginAttempts(4, now - 180000, now - 150000));
+        this.limiter.checkAttempt("john");
+
+        // the delay never exceeds the maximum delay
+        store.attempts.put("account:john", new LoginAttempts(40, now - 180000, now - 150000));
+        this.limiter.checkAttempt("john");
+    }
+
+    @Test
+    public void testNotConfigured() {
+        when(this.picketLinkExtension.getSecurityConfiguration()).thenReturn(new SecurityConfigurationBuilder().build());
+
+        for (int i = 0; i < 10; i++) {
+            this.limiter.loginFailed("john");
+        }
+
+        this.limiter.checkAttempt("john");
+    }
+
+    @Test
+    public void testStoreFailureAllowsAttempts() {
+        configure(new FailingLoginAttemptStore());
+
+        this.limiter.loginFailed("john");
+        this.limiter.checkAttempt("john");
+    }
+
+    @Test
+    public void testFailClosed() {
+        SecurityConfigurationBuilder builder = new SecurityConfigurationBuilder();
+
+        configure(builder, new FailingLoginAttemptStore()).failClosed();
+
+        when(this.picketLinkExtension.getSecurityConfiguration()).thenReturn(builder.build());
+
+        assertRejected("john");
+    }
+
+    @Test
+    public void testClientAddressHeader() {
+        SecurityConfigurationBuilder builder = new SecurityConfigurationBuilder();
+
+        configure(builder, new InMemoryLoginAttemptStore()).clientAddressHeader("X-Forwarded-For");
+
+        when(this.picketLinkExtension.getSecurityConfiguration()).thenReturn(builder.build());
+
+        // all requests come from the proxy, the client address is the last one of the header
+        setClientAddress("10.0.0.1", "192.168.0.1, 172.16.0.1");
+
+        for (int i = 0; i < 5; i++) {
+            this.limiter.loginFailed("user" + i);
+        }
+
+        assertRejected("mary");
+
+        setClientAddress("10.0.0.1", "172.16.0.1, 172.16.0.2");
+
+        this.limiter.checkAttempt("mary");
+    }
+
+    @Test
+    public void testRecentlyUsedEntriesAreKept() {
+        // two keys per stripe
+        InMemoryLoginAttemptStore store = new InMemoryLoginAttemptStore(64);
+        long period = TimeUnit.HOURS.toMillis(1);
+
+        for (int i = 0; i < 3; i++) {
+            store.recordFailure("account:john", period);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            store.recordFailure("address:10.0.0." + i, period);
+            assertNotNull(store.getAttempts("account:john", period));
+        }
+
+        assertEquals(3, store.getAttempts("account:john", period).getFailures());
+    }
+
+    @Test
+    public void testFullStoreEvictsLeastRecentlyUsedEntries() {
+        // a single key per stripe
+        InMemoryLoginAttemptStore store = new InMemoryLoginAttemptStore(32);
+        long period = TimeUnit.HOURS.toMillis(1);
+
+        // failures for new keys are always recorded
+        assertEquals(1000, recordFailures(store, "address:10.0.0.", period));
+
+        int kept = 0;
+
+        for (int i = 0; i < 1000; i++) {
+            if (store.getAttempts("address:10.0.0." + i, period) != null) {
+                kept++;
+            }
+        }
+
+        assertTrue(kept <= 32);
+    }
+
+    @Test
+    public void testFullStoreStillLocksOut() {
+        // two keys per stripe, for the account and the address of the same login
+        InMemoryLoginAttemptStore store = new InMemoryLoginAttemptStore(64);
+
+        configure(store);
+
+        recordFailures(store, "address:10.0.1.", TimeUnit.HOURS.toMillis(1));
+
+        for (int i = 0; i < 3; i++) {
+            this.limiter.checkAttempt("john");
+            this.limiter.loginFailed("john");
+        }
+
+        assertRejected("john");
+    }
+
+    private void configure(LoginAttemptStore store) {
+        SecurityConfigurationBuilder builder = new SecurityConfigurationBuilder();
+
+        configure(builder, store);
+
+        when(this.picketLinkExtension.getSecurityConfiguration()).thenReturn(builder.build());
+    }
+
+    private LoginAttemptConfigurationBuilder configure(SecurityConfigurationBuilder builder, LoginAttemptStore store) {
+        return builder
+            .identity()
+                .limitLoginAttempts()
+                    .maxAttemptsPerAccount(3)
+                    .maxAttemptsPerAddress(5)
+                    .delay(1, TimeUnit.MINUTES)
+                    .maxDelay(2, TimeUnit.MINUTES)
+                    .store(store);
+    }
+
+    private int recordFailures(LoginAttemptStore store, String keyPrefix, long period) {
+        int recorded = 0;
+
+        for (int i = 0; i < 1000; i++) {
+            String key = keyPrefix + i;
+
+            store.recordFailure(key, period);
+
+            if (store.getAttempts(key, period) != null) {
+                recorded++;
+            }
+        }
+
+        return recorded;
+    }
+
+    private void setClientAddress(String address) {
+        setClientAddress(address, null);
+    }
+
+    private void setClientAddress(String address, String forwardedFor) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+
+        when(request.getRemoteAddr()).thenReturn(address);
+        when(request.getHeader("X-Forwarded-For")).thenReturn(forwardedFor);
+        when(this.servletRequestProducer.produce()).thenReturn(request);
+    }
+
+    private void assertRejected(String userId) {
+        try {
+            this.limiter.checkAttempt(userId);
+            fail("Login attempt should be rejected.");
+        } catch (LoginAttemptsExceededException expected) {
+        }
+    }
+
+    private static class FixedLoginAttemptStore implements LoginAttemptStore {
+
+        private final Map<String, LoginAttempts> attempts = new HashMap<String, LoginAttempts>();
+
+        @Override
+        public LoginAttempts getAttempts(String key, long period) {
+            return this.attempts.get(key);
+        }
+
+        @Override
+        public LoginAttempts recordFailure(String key, long period) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void reset(String key) {
+            this.attempts.remove(key);
+        }
+    }
+
+    private static class FailingLoginAttemptStore implements LoginAttemptStore {
+
+        @Override
+        public LoginAttempts getAttempts(String key, long period) {
+            throw new RuntimeException("Store not available.");
+        }
+
+        @Override
+        public LoginAttempts recordFailure(String key, long period) {
+            throw new RuntimeException("Store not available.");
+        }
+
+        @Override
+        public void reset(String key) {
+            throw new RuntimeException("Store not available.");
+        }
+    }
+}
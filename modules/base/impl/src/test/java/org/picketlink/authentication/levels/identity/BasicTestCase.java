@@ -1,12 +1,19 @@
 package org.picketlink.authentication.levels.identity;
 
 import org.junit.Test;
+import org.picketlink.authentication.LoginAttemptsExceededException;
+import org.picketlink.authentication.event.LockedAccountEvent;
 import org.picketlink.authentication.levels.DifferentUserLoggedInExcpetion;
 import org.picketlink.authentication.levels.Level;
 import org.picketlink.authentication.levels.internal.DefaultLevel;
 import org.picketlink.idm.model.basic.User;
 
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class BasicTestCase extends IdentityTestCase{
@@ -44,6 +51,21 @@ public class BasicTestCase extends IdentityTestCase{
         assertTrue(identity.getLevel().compareTo(new DefaultLevel(1))==0);
     }
 
+    @Test
+    public void rejectedLoginAttemptTest(){
+        doThrow(new LoginAttemptsExceededException("Too many failed login attempts.")).when(loginAttemptLimiter).checkAttempt(null);
+
+        try {
+            identity.login();
+            fail("Login attempt should be rejected.");
+        } catch (LoginAttemptsExceededException expected) {
+        }
+
+        verify(idmAuthenticator, never()).authenticate();
+        verify(loginAttemptLimiter, never()).loginFailed(null);
+        verify(eventBridge).fireEvent(isA(LockedAccountEvent.class));
+    }
+
     private Level resolveSecurityLevel() {
         return levelManager.resolveSecurityLevel();
     }
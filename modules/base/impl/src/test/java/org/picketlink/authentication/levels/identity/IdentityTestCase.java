@@ -6,6 +6,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.picketlink.authentication.Authenticator;
 import org.picketlink.authentication.internal.IdmAuthenticator;
+import org.picketlink.authentication.internal.LoginAttemptLimiter;
 import org.picketlink.authentication.levels.Level;
 import org.picketlink.authentication.levels.SecurityLevelManager;
 import org.picketlink.authentication.levels.SecurityLevelResolver;
@@ -62,6 +63,9 @@ public abstract class IdentityTestCase {
     @Mock
     protected IdmAuthenticator idmAuthenticator;
 
+    @Mock
+    protected LoginAttemptLimiter loginAttemptLimiter;
+
     @Mock
     Iterator<SecurityLevelResolver> iterator;
 
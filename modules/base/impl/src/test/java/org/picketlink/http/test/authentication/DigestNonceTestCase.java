@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.http.test.authentication;
+
+import org.junit.Test;
+import org.picketlink.http.internal.authentication.schemes.support.NonceReplayWindow;
+import org.picketlink.http.internal.authentication.schemes.support.SignedNonceGenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DigestNonceTestCase {
+
+    @Test
+    public void testNonceSignedWithSameSecret() {
+        SignedNonceGenerator issuer = new SignedNonceGenerator("secret".getBytes(), 60000);
+        SignedNonceGenerator otherNode = new SignedNonceGenerator("secret".getBytes(), 60000);
+        SignedNonceGenerator otherSecret = new SignedNonceGenerator("other".getBytes(), 60000);
+
+        long before = System.currentTimeMillis();
+        String nonce = issuer.generate();
+        long issueTime = otherNode.getIssueTime(nonce);
+
+        assertTrue(issueTime >= before && issueTime <= System.currentTimeMillis());
+        assertFalse(otherNode.hasExpired(issueTime));
+        assertEquals(-1, otherSecret.getIssueTime(nonce));
+    }
+
+    @Test
+    public void testTamperedNonce() {
+        SignedNonceGenerator generator = new SignedNonceGenerator(null, 60000);
+        char[] nonce = generator.generate().toCharArray();
+
+        nonce[3] = nonce[3] == 'A' ? 'B' : 'A';
+
+        assertEquals(-1, generator.getIssueTime(new String(nonce)));
+        assertEquals(-1, generator.getIssueTime("invalid"));
+        assertEquals(-1, generator.getIssueTime(null));
+    }
+
+    @Test
+    public void testExpiredNonce() throws Exception {
+        SignedNonceGenerator generator = new SignedNonceGenerator(null, 10);
+        long issueTime = generator.getIssueTime(generator.generate());
+
+        Thread.sleep(50);
+
+        assertTrue(generator.hasExpired(issueTime));
+    }
+
+    @Test
+    public void testReplayedNonceCount() {
+        NonceReplayWindow replayWindow = new NonceReplayWindow(60000);
+        long issueTime = System.currentTimeMillis();
+
+        assertTrue(replayWindow.accept("nonce", issueTime, 1));
+        assertFalse(replayWindow.accept("nonce", issueTime, 1));
+        assertTrue(replayWindow.accept("nonce", issueTime, 3));
+        assertFalse(replayWindow.accept("nonce", issueTime, 2));
+        assertTrue(replayWindow.accept("otherNonce", issueTime, 1));
+    }
+
+    @Test
+    public void testExpiredNonceRejected() {
+        NonceReplayWindow replayWindow = new NonceReplayWindow(60000);
+
+        assertFalse(replayWindow.accept("nonce", System.currentTimeMillis() - 120000, 1));
+    }
+}
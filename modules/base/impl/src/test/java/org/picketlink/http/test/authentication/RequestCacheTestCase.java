@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.http.test.authentication;
+
+import org.junit.Test;
+import org.picketlink.http.internal.authentication.schemes.support.RequestCache;
+import org.picketlink.http.internal.authentication.schemes.support.SavedRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * <p>Tests the eviction, timeout and size limits of the requests saved by the FORM authentication scheme.</p>
+ */
+public class RequestCacheTestCase {
+
+    @Test
+    public void testOldestRequestsAreEvicted() {
+        RequestCache requestCache = new RequestCache(300, 2, 2048);
+
+        requestCache.saveRequest(createRequest("session1", "/first"));
+        requestCache.saveRequest(createRequest("session2", "/second"));
+        requestCache.saveRequest(createRequest("session3", "/third"));
+
+        assertEquals(2, requestCache.size());
+        assertNull(requestCache.removeAndStoreSavedRequestInSession(createRequest("session1", "/")));
+        assertEquals("/second", requestCache.removeAndStoreSavedRequestInSession(createRequest("session2", "/")).getRequestURI());
+        assertEquals("/third", requestCache.removeAndStoreSavedRequestInSession(createRequest("session3", "/")).getRequestURI());
+    }
+
+    @Test
+    public void testSavingAgainKeepsTheRequest() {
+        RequestCache requestCache = new RequestCache(300, 2, 2048);
+
+        requestCache.saveRequest(createRequest("session1", "/first"));
+        requestCache.saveRequest(createRequest("session2", "/second"));
+
+        // saving again moves the session to the end of the eviction order
+        requestCache.saveRequest(createRequest("session1", "/first-again"));
+        requestCache.saveRequest(createRequest("session3", "/third"));
+
+        assertNull(requestCache.removeAndStoreSavedRequestInSession(createRequest("session2", "/")));
+        assertEquals("/first-again", requestCache.removeAndStoreSavedRequestInSession(createRequest("session1", "/")).getRequestURI());
+    }
+
+    @Test
+    public void testExpiredRequests() {
+        RequestCache requestCache = new RequestCache(0, 10, 2048);
+
+        requestCache.saveRequest(createRequest("session1", "/first"));
+
+        // expired requests are discarded when another one is saved
+        requestCache.saveRequest(createRequest("session2", "/second"));
+
+        assertEquals(1, requestCache.size());
+
+        // and are never replayed
+        assertNull(requestCache.removeAndStoreSavedRequestInSession(createRequest("session2", "/")));
+        assertEquals(0, requestCache.size());
+    }
+
+    @Test
+    public void testRequestWithinSizeLimit() {
+        RequestCache requestCache = new RequestCache(300, 10, 20);
+        HttpServletRequest request = createRequest("session1", "/form");
+
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getContentLength()).thenReturn(20);
+        when(request.getParameterMap()).thenReturn(Collections.singletonMap("name", new String[] {"0123456789"}));
+
+        assertTrue(requestCache.saveRequest(request));
+
+        SavedRequest savedRequest = requestCache.removeAndStoreSavedRequestInSession(createRequest("session1", "/"));
+        Map<String, String[]> parameters = savedRequest.getParameters();
+
+        assertEquals("POST", savedRequest.getMethod());
+        assertEquals("0123456789", parameters.get("name")[0]);
+    }
+
+    @Test
+    public void testRequestExceedingSizeLimitIsNotSaved() {
+        RequestCache requestCache = new RequestCache(300, 10, 20);
+
+        requestCache.saveRequest(createRequest("session1", "/previous"));
+
+        HttpServletRequest request = createRequest("session1", "/form");
+
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getContentLength()).thenReturn(15);
+        when(request.getQueryString()).thenReturn("query=0123456789");
+
+        assertFalse(requestCache.saveRequest(request));
+
+        // the body is not parsed and the previous request of the session is not replayed
+        verify(request, never()).getParameterMap();
+        assertNull(requestCache.removeAndStoreSavedRequestInSession(createRequest("session1", "/")));
+    }
+
+    @Test
+    public void testChunkedRequestIsNotSaved() {
+        RequestCache requestCache = new RequestCache(300, 10, 2048);
+        HttpServletRequest request = createRequest("session1", "/form");
+
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getContentLength()).thenReturn(-1);
+        when(request.getHeader("Transfer-Encoding")).thenReturn("chunked");
+
+        assertFalse(requestCache.saveRequest(request));
+        verify(request, never()).getParameterMap();
+        assertEquals(0, requestCache.size());
+    }
+
+    @Test
+    public void testParametersNotKept() {
+        RequestCache requestCache = new RequestCache(300, 10, 0);
+        HttpServletRequest request = createRequest("session1", "/form");
+
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getContentLength()).thenReturn(-1);
+        when(request.getHeader("Transfer-Encoding")).thenReturn("chunked");
+
+        assertTrue(requestCache.saveRequest(request));
+        verify(request, never()).getParameterMap();
+
+        SavedRequest savedRequest = requestCache.removeAndStoreSavedRequestInSession(createRequest("session1", "/"));
+
+        assertNotNull(savedRequest);
+        assertTrue(savedRequest.getParameters().isEmpty());
+    }
+
+    private HttpServletRequest createRequest(String sessionId, String requestURI) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        HttpSession session = mock(HttpSession.class);
+
+        when(session.getId()).thenReturn(sessionId);
+        when(request.getSession(true)).thenReturn(session);
+        when(request.getSession()).thenReturn(session);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn(requestURI);
+        when(request.getContentLength()).thenReturn(-1);
+
+        return request;
+    }
+}
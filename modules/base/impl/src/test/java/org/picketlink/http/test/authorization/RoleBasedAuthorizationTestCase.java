@@ -31,6 +31,11 @@ import org.picketlink.event.SecurityConfigurationEvent;
 import org.picketlink.http.internal.authentication.schemes.FormAuthenticationScheme;
 import org.picketlink.http.test.AbstractSecurityFilterTestCase;
 import org.picketlink.http.test.SecurityInitializer;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.RelationshipManager;
+import org.picketlink.idm.model.basic.Role;
+import org.picketlink.idm.model.basic.User;
 import org.picketlink.test.weld.Deployment;
 
 import javax.enterprise.event.Observes;
@@ -40,6 +45,9 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import static org.junit.Assert.assertEquals;
+import static org.picketlink.idm.model.basic.BasicModel.getUser;
+import static org.picketlink.idm.model.basic.BasicModel.grantRole;
+import static org.picketlink.idm.model.basic.BasicModel.revokeRole;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
@@ -64,6 +72,9 @@ public class RoleBasedAuthorizationTestCase extends AbstractSecurityFilterTestCa
     @PicketLink
     private Instance<HttpServletRequest> picketLinkRequest;
 
+    @Inject
+    private PartitionManager partitionManager;
+
     @Test
     public void testOnlyManagers() throws Exception {
         when(this.request.getServletPath()).thenReturn("/formProtectedUri/" + FormAuthenticationConfiguration.DEFAULT_AUTHENTICATION_URI);
@@ -119,6 +130,44 @@ public class RoleBasedAuthorizationTestCase extends AbstractSecurityFilterTestCa
         verify(this.response, times(1)).sendError(eq(HttpServletResponse.SC_FORBIDDEN), anyString());
     }
 
+    @Test
+    public void testRoleGrantedAfterAccessDenied() throws Exception {
+        when(this.request.getServletPath()).thenReturn("/formProtectedUri/" + FormAuthenticationConfiguration.DEFAULT_AUTHENTICATION_URI);
+        when(this.request.getParameter(FormAuthenticationScheme.J_USERNAME)).thenReturn("picketlink");
+        when(this.request.getParameter(FormAuthenticationScheme.J_PASSWORD)).thenReturn("picketlink");
+
+        this.securityFilter.doFilter(this.request, this.response, this.filterChain);
+        verify(this.response).sendRedirect(CONTEXT_PATH);
+
+        when(this.request.getServletPath()).thenReturn("/onlyCustomerRole");
+        reset(this.response);
+
+        this.securityFilter.doFilter(this.request, this.response, this.filterChain);
+
+        verify(this.filterChain, times(0)).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class));
+        verify(this.response, times(1)).sendError(eq(HttpServletResponse.SC_FORBIDDEN), anyString());
+
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+        RelationshipManager relationshipManager = this.partitionManager.createRelationshipManager();
+        User user = getUser(identityManager, "picketlink");
+        Role customerRole = new Role("Customer");
+
+        identityManager.add(customerRole);
+
+        try {
+            // the decision made before the role was granted must not be reused
+            grantRole(relationshipManager, user, customerRole);
+            reset(this.response);
+
+            this.securityFilter.doFilter(this.request, this.response, this.filterChain);
+
+            verify(this.filterChain, times(1)).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class));
+        } finally {
+            revokeRole(relationshipManager, user, customerRole);
+            identityManager.remove(customerRole);
+        }
+    }
+
     public static class SecurityConfiguration {
         public void configureHttpSecurity(@Observes SecurityConfigurationEvent event) {
             SecurityConfigurationBuilder builder = event.getBuilder();
@@ -133,6 +182,7 @@ public class RoleBasedAuthorizationTestCase extends AbstractSecurityFilterTestCa
                 .forPath("/onlyCustomerRole")
                 .authorizeWith()
                 .role("Customer")
+                .cacheDecisions(30)
                 .forPath("/admin/*")
                 .authorizeWith()
                 .role("Administrator");
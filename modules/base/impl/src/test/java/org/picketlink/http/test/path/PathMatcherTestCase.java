@@ -0,0 +1,166 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.http.test.path;
+
+import org.junit.Test;
+import org.picketlink.config.HttpSecurityBuilder;
+import org.picketlink.config.SecurityConfigurationBuilder;
+import org.picketlink.config.http.PathConfiguration;
+import org.picketlink.http.internal.PathMatcher;
+
+import javax.servlet.http.HttpServletRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * <p>Checks which path configuration is selected by the {@link PathMatcher} for a request.</p>
+ *
+ * @author Pedro Igor
+ */
+public class PathMatcherTestCase {
+
+    private static final String CONTEXT_PATH = "/picketlink-app";
+
+    @Test
+    public void testExactPath() {
+        PathMatcher matcher = createMatcher(true, "/admin/*", "/admin/users/list");
+
+        assertMatch(matcher, "/admin/users/list", "/admin/users/list");
+        assertMatch(matcher, "/admin/users/list/", "/admin/*");
+        assertMatch(matcher, "/admin/users", "/admin/*");
+    }
+
+    @Test
+    public void testPrefixWildcard() {
+        PathMatcher matcher = createMatcher(true, "/admin/*", "/admin/users/*");
+
+        assertMatch(matcher, "/admin/settings", "/admin/*");
+        assertMatch(matcher, "/admin/users/john", "/admin/users/*");
+        assertMatch(matcher, "/admin/users/john/roles", "/admin/users/*");
+        assertMatch(matcher, "/adminx", "/*");
+        assertMatch(matcher, "/public/admin/users", "/*");
+    }
+
+    @Test
+    public void testTrailingSlash() {
+        PathMatcher matcher = createMatcher(false, "/admin/*", "/user/{identity.account.id}");
+
+        assertMatch(matcher, "/admin", "/admin/*");
+        assertMatch(matcher, "/admin/", "/admin/*");
+        assertMatch(matcher, "/user/", "/user/{identity.account.id}");
+        assertMatch(matcher, "/user/john", "/user/{identity.account.id}");
+        assertNoMatch(matcher, "/user");
+    }
+
+    @Test
+    public void testSuffixPattern() {
+        PathMatcher matcher = createMatcher(false, "/*.jsf", "/docs/*.pdf");
+
+        assertMatch(matcher, "/index.jsf", "/*.jsf");
+        assertMatch(matcher, "/admin/users/search.jsf", "/*.jsf");
+        assertMatch(matcher, "/docs/manual.pdf", "/docs/*.pdf");
+        assertNoMatch(matcher, "/index.jsp");
+        assertNoMatch(matcher, "/index.jsf/");
+    }
+
+    @Test
+    public void testAnyResourceOnlyWhenNothingElseMatches() {
+        PathMatcher matcher = createMatcher(true, "/admin/*");
+
+        assertMatch(matcher, "/admin/users", "/admin/*");
+        assertMatch(matcher, "/", "/*");
+        assertMatch(matcher, "/index.html", "/*");
+
+        assertNoMatch(createMatcher(false, "/admin/*"), "/index.html");
+    }
+
+    @Test
+    public void testLastDeclaredPathTakesPrecedence() {
+        PathMatcher suffixLast = createMatcher(false, "/admin/*", "/*.jsf");
+
+        assertMatch(suffixLast, "/admin/search.jsf", "/*.jsf");
+        assertMatch(suffixLast, "/admin/search.xhtml", "/admin/*");
+
+        PathMatcher suffixFirst = createMatcher(false, "/*.jsf", "/admin/*");
+
+        assertMatch(suffixFirst, "/admin/search.jsf", "/admin/*");
+        assertMatch(suffixFirst, "/search.jsf", "/*.jsf");
+
+        PathMatcher prefixLast = createMatcher(false, "/user/{identity.account.id}", "/user/*");
+
+        assertMatch(prefixLast, "/user/john", "/user/*");
+
+        PathMatcher templateLast = createMatcher(false, "/user/*", "/user/{identity.account.id}");
+
+        assertMatch(templateLast, "/user/john", "/user/{identity.account.id}");
+        assertMatch(templateLast, "/user", "/user/*");
+    }
+
+    @Test
+    public void testCachedMatches() {
+        PathMatcher matcher = createMatcher(true, "/admin/*", "/*.jsf");
+
+        for (int i = 0; i < 3000; i++) {
+            assertMatch(matcher, "/admin/users/" + i, "/admin/*");
+            assertMatch(matcher, "/pages/" + i + ".jsf", "/*.jsf");
+            assertMatch(matcher, "/pages/" + i, "/*");
+        }
+    }
+
+    private PathMatcher createMatcher(boolean anyResource, String... paths) {
+        SecurityConfigurationBuilder configurationBuilder = new SecurityConfigurationBuilder();
+        HttpSecurityBuilder builder = configurationBuilder.http();
+
+        if (anyResource) {
+            builder.allPaths().unprotected();
+        }
+
+        for (String path : paths) {
+            builder.forPath(path).unprotected();
+        }
+
+        return new PathMatcher(configurationBuilder.build().getHttpSecurityConfiguration().getPaths(), null);
+    }
+
+    private void assertMatch(PathMatcher matcher, String requestedUri, String expectedPath) {
+        PathConfiguration pathConfiguration = matcher.matches(createRequest(requestedUri));
+
+        assertEquals(requestedUri, expectedPath, pathConfiguration == null ? null : pathConfiguration.getUri());
+    }
+
+    private void assertNoMatch(PathMatcher matcher, String requestedUri) {
+        assertNull(requestedUri, matcher.matches(createRequest(requestedUri)));
+    }
+
+    private HttpServletRequest createRequest(String requestedUri) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+
+        when(request.getContextPath()).thenReturn(CONTEXT_PATH);
+        when(request.getRequestURI()).thenReturn(CONTEXT_PATH + requestedUri);
+        when(request.getMethod()).thenReturn("GET");
+
+        return request;
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.common.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A client for the HTTP requests sent to external services, such as OAuth token endpoints or social profile
+ * APIs.</p>
+ *
+ * <p>Requests are sent with {@link HttpURLConnection}, which keeps the connections alive and reuses them for further
+ * requests to the same host once their response is fully read. The client makes sure every response is fully read
+ * when it is closed, bounds the time spent connecting and reading, and bounds the number of concurrent requests, in
+ * total and per host. The size of the pool of idle connections kept by the JVM per host is set by the
+ * <code>http.maxConnections</code> system property.</p>
+ *
+ * <p>A client is thread safe. Most applications use the shared instance returned by {@link #getDefault()}.</p>
+ */
+public class OutboundHttpClient {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    public static final int DEFAULT_READ_TIMEOUT = 10000;
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 200;
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST = 20;
+
+    private static volatile OutboundHttpClient defaultClient = new OutboundHttpClient();
+
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int maxConcurrentRequestsPerHost;
+    private final Semaphore permits;
+    private final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<String, Semaphore>();
+    private final OutboundHttpMetrics metrics = new OutboundHttpMetrics();
+
+    public OutboundHttpClient() {
+        this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT, DEFAULT_MAX_CONCURRENT_REQUESTS,
+            DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST);
+    }
+
+    /**
+     * @param connectTimeout the time to wait for a connection, and for a free slot when too many requests are
+     * running, in milliseconds
+     * @param readTimeout the time to wait for data once connected, in milliseconds
+     * @param maxConcurrentRequests the number of requests that can run at the same time
+     * @param maxConcurrentRequestsPerHost the number of requests to the same host that can run at the same time
+     */
+    public OutboundHttpClient(int connectTimeout, int readTimeout, int maxConcurrentRequests,
+                              int maxConcurrentRequestsPerHost) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.maxConcurrentRequestsPerHost = maxConcurrentRequestsPerHost;
+    }
+
+    /**
+     * @return the client shared by the PicketLink modules
+     */
+    public static OutboundHttpClient getDefault() {
+        return defaultClient;
+    }
+
+    /**
+     * <p>Replaces the shared client, for instance to change its timeouts.</p>
+     *
+     * @param client
+     */
+    public static void setDefault(OutboundHttpClient client) {
+        if (client == null) {
+            throw new IllegalArgumentException("client is null");
+        }
+
+        defaultClient = client;
+    }
+
+    public OutboundHttpResponse get(String url, Map<String, String> headers) throws IOException {
+        return execute("GET", url, headers, null, null);
+    }
+
+    public OutboundHttpResponse post(String url, Map<String, String> headers, String contentType, String body)
+        throws IOException {
+        return execute("POST", url, headers, contentType, toBytes(body));
+    }
+
+    public OutboundHttpResponse delete(String url, Map<String, String> headers) throws IOException {
+        return execute("DELETE", url, headers, null, null);
+    }
+
+    /**
+     * <p>Sends a request and returns its response once the status line and the headers are received. The returned
+     * response must be closed.</p>
+     *
+     * @param method the HTTP method
+     * @param url the URL, with its query string
+     * @param headers the request headers, or null
+     * @param contentType the content type of the body, or null if there is no body
+     * @param body the body, or null
+     * @return
+     * @throws IOException if the request could not be sent, or if too many requests are running
+     */
+    public OutboundHttpResponse execute(String method, String url, Map<String, String> headers, String contentType,
+                                        byte[] body) throws IOException {
+        URL target = new URL(url);
+        String host = target.getProtocol() + "://" + target.getHost() + ":"
+            + (target.getPort() != -1 ? target.getPort() : target.getDefaultPort());
+        String endpoint = host + target.getPath();
+
+        acquire(this.permits, endpoint);
+
+        Semaphore hostPermits = getHostPermits(host);
+
+        try {
+            acquire(hostPermits, endpoint);
+        } catch (IOException e) {
+            this.permits.release();
+            throw e;
+        }
+
+        long startTime = System.nanoTime();
+        OutboundHttpResponse response = null;
+
+        try {
+            URLConnection urlConnection = target.openConnection();
+
+            if (!(urlConnection instanceof HttpURLConnection)) {
+                throw new IOException("Not an HTTP URL: " + url);
+            }
+
+            HttpURLConnection connection = (HttpURLConnection) urlConnection;
+
+            connection.setConnectTimeout(this.connectTimeout);
+            connection.setReadTimeout(this.readTimeout);
+            connection.setRequestMethod(method);
+            connection.setUseCaches(false);
+            connection.setAllowUserInteraction(false);
+
+            if (headers != null) {
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    connection.setRequestProperty(header.getKey(), header.getValue());
+                }
+            }
+
+            if (body != null) {
+                if (contentType != null) {
+                    connection.setRequestProperty("Content-Type", contentType);
+                }
+
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(body.length);
+
+                OutputStream outputStream = connection.getOutputStream();
+
+                try {
+                    outputStream.write(body);
+                } finally {
+                    outputStream.close();
+                }
+            }
+
+            int statusCode = connection.getResponseCode();
+            InputStream inputStream;
+
+            if (statusCode >= 400) {
+                inputStream = connection.getErrorStream();
+            } else {
+                inputStream = connection.getInputStream();
+            }
+
+            response = new OutboundHttpResponse(this, connection, statusCode, inputStream, host, startTime);
+        } finally {
+            if (response == null) {
+                release(host, System.nanoTime() - startTime, true);
+            }
+        }
+
+        return response;
+    }
+
+    public OutboundHttpMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    public int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return this.readTimeout;
+    }
+
+    void release(String host, long elapsedNanos, boolean failed) {
+        this.metrics.record(host, elapsedNanos, failed);
+        getHostPermits(host).release();
+        this.permits.release();
+    }
+
+    private Semaphore getHostPermits(String host) {
+        Semaphore semaphore = this.hostPermits.get(host);
+
+        if (semaphore == null) {
+            Semaphore newSemaphore = new Semaphore(this.maxConcurrentRequestsPerHost, true);
+
+            semaphore = this.hostPermits.putIfAbsent(host, newSemaphore);
+
+            if (semaphore == null) {
+                semaphore = newSemaphore;
+            }
+        }
+
+        return semaphore;
+    }
+
+    private void acquire(Semaphore semaphore, String endpoint) throws IOException {
+        try {
+            if (!semaphore.tryAcquire(this.connectTimeout, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Too many concurrent requests, could not send request to " + endpoint);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to send request to " + endpoint);
+        }
+    }
+
+    private byte[] toBytes(String body) throws UnsupportedEncodingException {
+        if (body == null) {
+            return null;
+        }
+
+        return body.getBytes("UTF-8");
+    }
+}
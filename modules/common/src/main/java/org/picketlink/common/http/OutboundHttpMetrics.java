@@ -0,0 +1,135 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.common.http;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Latency and error statistics of the requests sent by an {@link OutboundHttpClient}, by host.</p>
+ *
+ * <p>A host is identified by the scheme, host name and port of the requested URL, like
+ * <code>https://graph.facebook.com:443</code>. Paths are left out, as they often carry identifiers and would make the
+ * number of statistics grow without bound.</p>
+ */
+public class OutboundHttpMetrics {
+
+    private final ConcurrentMap<String, HostStatistics> statistics = new ConcurrentHashMap<String, HostStatistics>();
+
+    void record(String host, long elapsedNanos, boolean failed) {
+        HostStatistics hostStatistics = this.statistics.get(host);
+
+        if (hostStatistics == null) {
+            HostStatistics newStatistics = new HostStatistics();
+
+            hostStatistics = this.statistics.putIfAbsent(host, newStatistics);
+
+            if (hostStatistics == null) {
+                hostStatistics = newStatistics;
+            }
+        }
+
+        hostStatistics.record(elapsedNanos, failed);
+    }
+
+    /**
+     * @param host the scheme, host name and port, like <code>https://graph.facebook.com:443</code>
+     * @return the statistics of the given host, or null if no request was sent to it
+     */
+    public HostStatistics getStatistics(String host) {
+        return this.statistics.get(host);
+    }
+
+    /**
+     * @return the statistics of all the hosts
+     */
+    public Map<String, HostStatistics> getStatistics() {
+        return Collections.unmodifiableMap(this.statistics);
+    }
+
+    public void reset() {
+        this.statistics.clear();
+    }
+
+    public static class HostStatistics {
+
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong totalTime = new AtomicLong();
+        private final AtomicLong maxTime = new AtomicLong();
+
+        void record(long elapsedNanos, boolean failed) {
+            this.requests.incrementAndGet();
+            this.totalTime.addAndGet(elapsedNanos);
+
+            if (failed) {
+                this.failures.incrementAndGet();
+            }
+
+            long max = this.maxTime.get();
+
+            while (elapsedNanos > max && !this.maxTime.compareAndSet(max, elapsedNanos)) {
+                max = this.maxTime.get();
+            }
+        }
+
+        /**
+         * @return the number of requests, including the failed ones
+         */
+        public long getRequests() {
+            return this.requests.get();
+        }
+
+        /**
+         * @return the number of requests that failed with an I/O error or an error status code
+         */
+        public long getFailures() {
+            return this.failures.get();
+        }
+
+        /**
+         * @return the average time between sending a request and closing its response, in milliseconds
+         */
+        public long getAverageTime() {
+            long requests = this.requests.get();
+
+            if (requests == 0) {
+                return 0;
+            }
+
+            return TimeUnit.NANOSECONDS.toMillis(this.totalTime.get() / requests);
+        }
+
+        /**
+         * @return the longest time between sending a request and closing its response, in milliseconds
+         */
+        public long getMaxTime() {
+            return TimeUnit.NANOSECONDS.toMillis(this.maxTime.get());
+        }
+
+        @Override
+        public String toString() {
+            return "requests=" + getRequests() + ", failures=" + getFailures() + ", averageTime=" + getAverageTime()
+                + "ms, maxTime=" + getMaxTime() + "ms";
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.common.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>The response to a request sent by an {@link OutboundHttpClient}.</p>
+ *
+ * <p>A response must be closed, either directly or by closing the stream returned by {@link #getInputStream()}. Closing
+ * the response reads what is left of the body, so that the underlying connection can be kept alive and reused for
+ * another request to the same host.</p>
+ */
+public class OutboundHttpResponse implements Closeable {
+
+    // bodies left with more unread bytes are not worth draining, their connection is closed instead
+    private static final int MAX_DRAINED_BYTES = 64 * 1024;
+
+    private final OutboundHttpClient client;
+    private final HttpURLConnection connection;
+    private final int statusCode;
+    private final InputStream rawBody;
+    private final InputStream body;
+    private final String host;
+    private final long startTime;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    OutboundHttpResponse(OutboundHttpClient client, HttpURLConnection connection, int statusCode, InputStream body,
+                         String host, long startTime) {
+        this.client = client;
+        this.connection = connection;
+        this.statusCode = statusCode;
+        this.host = host;
+        this.startTime = startTime;
+
+        if (body == null) {
+            body = new ByteArrayInputStream(new byte[0]);
+        }
+
+        this.rawBody = body;
+        this.body = new FilterInputStream(body) {
+            @Override
+            public void close() throws IOException {
+                OutboundHttpResponse.this.close();
+            }
+        };
+    }
+
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+    public String getStatusMessage() {
+        try {
+            return this.connection.getResponseMessage();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public String getHeader(String name) {
+        return this.connection.getHeaderField(name);
+    }
+
+    public String getContentType() {
+        return this.connection.getContentType();
+    }
+
+    /**
+     * <p>Returns the body of the response, or the error body if the status code is 400 or above. Closing the stream
+     * closes the response.</p>
+     *
+     * @return
+     */
+    public InputStream getInputStream() {
+        return this.body;
+    }
+
+    /**
+     * <p>Reads the whole body using the charset of the response, or UTF-8 if none was given, and closes the
+     * response.</p>
+     *
+     * @return
+     * @throws IOException
+     */
+    public String getContentAsString() throws IOException {
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+
+            while ((read = this.body.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+
+            return content.toString(getCharset());
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * <p>Closes the response. The rest of the body is read so that the connection can be reused.</p>
+     */
+    @Override
+    public void close() {
+        if (!this.closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        boolean failed = this.statusCode >= 400;
+
+        try {
+            byte[] buffer = new byte[4096];
+            int drained = 0;
+            int read;
+
+            // drain the body to keep the connection alive
+            while (drained < MAX_DRAINED_BYTES && (read = this.rawBody.read(buffer)) != -1) {
+                drained += read;
+            }
+        } catch (IOException e) {
+            failed = true;
+        } finally {
+            try {
+                this.rawBody.close();
+            } catch (IOException ignore) {
+            }
+
+            this.client.release(this.host, System.nanoTime() - this.startTime, failed);
+        }
+    }
+
+    private String getCharset() {
+        String contentType = getContentType();
+
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                parameter = parameter.trim();
+
+                if (parameter.toLowerCase().startsWith("charset=")) {
+                    return parameter.substring("charset=".length()).replace("\"", "");
+                }
+            }
+        }
+
+        return "UTF-8";
+    }
+}
@@ -89,7 +89,10 @@ class FieldPropertyImpl<V> implements FieldProperty<V> {
 
     @Override
     public void setAccessible() {
-        Reflections.setAccessible(field);
+        // avoid the privileged action when the field was already made accessible
+        if (!field.isAccessible()) {
+            Reflections.setAccessible(field);
+        }
     }
 
     @Override
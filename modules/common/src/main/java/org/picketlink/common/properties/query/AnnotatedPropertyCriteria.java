@@ -42,4 +42,15 @@ public class AnnotatedPropertyCriteria implements PropertyCriteria {
         return m.isAnnotationPresent(annotationClass);
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof AnnotatedPropertyCriteria
+                && this.annotationClass.equals(((AnnotatedPropertyCriteria) obj).annotationClass);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.annotationClass.hashCode();
+    }
+
 }
@@ -40,4 +40,21 @@ public class PropertyQueries {
         return new PropertyQuery<V>(targetClass);
     }
 
+    /**
+     * Discards the cached results of all queries
+     */
+    public static void clearCache() {
+        PropertyQueryCache.clear();
+    }
+
+    /**
+     * Discards the cached results of the queries whose target class was loaded by the given class loader or one of its
+     * children, for instance when the application that owns the class loader is undeployed
+     *
+     * @param classLoader
+     */
+    public static void clearCache(ClassLoader classLoader) {
+        PropertyQueryCache.clear(classLoader);
+    }
+
 }
@@ -37,7 +37,8 @@ import java.util.Map;
  * or inherited from any of its superclasses. For properties that are exposed via a method, the property must be a
  * JavaBean style property, i.e. it must provide both an accessor and mutator method according to the JavaBean
  * specification. </p> <p/> <p> This class is not thread-safe, however the result returned by the getResultList() method
- * is. </p>
+ * is. </p> <p/> <p> Results of queries using the criteria provided by this package are cached by target class, so the
+ * members of a class are only scanned once for each set of criteria. </p>
  *
  * @see PropertyQueries
  * @see PropertyCriteria
@@ -155,6 +156,16 @@ public class PropertyQuery<V> {
      * @return the results, or an empty list if there are no results
      */
     private List<Property<V>> getResultList(boolean writable) {
+        boolean cacheable = PropertyQueryCache.isCacheable(this.criteria);
+
+        if (cacheable) {
+            List<Property<V>> result = PropertyQueryCache.get(this.targetClass, this.criteria, writable);
+
+            if (result != null) {
+                return result;
+            }
+        }
+
         Map<String, PropertyAdapter<V>> adapters = new HashMap<String, PropertyAdapter<V>>();
 
         // First check public accessor methods (we ignore private methods)
@@ -212,7 +223,13 @@ public class PropertyQuery<V> {
             cls = cls.getSuperclass();
         }
 
-        return Collections.unmodifiableList(new ArrayList<Property<V>>(adapters.values()));
+        List<Property<V>> result = Collections.unmodifiableList(new ArrayList<Property<V>>(adapters.values()));
+
+        if (cacheable) {
+            PropertyQueryCache.put(this.targetClass, this.criteria, writable, result);
+        }
+
+        return result;
     }
 
 }
@@ -0,0 +1,207 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.picketlink.common.properties.query;
+
+import org.picketlink.common.properties.Property;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Caches the results of {@link PropertyQuery} by target class and criteria, so the members of a class are only
+ * scanned once for a given set of criteria.</p>
+ *
+ * <p>Only queries using the criteria provided by this package are cached, as they can be compared by value.</p>
+ *
+ * <p>The classes visible from the class loader of PicketLink live as long as the cache and are kept in a concurrent
+ * map, so their lookups do not lock. The classes of applications are weakly referenced keys of a synchronized map,
+ * and their results are softly referenced, as they refer to the members, and so to the class, themselves. The cache
+ * never keeps an undeployed application loaded: its entries go away once the class loader is no longer used, or right
+ * away with {@link PropertyQueries#clearCache(ClassLoader)}.</p>
+ */
+class PropertyQueryCache {
+
+    private static final ClassLoader CACHE_CLASS_LOADER = PropertyQueryCache.class.getClassLoader();
+
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<Key, List<?>>> resultsByClass =
+            new ConcurrentHashMap<Class<?>, ConcurrentMap<Key, List<?>>>();
+
+    private static final Map<Class<?>, SoftReference<ConcurrentMap<Key, List<?>>>> resultsByApplicationClass =
+            Collections.synchronizedMap(new WeakHashMap<Class<?>, SoftReference<ConcurrentMap<Key, List<?>>>>());
+
+    private PropertyQueryCache() {
+    }
+
+    /**
+     * <p>Indicates if the results of a query with the given criteria can be cached.</p>
+     *
+     * @param criteria
+     * @return
+     */
+    static boolean isCacheable(List<PropertyCriteria> criteria) {
+        for (PropertyCriteria criterion : criteria) {
+            Class<? extends PropertyCriteria> criteriaType = criterion.getClass();
+
+            if (!criteriaType.equals(AnnotatedPropertyCriteria.class)
+                    && !criteriaType.equals(NamedPropertyCriteria.class)
+                    && !criteriaType.equals(TypedPropertyCriteria.class)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> List<Property<V>> get(Class<?> targetClass, List<PropertyCriteria> criteria, boolean writable) {
+        ConcurrentMap<Key, List<?>> results = getResults(targetClass);
+
+        if (results == null) {
+            return null;
+        }
+
+        return (List<Property<V>>) results.get(new Key(criteria, writable));
+    }
+
+    static <V> void put(Class<?> targetClass, List<PropertyCriteria> criteria, boolean writable,
+            List<Property<V>> result) {
+        ConcurrentMap<Key, List<?>> results = getResults(targetClass);
+
+        if (results == null) {
+            ConcurrentMap<Key, List<?>> newResults = new ConcurrentHashMap<Key, List<?>>();
+
+            if (isVisibleFromCache(targetClass)) {
+                results = resultsByClass.putIfAbsent(targetClass, newResults);
+            } else {
+                synchronized (resultsByApplicationClass) {
+                    results = getResults(targetClass);
+
+                    if (results == null) {
+                        resultsByApplicationClass.put(targetClass,
+                                new SoftReference<ConcurrentMap<Key, List<?>>>(newResults));
+                    }
+                }
+            }
+
+            if (results == null) {
+                results = newResults;
+            }
+        }
+
+        results.put(new Key(new ArrayList<PropertyCriteria>(criteria), writable), result);
+    }
+
+    static void clear() {
+        resultsByClass.clear();
+        resultsByApplicationClass.clear();
+    }
+
+    static void clear(ClassLoader classLoader) {
+        clear(resultsByClass.keySet().iterator(), classLoader);
+
+        synchronized (resultsByApplicationClass) {
+            clear(resultsByApplicationClass.keySet().iterator(), classLoader);
+        }
+    }
+
+    private static ConcurrentMap<Key, List<?>> getResults(Class<?> targetClass) {
+        ConcurrentMap<Key, List<?>> results = resultsByClass.get(targetClass);
+
+        if (results == null) {
+            SoftReference<ConcurrentMap<Key, List<?>>> reference = resultsByApplicationClass.get(targetClass);
+
+            if (reference != null) {
+                results = reference.get();
+            }
+        }
+
+        return results;
+    }
+
+    private static void clear(Iterator<Class<?>> iterator, ClassLoader classLoader) {
+        while (iterator.hasNext()) {
+            if (isLoadedBy(iterator.next(), classLoader)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * <p>Indicates if the given class was loaded by the class loader of the cache or one of its parents.</p>
+     */
+    private static boolean isVisibleFromCache(Class<?> targetClass) {
+        ClassLoader classLoader = targetClass.getClassLoader();
+
+        if (classLoader == null) {
+            return true;
+        }
+
+        for (ClassLoader current = CACHE_CLASS_LOADER; current != null; current = current.getParent()) {
+            if (current == classLoader) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isLoadedBy(Class<?> targetClass, ClassLoader classLoader) {
+        for (ClassLoader current = targetClass.getClassLoader(); current != null; current = current.getParent()) {
+            if (current == classLoader) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static class Key {
+
+        private final List<PropertyCriteria> criteria;
+        private final boolean writable;
+
+        private Key(List<PropertyCriteria> criteria, boolean writable) {
+            this.criteria = criteria;
+            this.writable = writable;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+
+            return this.writable == other.writable && this.criteria.equals(other.criteria);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.criteria.hashCode() + (this.writable ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.common.util;
+
+import java.security.SecureRandom;
+
+/**
+ * <p>Generates UUIDs in their canonical string form.</p>
+ *
+ * <p>Unlike {@link java.util.UUID#randomUUID()}, which shares a single {@link SecureRandom} between all threads, threads
+ * are spread by their identifier over a few {@link SecureRandom}s, each reading the random bytes from a buffer that is
+ * refilled once consumed. They are held by this class rather than by the threads, so no state is left in the threads
+ * of a container once the application is undeployed.</p>
+ *
+ * <p>Two kinds of UUIDs are supported:</p>
+ *
+ * <ul>
+ *     <li>{@link #randomUUID()}: a version 4 UUID with 122 random bits, suitable for identifiers that must not be
+ *     predictable, like SAML message identifiers or nonces.</li>
+ *     <li>{@link #timeOrderedUUID()}: a version 7 UUID starting with the current time in milliseconds. Identifiers
+ *     generated later sort after the ones generated before, which keeps inserts at the end of database indexes.
+ *     Identifiers generated by the same thread in the same millisecond are ordered by a counter.</li>
+ * </ul>
+ */
+public class UUIDUtil {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final int BUFFER_SIZE = 512;
+
+    private static final Entropy[] entropies = new Entropy[Runtime.getRuntime().availableProcessors() * 2];
+
+    static {
+        for (int i = 0; i < entropies.length; i++) {
+            entropies[i] = new Entropy();
+        }
+    }
+
+    /**
+     * <p>Generates a random (version 4) UUID.</p>
+     *
+     * @return
+     */
+    public static String randomUUID() {
+        Entropy entropy = getEntropy();
+        long mostSigBits;
+        long leastSigBits;
+
+        synchronized (entropy) {
+            mostSigBits = entropy.nextLong();
+            leastSigBits = entropy.nextLong();
+        }
+
+        mostSigBits = (mostSigBits & ~0xF000L) | 0x4000L;
+        leastSigBits = (leastSigBits & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+
+        return format(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * <p>Generates a time-ordered (version 7) UUID.</p>
+     *
+     * @return
+     */
+    public static String timeOrderedUUID() {
+        Entropy entropy = getEntropy();
+        long mostSigBits;
+        long leastSigBits;
+
+        synchronized (entropy) {
+            long timestamp = System.currentTimeMillis();
+
+            if (timestamp > entropy.lastTimestamp) {
+                entropy.lastTimestamp = timestamp;
+                // start from a random value in the lower half, leaving room for the identifiers of this millisecond.
+                entropy.counter = entropy.nextLong() & 0x7FF;
+            } else {
+                // the clock did not move or moved backwards, keep ordering by the counter.
+                entropy.counter++;
+
+                if (entropy.counter > 0xFFF) {
+                    entropy.lastTimestamp++;
+                    entropy.counter = 0;
+                }
+            }
+
+            mostSigBits = (entropy.lastTimestamp << 16) | 0x7000L | entropy.counter;
+            leastSigBits = (entropy.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        }
+
+        return format(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * <p>A thread always gets the same instance, so its time-ordered UUIDs stay ordered.</p>
+     */
+    private static Entropy getEntropy() {
+        return entropies[(int) (Thread.currentThread().getId() % entropies.length)];
+    }
+
+    private static String format(long mostSigBits, long leastSigBits) {
+        char[] chars = new char[36];
+
+        writeHex(chars, 0, mostSigBits >>> 32, 8);
+        chars[8] = '-';
+        writeHex(chars, 9, mostSigBits >>> 16, 4);
+        chars[13] = '-';
+        writeHex(chars, 14, mostSigBits, 4);
+        chars[18] = '-';
+        writeHex(chars, 19, leastSigBits >>> 48, 4);
+        chars[23] = '-';
+        writeHex(chars, 24, leastSigBits, 12);
+
+        return new String(chars);
+    }
+
+    private static void writeHex(char[] chars, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    private static class Entropy {
+
+        private final SecureRandom random = new SecureRandom();
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position = BUFFER_SIZE;
+
+        private long lastTimestamp;
+        private long counter;
+
+        private long nextLong() {
+            if (this.position + 8 > BUFFER_SIZE) {
+                this.random.nextBytes(this.buffer);
+                this.position = 0;
+            }
+
+            long value = 0;
+
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (this.buffer[this.position++] & 0xFF);
+            }
+
+            return value;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.common.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class OutboundHttpClientTestCase {
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private final List<Integer> clientPorts = new CopyOnWriteArrayList<Integer>();
+    private String localhost;
+
+    @Before
+    public void onSetup() throws Exception {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newCachedThreadPool();
+
+        this.server.createContext("/ok", new TestHandler(200, "ok", 0));
+        this.server.createContext("/error", new TestHandler(500, "error", 0));
+        this.server.createContext("/slow", new TestHandler(200, "slow", 2000));
+        this.server.setExecutor(this.executor);
+        this.server.start();
+
+        this.localhost = "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    @After
+    public void onFinish() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testConnectionIsReused() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient();
+
+        for (int i = 0; i < 3; i++) {
+            OutboundHttpResponse response = client.get(this.localhost + "/ok", null);
+
+            assertEquals(200, response.getStatusCode());
+            assertEquals("ok", response.getContentAsString());
+        }
+
+        assertEquals(3, this.clientPorts.size());
+        assertEquals(this.clientPorts.get(0), this.clientPorts.get(1));
+        assertEquals(this.clientPorts.get(0), this.clientPorts.get(2));
+    }
+
+    @Test
+    public void testUnreadBodyIsDrainedOnClose() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient();
+
+        client.get(this.localhost + "/ok", null).close();
+        client.get(this.localhost + "/ok", null).getInputStream().close();
+
+        assertEquals(2, this.clientPorts.size());
+        assertEquals(this.clientPorts.get(0), this.clientPorts.get(1));
+    }
+
+    @Test
+    public void testMetricsByHost() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient();
+        String otherHost = "http://localhost:" + this.server.getAddress().getPort();
+
+        client.get(this.localhost + "/ok", null).close();
+        client.get(this.localhost + "/ok?id=1", null).close();
+        client.post(otherHost + "/ok", null, "text/plain", "body").close();
+
+        OutboundHttpMetrics metrics = client.getMetrics();
+
+        assertEquals(2, metrics.getStatistics().size());
+        assertEquals(2, metrics.getStatistics(this.localhost).getRequests());
+        assertEquals(0, metrics.getStatistics(this.localhost).getFailures());
+        assertEquals(1, metrics.getStatistics(otherHost).getRequests());
+
+        metrics.reset();
+
+        assertNull(metrics.getStatistics(this.localhost));
+    }
+
+    @Test
+    public void testErrorStatusIsDrainedAndClosed() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient();
+        OutboundHttpResponse response = client.get(this.localhost + "/error", null);
+
+        assertEquals(500, response.getStatusCode());
+
+        response.close();
+
+        // closing again does not record the request twice
+        response.close();
+
+        OutboundHttpMetrics.HostStatistics statistics = client.getMetrics().getStatistics(this.localhost);
+
+        assertEquals(1, statistics.getRequests());
+        assertEquals(1, statistics.getFailures());
+
+        // the error body was read, the connection is kept alive
+        assertEquals("ok", client.get(this.localhost + "/ok", null).getContentAsString());
+        assertEquals(this.clientPorts.get(0), this.clientPorts.get(1));
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        // a single request at a time, so a request that timed out must give its permit back
+        OutboundHttpClient client = new OutboundHttpClient(1000, 200, 1, 1);
+
+        try {
+            client.get(this.localhost + "/slow", null);
+            fail("Request should time out.");
+        } catch (SocketTimeoutException expected) {
+        }
+
+        OutboundHttpMetrics.HostStatistics statistics = client.getMetrics().getStatistics(this.localhost);
+
+        assertNotNull(statistics);
+        assertEquals(1, statistics.getRequests());
+        assertEquals(1, statistics.getFailures());
+
+        assertEquals("ok", client.get(this.localhost + "/ok", null).getContentAsString());
+    }
+
+    @Test
+    public void testConcurrentRequestsAreBounded() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient(200, 10000, 1, 1);
+        OutboundHttpResponse response = client.get(this.localhost + "/ok", null);
+
+        try {
+            client.get(this.localhost + "/ok", null);
+            fail("Request should wait for the open response.");
+        } catch (IOException expected) {
+        } finally {
+            response.close();
+        }
+
+        client.get(this.localhost + "/ok", null).close();
+    }
+
+    private class TestHandler implements HttpHandler {
+
+        private final int statusCode;
+        private final byte[] body;
+        private final long delay;
+
+        private TestHandler(int statusCode, String body, long delay) throws IOException {
+            this.statusCode = statusCode;
+            this.body = body.getBytes("UTF-8");
+            this.delay = delay;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+
+            InputStream requestBody = exchange.getRequestBody();
+
+            while (requestBody.read() != -1) {
+            }
+
+            if (this.delay > 0) {
+                try {
+                    Thread.sleep(this.delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(this.statusCode, this.body.length);
+
+            OutputStream responseBody = exchange.getResponseBody();
+
+            try {
+                responseBody.write(this.body);
+            } finally {
+                responseBody.close();
+            }
+        }
+    }
+}
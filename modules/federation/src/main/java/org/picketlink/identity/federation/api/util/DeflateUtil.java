@@ -17,23 +17,60 @@
  */
 package org.picketlink.identity.federation.api.util;
 
+import org.picketlink.common.exceptions.ProcessingException;
+import org.picketlink.common.util.SystemPropertiesUtil;
+
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
-import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
 /**
  * Encoder of saml messages based on DEFLATE compression
  *
+ * <p>The native state of deflaters and inflaters is expensive to create and is only released when they are ended, so
+ * a few of them are kept and reused. Messages are compressed and decompressed into a buffer owned by the current
+ * thread, only the result is copied to a new array.</p>
+ *
+ * <p>A small deflated message can inflate to a very large one, so decoding stops once the inflated message exceeds
+ * {@link #MAX_INFLATED_SIZE} bytes, 4 MB by default.</p>
+ *
  * @author Anil.Saldhana@redhat.com
  * @since Dec 11, 2008
  */
 public class DeflateUtil {
 
+    /**
+     * The system property with the maximum size, in bytes, of a decoded message
+     */
+    public static final String MAX_INFLATED_SIZE = "picketlink.deflate.max_inflated_size";
+
+    private static final int DEFAULT_MAX_INFLATED_SIZE = 4 * 1024 * 1024;
+
+    private static final int MAX_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    // buffers grown beyond this size by large messages are not kept
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+    private static final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<Deflater>();
+
+    private static final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<Inflater>();
+
+    private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
     /**
      * Apply DEFLATE encoding
      *
@@ -44,13 +81,37 @@ public class DeflateUtil {
      * @throws IOException
      */
     public static byte[] encode(byte[] message) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        Deflater deflater = new Deflater(Deflater.DEFLATED, true);
-        DeflaterOutputStream deflaterStream = new DeflaterOutputStream(baos, deflater);
-        deflaterStream.write(message);
-        deflaterStream.finish();
+        Deflater deflater = deflaters.poll();
+
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFLATED, true);
+        }
+
+        try {
+            deflater.setInput(message);
+            deflater.finish();
+
+            byte[] buffer = buffers.get();
+            int length = 0;
+
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = grow(buffer);
+                }
+
+                length = length + deflater.deflate(buffer, length, buffer.length - length);
+            }
 
-        return baos.toByteArray();
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.reset();
+
+            if (deflaters.size() < MAX_POOL_SIZE) {
+                deflaters.offer(deflater);
+            } else {
+                deflater.end();
+            }
+        }
     }
 
     /**
@@ -72,9 +133,93 @@ public class DeflateUtil {
      * @param msgToDecode the message that needs decoding
      *
      * @return
+     *
+     * @throws ProcessingException if the decoded message is larger than the maximum size
      */
-    public static InputStream decode(byte[] msgToDecode) {
-        ByteArrayInputStream bais = new ByteArrayInputStream(msgToDecode);
-        return new InflaterInputStream(bais, new Inflater(true));
+    public static InputStream decode(byte[] msgToDecode) throws ProcessingException {
+        int maxInflatedSize = getMaxInflatedSize();
+        Inflater inflater = inflaters.poll();
+
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+
+        try {
+            inflater.setInput(msgToDecode);
+
+            byte[] buffer = buffers.get();
+            int length = 0;
+
+            while (!inflater.finished()) {
+                if (length == buffer.length) {
+                    // one byte more than allowed tells whether the message is too large
+                    buffer = grow(buffer, (int) Math.min(buffer.length * 2L, maxInflatedSize + 1L));
+                }
+
+                int inflated = inflater.inflate(buffer, length, buffer.length - length);
+
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return decodeAsStream(msgToDecode);
+                }
+
+                length = length + inflated;
+
+                if (length > maxInflatedSize) {
+                    throw new ProcessingException("Decoded message is larger than the maximum size of " + maxInflatedSize
+                        + " bytes.");
+                }
+            }
+
+            return new ByteArrayInputStream(Arrays.copyOf(buffer, length));
+        } catch (DataFormatException e) {
+            return decodeAsStream(msgToDecode);
+        } finally {
+            inflater.reset();
+
+            if (inflaters.size() < MAX_POOL_SIZE) {
+                inflaters.offer(inflater);
+            } else {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Invalid or truncated messages are decoded while they are read, so that the error is reported to the reader. They
+     * only inflate to what was already inflated, which is within the maximum size.
+     */
+    private static InputStream decodeAsStream(byte[] msgToDecode) {
+        return new InflaterInputStream(new ByteArrayInputStream(msgToDecode), new Inflater(true));
+    }
+
+    private static int getMaxInflatedSize() {
+        String value = SystemPropertiesUtil.getSystemProperty(MAX_INFLATED_SIZE, null);
+
+        if (value != null) {
+            try {
+                int maxInflatedSize = Integer.parseInt(value.trim());
+
+                if (maxInflatedSize > 0) {
+                    return maxInflatedSize;
+                }
+            } catch (NumberFormatException ignore) {
+            }
+        }
+
+        return DEFAULT_MAX_INFLATED_SIZE;
+    }
+
+    private static byte[] grow(byte[] buffer) {
+        return grow(buffer, buffer.length * 2);
+    }
+
+    private static byte[] grow(byte[] buffer, int size) {
+        byte[] grown = Arrays.copyOf(buffer, size);
+
+        if (grown.length <= MAX_BUFFER_SIZE) {
+            buffers.set(grown);
+        }
+
+        return grown;
     }
-}
\ No newline at end of file
+}
@@ -18,6 +18,8 @@
 package org.picketlink.identity.federation.core.pdp;
 
 import org.jboss.security.xacml.core.JBossPDP;
+import org.jboss.security.xacml.core.model.context.RequestType;
+import org.jboss.security.xacml.core.model.context.ResultType;
 import org.jboss.security.xacml.interfaces.PolicyDecisionPoint;
 import org.picketlink.common.PicketLinkLogger;
 import org.picketlink.common.PicketLinkLoggerFactory;
@@ -31,21 +33,21 @@ import org.picketlink.identity.federation.saml.v2.protocol.XACMLAuthzDecisionQue
 import org.w3c.dom.Document;
 
 import javax.annotation.Resource;
-import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.ws.Provider;
 import javax.xml.ws.WebServiceContext;
 import javax.xml.ws.WebServiceProvider;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.security.PrivilegedActionException;
 
 /**
- * SOAP 1.2 based XACML PDP that accepts SAML requests
+ * SOAP 1.2 based XACML PDP that accepts SAML requests.
+ *
+ * Decisions are cached by a {@link XACMLDecisionCache}, call {@link #reloadPolicies()} when the policies change.
  *
  * @author Anil.Saldhana@redhat.com
  * @since Jan 24, 2011
@@ -64,6 +66,8 @@ public class SOAPSAMLXACMLPDP implements Provider<Source> {
 
     protected String issuer = "PicketLinkPDP";
 
+    protected XACMLDecisionCache decisionCache = new XACMLDecisionCache();
+
     public SOAPSAMLXACMLPDP() {
         try {
             pdp = getPDP();
@@ -81,13 +85,23 @@ public class SOAPSAMLXACMLPDP implements Provider<Source> {
             }
 
             XACMLAuthzDecisionQueryType xacmlQuery = SOAPSAMLXACMLUtil.getXACMLQueryType(doc);
-            ResponseType samlResponseType = SOAPSAMLXACMLUtil.handleXACMLQuery(pdp, issuer, xacmlQuery);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            XMLStreamWriter xmlStreamWriter = StaxUtil.getXMLStreamWriter(baos);
+            RequestType requestType = xacmlQuery.getRequest();
+            String cacheKey = decisionCache.createKey(doc);
+            ResultType resultType = decisionCache.get(cacheKey);
 
-            SAMLResponseWriter samlResponseWriter = new SAMLResponseWriter(xmlStreamWriter);
+            if (resultType == null) {
+                long policyVersion = decisionCache.getPolicyVersion();
+
+                resultType = SOAPSAMLXACMLUtil.evaluate(pdp, requestType);
+                decisionCache.put(cacheKey, resultType, policyVersion);
+            }
+
+            ResponseType samlResponseType = SOAPSAMLXACMLUtil.createSAMLResponse(issuer, requestType, resultType);
+            DOMResult domResult = new DOMResult(DocumentUtil.createDocument());
+
+            SAMLResponseWriter samlResponseWriter = new SAMLResponseWriter(StaxUtil.getXMLStreamWriter(domResult));
             samlResponseWriter.write(samlResponseType);
-            Document responseDocument = DocumentUtil.getDocument(new ByteArrayInputStream(baos.toByteArray()));
+            Document responseDocument = (Document) domResult.getNode();
 
             return new DOMSource(responseDocument.getDocumentElement());
         } catch (Exception e) {
@@ -95,6 +109,19 @@ public class SOAPSAMLXACMLPDP implements Provider<Source> {
         }
     }
 
+    /**
+     * Reloads the policies and discards the cached decisions.
+     */
+    public void reloadPolicies() {
+        try {
+            pdp = getPDP();
+        } catch (PrivilegedActionException e) {
+            throw new RuntimeException(e);
+        }
+
+        decisionCache.invalidate();
+    }
+
     private PolicyDecisionPoint getPDP() throws PrivilegedActionException {
         SystemPropertiesUtil.ensure();
 
@@ -0,0 +1,330 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.identity.federation.core.pdp;
+
+import org.jboss.security.xacml.core.model.context.ResultType;
+import org.picketlink.common.PicketLinkLogger;
+import org.picketlink.common.PicketLinkLoggerFactory;
+import org.picketlink.common.constants.JBossSAMLURIConstants;
+import org.picketlink.common.util.Base64;
+import org.picketlink.common.util.SystemPropertiesUtil;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Caches the XACML decisions of a {@link org.jboss.security.xacml.interfaces.PolicyDecisionPoint}.
+ * </p>
+ * <p>
+ * Decisions are keyed by a hash of the normalized XACML request context: the order of the subjects, resources,
+ * attributes and XML attributes, namespace prefixes and insignificant white space do not change the key. A decision is
+ * reused for {@link #TIME_TO_LIVE} milliseconds, or until {@link #invalidate()} is called because the policies changed.
+ * </p>
+ * <p>
+ * The cache can be tuned with the following system properties:
+ * </p>
+ * <ul>
+ *     <li>{@link #TIME_TO_LIVE}: milliseconds a decision is reused. 0 disables the cache (default 60000).</li>
+ *     <li>{@link #MAX_SIZE}: maximum number of cached decisions (default 10000).</li>
+ * </ul>
+ */
+public class XACMLDecisionCache {
+
+    private static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
+
+    public static final String TIME_TO_LIVE = "picketlink.xacml.decision.cache.timeToLive";
+
+    public static final String MAX_SIZE = "picketlink.xacml.decision.cache.maxSize";
+
+    static final long DEFAULT_TIME_TO_LIVE = 60000;
+
+    static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final ConcurrentMap<String, CachedDecision> decisions = new ConcurrentHashMap<String, CachedDecision>();
+
+    private final AtomicLong policyVersion = new AtomicLong();
+
+    private volatile long timeToLive;
+
+    private volatile int maxSize;
+
+    public XACMLDecisionCache() {
+        this(getLongProperty(TIME_TO_LIVE, DEFAULT_TIME_TO_LIVE), (int) getLongProperty(MAX_SIZE, DEFAULT_MAX_SIZE));
+    }
+
+    public XACMLDecisionCache(long timeToLive, int maxSize) {
+        this.timeToLive = timeToLive;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * <p>
+     * Creates the key of the XACML request context found in the given node.
+     * </p>
+     *
+     * @param node a XACML {@code Request} element or a node that contains one, like a
+     * {@code XACMLAuthzDecisionQuery}
+     *
+     * @return the key, or null if the cache is disabled or there is no XACML request in the node
+     */
+    public String createKey(Node node) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        Element request = findRequest(node);
+
+        if (request == null) {
+            return null;
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(normalize(request).getBytes("UTF-8"));
+
+            return Base64.encodeBytes(hash, Base64.DONT_BREAK_LINES);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param key a key created by {@link #createKey(Node)}
+     *
+     * @return the cached decision, or null if there is none or it expired or the policies changed since it was made
+     */
+    public ResultType get(String key) {
+        if (key == null) {
+            return null;
+        }
+
+        CachedDecision decision = this.decisions.get(key);
+
+        if (decision == null) {
+            return null;
+        }
+
+        if (!decision.isValid(this.policyVersion.get(), System.currentTimeMillis())) {
+            this.decisions.remove(key, decision);
+            return null;
+        }
+
+        return decision.result;
+    }
+
+    /**
+     * <p>
+     * Caches a decision. Decisions made while the policies were changing must be cached with the policy version read
+     * before the evaluation, see {@link #getPolicyVersion()}.
+     * </p>
+     *
+     * @param key a key created by {@link #createKey(Node)}
+     * @param result the decision
+     * @param policyVersion the policy version when the evaluation started
+     */
+    public void put(String key, ResultType result, long policyVersion) {
+        if (key == null || result == null || !isEnabled()) {
+            return;
+        }
+
+        if (this.decisions.size() >= this.maxSize) {
+            purge();
+        }
+
+        this.decisions.put(key, new CachedDecision(result, policyVersion, System.currentTimeMillis() + this.timeToLive));
+    }
+
+    /**
+     * @return the current policy version, incremented by {@link #invalidate()}
+     */
+    public long getPolicyVersion() {
+        return this.policyVersion.get();
+    }
+
+    /**
+     * Discards all cached decisions, should be called when the policies change.
+     */
+    public void invalidate() {
+        this.policyVersion.incrementAndGet();
+        this.decisions.clear();
+    }
+
+    public boolean isEnabled() {
+        return this.timeToLive > 0 && this.maxSize > 0;
+    }
+
+    public int size() {
+        return this.decisions.size();
+    }
+
+    public long getTimeToLive() {
+        return this.timeToLive;
+    }
+
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Removes the decisions that can no longer be used. If the cache is still full, arbitrary decisions are removed
+     * until there is room for a new one.
+     */
+    private void purge() {
+        long now = System.currentTimeMillis();
+        long version = this.policyVersion.get();
+        Iterator<Map.Entry<String, CachedDecision>> iterator = this.decisions.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            if (!iterator.next().getValue().isValid(version, now)) {
+                iterator.remove();
+            }
+        }
+
+        iterator = this.decisions.entrySet().iterator();
+
+        while (this.decisions.size() >= this.maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static Element findRequest(Node node) {
+        String namespace = JBossSAMLURIConstants.XACML_NSURI.get();
+
+        if (node instanceof Element && isRequest((Element) node, namespace)) {
+            return (Element) node;
+        }
+
+        NodeList requests;
+
+        if (node instanceof Element) {
+            requests = ((Element) node).getElementsByTagNameNS(namespace, "Request");
+        } else if (node instanceof org.w3c.dom.Document) {
+            requests = ((org.w3c.dom.Document) node).getElementsByTagNameNS(namespace, "Request");
+        } else {
+            return null;
+        }
+
+        return requests.getLength() > 0 ? (Element) requests.item(0) : null;
+    }
+
+    private static boolean isRequest(Element element, String namespace) {
+        return namespace.equals(element.getNamespaceURI()) && "Request".equals(element.getLocalName());
+    }
+
+    /**
+     * Writes the element in a form that does not depend on the order of its attributes and child elements, nor on the
+     * namespace prefixes and white space.
+     */
+    private static String normalize(Element element) {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append('{').append(element.getNamespaceURI()).append('}').append(element.getLocalName());
+
+        NamedNodeMap attributes = element.getAttributes();
+        List<String> normalizedAttributes = new ArrayList<String>(attributes.getLength());
+
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            String name = attribute.getLocalName() != null ? attribute.getLocalName() : attribute.getName();
+
+            if ("xmlns".equals(attribute.getPrefix()) || "xmlns".equals(name)) {
+                continue;
+            }
+
+            normalizedAttributes.add('{' + String.valueOf(attribute.getNamespaceURI()) + '}' + name + '='
+                + attribute.getValue());
+        }
+
+        Collections.sort(normalizedAttributes);
+        builder.append(normalizedAttributes);
+
+        List<String> children = new ArrayList<String>();
+        StringBuilder text = new StringBuilder();
+
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element) {
+                children.add(normalize((Element) child));
+            } else if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                text.append(child.getNodeValue());
+            }
+        }
+
+        Collections.sort(children);
+
+        builder.append('"').append(text.toString().trim()).append('"').append(children);
+
+        return builder.toString();
+    }
+
+    private static long getLongProperty(String name, long defaultValue) {
+        String value = SystemPropertiesUtil.getSystemProperty(name, null);
+
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                logger.cannotParseParameterValue(name, e);
+            }
+        }
+
+        return defaultValue;
+    }
+
+    private static class CachedDecision {
+
+        private final ResultType result;
+        private final long policyVersion;
+        private final long expires;
+
+        private CachedDecision(ResultType result, long policyVersion, long expires) {
+            this.result = result;
+            this.policyVersion = policyVersion;
+            this.expires = expires;
+        }
+
+        private boolean isValid(long currentPolicyVersion, long now) {
+            return this.policyVersion == currentPolicyVersion && this.expires > now;
+        }
+    }
+}
@@ -19,11 +19,15 @@ package org.picketlink.identity.federation.core.saml.v2.common;
 
 import org.picketlink.common.PicketLinkLogger;
 import org.picketlink.common.PicketLinkLoggerFactory;
-
-import java.util.UUID;
+import org.picketlink.common.util.SystemPropertiesUtil;
+import org.picketlink.common.util.UUIDUtil;
 
 /**
- * Utility class that generates unique IDs
+ * Utility class that generates unique IDs.
+ *
+ * IDs are random UUIDs generated with a {@link java.security.SecureRandom} per thread. Setting the
+ * {@link #ID_GENERATOR} system property to {@link #TIME_ORDERED} generates UUIDs that sort by creation time instead,
+ * which is useful when IDs are stored in database indexes.
  *
  * @author Anil.Saldhana@redhat.com
  * @since Jan 5, 2009
@@ -32,11 +36,37 @@ public class IDGenerator {
 
     private static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
 
+    public static final String ID_GENERATOR = "picketlink.federation.id.generator";
+
+    public static final String RANDOM = "random";
+
+    public static final String TIME_ORDERED = "time-ordered";
+
+    private static volatile boolean timeOrdered = TIME_ORDERED.equalsIgnoreCase(
+        SystemPropertiesUtil.getSystemProperty(ID_GENERATOR, RANDOM).trim());
+
     /*
      * Create a basic unique ID
      */
     public static String create() {
-        return UUID.randomUUID().toString();
+        if (timeOrdered) {
+            return UUIDUtil.timeOrderedUUID();
+        }
+
+        return UUIDUtil.randomUUID();
+    }
+
+    /**
+     * Selects the kind of IDs created by this class, overriding the {@link #ID_GENERATOR} system property.
+     *
+     * @param generator {@link #RANDOM} or {@link #TIME_ORDERED}
+     *
+     * @throws IllegalArgumentException when generator is null
+     */
+    public static void setGenerator(String generator) {
+        if (generator == null)
+            throw logger.nullArgumentError("generator");
+        timeOrdered = TIME_ORDERED.equalsIgnoreCase(generator.trim());
     }
 
     /**
@@ -109,6 +109,20 @@ public class SOAPSAMLXACMLUtil {
             ConfigurationException {
         RequestType requestType = xacmlRequest.getRequest();
 
+        return createSAMLResponse(issuer, requestType, evaluate(pdp, requestType));
+    }
+
+    /**
+     * Evaluates a XACML request context.
+     *
+     * @param pdp the policy decision point
+     * @param requestType the XACML request context
+     *
+     * @return the XACML decision
+     *
+     * @throws ProcessingException
+     */
+    public static ResultType evaluate(PolicyDecisionPoint pdp, RequestType requestType) throws ProcessingException {
         RequestContext requestContext = new JBossRequestContext();
         try {
             requestContext.setRequest(requestType);
@@ -119,8 +133,23 @@ public class SOAPSAMLXACMLUtil {
         // pdp evaluation is thread safe
         ResponseContext responseContext = pdp.evaluate(requestContext);
 
+        return responseContext.getResult();
+    }
+
+    /**
+     * Places a XACML decision in a SAML response.
+     *
+     * @param issuer the issuer of the SAML response
+     * @param requestType the XACML request context
+     * @param resultType the XACML decision
+     *
+     * @return the SAML response
+     *
+     * @throws ConfigurationException
+     */
+    public static org.picketlink.identity.federation.saml.v2.protocol.ResponseType createSAMLResponse(String issuer,
+            RequestType requestType, ResultType resultType) throws ConfigurationException {
         ResponseType responseType = new ResponseType();
-        ResultType resultType = responseContext.getResult();
         responseType.getResult().add(resultType);
 
         XACMLAuthzDecisionStatementType xacmlStatement = XACMLContextFactory.createXACMLAuthzDecisionStatementType(requestType,
@@ -104,10 +104,29 @@ public class SignatureUtil {
         if (signingKey == null)
             throw logger.nullArgumentError("signingKey");
 
+        return sign(stringToBeSigned.getBytes(), signingKey);
+    }
+
+    /**
+     * Sign the given octets using the private key
+     *
+     * @param contentToBeSigned
+     * @param signingKey
+     *
+     * @return
+     *
+     * @throws GeneralSecurityException
+     */
+    public static byte[] sign(byte[] contentToBeSigned, PrivateKey signingKey) throws GeneralSecurityException {
+        if (contentToBeSigned == null)
+            throw logger.nullArgumentError("contentToBeSigned");
+        if (signingKey == null)
+            throw logger.nullArgumentError("signingKey");
+
         String algo = signingKey.getAlgorithm();
         Signature sig = getSignature(algo);
         sig.initSign(signingKey);
-        sig.update(stringToBeSigned.getBytes());
+        sig.update(contentToBeSigned);
         return sig.sign();
     }
 
@@ -217,6 +217,20 @@ public abstract class AbstractSecurityTokenProvider implements SecurityTokenProv
         }
     }
 
+    /**
+     * @return the {@link SecurityTokenRegistry} where this provider keeps the issued tokens
+     */
+    public SecurityTokenRegistry getTokenRegistry() {
+        return this.tokenRegistry;
+    }
+
+    /**
+     * @return the {@link RevocationRegistry} where this provider keeps the ids of the canceled tokens
+     */
+    public RevocationRegistry getRevocationRegistry() {
+        return this.revocationRegistry;
+    }
+
     protected long getClockSkewInMillis() {
         String clockSkew = this.properties.get("CLOCK_SKEW");
 
@@ -0,0 +1,463 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.identity.federation.core.sts.registry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Base class for the {@link SecurityTokenRegistry} implementations that store the tokens in a {@code (TOKEN_ID, TOKEN,
+ * CREATED_DATE)} table.
+ * </p>
+ * <p>
+ * Tokens are written right away by default. When {@code picketlink.sts.registry.batchSize} is greater than 1, added
+ * and removed tokens are kept in memory and written in batches: a batch is written when it reaches the batch size or
+ * when it is older than {@code picketlink.sts.registry.flushInterval} milliseconds (default 1000). Batched tokens are
+ * lost if the server stops before they are written, and other servers sharing the database do not see them until
+ * then. When a batch fails to be written, its tokens are written one at a time. The ones that still fail are retried
+ * with the next batch, and dropped after {@link #MAX_WRITE_ATTEMPTS} attempts. Tokens already in the table are not
+ * added again.
+ * </p>
+ * <p>
+ * When {@code picketlink.sts.registry.retention} is set, tokens created more than that many milliseconds ago are
+ * deleted every {@code picketlink.sts.registry.sweepInterval} milliseconds (default 60000). The table does not hold
+ * the expiration of the tokens, the retention must be longer than the lifetime of the tokens.
+ * </p>
+ */
+public abstract class AbstractJDBCTokenRegistry extends AbstractJDBCRegistry implements SecurityTokenRegistry {
+
+    /**
+     * The number of times the write of a batched token is attempted before it is dropped.
+     */
+    public static final int MAX_WRITE_ATTEMPTS = 3;
+
+    private static final int MAX_IN_PARAMETERS = 500;
+
+    private final String insertSQL;
+
+    private final String existsSQL;
+
+    private final String deleteSQL;
+
+    private final String selectSQL;
+
+    private final String purgeSQL;
+
+    private final int batchSize = (int) TokenRegistrySweeper.getLongProperty(TokenRegistrySweeper.BATCH_SIZE,
+        TokenRegistrySweeper.DEFAULT_BATCH_SIZE);
+
+    private final long retention = TokenRegistrySweeper.getLongProperty(TokenRegistrySweeper.RETENTION,
+        TokenRegistrySweeper.DEFAULT_RETENTION);
+
+    private final PendingTokenWrites pendingWrites = new PendingTokenWrites();
+
+    private final Object flushLock = new Object();
+
+    private final TokenRegistrySweeper.Task flusher = new TokenRegistrySweeper.Task() {
+        @Override
+        public void sweep() {
+            try {
+                flush();
+            } catch (IOException e) {
+                logger.error(e);
+            }
+        }
+    };
+
+    private final TokenRegistrySweeper.Task purger = new TokenRegistrySweeper.Task() {
+        @Override
+        public void sweep() {
+            try {
+                purgeExpiredTokens();
+            } catch (IOException e) {
+                logger.error(e);
+            }
+        }
+    };
+
+    protected AbstractJDBCTokenRegistry(String tableName, String jndiName) {
+        super(jndiName);
+        this.insertSQL = "INSERT INTO " + tableName + " (TOKEN_ID, TOKEN, CREATED_DATE) VALUES (?,?,?)";
+        this.deleteSQL = "DELETE FROM " + tableName + " WHERE TOKEN_ID = ?";
+        this.selectSQL = "SELECT TOKEN FROM " + tableName + " WHERE TOKEN_ID = ?";
+        this.existsSQL = "SELECT TOKEN_ID FROM " + tableName + " WHERE TOKEN_ID IN (";
+        this.purgeSQL = "DELETE FROM " + tableName + " WHERE CREATED_DATE < ?";
+        scheduleTasks();
+    }
+
+    protected AbstractJDBCTokenRegistry(String tableName, String initial, String jndiName) {
+        super(initial, jndiName);
+        this.insertSQL = "INSERT INTO " + tableName + " (TOKEN_ID, TOKEN, CREATED_DATE) VALUES (?,?,?)";
+        this.deleteSQL = "DELETE FROM " + tableName + " WHERE TOKEN_ID = ?";
+        this.selectSQL = "SELECT TOKEN FROM " + tableName + " WHERE TOKEN_ID = ?";
+        this.existsSQL = "SELECT TOKEN_ID FROM " + tableName + " WHERE TOKEN_ID IN (";
+        this.purgeSQL = "DELETE FROM " + tableName + " WHERE CREATED_DATE < ?";
+        scheduleTasks();
+    }
+
+    /**
+     * @see SecurityTokenRegistry#addToken(String, Object)
+     */
+    public void addToken(String tokenID, Object token) throws IOException {
+        if (dataSource == null) {
+            throw logger.datasourceIsNull();
+        }
+
+        if (this.batchSize <= 1) {
+            write(Collections.singletonMap(tokenID, token), Collections.<String>emptySet());
+        } else if (this.pendingWrites.add(tokenID, token) >= this.batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * @see SecurityTokenRegistry#removeToken(String)
+     */
+    public void removeToken(String tokenID) throws IOException {
+        if (dataSource == null) {
+            throw logger.datasourceIsNull();
+        }
+
+        if (this.batchSize <= 1) {
+            write(Collections.<String, Object>emptyMap(), Collections.singleton(tokenID));
+        } else if (this.pendingWrites.remove(tokenID) >= this.batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * @see SecurityTokenRegistry#getToken(String)
+     */
+    public Object getToken(String tokenID) {
+        if (this.pendingWrites.contains(tokenID)) {
+            return this.pendingWrites.get(tokenID);
+        }
+
+        try {
+            byte[] token = getLOB(tokenID);
+
+            if (token == null) {
+                return null;
+            }
+
+            return unmarshalToken(token);
+        } catch (IOException e) {
+            throw logger.runtimeException("getToken", e);
+        }
+    }
+
+    /**
+     * Writes the pending tokens to the database.
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        synchronized (this.flushLock) {
+            PendingTokenWrites.Batch batch = this.pendingWrites.drain();
+
+            if (batch == null) {
+                return;
+            }
+
+            try {
+                write(batch.additions, batch.removals);
+            } catch (IOException e) {
+                writeEach(batch, e);
+                return;
+            } catch (RuntimeException e) {
+                writeEach(batch, e);
+                return;
+            }
+
+            this.pendingWrites.completed(batch);
+        }
+    }
+
+    /**
+     * Writes the tokens of a batch that failed one at a time, so a single bad token does not hold back the others.
+     */
+    private void writeEach(PendingTokenWrites.Batch batch, Exception batchFailure) throws IOException {
+        PendingTokenWrites.Batch failedWrites = new PendingTokenWrites.Batch();
+        Exception failure = batchFailure;
+
+        for (String tokenID : batch.removals) {
+            try {
+                write(Collections.<String, Object>emptyMap(), Collections.singleton(tokenID));
+            } catch (Exception e) {
+                failedWrites.removals.add(tokenID);
+                failure = e;
+            }
+        }
+
+        for (Map.Entry<String, Object> entry : batch.additions.entrySet()) {
+            try {
+                write(Collections.singletonMap(entry.getKey(), entry.getValue()), Collections.<String>emptySet());
+            } catch (Exception e) {
+                failedWrites.additions.put(entry.getKey(), entry.getValue());
+                failure = e;
+            }
+        }
+
+        Set<String> dropped = this.pendingWrites.failed(batch, failedWrites, MAX_WRITE_ATTEMPTS);
+
+        for (String tokenID : dropped) {
+            logger.error("Dropping token " + tokenID + " after " + MAX_WRITE_ATTEMPTS + " failed writes.");
+        }
+
+        if (failedWrites.size() > 0) {
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+
+            throw new IOException(failure);
+        }
+    }
+
+    /**
+     * Deletes the tokens created before the configured retention period.
+     *
+     * @throws IOException
+     */
+    public void purgeExpiredTokens() throws IOException {
+        if (dataSource == null || this.retention <= 0) {
+            return;
+        }
+
+        Connection conn = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            conn = dataSource.getConnection();
+
+            preparedStatement = conn.prepareStatement(this.purgeSQL);
+            setTimestamp(preparedStatement, 1, new Timestamp(System.currentTimeMillis() - this.retention));
+            preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        } finally {
+            safeClose(preparedStatement);
+            safeClose(conn);
+        }
+    }
+
+    /**
+     * Sets the marshalled token as a statement parameter.
+     */
+    protected abstract void setToken(PreparedStatement preparedStatement, int index, byte[] marshalledToken)
+        throws SQLException, IOException;
+
+    /**
+     * Reads the marshalled token from the current row of the result set.
+     */
+    protected abstract byte[] getToken(ResultSet resultSet, int index) throws SQLException, IOException;
+
+    /**
+     * Sets a timestamp as a statement parameter.
+     */
+    protected void setTimestamp(PreparedStatement preparedStatement, int index, Timestamp timestamp) throws SQLException {
+        preparedStatement.setTimestamp(index, timestamp);
+    }
+
+    /**
+     * Writes removals and additions in a single transaction.
+     */
+    private void write(Map<String, Object> additions, Set<String> removals) throws IOException {
+        Connection conn = null;
+        PreparedStatement deleteStatement = null;
+        PreparedStatement insertStatement = null;
+        boolean autoCommit = true;
+        try {
+            conn = dataSource.getConnection();
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            if (!removals.isEmpty()) {
+                deleteStatement = conn.prepareStatement(this.deleteSQL);
+
+                for (String tokenID : removals) {
+                    deleteStatement.setString(1, tokenID);
+                    deleteStatement.addBatch();
+                }
+
+                deleteStatement.executeBatch();
+            }
+
+            Set<String> persistedIDs = additions.isEmpty() ? Collections.<String>emptySet()
+                : getPersistedIDs(conn, additions.keySet());
+
+            if (persistedIDs.size() < additions.size()) {
+                Timestamp tokenCreationDate = new Timestamp(System.currentTimeMillis());
+
+                insertStatement = conn.prepareStatement(this.insertSQL);
+
+                for (Map.Entry<String, Object> entry : additions.entrySet()) {
+                    if (persistedIDs.contains(entry.getKey())) {
+                        logger.samlSecurityTokenAlreadyPersisted(entry.getKey());
+                        continue;
+                    }
+
+                    insertStatement.setString(1, entry.getKey());
+                    setToken(insertStatement, 2, marshallToken(entry.getValue()));
+                    setTimestamp(insertStatement, 3, tokenCreationDate);
+                    insertStatement.addBatch();
+                }
+
+                insertStatement.executeBatch();
+            }
+
+            conn.commit();
+        } catch (SQLException e) {
+            rollback(conn);
+            throw new IOException(e);
+        } catch (IOException e) {
+            rollback(conn);
+            throw e;
+        } finally {
+            safeClose(deleteStatement);
+            safeClose(insertStatement);
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(autoCommit);
+                } catch (SQLException ignore) {
+                }
+            }
+            safeClose(conn);
+        }
+    }
+
+    /**
+     * @return the given ids already in the table
+     */
+    private Set<String> getPersistedIDs(Connection conn, Set<String> tokenIDs) throws SQLException {
+        Set<String> persistedIDs = new HashSet<String>();
+        List<String> ids = new ArrayList<String>(tokenIDs);
+
+        for (int start = 0; start < ids.size(); start += MAX_IN_PARAMETERS) {
+            List<String> partition = ids.subList(start, Math.min(start + MAX_IN_PARAMETERS, ids.size()));
+            StringBuilder sql = new StringBuilder(this.existsSQL);
+
+            for (int i = 0; i < partition.size(); i++) {
+                sql.append(i == 0 ? "?" : ",?");
+            }
+
+            sql.append(')');
+
+            PreparedStatement preparedStatement = null;
+            ResultSet resultSet = null;
+            try {
+                preparedStatement = conn.prepareStatement(sql.toString());
+
+                for (int i = 0; i < partition.size(); i++) {
+                    preparedStatement.setString(i + 1, partition.get(i));
+                }
+
+                resultSet = preparedStatement.executeQuery();
+
+                while (resultSet.next()) {
+                    persistedIDs.add(resultSet.getString(1));
+                }
+            } finally {
+                safeClose(resultSet);
+                safeClose(preparedStatement);
+            }
+        }
+
+        return persistedIDs;
+    }
+
+    private byte[] getLOB(String tokenID) throws IOException {
+        if (dataSource == null) {
+            throw logger.datasourceIsNull();
+        }
+
+        Connection conn = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        try {
+            conn = dataSource.getConnection();
+
+            preparedStatement = conn.prepareStatement(this.selectSQL);
+            preparedStatement.setString(1, tokenID);
+            resultSet = preparedStatement.executeQuery();
+
+            if (!resultSet.next()) {
+                return null;
+            }
+
+            return getToken(resultSet, 1);
+        } catch (SQLException e) {
+            throw new IOException(e);
+        } finally {
+            safeClose(resultSet);
+            safeClose(preparedStatement);
+            safeClose(conn);
+        }
+    }
+
+    private byte[] marshallToken(Object token) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(token);
+        oos.close();
+        return baos.toByteArray();
+    }
+
+    private Object unmarshalToken(byte[] serialized) {
+        try {
+            ByteArrayInputStream byteArray = new ByteArrayInputStream(serialized);
+            return new ObjectInputStream(byteArray).readObject();
+        } catch (Exception e) {
+            throw logger.errorUnmarshallingToken(e);
+        }
+    }
+
+    private void rollback(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException ignore) {
+            }
+        }
+    }
+
+    private void scheduleTasks() {
+        if (this.batchSize > 1) {
+            TokenRegistrySweeper.schedule(this.flusher, TokenRegistrySweeper.getLongProperty(
+                TokenRegistrySweeper.FLUSH_INTERVAL, TokenRegistrySweeper.DEFAULT_FLUSH_INTERVAL));
+        }
+
+        if (this.retention > 0) {
+            TokenRegistrySweeper.schedule(this.purger, TokenRegistrySweeper.getLongProperty(
+                TokenRegistrySweeper.SWEEP_INTERVAL, TokenRegistrySweeper.DEFAULT_SWEEP_INTERVAL));
+        }
+    }
+}
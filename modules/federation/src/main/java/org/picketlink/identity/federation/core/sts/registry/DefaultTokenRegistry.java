@@ -20,11 +20,14 @@ package org.picketlink.identity.federation.core.sts.registry;
 import org.picketlink.identity.federation.core.sts.PicketLinkCoreSTS;
 
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Hashmap based token registry
+ * Hashmap based token registry. Tokens that carry an expiration time, like SAML assertions with a {@code NotOnOrAfter}
+ * condition, are purged once they expire by a background task that runs every
+ * {@code picketlink.sts.registry.sweepInterval} milliseconds (default 60000).
  *
  * @author Anil.Saldhana@redhat.com
  * @since Jan 4, 2011
@@ -33,6 +36,21 @@ public class DefaultTokenRegistry implements SecurityTokenRegistry {
 
     protected Map<String, Object> tokens = new ConcurrentHashMap<String, Object>();
 
+    // expiration time of the tokens that have one.
+    private final Map<String, Long> expirations = new ConcurrentHashMap<String, Long>();
+
+    private final long sweepInterval = TokenRegistrySweeper.getLongProperty(TokenRegistrySweeper.SWEEP_INTERVAL,
+        TokenRegistrySweeper.DEFAULT_SWEEP_INTERVAL);
+
+    private volatile boolean sweeperScheduled;
+
+    private final TokenRegistrySweeper.Task sweeper = new TokenRegistrySweeper.Task() {
+        @Override
+        public void sweep() {
+            purgeExpiredTokens();
+        }
+    };
+
     /**
      * @see org.picketlink.identity.federation.core.sts.registry.SecurityTokenRegistry#addToken(java.lang.String,
      *      java.lang.Object)
@@ -43,6 +61,13 @@ public class DefaultTokenRegistry implements SecurityTokenRegistry {
             sm.checkPermission(PicketLinkCoreSTS.rte);
 
         tokens.put(tokenID, token);
+
+        long expiration = TokenRegistrySweeper.getExpiration(token);
+
+        if (expiration > 0) {
+            expirations.put(tokenID, expiration);
+            scheduleSweeper();
+        }
     }
 
     /**
@@ -64,5 +89,34 @@ public class DefaultTokenRegistry implements SecurityTokenRegistry {
         if (sm != null)
             sm.checkPermission(PicketLinkCoreSTS.rte);
         tokens.remove(tokenID);
+        expirations.remove(tokenID);
+    }
+
+    /**
+     * Removes the tokens that are expired.
+     */
+    public void purgeExpiredTokens() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Long>> iterator = expirations.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+
+            if (entry.getValue() <= now) {
+                tokens.remove(entry.getKey());
+                iterator.remove();
+            }
+        }
+    }
+
+    private void scheduleSweeper() {
+        if (!sweeperScheduled) {
+            synchronized (this) {
+                if (!sweeperScheduled) {
+                    TokenRegistrySweeper.schedule(sweeper, sweepInterval);
+                    sweeperScheduled = true;
+                }
+            }
+        }
     }
 }
\ No newline at end of file
@@ -19,18 +19,29 @@ package org.picketlink.identity.federation.core.sts.registry;
 
 import org.picketlink.identity.federation.core.sts.PicketLinkCoreSTS;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * A File based implementation of the {@code SecurityTokenRegistry}
+ * <p>
+ * A File based implementation of the {@code SecurityTokenRegistry}.
+ * </p>
+ * <p>
+ * The registry file is an append-only log: every added or removed token appends a record to the end of the file. The
+ * file is rewritten with the current tokens only when it holds too many obsolete records. Tokens that carry an
+ * expiration time are purged once they expire by a background task that runs every
+ * {@code picketlink.sts.registry.sweepInterval} milliseconds (default 60000).
+ * </p>
  *
  * @author Anil.Saldhana@redhat.com
  * @since Jan 4, 2011
@@ -39,10 +50,30 @@ public class FileBasedTokenRegistry extends FileBasedSTSOperations implements Se
 
     protected static final String FILE_NAME = "token.registry";
 
+    // number of obsolete records the registry file may hold before it is rewritten.
+    private static final int COMPACTION_THRESHOLD = 1000;
+
     // the file that stores the tokens.
     protected File registryFile;
 
-    protected Map<String, TokenHolder> holders = new HashMap<String, TokenHolder>();
+    protected Map<String, TokenHolder> holders = new ConcurrentHashMap<String, TokenHolder>();
+
+    // the stream that appends records to the registry file.
+    private ObjectOutputStream log;
+
+    // the number of records in the registry file.
+    private int records;
+
+    private final TokenRegistrySweeper.Task sweeper = new TokenRegistrySweeper.Task() {
+        @Override
+        public void sweep() {
+            try {
+                purgeExpiredTokens();
+            } catch (IOException e) {
+                logger.error(e);
+            }
+        }
+    };
 
     public FileBasedTokenRegistry() {
         this(FILE_NAME);
@@ -58,9 +89,13 @@ public class FileBasedTokenRegistry extends FileBasedSTSOperations implements Se
 
         try {
             read();
+            flush();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+
+        TokenRegistrySweeper.schedule(this.sweeper, TokenRegistrySweeper.getLongProperty(
+            TokenRegistrySweeper.SWEEP_INTERVAL, TokenRegistrySweeper.DEFAULT_SWEEP_INTERVAL));
     }
 
     /**
@@ -75,8 +110,10 @@ public class FileBasedTokenRegistry extends FileBasedSTSOperations implements Se
         if (!(token instanceof Serializable))
             throw logger.notSerializableError("Token");
 
-        holders.put(tokenID, new TokenHolder(tokenID, token));
-        flush();
+        TokenHolder holder = new TokenHolder(tokenID, token, TokenRegistrySweeper.getExpiration(token));
+
+        holders.put(tokenID, holder);
+        append(holder);
     }
 
     /**
@@ -87,8 +124,8 @@ public class FileBasedTokenRegistry extends FileBasedSTSOperations implements Se
         if (sm != null)
             sm.checkPermission(PicketLinkCoreSTS.rte);
 
-        holders.remove(tokenID);
-        flush();
+        if (holders.remove(tokenID) != null)
+            append(new TokenHolder(tokenID, null));
     }
 
     /**
@@ -106,11 +143,81 @@ public class FileBasedTokenRegistry extends FileBasedSTSOperations implements Se
         return null;
     }
 
+    /**
+     * Removes the tokens that are expired.
+     *
+     * @throws IOException if the registry file could not be rewritten
+     */
+    public void purgeExpiredTokens() throws IOException {
+        long now = System.currentTimeMillis();
+        Iterator<TokenHolder> iterator = holders.values().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now))
+                iterator.remove();
+        }
+
+        // expired tokens are skipped when reading the file, there is no need to record their removal.
+        synchronized (this) {
+            if (records - holders.size() > COMPACTION_THRESHOLD)
+                flush();
+        }
+    }
+
+    /**
+     * Appends a record to the registry file. A record without token marks the removal of the token.
+     *
+     * @param holder the record
+     *
+     * @throws IOException
+     */
+    protected synchronized void append(TokenHolder holder) throws IOException {
+        if (log == null)
+            flush();
+
+        log.writeObject(holder);
+        // do not keep references to the written records.
+        log.reset();
+        log.flush();
+        records++;
+
+        if (records - holders.size() > COMPACTION_THRESHOLD && records > 2 * holders.size())
+            flush();
+    }
+
+    /**
+     * Rewrites the registry file with the current tokens only.
+     *
+     * @throws IOException
+     */
     protected synchronized void flush() throws IOException {
-        FileOutputStream fos = new FileOutputStream(registryFile);
-        ObjectOutputStream oos = new ObjectOutputStream(fos);
-        oos.writeObject(holders);
-        oos.close();
+        File snapshotFile = new File(registryFile.getPath() + ".tmp");
+        ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(snapshotFile));
+        int written = 0;
+
+        try {
+            for (TokenHolder holder : holders.values()) {
+                oos.writeObject(holder);
+                oos.reset();
+                written++;
+            }
+        } finally {
+            oos.close();
+        }
+
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+
+        if (!snapshotFile.renameTo(registryFile)) {
+            // some platforms do not rename over existing files.
+            if (!registryFile.delete() || !snapshotFile.renameTo(registryFile))
+                throw new IOException("Could not replace " + registryFile + " with " + snapshotFile);
+        }
+
+        log = new AppendingObjectOutputStream(new FileOutputStream(registryFile, true));
+        records = written;
     }
 
     @SuppressWarnings("unchecked")
@@ -119,12 +226,36 @@ public class FileBasedTokenRegistry extends FileBasedSTSOperations implements Se
         if (sm != null)
             sm.checkPermission(PicketLinkCoreSTS.rte);
 
+        if (registryFile.length() == 0)
+            return;
+
+        long now = System.currentTimeMillis();
         FileInputStream fis = new FileInputStream(registryFile);
         ObjectInputStream ois = new ObjectInputStream(fis);
         try {
-            holders = (Map<String, TokenHolder>) ois.readObject();
+            while (true) {
+                Object record = ois.readObject();
+
+                if (record instanceof Map) {
+                    // registry files written by older versions hold a single map with all the tokens.
+                    holders.putAll((Map<String, TokenHolder>) record);
+                } else {
+                    TokenHolder holder = (TokenHolder) record;
+
+                    if (holder.token == null || holder.isExpired(now))
+                        holders.remove(holder.id);
+                    else
+                        holders.put(holder.id, holder);
+                }
+            }
+        } catch (EOFException e) {
+            // end of the registry file.
         } catch (ClassNotFoundException e) {
             throw new IOException(e);
+        } catch (IOException e) {
+            // a record was partially written, keep what was read so far.
+            logger.warn("Error reading registry file " + registryFile + ", tokens after the last complete record are lost: "
+                + e.getMessage());
         } finally {
             ois.close();
         }
@@ -138,10 +269,17 @@ public class FileBasedTokenRegistry extends FileBasedSTSOperations implements Se
 
         Object token;
 
+        long expiration;
+
         public TokenHolder(String id, Object token) {
+            this(id, token, 0);
+        }
+
+        public TokenHolder(String id, Object token, long expiration) {
             super();
             this.id = id;
             this.token = token;
+            this.expiration = expiration;
         }
 
         public String getId() {
@@ -151,5 +289,31 @@ public class FileBasedTokenRegistry extends FileBasedSTSOperations implements Se
         public Object getToken() {
             return token;
         }
+
+        /**
+         * @return the time in milliseconds when the token expires, or 0 if it does not expire
+         */
+        public long getExpiration() {
+            return expiration;
+        }
+
+        boolean isExpired(long now) {
+            return expiration > 0 && expiration <= now;
+        }
+    }
+
+    /**
+     * An {@code ObjectOutputStream} that appends records to a stream that already has a header.
+     */
+    private static class AppendingObjectOutputStream extends ObjectOutputStream {
+
+        AppendingObjectOutputStream(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void writeStreamHeader() throws IOException {
+            reset();
+        }
     }
-}
\ No newline at end of file
+}
@@ -21,18 +21,10 @@
  */
 package org.picketlink.identity.federation.core.sts.registry;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Timestamp;
-import java.util.Calendar;
-import java.util.Date;
 
 /**
  * Implementation of {@link SecurityTokenRegistry} using JDBC
@@ -40,119 +32,25 @@ import java.util.Date;
  * @author Anil Saldhana
  * @since August 06, 2013
  */
-public class JDBCTokenRegistry extends AbstractJDBCRegistry implements SecurityTokenRegistry {
+public class JDBCTokenRegistry extends AbstractJDBCTokenRegistry {
 
     public JDBCTokenRegistry() {
-        super("jdbc/picketlink-sts");
+        this("jdbc/picketlink-sts");
     }
 
     public JDBCTokenRegistry(String jndiName) {
-        super(jndiName);
+        super("TOKEN_REGISTRY", jndiName);
     }
 
-    /**
-     * @see SecurityTokenRegistry#addToken(String, Object)
-     */
-    public void addToken(String tokenID, Object token) throws IOException {
-        if (dataSource == null) {
-            throw logger.datasourceIsNull();
-        }
-        String insertTableSQL = "INSERT INTO TOKEN_REGISTRY" + "(TOKEN_ID, TOKEN, CREATED_DATE) VALUES" + "(?,?,?)";
-        Connection conn = null;
-        PreparedStatement preparedStatement = null;
-        try {
-            conn = dataSource.getConnection();
-            Date tokenCreationDate = Calendar.getInstance().getTime();
-            byte[] marshalledToken = marshallToken(token);
-
-            String theToken = new String(marshalledToken, "UTF-8");
-
-            preparedStatement = conn.prepareStatement(insertTableSQL);
-            preparedStatement.setString(1, tokenID);
-            preparedStatement.setString(2, theToken);
-            preparedStatement.setTimestamp(3, new Timestamp(tokenCreationDate.getTime()));
-            preparedStatement.executeUpdate();
-        } catch (SQLException e) {
-            throw new IOException(e);
-        } finally {
-            safeClose(preparedStatement);
-            safeClose(conn);
-        }
-    }
-
-    /**
-     * @see SecurityTokenRegistry#removeToken(String)
-     */
-    public void removeToken(String tokenID) throws IOException {
-        if (dataSource == null) {
-            throw logger.datasourceIsNull();
-        }
-        String deleteSQL = "DELETE FROM TOKEN_REGISTRY WHERE TOKEN_ID = ?";
-        Connection conn = null;
-        PreparedStatement preparedStatement = null;
-        try {
-            conn = dataSource.getConnection();
-
-            preparedStatement = conn.prepareStatement(deleteSQL);
-            preparedStatement.setString(1, tokenID);
-            preparedStatement.executeUpdate();
-        } catch (SQLException e) {
-            throw new IOException(e);
-        } finally {
-            safeClose(preparedStatement);
-            safeClose(conn);
-        }
-    }
-
-    /**
-     * @see SecurityTokenRegistry#getToken(String)
-     */
-    public Object getToken(String tokenID) {
-        try {
-            return unmarshalToken(getLOB(tokenID));
-        } catch (IOException e) {
-            throw logger.runtimeException("getToken", e);
-        }
+    @Override
+    protected void setToken(PreparedStatement preparedStatement, int index, byte[] marshalledToken)
+        throws SQLException, IOException {
+        preparedStatement.setString(index, new String(marshalledToken, "UTF-8"));
     }
 
-    private byte[] marshallToken(Object token) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(baos);
-        oos.writeObject(token);
-        return baos.toByteArray();
-    }
-
-    private Object unmarshalToken(String serializedText) {
-        try {
-            ByteArrayInputStream byteArray = new ByteArrayInputStream(serializedText.getBytes("UTF-8"));
-            return new ObjectInputStream(byteArray).readObject();
-        } catch (Exception e) {
-            throw logger.errorUnmarshallingToken(e);
-        }
-    }
-
-    private String getLOB(String tokenID) throws IOException {
-        if (dataSource == null) {
-            throw logger.datasourceIsNull();
-        }
-        String selectSQL = "select TOKEN from TOKEN_REGISTRY where TOKEN_ID = ?";
-        Connection conn = null;
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-        try {
-            conn = dataSource.getConnection();
-
-            preparedStatement = conn.prepareStatement(selectSQL);
-            preparedStatement.setString(1, tokenID);
-            resultSet = preparedStatement.executeQuery();
-
-            return resultSet.getString(1);
-        } catch (SQLException e) {
-            throw new IOException(e);
-        } finally {
-            safeClose(resultSet);
-            safeClose(preparedStatement);
-            safeClose(conn);
-        }
+    @Override
+    protected byte[] getToken(ResultSet resultSet, int index) throws SQLException, IOException {
+        String token = resultSet.getString(index);
+        return token != null ? token.getBytes("UTF-8") : null;
     }
-}
\ No newline at end of file
+}
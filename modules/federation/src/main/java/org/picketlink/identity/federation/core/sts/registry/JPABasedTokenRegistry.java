@@ -21,6 +21,12 @@ package org.picketlink.identity.federation.core.sts.registry;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * <p>
@@ -30,18 +36,59 @@ import java.io.IOException;
  * {@code picketlink-sts} but a different configuration name can be specified through the constructor that takes a
  * {@code String} as a parameter.
  * </p>
+ * <p>
+ * Tokens are written right away by default. When {@code picketlink.sts.registry.batchSize} is greater than 1, added
+ * and removed tokens are kept in memory and written in a single transaction when that many tokens are pending or
+ * every {@code picketlink.sts.registry.flushInterval} milliseconds (default 1000). Batched tokens are lost if the
+ * server stops before they are written, and other servers sharing the database do not see them until then. A batch
+ * that fails to be written is kept and retried with the next one.
+ * </p>
+ * <p>
+ * When {@code picketlink.sts.registry.retention} is set, tokens created more than that many milliseconds ago are
+ * deleted every {@code picketlink.sts.registry.sweepInterval} milliseconds (default 60000). The expiration of the
+ * tokens is not stored, the retention must be longer than the lifetime of the tokens.
+ * </p>
  *
  * @author <a href="mailto:psilva@redhat.com">Pedro Silva</a>
  * @see {@link SecurityToken}
  */
 public class JPABasedTokenRegistry extends AbstractJPARegistry implements SecurityTokenRegistry {
 
+    // maximum number of parameters of the IN clauses used to write batches.
+    private static final int MAX_IN_PARAMETERS = 500;
+
+    private final int batchSize = (int) TokenRegistrySweeper.getLongProperty(TokenRegistrySweeper.BATCH_SIZE,
+        TokenRegistrySweeper.DEFAULT_BATCH_SIZE);
+
+    private final long retention = TokenRegistrySweeper.getLongProperty(TokenRegistrySweeper.RETENTION,
+        TokenRegistrySweeper.DEFAULT_RETENTION);
+
+    private final PendingTokenWrites pendingWrites = new PendingTokenWrites();
+
+    private final Object flushLock = new Object();
+
+    private final TokenRegistrySweeper.Task flusher = new TokenRegistrySweeper.Task() {
+        @Override
+        public void sweep() {
+            flush();
+        }
+    };
+
+    private final TokenRegistrySweeper.Task purger = new TokenRegistrySweeper.Task() {
+        @Override
+        public void sweep() {
+            purgeExpiredTokens();
+        }
+    };
+
     public JPABasedTokenRegistry() {
         super();
+        scheduleTasks();
     }
 
     public JPABasedTokenRegistry(String configuration) {
         super();
+        scheduleTasks();
     }
 
     /*
@@ -51,6 +98,14 @@ public class JPABasedTokenRegistry extends AbstractJPARegistry implements Securi
      * java.lang.Object)
      */
     public void addToken(final String id, final Object token) throws IOException {
+        if (this.batchSize > 1) {
+            if (this.pendingWrites.add(id, token) >= this.batchSize) {
+                flush();
+            }
+
+            return;
+        }
+
         executeInTransaction(new TransactionCallback() {
 
             @Override
@@ -72,6 +127,14 @@ public class JPABasedTokenRegistry extends AbstractJPARegistry implements Securi
      * @see org.picketlink.identity.federation.core.sts.registry.SecurityTokenRegistry#removeToken(java.lang.String)
      */
     public void removeToken(final String id) throws IOException {
+        if (this.batchSize > 1) {
+            if (this.pendingWrites.remove(id) >= this.batchSize) {
+                flush();
+            }
+
+            return;
+        }
+
         executeInTransaction(new TransactionCallback() {
 
             @Override
@@ -93,10 +156,20 @@ public class JPABasedTokenRegistry extends AbstractJPARegistry implements Securi
      * @see org.picketlink.identity.federation.core.sts.registry.SecurityTokenRegistry#getToken(java.lang.String)
      */
     public Object getToken(final String id) {
-        SecurityToken token = getEntityManagerFactory().createEntityManager().find(SecurityToken.class, id);
+        if (this.pendingWrites.contains(id)) {
+            return this.pendingWrites.get(id);
+        }
+
+        EntityManager entityManager = getEntityManagerFactory().createEntityManager();
 
-        if (token != null) {
-            return token.unmarshalToken();
+        try {
+            SecurityToken token = entityManager.find(SecurityToken.class, id);
+
+            if (token != null) {
+                return token.unmarshalToken();
+            }
+        } finally {
+            entityManager.close();
         }
 
         logger.samlSecurityTokenNotFoundInRegistry(id);
@@ -104,6 +177,109 @@ public class JPABasedTokenRegistry extends AbstractJPARegistry implements Securi
         return null;
     }
 
+    /**
+     * <p>
+     * Writes the pending tokens in a single transaction.
+     * </p>
+     */
+    public void flush() {
+        synchronized (this.flushLock) {
+            final PendingTokenWrites.Batch batch = this.pendingWrites.drain();
+
+            if (batch == null) {
+                return;
+            }
+
+            try {
+                executeInTransaction(new TransactionCallback() {
+
+                    @Override
+                    public void executeInTransaction(EntityManager entityManager) {
+                        for (List<String> ids : partition(batch.removals)) {
+                            entityManager.createQuery("DELETE FROM SecurityToken t WHERE t.tokenId IN (:ids)")
+                                .setParameter("ids", ids).executeUpdate();
+                        }
+
+                        Set<String> persistedIds = new HashSet<String>();
+
+                        for (List<String> ids : partition(batch.additions.keySet())) {
+                            List<?> result = entityManager.createQuery(
+                                "SELECT t.tokenId FROM SecurityToken t WHERE t.tokenId IN (:ids)")
+                                .setParameter("ids", ids).getResultList();
+
+                            for (Object id : result) {
+                                persistedIds.add((String) id);
+                            }
+                        }
+
+                        for (Map.Entry<String, Object> entry : batch.additions.entrySet()) {
+                            if (persistedIds.contains(entry.getKey())) {
+                                logger.samlSecurityTokenAlreadyPersisted(entry.getKey());
+                            } else {
+                                entityManager.persist(new SecurityToken(entry.getKey(), entry.getValue()));
+                            }
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                this.pendingWrites.failed(batch);
+                throw e;
+            }
+
+            this.pendingWrites.completed(batch);
+        }
+    }
+
+    /**
+     * <p>
+     * Deletes the tokens created before the configured retention period.
+     * </p>
+     */
+    public void purgeExpiredTokens() {
+        if (this.retention <= 0) {
+            return;
+        }
+
+        final Date cutoff = new Date(System.currentTimeMillis() - this.retention);
+
+        executeInTransaction(new TransactionCallback() {
+
+            @Override
+            public void executeInTransaction(EntityManager entityManager) {
+                entityManager.createQuery("DELETE FROM SecurityToken t WHERE t.tokenCreationDate < :cutoff")
+                    .setParameter("cutoff", cutoff).executeUpdate();
+            }
+        });
+    }
+
+    private static List<List<String>> partition(Set<String> ids) {
+        List<List<String>> partitions = new ArrayList<List<String>>();
+        List<String> partition = null;
+
+        for (String id : ids) {
+            if (partition == null || partition.size() == MAX_IN_PARAMETERS) {
+                partition = new ArrayList<String>();
+                partitions.add(partition);
+            }
+
+            partition.add(id);
+        }
+
+        return partitions;
+    }
+
+    private void scheduleTasks() {
+        if (this.batchSize > 1) {
+            TokenRegistrySweeper.schedule(this.flusher, TokenRegistrySweeper.getLongProperty(
+                TokenRegistrySweeper.FLUSH_INTERVAL, TokenRegistrySweeper.DEFAULT_FLUSH_INTERVAL));
+        }
+
+        if (this.retention > 0) {
+            TokenRegistrySweeper.schedule(this.purger, TokenRegistrySweeper.getLongProperty(
+                TokenRegistrySweeper.SWEEP_INTERVAL, TokenRegistrySweeper.DEFAULT_SWEEP_INTERVAL));
+        }
+    }
+
     /**
      * <p>
      * This method expects a {@link TransactionCallback} to execute some logic inside a managed transaction.
@@ -21,18 +21,12 @@
  */
 package org.picketlink.identity.federation.core.sts.registry;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.TimeZone;
 
 /**
@@ -84,154 +78,35 @@ import java.util.TimeZone;
  * @author Anil Saldhana
  * @since September 11, 2014
  */
-public class OJDBCTokenRegistry extends AbstractJDBCRegistry implements SecurityTokenRegistry {
+public class OJDBCTokenRegistry extends AbstractJDBCTokenRegistry {
 
-    private static final String INSERT_SQL = "INSERT INTO STS_TOKEN_REGISTRY (TOKEN_ID, TOKEN, CREATED_DATE) VALUES (?,?,?)";
-    private static final String DELETE_SQL = "DELETE FROM STS_TOKEN_REGISTRY WHERE TOKEN_ID = ?";
-    private static final String SELECT_SQL = "SELECT TOKEN FROM STS_TOKEN_REGISTRY WHERE TOKEN_ID = ?";
+    private static final String TABLE_NAME = "STS_TOKEN_REGISTRY";
 
     public OJDBCTokenRegistry() {
-        super("jdbc/picketlink-sts");
+        this("jdbc/picketlink-sts");
     }
 
     public OJDBCTokenRegistry(String jndiName) {
-        super(jndiName);
+        super(TABLE_NAME, jndiName);
     }
 
     public OJDBCTokenRegistry(String initial, String jndiName) {
-        super(initial, jndiName);
+        super(TABLE_NAME, initial, jndiName);
     }
 
-    /**
-     * @see SecurityTokenRegistry#addToken(String, Object)
-     */
     @Override
-    public void addToken(String tokenID, Object token) throws IOException {
-        if (dataSource == null) {
-            throw logger.datasourceIsNull();
-        }
-        Connection conn = null;
-        PreparedStatement preparedStatement = null;
-        try {
-            byte[] marshalledToken = marshallToken(token);
-
-            conn = dataSource.getConnection();
-            Date tokenCreationDate = Calendar.getInstance().getTime();
-
-            preparedStatement = conn.prepareStatement(INSERT_SQL);
-            preparedStatement.setString(1, tokenID);
-            preparedStatement.setBytes(2, marshalledToken);
-            preparedStatement
-                .setTimestamp(3, new Timestamp(tokenCreationDate.getTime()), Calendar.getInstance(TimeZone.getTimeZone("UTC")));
-            preparedStatement.executeUpdate();
-        } catch (SQLException e) {
-            throw new IOException(e);
-        } finally {
-            safeClose(preparedStatement);
-            safeClose(conn);
-        }
+    protected void setToken(PreparedStatement preparedStatement, int index, byte[] marshalledToken)
+        throws SQLException, IOException {
+        preparedStatement.setBytes(index, marshalledToken);
     }
 
-    /**
-     * @see SecurityTokenRegistry#removeToken(String)
-     */
     @Override
-    public void removeToken(String tokenID) throws IOException {
-        if (dataSource == null) {
-            throw logger.datasourceIsNull();
-        }
-
-        Connection conn = null;
-        PreparedStatement preparedStatement = null;
-        try {
-            conn = dataSource.getConnection();
-
-            preparedStatement = conn.prepareStatement(DELETE_SQL);
-            preparedStatement.setString(1, tokenID);
-            preparedStatement.executeUpdate();
-        } catch (SQLException e) {
-            throw new IOException(e);
-        } finally {
-            safeClose(preparedStatement);
-            safeClose(conn);
-        }
+    protected byte[] getToken(ResultSet resultSet, int index) throws SQLException, IOException {
+        return resultSet.getBytes(index);
     }
 
-    /**
-     * @see SecurityTokenRegistry#getToken(String)
-     */
     @Override
-    public Object getToken(String tokenID) {
-        try {
-            return unmarshalToken(getLOB(tokenID));
-        } catch (IOException e) {
-            throw logger.runtimeException("getToken", e);
-        }
-    }
-
-    /**
-     * Serialize object to bytes
-     *
-     * @param token
-     *
-     * @return bytes
-     *
-     * @throws IOException
-     */
-    private byte[] marshallToken(Object token) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(baos);
-        oos.writeObject(token);
-        return baos.toByteArray();
-    }
-
-    /**
-     * De-Serialize bytes to object
-     *
-     * @param serialized
-     *
-     * @return object
-     */
-    private Object unmarshalToken(byte[] serialized) {
-        try {
-            ByteArrayInputStream byteArray = new ByteArrayInputStream(serialized);
-            return new ObjectInputStream(byteArray).readObject();
-        } catch (Exception e) {
-            throw logger.errorUnmarshallingToken(e);
-        }
-    }
-
-    /**
-     * Retrieve token from DB
-     *
-     * @param tokenID
-     *
-     * @return object as bytes
-     *
-     * @throws IOException
-     */
-    private byte[] getLOB(String tokenID) throws IOException {
-        if (dataSource == null) {
-            throw logger.datasourceIsNull();
-        }
-
-        Connection conn = null;
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-        try {
-            conn = dataSource.getConnection();
-
-            preparedStatement = conn.prepareStatement(SELECT_SQL);
-            preparedStatement.setString(1, tokenID);
-            resultSet = preparedStatement.executeQuery();
-
-            return resultSet.getBytes(1);
-        } catch (SQLException e) {
-            throw new IOException(e);
-        } finally {
-            safeClose(resultSet);
-            safeClose(preparedStatement);
-            safeClose(conn);
-        }
+    protected void setTimestamp(PreparedStatement preparedStatement, int index, Timestamp timestamp) throws SQLException {
+        preparedStatement.setTimestamp(index, timestamp, Calendar.getInstance(TimeZone.getTimeZone("UTC")));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,215 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.identity.federation.core.sts.registry;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Tokens added to or removed from a database backed registry that were not written to the database yet.
+ * </p>
+ * <p>
+ * Writes are drained in batches. A drained batch stays visible to lookups until it is {@link #completed(Batch)
+ * completed}, so a token is never missing while it is being written. Within a batch, removals must be written before
+ * additions.
+ * </p>
+ */
+class PendingTokenWrites {
+
+    private Batch pending = new Batch();
+
+    private Batch inFlight;
+
+    // the number of times the write of a token failed, only for the tokens that are retried
+    private final Map<String, Integer> failedAttempts = new HashMap<String, Integer>();
+
+    /**
+     * @return the number of pending writes
+     */
+    synchronized int add(String tokenID, Object token) {
+        this.pending.additions.put(tokenID, token);
+        return this.pending.size();
+    }
+
+    /**
+     * @return the number of pending writes
+     */
+    synchronized int remove(String tokenID) {
+        this.pending.additions.remove(tokenID);
+        this.pending.removals.add(tokenID);
+        return this.pending.size();
+    }
+
+    /**
+     * @return true if the token was added or removed and the change is not in the database yet
+     */
+    synchronized boolean contains(String tokenID) {
+        return this.pending.contains(tokenID) || (this.inFlight != null && this.inFlight.contains(tokenID));
+    }
+
+    /**
+     * @return the token added with the given id, or null if it was removed
+     */
+    synchronized Object get(String tokenID) {
+        if (this.pending.contains(tokenID)) {
+            return this.pending.additions.get(tokenID);
+        }
+
+        if (this.inFlight != null) {
+            return this.inFlight.additions.get(tokenID);
+        }
+
+        return null;
+    }
+
+    /**
+     * Takes the pending writes. Only one batch may be drained at a time.
+     *
+     * @return the pending writes, or null if there are none
+     */
+    synchronized Batch drain() {
+        if (this.pending.size() == 0) {
+            return null;
+        }
+
+        this.inFlight = this.pending;
+        this.pending = new Batch();
+
+        return this.inFlight;
+    }
+
+    /**
+     * Puts the writes of a batch that could not be written back in the pending writes, so they are retried with the
+     * next batch. Writes made after the batch was drained take precedence.
+     */
+    synchronized void failed(Batch batch) {
+        if (this.inFlight != batch) {
+            return;
+        }
+
+        requeue(batch);
+    }
+
+    /**
+     * Puts the writes of a batch that could not be written back in the pending writes, like {@link #failed(Batch)},
+     * but only the ones in the given failed writes. Writes that failed the given number of times are dropped.
+     *
+     * @return the ids of the dropped writes
+     */
+    synchronized Set<String> failed(Batch batch, Batch failedWrites, int maxAttempts) {
+        Set<String> dropped = new LinkedHashSet<String>();
+
+        if (this.inFlight != batch) {
+            return dropped;
+        }
+
+        // the writes that succeeded start over
+        for (String tokenID : batch.additions.keySet()) {
+            if (!failedWrites.additions.containsKey(tokenID)) {
+                this.failedAttempts.remove(tokenID);
+            }
+        }
+
+        for (String tokenID : batch.removals) {
+            if (!failedWrites.removals.contains(tokenID)) {
+                this.failedAttempts.remove(tokenID);
+            }
+        }
+
+        Batch retried = new Batch();
+
+        for (Map.Entry<String, Object> entry : failedWrites.additions.entrySet()) {
+            if (attemptFailed(entry.getKey(), maxAttempts)) {
+                dropped.add(entry.getKey());
+            } else {
+                retried.additions.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (String tokenID : failedWrites.removals) {
+            if (attemptFailed(tokenID, maxAttempts)) {
+                dropped.add(tokenID);
+            } else {
+                retried.removals.add(tokenID);
+            }
+        }
+
+        requeue(retried);
+
+        return dropped;
+    }
+
+    /**
+     * Marks the given batch as written.
+     */
+    synchronized void completed(Batch batch) {
+        if (this.inFlight == batch) {
+            this.inFlight = null;
+            this.failedAttempts.keySet().removeAll(batch.additions.keySet());
+            this.failedAttempts.keySet().removeAll(batch.removals);
+        }
+    }
+
+    /**
+     * Writes made after the batch was drained take precedence.
+     */
+    private void requeue(Batch batch) {
+        for (String tokenID : this.pending.removals) {
+            batch.additions.remove(tokenID);
+            batch.removals.add(tokenID);
+        }
+
+        batch.additions.putAll(this.pending.additions);
+
+        this.pending = batch;
+        this.inFlight = null;
+    }
+
+    private boolean attemptFailed(String tokenID, int maxAttempts) {
+        Integer attempts = this.failedAttempts.get(tokenID);
+        int failed = attempts == null ? 1 : attempts + 1;
+
+        if (failed >= maxAttempts) {
+            this.failedAttempts.remove(tokenID);
+            return true;
+        }
+
+        this.failedAttempts.put(tokenID, failed);
+
+        return false;
+    }
+
+    static class Batch {
+
+        final Map<String, Object> additions = new LinkedHashMap<String, Object>();
+
+        final Set<String> removals = new LinkedHashSet<String>();
+
+        boolean contains(String tokenID) {
+            return this.additions.containsKey(tokenID) || this.removals.contains(tokenID);
+        }
+
+        int size() {
+            return this.additions.size() + this.removals.size();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.identity.federation.core.sts.registry;
+
+import org.picketlink.common.PicketLinkLogger;
+import org.picketlink.common.PicketLinkLoggerFactory;
+import org.picketlink.common.util.SystemPropertiesUtil;
+import org.picketlink.identity.federation.saml.common.CommonConditionsType;
+import org.picketlink.identity.federation.saml.v1.assertion.SAML11AssertionType;
+import org.picketlink.identity.federation.saml.v2.assertion.AssertionType;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Runs the periodic maintenance of the token registries, like purging expired tokens or writing pending tokens, on a
+ * single daemon thread shared by all registries.
+ * </p>
+ * <p>
+ * Registries are only weakly referenced, the maintenance of a registry stops once it is garbage collected.
+ * </p>
+ */
+final class TokenRegistrySweeper {
+
+    private static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
+
+    /**
+     * Milliseconds between two purges of expired tokens.
+     */
+    static final String SWEEP_INTERVAL = "picketlink.sts.registry.sweepInterval";
+
+    /**
+     * Maximum number of tokens written to a database in a single batch. 1 or less writes every token right away, which
+     * is the default. With a larger value tokens are written behind: they are lost if the server stops before they are
+     * written and other servers sharing the database do not see them until then.
+     */
+    static final String BATCH_SIZE = "picketlink.sts.registry.batchSize";
+
+    /**
+     * Maximum number of milliseconds a token waits in memory before being written to a database.
+     */
+    static final String FLUSH_INTERVAL = "picketlink.sts.registry.flushInterval";
+
+    /**
+     * Milliseconds a token is kept in a database after its creation. 0 or less disables the purge, which is the
+     * default. The database registries do not store the expiration of the tokens, so the retention must be longer than
+     * the lifetime of the longest lived token issued by the STS.
+     */
+    static final String RETENTION = "picketlink.sts.registry.retention";
+
+    static final long DEFAULT_SWEEP_INTERVAL = 60000;
+
+    static final int DEFAULT_BATCH_SIZE = 1;
+
+    static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    static final long DEFAULT_RETENTION = 0;
+
+    private static ScheduledExecutorService executor;
+
+    private TokenRegistrySweeper() {
+    }
+
+    /**
+     * A maintenance task of a registry.
+     */
+    interface Task {
+
+        void sweep();
+    }
+
+    /**
+     * Schedules the given task to run periodically.
+     *
+     * @param task the task to run
+     * @param interval milliseconds between two runs
+     */
+    static synchronized void schedule(Task task, long interval) {
+        if (interval <= 0) {
+            return;
+        }
+
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "PicketLink STS Token Registry Sweeper");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        WeakTask weakTask = new WeakTask(task);
+
+        weakTask.future = executor.scheduleWithFixedDelay(weakTask, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the time when the given token expires.
+     *
+     * @param token a token added to a registry
+     *
+     * @return the expiration time in milliseconds or 0 if it can not be determined
+     */
+    static long getExpiration(Object token) {
+        CommonConditionsType conditions = null;
+
+        if (token instanceof AssertionType) {
+            conditions = ((AssertionType) token).getConditions();
+        } else if (token instanceof SAML11AssertionType) {
+            conditions = ((SAML11AssertionType) token).getConditions();
+        }
+
+        if (conditions != null && conditions.getNotOnOrAfter() != null) {
+            return conditions.getNotOnOrAfter().toGregorianCalendar().getTimeInMillis();
+        }
+
+        return 0;
+    }
+
+    static long getLongProperty(String name, long defaultValue) {
+        String value = SystemPropertiesUtil.getSystemProperty(name, null);
+
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                logger.cannotParseParameterValue(name, e);
+            }
+        }
+
+        return defaultValue;
+    }
+
+    private static class WeakTask implements Runnable {
+
+        private final WeakReference<Task> task;
+
+        private volatile ScheduledFuture<?> future;
+
+        private WeakTask(Task task) {
+            this.task = new WeakReference<Task>(task);
+        }
+
+        @Override
+        public void run() {
+            Task task = this.task.get();
+
+            if (task == null) {
+                if (this.future != null) {
+                    this.future.cancel(false);
+                }
+
+                return;
+            }
+
+            try {
+                task.sweep();
+            } catch (RuntimeException e) {
+                // keep the task scheduled, the next run may succeed.
+                logger.error(e);
+            }
+        }
+    }
+}
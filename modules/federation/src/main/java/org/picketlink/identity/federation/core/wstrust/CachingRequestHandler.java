@@ -0,0 +1,489 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.identity.federation.core.wstrust;
+
+import org.picketlink.common.PicketLinkLogger;
+import org.picketlink.common.PicketLinkLoggerFactory;
+import org.picketlink.common.constants.WSTrustConstants;
+import org.picketlink.common.exceptions.fed.WSTrustException;
+import org.picketlink.common.util.DocumentUtil;
+import org.picketlink.common.util.SystemPropertiesUtil;
+import org.picketlink.identity.federation.core.interfaces.SecurityTokenProvider;
+import org.picketlink.identity.federation.core.saml.v1.SAML11Constants;
+import org.picketlink.identity.federation.core.sts.AbstractSecurityTokenProvider;
+import org.picketlink.identity.federation.core.sts.registry.RevocationRegistry;
+import org.picketlink.identity.federation.core.wstrust.wrappers.Lifetime;
+import org.picketlink.identity.federation.core.wstrust.wrappers.RequestSecurityToken;
+import org.picketlink.identity.federation.core.wstrust.wrappers.RequestSecurityTokenResponse;
+import org.picketlink.identity.federation.ws.trust.ClaimsType;
+import org.picketlink.identity.federation.ws.trust.RequestedReferenceType;
+import org.picketlink.identity.federation.ws.trust.RequestedSecurityTokenType;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.net.URI;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * A {@link StandardRequestHandler} that keeps the tokens it issued in memory and hands them out again when the same
+ * principal asks for an equivalent token, saving the creation, signature and encryption of a new token on every
+ * request.
+ * </p>
+ * <p>
+ * Two issue requests are equivalent when they share the caller principal, the OnBehalfOf principal, the token type,
+ * the AppliesTo service, the claims, the key type, the key size and the signature algorithm. Only bearer tokens issued
+ * with the default lifetime are cached: requests that carry their own lifetime, entropy, a key to be used or that ask
+ * for a symmetric or public proof key always get a new token.
+ * </p>
+ * <p>
+ * A cached token is only reused while it remains valid for at least {@link #MIN_REMAINING_VALIDITY} milliseconds and
+ * while it is not revoked in the {@link RevocationRegistry} of the provider that issued it. Tokens cancelled through
+ * this handler are evicted right away.
+ * </p>
+ * <p>
+ * To enable it, set the {@code RequestHandler} of the STS configuration to this class. The cache can be tuned with
+ * the following system properties:
+ * </p>
+ * <ul>
+ *     <li>{@link #MAX_SIZE}: maximum number of cached tokens (default 10000).</li>
+ *     <li>{@link #MIN_REMAINING_VALIDITY}: milliseconds a cached token must still be valid to be reused (default
+ *     60000).</li>
+ * </ul>
+ */
+public class CachingRequestHandler extends StandardRequestHandler {
+
+    private static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
+
+    public static final String MAX_SIZE = "picketlink.sts.issued.token.cache.maxSize";
+
+    public static final String MIN_REMAINING_VALIDITY = "picketlink.sts.issued.token.cache.minRemainingValidity";
+
+    static final int DEFAULT_MAX_SIZE = 10000;
+
+    static final long DEFAULT_MIN_REMAINING_VALIDITY = 60000;
+
+    private final ConcurrentMap<String, CachedToken> cachedTokens = new ConcurrentHashMap<String, CachedToken>();
+
+    private final ConcurrentMap<String, String> keysByTokenId = new ConcurrentHashMap<String, String>();
+
+    // tokens issued by this handler waiting to be signed and encrypted by postProcess.
+    private final Map<RequestSecurityToken, PendingToken> pendingTokens = Collections
+        .synchronizedMap(new WeakHashMap<RequestSecurityToken, PendingToken>());
+
+    // requests answered with a cached token, which is already signed and encrypted.
+    private final Map<RequestSecurityToken, Boolean> cachedResponses = Collections
+        .synchronizedMap(new WeakHashMap<RequestSecurityToken, Boolean>());
+
+    private STSConfiguration configuration;
+
+    private int maxSize = getIntProperty(MAX_SIZE, DEFAULT_MAX_SIZE);
+
+    private long minRemainingValidity = getLongProperty(MIN_REMAINING_VALIDITY, DEFAULT_MIN_REMAINING_VALIDITY);
+
+    @Override
+    public void initialize(STSConfiguration configuration) {
+        super.initialize(configuration);
+        this.configuration = configuration;
+    }
+
+    @Override
+    public RequestSecurityTokenResponse issue(RequestSecurityToken request, Principal callerPrincipal) throws WSTrustException {
+        String key = createCacheKey(request, callerPrincipal);
+
+        if (key == null) {
+            return super.issue(request, callerPrincipal);
+        }
+
+        CachedToken cachedToken = getCachedToken(key);
+
+        if (cachedToken != null) {
+            logger.trace("Reusing cached token " + cachedToken.tokenId + " for principal " + callerPrincipal);
+            RequestSecurityTokenResponse response = cachedToken.createResponse(request);
+            this.cachedResponses.put(request, Boolean.TRUE);
+            return response;
+        }
+
+        RequestSecurityTokenResponse response = super.issue(request, callerPrincipal);
+
+        String tokenId = getTokenId(response.getRequestedSecurityToken());
+
+        if (tokenId != null && response.getLifetime() != null) {
+            this.pendingTokens.put(request, new PendingToken(key, tokenId, response));
+        }
+
+        return response;
+    }
+
+    @Override
+    public RequestSecurityTokenResponse cancel(RequestSecurityToken request, Principal callerPrincipal) throws WSTrustException {
+        RequestSecurityTokenResponse response = super.cancel(request, callerPrincipal);
+
+        Node securityToken = request.getCancelTargetElement().getFirstChild();
+        String tokenId = getTokenId(securityToken);
+
+        if (tokenId != null) {
+            evictByTokenId(tokenId);
+        }
+
+        return response;
+    }
+
+    @Override
+    public Document postProcess(Document rstrDocument, RequestSecurityToken request) throws WSTrustException {
+        if (this.cachedResponses.remove(request) != null) {
+            return rstrDocument;
+        }
+
+        Document document = super.postProcess(rstrDocument, request);
+
+        PendingToken pendingToken = this.pendingTokens.remove(request);
+
+        if (pendingToken != null) {
+            Node requestedSecurityToken = document.getElementsByTagNameNS(WSTrustConstants.BASE_NAMESPACE,
+                "RequestedSecurityToken").item(0);
+
+            if (requestedSecurityToken != null && requestedSecurityToken.getFirstChild() instanceof Element) {
+                try {
+                    put(pendingToken.key, new CachedToken(pendingToken, (Element) requestedSecurityToken.getFirstChild()));
+                } catch (Exception e) {
+                    logger.trace("Issued token could not be cached: " + e.getMessage());
+                }
+            }
+        }
+
+        return document;
+    }
+
+    /**
+     * Removes all tokens from the cache.
+     */
+    public void clear() {
+        this.cachedTokens.clear();
+        this.keysByTokenId.clear();
+    }
+
+    /**
+     * @return the number of cached tokens, including the ones that expired but were not evicted yet
+     */
+    public int size() {
+        return this.cachedTokens.size();
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    public void setMinRemainingValidity(long minRemainingValidity) {
+        this.minRemainingValidity = minRemainingValidity;
+    }
+
+    public long getMinRemainingValidity() {
+        return this.minRemainingValidity;
+    }
+
+    /**
+     * <p>
+     * Creates the key used to look up cached tokens for the given request.
+     * </p>
+     *
+     * @param request the issue request
+     * @param callerPrincipal the principal asking for a token
+     *
+     * @return the key or {@code null} if the token issued for the request must not be cached
+     */
+    protected String createCacheKey(RequestSecurityToken request, Principal callerPrincipal) {
+        if (this.maxSize <= 0 || callerPrincipal == null || request.getLifetime() != null
+            || request.getEntropy() != null || request.getUseKey() != null || request.getRenewing() != null
+            || request.getDelegateTo() != null) {
+            return null;
+        }
+
+        URI keyType = request.getKeyType();
+
+        if (keyType != null && !WSTrustConstants.KEY_TYPE_BEARER.equals(keyType.toString())) {
+            return null;
+        }
+
+        String serviceName = null;
+
+        if (request.getAppliesTo() != null) {
+            serviceName = WSTrustUtil.parseAppliesTo(request.getAppliesTo());
+        }
+
+        String tokenType = request.getTokenType() != null ? request.getTokenType().toString() : null;
+
+        if (tokenType == null && serviceName != null) {
+            tokenType = this.configuration.getTokenTypeForService(serviceName);
+        }
+
+        StringBuilder key = new StringBuilder();
+
+        key.append(callerPrincipal.getName()).append('|');
+
+        if (request.getOnBehalfOf() != null) {
+            Principal onBehalfOf = WSTrustUtil.getOnBehalfOfPrincipal(request.getOnBehalfOf());
+
+            if (onBehalfOf == null) {
+                return null;
+            }
+
+            key.append(onBehalfOf.getName());
+        }
+
+        key.append('|').append(tokenType).append('|').append(serviceName).append('|').append(request.getKeySize())
+            .append('|').append(request.getSignatureAlgorithm()).append('|');
+
+        ClaimsType claims = request.getClaims();
+
+        if (claims != null) {
+            key.append(claims.getDialect());
+
+            for (Object claim : claims.getAny()) {
+                key.append('|');
+
+                if (claim instanceof Node) {
+                    try {
+                        key.append(DocumentUtil.getNodeAsString((Node) claim));
+                    } catch (Exception e) {
+                        return null;
+                    }
+                } else {
+                    key.append(claim);
+                }
+            }
+        }
+
+        return key.toString();
+    }
+
+    private CachedToken getCachedToken(String key) {
+        CachedToken cachedToken = this.cachedTokens.get(key);
+
+        if (cachedToken == null) {
+            return null;
+        }
+
+        if (cachedToken.expires - System.currentTimeMillis() < this.minRemainingValidity || isRevoked(cachedToken)) {
+            remove(key, cachedToken);
+            return null;
+        }
+
+        return cachedToken;
+    }
+
+    private boolean isRevoked(CachedToken cachedToken) {
+        if (cachedToken.tokenType == null) {
+            return false;
+        }
+
+        SecurityTokenProvider provider = this.configuration.getProviderForTokenType(cachedToken.tokenType);
+
+        if (provider instanceof AbstractSecurityTokenProvider) {
+            RevocationRegistry revocationRegistry = ((AbstractSecurityTokenProvider) provider).getRevocationRegistry();
+
+            return revocationRegistry != null && revocationRegistry.isRevoked(cachedToken.tokenType, cachedToken.tokenId);
+        }
+
+        return false;
+    }
+
+    private void put(String key, CachedToken cachedToken) {
+        if (this.cachedTokens.size() >= this.maxSize) {
+            purge();
+        }
+
+        CachedToken previous = this.cachedTokens.put(key, cachedToken);
+
+        if (previous != null) {
+            this.keysByTokenId.remove(previous.tokenId, key);
+        }
+
+        this.keysByTokenId.put(cachedToken.tokenId, key);
+    }
+
+    private void remove(String key, CachedToken cachedToken) {
+        if (this.cachedTokens.remove(key, cachedToken)) {
+            this.keysByTokenId.remove(cachedToken.tokenId, key);
+        }
+    }
+
+    private void evictByTokenId(String tokenId) {
+        String key = this.keysByTokenId.remove(tokenId);
+
+        if (key != null) {
+            CachedToken cachedToken = this.cachedTokens.get(key);
+
+            if (cachedToken != null && tokenId.equals(cachedToken.tokenId)) {
+                this.cachedTokens.remove(key, cachedToken);
+            }
+        }
+    }
+
+    /**
+     * Removes the tokens that can no longer be reused. If the cache is still full, arbitrary tokens are removed until
+     * there is room for a new one.
+     */
+    private void purge() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, CachedToken>> iterator = this.cachedTokens.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<String, CachedToken> entry = iterator.next();
+
+            if (entry.getValue().expires - now < this.minRemainingValidity) {
+                remove(entry.getKey(), entry.getValue());
+            }
+        }
+
+        iterator = this.cachedTokens.entrySet().iterator();
+
+        while (this.cachedTokens.size() >= this.maxSize && iterator.hasNext()) {
+            Map.Entry<String, CachedToken> entry = iterator.next();
+            remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static String getTokenId(RequestedSecurityTokenType requestedSecurityToken) {
+        if (requestedSecurityToken == null || requestedSecurityToken.getAny().isEmpty()) {
+            return null;
+        }
+
+        Object token = requestedSecurityToken.getAny().get(0);
+
+        if (token instanceof Node) {
+            return getTokenId((Node) token);
+        }
+
+        return null;
+    }
+
+    private static String getTokenId(Node token) {
+        if (token instanceof Element) {
+            Element element = (Element) token;
+
+            if (element.hasAttribute("ID")) {
+                return element.getAttribute("ID");
+            }
+
+            if (element.hasAttribute(SAML11Constants.ASSERTIONID)) {
+                return element.getAttribute(SAML11Constants.ASSERTIONID);
+            }
+        }
+
+        return null;
+    }
+
+    private static int getIntProperty(String name, int defaultValue) {
+        return (int) getLongProperty(name, defaultValue);
+    }
+
+    private static long getLongProperty(String name, long defaultValue) {
+        String value = SystemPropertiesUtil.getSystemProperty(name, null);
+
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                logger.cannotParseParameterValue(name, e);
+            }
+        }
+
+        return defaultValue;
+    }
+
+    private static class PendingToken {
+
+        private final String key;
+        private final String tokenId;
+        private final RequestSecurityTokenResponse response;
+
+        private PendingToken(String key, String tokenId, RequestSecurityTokenResponse response) {
+            this.key = key;
+            this.tokenId = tokenId;
+            this.response = response;
+        }
+    }
+
+    private static class CachedToken {
+
+        private final String tokenId;
+        private final String tokenType;
+        private final long expires;
+        private final Lifetime lifetime;
+        private final long keySize;
+        private final URI keyType;
+        private final RequestedReferenceType attachedReference;
+        private final RequestedReferenceType unattachedReference;
+        private final String token;
+
+        private CachedToken(PendingToken pendingToken, Element token) throws Exception {
+            RequestSecurityTokenResponse response = pendingToken.response;
+
+            this.tokenId = pendingToken.tokenId;
+            this.tokenType = response.getTokenType() != null ? response.getTokenType().toString() : null;
+            this.lifetime = response.getLifetime();
+            this.expires = this.lifetime.getExpiresCalendar().getTimeInMillis();
+            this.keySize = response.getKeySize();
+            this.keyType = response.getKeyType();
+            this.attachedReference = response.getRequestedAttachedReference();
+            this.unattachedReference = response.getRequestedUnattachedReference();
+            this.token = DocumentUtil.getNodeAsString(token);
+        }
+
+        private RequestSecurityTokenResponse createResponse(RequestSecurityToken request) throws WSTrustException {
+            RequestedSecurityTokenType requestedSecurityToken = new RequestedSecurityTokenType();
+
+            try {
+                requestedSecurityToken.add(DocumentUtil.getDocument(this.token).getDocumentElement());
+            } catch (Exception e) {
+                throw logger.stsError(e);
+            }
+
+            RequestSecurityTokenResponse response = new RequestSecurityTokenResponse();
+
+            if (request.getContext() != null)
+                response.setContext(request.getContext());
+
+            response.setTokenType(this.tokenType != null ? URI.create(this.tokenType) : null);
+            response.setLifetime(this.lifetime);
+            response.setAppliesTo(request.getAppliesTo());
+            response.setKeySize(this.keySize);
+            response.setKeyType(this.keyType);
+            response.setRequestedSecurityToken(requestedSecurityToken);
+
+            if (this.attachedReference != null)
+                response.setRequestedAttachedReference(this.attachedReference);
+            if (this.unattachedReference != null)
+                response.setRequestedUnattachedReference(this.unattachedReference);
+
+            return response;
+        }
+    }
+}
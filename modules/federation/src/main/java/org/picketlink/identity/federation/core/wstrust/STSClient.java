@@ -65,7 +65,11 @@ public class STSClient implements STSClientConfigKeyProvider {
 
     private static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
 
-    private final ThreadLocal<Dispatch<Source>> dispatchLocal = new InheritableThreadLocal<Dispatch<Source>>();
+    /**
+     * The {@link Dispatch} is held by the client itself (and not by the thread that created it) so that pooled clients
+     * can be borrowed and used by any thread. A client must not be used by more than one thread at a time.
+     */
+    private volatile Dispatch<Source> dispatch;
 
     private final String targetNS = "http://org.picketlink.trust/sts/";
 
@@ -129,14 +133,39 @@ public class STSClient implements STSClientConfigKeyProvider {
         jaxwsService.addPort(portName, soapBinding, this.endPointAddress);
         Dispatch<Source> dispatch = jaxwsService.createDispatch(portName, Source.class, Mode.PAYLOAD);
 
-        Map<String, Object> reqContext = dispatch.getRequestContext();
-        String username = config.getUsername();
-        if (username != null) {
-            // add the username and password to the request context.
-            reqContext.put(BindingProvider.USERNAME_PROPERTY, config.getUsername());
-            reqContext.put(BindingProvider.PASSWORD_PROPERTY, config.getPassword());
-        }
         setDispatch(dispatch);
+        setCredentials(config.getUsername(), config.getPassword());
+    }
+
+    /**
+     * <p>Sets the username and password sent to the STS. Pooled clients are shared by every caller of the same STS,
+     * so the pool applies the credentials of the caller each time a client is borrowed and clears them when it is
+     * returned.</p>
+     *
+     * @param username the username, if null the credentials are removed from the {@link Dispatch}
+     * @param password the password
+     */
+    public void setCredentials(String username, String password) {
+        if (getDispatch() == null) {
+            return;
+        }
+
+        Map<String, Object> reqContext = getDispatch().getRequestContext();
+
+        if (username == null) {
+            reqContext.remove(BindingProvider.USERNAME_PROPERTY);
+            reqContext.remove(BindingProvider.PASSWORD_PROPERTY);
+            return;
+        }
+
+        // add the username and password to the request context.
+        reqContext.put(BindingProvider.USERNAME_PROPERTY, username);
+
+        if (password != null) {
+            reqContext.put(BindingProvider.PASSWORD_PROPERTY, password);
+        } else {
+            reqContext.remove(BindingProvider.PASSWORD_PROPERTY);
+        }
     }
 
     /**
@@ -148,7 +177,7 @@ public class STSClient implements STSClientConfigKeyProvider {
         if (dispatch == null)
             throw logger.nullArgumentError("dispatch");
 
-        dispatchLocal.set(dispatch);
+        this.dispatch = dispatch;
     }
 
     /**
@@ -296,7 +325,7 @@ public class STSClient implements STSClientConfigKeyProvider {
 
         validateDispatch();
         DOMSource requestSource = this.createSourceFromRequest(request);
-        Source response = dispatchLocal.get().invoke(requestSource);
+        Source response = getDispatch().invoke(requestSource);
 
         NodeList nodes;
         try {
@@ -355,7 +384,7 @@ public class STSClient implements STSClientConfigKeyProvider {
 
         // send the token request to JBoss STS and get the response.
         DOMSource requestSource = this.createSourceFromRequest(request);
-        Source response = dispatchLocal.get().invoke(requestSource);
+        Source response = getDispatch().invoke(requestSource);
         NodeList nodes;
         try {
             Node documentNode = DocumentUtil.getNodeFromSource(response);
@@ -409,7 +438,7 @@ public class STSClient implements STSClientConfigKeyProvider {
 
         DOMSource requestSource = this.createSourceFromRequest(request);
 
-        Source response = dispatchLocal.get().invoke(requestSource);
+        Source response = getDispatch().invoke(requestSource);
 
         try {
             InputStream stream = DocumentUtil.getNodeAsStream(DocumentUtil.getNodeFromSource(response));
@@ -450,7 +479,7 @@ public class STSClient implements STSClientConfigKeyProvider {
         request.setContext("context");
 
         DOMSource requestSource = this.createSourceFromRequest(request);
-        Source response = dispatchLocal.get().invoke(requestSource);
+        Source response = getDispatch().invoke(requestSource);
         // get the WS-Trust response and check for presence of the RequestTokenCanceled element.
         try {
             InputStream stream = DocumentUtil.getNodeAsStream(DocumentUtil.getNodeFromSource(response));
@@ -471,7 +500,7 @@ public class STSClient implements STSClientConfigKeyProvider {
      * @return
      */
     public Dispatch<Source> getDispatch() {
-        return dispatchLocal.get();
+        return this.dispatch;
     }
 
     private DOMSource createSourceFromRequest(RequestSecurityToken request) throws WSTrustException {
@@ -27,14 +27,25 @@ package org.picketlink.identity.federation.core.wstrust;
  */
 public final class STSClientFactory {
 
-    private static STSClientPool stsClientPool;
+    private static volatile STSClientPool stsClientPool;
 
+    /**
+     * Returns the installed {@link STSClientPool}. If no pool was installed by {@link #setInstance(STSClientPool)}, the
+     * default {@link STSClientPoolFactory} is installed and returned. Pooling is disabled in the default pool unless
+     * a maximum pool size is configured.
+     *
+     * @return
+     */
     public static STSClientPool getInstance() {
+        if (stsClientPool == null) {
+            STSClientPoolFactory.getPoolInstance();
+        }
+
         return stsClientPool;
     }
 
 
-    public static void setInstance(STSClientPool clientPool) {
+    public static synchronized void setInstance(STSClientPool clientPool) {
         if (stsClientPool == null) {
             stsClientPool = clientPool;
         }
@@ -0,0 +1,209 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.identity.federation.core.wstrust;
+
+import org.picketlink.common.PicketLinkLogger;
+import org.picketlink.common.PicketLinkLoggerFactory;
+
+import java.util.List;
+
+/**
+ * <p>Default {@link STSClientPool} implementation.</p>
+ *
+ * <p>Clients are kept in sub pools, one per {@link STSClientConfig}, so the JAX-WS {@link javax.xml.ws.Dispatch} and
+ * SOAP stack created by each {@link STSClient} are reused across requests. Sub pools are created on demand when
+ * {@link #getClient(STSClientConfig)} is called for a configuration that was not seen before.</p>
+ *
+ * <p>Pooling is disabled by default, {@link #getClient(STSClientConfig)} then creates a new client for every call.
+ * It is enabled by setting a maximum pool size, either with {@link #setMaxPoolSize(int)} or with the following
+ * system properties:</p>
+ *
+ * <ul>
+ *     <li>{@link #MAX_POOL_SIZE}: maximum number of clients per sub pool. 0 disables pooling (default 0).</li>
+ *     <li>{@link #BORROW_TIMEOUT}: milliseconds to wait for a free client when a sub pool is exhausted (default
+ *     30000).</li>
+ *     <li>{@link #IDLE_TIMEOUT}: milliseconds after which idle clients above the initial number of clients are
+ *     evicted. 0 or a negative value disables eviction (default 300000).</li>
+ * </ul>
+ *
+ * <p>Clients created through a {@link STSClientCreationCallBack} must provide the same key as the callback, otherwise
+ * they can not be returned to their sub pool.</p>
+ *
+ * <p>Sub pools are keyed by username but not by password. The username and password of the given configuration are
+ * applied to the client every time it is borrowed, so a client is never used with the credentials of a previous
+ * caller.</p>
+ */
+public final class STSClientPoolFactory implements STSClientPool {
+
+    private static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
+
+    public static final String MAX_POOL_SIZE = "picketlink.sts.client.pool.maxSize";
+
+    public static final String BORROW_TIMEOUT = "picketlink.sts.client.pool.borrowTimeout";
+
+    public static final String IDLE_TIMEOUT = "picketlink.sts.client.pool.idleTimeout";
+
+    private final STSClientPoolInternal stsClientPoolInternal;
+
+    private STSClientPoolFactory() {
+        this.stsClientPoolInternal = new STSClientPoolInternal();
+
+        this.stsClientPoolInternal.setMaxPoolSize(getIntProperty(MAX_POOL_SIZE, STSClientPoolInternal.DEFAULT_MAX_POOL_SIZE));
+        this.stsClientPoolInternal.setBorrowTimeout(getLongProperty(BORROW_TIMEOUT, STSClientPoolInternal.DEFAULT_BORROW_TIMEOUT));
+        this.stsClientPoolInternal.setIdleTimeout(getLongProperty(IDLE_TIMEOUT, STSClientPoolInternal.DEFAULT_IDLE_TIMEOUT));
+    }
+
+    private static class LazySTSClientPoolFactory {
+        private static final STSClientPoolFactory INSTANCE = new STSClientPoolFactory();
+    }
+
+    /**
+     * Returns the pool instance and registers it with {@link STSClientFactory} if no other pool was installed.
+     *
+     * @return the {@link STSClientPool} instance
+     */
+    public static STSClientPool getPoolInstance() {
+        STSClientPoolFactory pool = LazySTSClientPoolFactory.INSTANCE;
+        STSClientFactory.setInstance(pool);
+        return pool;
+    }
+
+    @Override
+    public void createPool(final STSClientConfig config) {
+        createPool(STSClientPoolInternal.DEFAULT_INITIAL_NUMBER_OF_CLIENTS, config);
+    }
+
+    @Override
+    public void createPool(int initialNumberOfClients, final STSClientConfig config) {
+        this.stsClientPoolInternal.createPool(initialNumberOfClients, config);
+    }
+
+    @Override
+    public void createPool(int initialNumberOfClients, final STSClientCreationCallBack callBack) {
+        this.stsClientPoolInternal.createPool(initialNumberOfClients, callBack);
+    }
+
+    @Override
+    public void destroyPool(final STSClientConfig config) {
+        this.stsClientPoolInternal.destroyPool(config);
+    }
+
+    @Override
+    public void destroyPool(final String moduleName) {
+        this.stsClientPoolInternal.destroyPool(moduleName);
+    }
+
+    @Override
+    public void returnClient(final STSClient stsClient) {
+        this.stsClientPoolInternal.returnClient(stsClient);
+    }
+
+    @Override
+    public STSClient getClient(final STSClientConfig config) {
+        return this.stsClientPoolInternal.getClient(config);
+    }
+
+    @Override
+    public boolean configExists(final STSClientConfig config) {
+        return this.stsClientPoolInternal.configExists(config);
+    }
+
+    /**
+     * Evicts idle clients from all sub pools. Eviction also happens when clients are borrowed or returned, this
+     * method is useful for schedulers that want to release resources from sub pools that are no longer used.
+     */
+    public void evictIdleClients() {
+        this.stsClientPoolInternal.evictIdleClients();
+    }
+
+    /**
+     * @param config {@link STSClientConfig} to find client sub pool
+     * @return the metrics of the sub pool or null if there is no sub pool for the given config
+     */
+    public STSClientPoolStatistics getStatistics(final STSClientConfig config) {
+        return this.stsClientPoolInternal.getStatistics(config);
+    }
+
+    /**
+     * @return the metrics of all sub pools
+     */
+    public List<STSClientPoolStatistics> getStatistics() {
+        return this.stsClientPoolInternal.getStatistics();
+    }
+
+    /**
+     * Sets the maximum number of clients per sub pool. Only sub pools created after this call are affected.
+     *
+     * @param maxPoolSize maximum number of clients, 0 disables pooling
+     */
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.stsClientPoolInternal.setMaxPoolSize(maxPoolSize);
+    }
+
+    public int getMaxPoolSize() {
+        return this.stsClientPoolInternal.getMaxPoolSize();
+    }
+
+    public void setBorrowTimeout(long borrowTimeout) {
+        this.stsClientPoolInternal.setBorrowTimeout(borrowTimeout);
+    }
+
+    public long getBorrowTimeout() {
+        return this.stsClientPoolInternal.getBorrowTimeout();
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.stsClientPoolInternal.setIdleTimeout(idleTimeout);
+    }
+
+    public long getIdleTimeout() {
+        return this.stsClientPoolInternal.getIdleTimeout();
+    }
+
+    public boolean isPoolingEnabled() {
+        return this.stsClientPoolInternal.isPoolingEnabled();
+    }
+
+    private static int getIntProperty(String name, int defaultValue) {
+        String value = SecurityActions.getSystemProperty(name, null);
+
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                logger.cannotParseParameterValue(name, e);
+            }
+        }
+
+        return defaultValue;
+    }
+
+    private static long getLongProperty(String name, long defaultValue) {
+        String value = SecurityActions.getSystemProperty(name, null);
+
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                logger.cannotParseParameterValue(name, e);
+            }
+        }
+
+        return defaultValue;
+    }
+}
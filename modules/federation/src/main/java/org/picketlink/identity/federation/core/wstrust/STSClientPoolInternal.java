@@ -0,0 +1,459 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.identity.federation.core.wstrust;
+
+import org.picketlink.common.PicketLinkLogger;
+import org.picketlink.common.PicketLinkLoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Holds the sub pools of {@link STSClient} instances managed by {@link STSClientPoolFactory}.</p>
+ *
+ * <p>Each sub pool is identified by the key provided by {@link STSClientConfigKeyProvider} where the
+ * {@link STSClientConfig#SUBSTITUTE_MODULE} prefix is replaced by the name of the module (deployment) that is
+ * using the pool, and without the username: callers of the same STS share the sub pool whatever their credentials.
+ * The credentials of the caller are set on every borrowed client and cleared when it is returned.</p>
+ *
+ * <p>Clients are created lazily up to the maximum pool size, borrowers wait up to the configured timeout when the
+ * sub pool is exhausted and idle clients above the initial number of clients are evicted after the configured idle
+ * time. Sub pools with no client in use that were not used for the idle time are removed.</p>
+ */
+class STSClientPoolInternal {
+
+    private static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
+
+    static final int DEFAULT_INITIAL_NUMBER_OF_CLIENTS = 1;
+    static final int DEFAULT_MAX_POOL_SIZE = 0;
+    static final long DEFAULT_BORROW_TIMEOUT = 30000;
+    static final long DEFAULT_IDLE_TIMEOUT = 300000;
+
+    private final ConcurrentMap<String, SubPool> subPools = new ConcurrentHashMap<String, SubPool>();
+
+    private volatile int maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+    private volatile long borrowTimeout = DEFAULT_BORROW_TIMEOUT;
+    private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+    void createPool(int initialNumberOfClients, final STSClientConfig config) {
+        createPool(initialNumberOfClients, new ConfigCreationCallBack(config));
+    }
+
+    void createPool(int initialNumberOfClients, final STSClientCreationCallBack callBack) {
+        if (!isPoolingEnabled()) {
+            return;
+        }
+
+        String key = getPoolKey(callBack.getKey());
+
+        if (this.subPools.containsKey(key)) {
+            return;
+        }
+
+        removeUnusedPools();
+
+        int initial = Math.max(0, Math.min(initialNumberOfClients, this.maxPoolSize));
+        SubPool subPool = new SubPool(key, callBack, initial, this.maxPoolSize);
+
+        if (this.subPools.putIfAbsent(key, subPool) == null) {
+            subPool.fill();
+            logger.trace("Created STS client sub pool [" + key + "] with [" + initial + "] initial clients.");
+        }
+    }
+
+    STSClient getClient(final STSClientConfig config) {
+        if (!isPoolingEnabled()) {
+            return new STSClient(config);
+        }
+
+        String key = getPoolKey(config.getSTSClientConfigKey());
+        SubPool subPool = this.subPools.get(key);
+
+        if (subPool == null) {
+            createPool(DEFAULT_INITIAL_NUMBER_OF_CLIENTS, config);
+            subPool = this.subPools.get(key);
+
+            if (subPool == null) {
+                throw logger.cannotGetSTSConfigByKey(key);
+            }
+        }
+
+        STSClient client = subPool.borrow(this.borrowTimeout, this.idleTimeout);
+
+        // the key does not include the credentials, a client created for a previous caller must never authenticate
+        // with the credentials of that caller.
+        client.setCredentials(config.getUsername(), config.getPassword());
+
+        return client;
+    }
+
+    void returnClient(final STSClient stsClient) {
+        if (stsClient == null || !isPoolingEnabled()) {
+            return;
+        }
+
+        String key = getPoolKey(stsClient.getSTSClientConfigKey());
+        SubPool subPool = key != null ? this.subPools.get(key) : null;
+
+        if (subPool == null) {
+            // the client was not created by this pool or its sub pool was destroyed while the client was in use.
+            return;
+        }
+
+        if (subPool.isBorrowed(stsClient)) {
+            stsClient.setCredentials(null, null);
+        }
+
+        subPool.giveBack(stsClient, this.idleTimeout);
+    }
+
+    boolean configExists(final STSClientConfig config) {
+        return this.subPools.containsKey(getPoolKey(config.getSTSClientConfigKey()));
+    }
+
+    void destroyPool(final STSClientConfig config) {
+        SubPool subPool = this.subPools.remove(getPoolKey(config.getSTSClientConfigKey()));
+
+        if (subPool != null) {
+            subPool.destroy();
+        }
+    }
+
+    void destroyPool(final String moduleName) {
+        String prefix = (moduleName == null || moduleName.length() == 0 ? STSClientConfig.NO_MODULE : moduleName) + "|";
+
+        for (Iterator<Map.Entry<String, SubPool>> iterator = this.subPools.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, SubPool> entry = iterator.next();
+
+            if (entry.getKey().startsWith(prefix)) {
+                iterator.remove();
+                entry.getValue().destroy();
+            }
+        }
+    }
+
+    void evictIdleClients() {
+        for (SubPool subPool : this.subPools.values()) {
+            subPool.evictIdle(this.idleTimeout);
+        }
+
+        removeUnusedPools();
+    }
+
+    /**
+     * <p>Removes the sub pools with no client in use that were not used for the idle time.</p>
+     */
+    private void removeUnusedPools() {
+        long idleTimeout = this.idleTimeout;
+
+        if (idleTimeout <= 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        for (Iterator<Map.Entry<String, SubPool>> iterator = this.subPools.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, SubPool> entry = iterator.next();
+            SubPool subPool = entry.getValue();
+
+            if (subPool.isUnused(now, idleTimeout) && this.subPools.remove(entry.getKey(), subPool)) {
+                subPool.destroy();
+                logger.trace("Removed unused STS client sub pool [" + entry.getKey() + "].");
+            }
+        }
+    }
+
+    STSClientPoolStatistics getStatistics(final STSClientConfig config) {
+        SubPool subPool = this.subPools.get(getPoolKey(config.getSTSClientConfigKey()));
+
+        if (subPool == null) {
+            return null;
+        }
+
+        return subPool.getStatistics();
+    }
+
+    List<STSClientPoolStatistics> getStatistics() {
+        List<STSClientPoolStatistics> statistics = new ArrayList<STSClientPoolStatistics>();
+
+        for (SubPool subPool : this.subPools.values()) {
+            statistics.add(subPool.getStatistics());
+        }
+
+        return statistics;
+    }
+
+    void setMaxPoolSize(int maxPoolSize) {
+        if (maxPoolSize < 0) {
+            throw logger.cannotSetMaxPoolSizeToNegative(String.valueOf(maxPoolSize));
+        }
+
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    int getMaxPoolSize() {
+        return this.maxPoolSize;
+    }
+
+    void setBorrowTimeout(long borrowTimeout) {
+        this.borrowTimeout = Math.max(0, borrowTimeout);
+    }
+
+    long getBorrowTimeout() {
+        return this.borrowTimeout;
+    }
+
+    void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    long getIdleTimeout() {
+        return this.idleTimeout;
+    }
+
+    boolean isPoolingEnabled() {
+        return this.maxPoolSize > 0;
+    }
+
+    /**
+     * <p>Returns the key of the sub pool for the given configuration key: the module is substituted and the username,
+     * the last part of the keys computed by {@link STSClientConfig#computeSTSClientConfigKey}, is left out.</p>
+     *
+     * @param originalKey
+     * @return
+     */
+    private String getPoolKey(String originalKey) {
+        if (originalKey == null) {
+            return null;
+        }
+
+        String key = originalKey;
+
+        if (key.startsWith(STSClientConfig.SUBSTITUTE_MODULE)) {
+            key = getModuleName() + key.substring(STSClientConfig.SUBSTITUTE_MODULE.length());
+        }
+
+        // module|serviceName|portName|endpointAddress|username
+        int separator = -1;
+
+        for (int i = 0; i < 4; i++) {
+            separator = key.indexOf('|', separator + 1);
+
+            if (separator == -1) {
+                return key;
+            }
+        }
+
+        return key.substring(0, separator);
+    }
+
+    /**
+     * <p>Resolves the name of the module from the TCCL. When running on JBoss Modules the module identifier is
+     * used, otherwise all clients belong to {@link STSClientConfig#NO_MODULE}.</p>
+     *
+     * @return
+     */
+    private static String getModuleName() {
+        ClassLoader classLoader = SecurityActions.getTCCL();
+
+        if (classLoader != null && "org.jboss.modules.ModuleClassLoader".equals(classLoader.getClass().getName())) {
+            try {
+                Method getModule = classLoader.getClass().getMethod("getModule");
+                Object module = getModule.invoke(classLoader);
+                Method getIdentifier = module.getClass().getMethod("getIdentifier");
+
+                return String.valueOf(getIdentifier.invoke(module));
+            } catch (Exception e) {
+                logger.trace("Could not resolve module name from TCCL.", e);
+            }
+        }
+
+        return STSClientConfig.NO_MODULE;
+    }
+
+    private static class ConfigCreationCallBack extends STSClientCreationCallBack {
+
+        private final STSClientConfig config;
+
+        ConfigCreationCallBack(STSClientConfig config) {
+            this.config = config;
+        }
+
+        @Override
+        public STSClient createClient() {
+            return new STSClient(this.config);
+        }
+
+        @Override
+        public String getKey() {
+            return this.config.getSTSClientConfigKey();
+        }
+    }
+
+    private static class IdleClient {
+
+        private final STSClient client;
+        private final long idleSince;
+
+        IdleClient(STSClient client) {
+            this.client = client;
+            this.idleSince = System.currentTimeMillis();
+        }
+    }
+
+    private static class SubPool {
+
+        private final String key;
+        private final STSClientCreationCallBack callBack;
+        private final int initialNumberOfClients;
+        private final int maxPoolSize;
+        private final Semaphore permits;
+        private final LinkedBlockingDeque<IdleClient> idle = new LinkedBlockingDeque<IdleClient>();
+        private final Map<STSClient, Boolean> inUse = new ConcurrentHashMap<STSClient, Boolean>();
+
+        private final AtomicLong created = new AtomicLong();
+        private final AtomicLong borrowed = new AtomicLong();
+        private final AtomicLong returned = new AtomicLong();
+        private final AtomicLong evicted = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong totalWaitTime = new AtomicLong();
+
+        private volatile boolean destroyed;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        SubPool(String key, STSClientCreationCallBack callBack, int initialNumberOfClients, int maxPoolSize) {
+            this.key = key;
+            this.callBack = callBack;
+            this.initialNumberOfClients = initialNumberOfClients;
+            this.maxPoolSize = maxPoolSize;
+            this.permits = new Semaphore(maxPoolSize, true);
+        }
+
+        void fill() {
+            for (int i = 0; i < this.initialNumberOfClients; i++) {
+                this.idle.offerFirst(new IdleClient(newClient()));
+            }
+        }
+
+        STSClient borrow(long borrowTimeout, long idleTimeout) {
+            long start = System.currentTimeMillis();
+
+            try {
+                if (!this.permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+                    this.timeouts.incrementAndGet();
+                    throw logger.maximumNumberOfClientsReachedforPool(String.valueOf(this.maxPoolSize));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw logger.cannotGetFreeClientPoolKey(this.key);
+            }
+
+            this.totalWaitTime.addAndGet(System.currentTimeMillis() - start);
+
+            try {
+                // most recently used clients are taken first, so the ones at the tail become idle and can be evicted.
+                IdleClient idleClient = this.idle.pollFirst();
+                STSClient client = idleClient != null ? idleClient.client : newClient();
+
+                this.inUse.put(client, Boolean.TRUE);
+                this.borrowed.incrementAndGet();
+                this.lastUsed = System.currentTimeMillis();
+
+                return client;
+            } catch (RuntimeException e) {
+                this.permits.release();
+                throw e;
+            } finally {
+                evictIdle(idleTimeout);
+            }
+        }
+
+        void giveBack(STSClient client, long idleTimeout) {
+            if (this.inUse.remove(client) == null) {
+                logger.trace("Ignoring client not borrowed from STS client sub pool [" + this.key + "].");
+                return;
+            }
+
+            this.returned.incrementAndGet();
+            this.lastUsed = System.currentTimeMillis();
+
+            if (!this.destroyed) {
+                this.idle.offerFirst(new IdleClient(client));
+            }
+
+            this.permits.release();
+
+            evictIdle(idleTimeout);
+        }
+
+        void evictIdle(long idleTimeout) {
+            if (idleTimeout <= 0) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+
+            while (this.idle.size() > this.initialNumberOfClients) {
+                IdleClient oldest = this.idle.peekLast();
+
+                if (oldest == null || now - oldest.idleSince < idleTimeout) {
+                    break;
+                }
+
+                if (this.idle.removeLastOccurrence(oldest)) {
+                    this.evicted.incrementAndGet();
+                }
+            }
+        }
+
+        boolean isBorrowed(STSClient client) {
+            return this.inUse.containsKey(client);
+        }
+
+        boolean isUnused(long now, long idleTimeout) {
+            return this.inUse.isEmpty() && now - this.lastUsed >= idleTimeout;
+        }
+
+        void destroy() {
+            this.destroyed = true;
+            this.evicted.addAndGet(this.idle.size());
+            this.idle.clear();
+        }
+
+        STSClientPoolStatistics getStatistics() {
+            return new STSClientPoolStatistics(this.key, this.maxPoolSize, this.idle.size(), this.inUse.size(),
+                this.created.get(), this.borrowed.get(), this.returned.get(), this.evicted.get(), this.timeouts.get(),
+                this.totalWaitTime.get());
+        }
+
+        private STSClient newClient() {
+            STSClient client = this.callBack.createClient();
+            this.created.incrementAndGet();
+            return client;
+        }
+    }
+}
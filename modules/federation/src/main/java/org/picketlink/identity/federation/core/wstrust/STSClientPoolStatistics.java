@@ -0,0 +1,109 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.identity.federation.core.wstrust;
+
+/**
+ * Snapshot of the metrics of a single sub pool of {@link STSClient}s.
+ *
+ * @see STSClientPoolFactory#getStatistics(STSClientConfig)
+ */
+public class STSClientPoolStatistics {
+
+    private final String key;
+    private final int maxPoolSize;
+    private final int idleClients;
+    private final int clientsInUse;
+    private final long createdClients;
+    private final long borrowedClients;
+    private final long returnedClients;
+    private final long evictedClients;
+    private final long borrowTimeouts;
+    private final long totalBorrowWaitTime;
+
+    STSClientPoolStatistics(String key, int maxPoolSize, int idleClients, int clientsInUse, long createdClients,
+                            long borrowedClients, long returnedClients, long evictedClients, long borrowTimeouts,
+                            long totalBorrowWaitTime) {
+        this.key = key;
+        this.maxPoolSize = maxPoolSize;
+        this.idleClients = idleClients;
+        this.clientsInUse = clientsInUse;
+        this.createdClients = createdClients;
+        this.borrowedClients = borrowedClients;
+        this.returnedClients = returnedClients;
+        this.evictedClients = evictedClients;
+        this.borrowTimeouts = borrowTimeouts;
+        this.totalBorrowWaitTime = totalBorrowWaitTime;
+    }
+
+    /**
+     * @return the key identifying the sub pool
+     */
+    public String getKey() {
+        return this.key;
+    }
+
+    public int getMaxPoolSize() {
+        return this.maxPoolSize;
+    }
+
+    public int getIdleClients() {
+        return this.idleClients;
+    }
+
+    public int getClientsInUse() {
+        return this.clientsInUse;
+    }
+
+    public long getCreatedClients() {
+        return this.createdClients;
+    }
+
+    public long getBorrowedClients() {
+        return this.borrowedClients;
+    }
+
+    public long getReturnedClients() {
+        return this.returnedClients;
+    }
+
+    public long getEvictedClients() {
+        return this.evictedClients;
+    }
+
+    /**
+     * @return how many times a borrower gave up waiting for a free client
+     */
+    public long getBorrowTimeouts() {
+        return this.borrowTimeouts;
+    }
+
+    /**
+     * @return the accumulated time, in milliseconds, borrowers spent waiting for a free client
+     */
+    public long getTotalBorrowWaitTime() {
+        return this.totalBorrowWaitTime;
+    }
+
+    @Override
+    public String toString() {
+        return "STSClientPoolStatistics [key=" + this.key + ", maxPoolSize=" + this.maxPoolSize + ", idle="
+            + this.idleClients + ", inUse=" + this.clientsInUse + ", created=" + this.createdClients + ", borrowed="
+            + this.borrowedClients + ", returned=" + this.returnedClients + ", evicted=" + this.evictedClients
+            + ", timeouts=" + this.borrowTimeouts + ", totalWaitTime=" + this.totalBorrowWaitTime + "]";
+    }
+}
@@ -535,7 +535,8 @@ public class SPFilter implements Filter {
         return version;
     }
 
-    private Document toSAMLResponseDocument(String samlResponse, boolean isPostBinding) throws ParsingException {
+    private Document toSAMLResponseDocument(String samlResponse, boolean isPostBinding) throws ParsingException,
+        ProcessingException {
         InputStream dataStream = null;
 
         if (isPostBinding) {
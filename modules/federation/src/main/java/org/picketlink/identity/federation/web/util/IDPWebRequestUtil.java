@@ -360,7 +360,7 @@ public class IDPWebRequestUtil {
         return is;
     }
 
-    private InputStream parseSAMLRequestRedirectBinding(String samlMessage) {
+    private InputStream parseSAMLRequestRedirectBinding(String samlMessage) throws ProcessingException {
         InputStream is;
         is = RedirectBindingUtil.base64DeflateDecode(samlMessage);
         return is;
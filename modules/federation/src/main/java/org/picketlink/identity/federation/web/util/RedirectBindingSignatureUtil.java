@@ -39,6 +39,8 @@ import java.net.URLEncoder;
 import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.picketlink.common.util.StringUtil.isNotNull;
 
@@ -52,6 +54,8 @@ public class RedirectBindingSignatureUtil {
 
     private static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
 
+    private static final ConcurrentMap<String, String> urlEncodedSignatureAlgorithms = new ConcurrentHashMap<String, String>();
+
     /**
      * Get the URL for the SAML request that contains the signature and signature algorithm
      *
@@ -82,11 +86,8 @@ public class RedirectBindingSignatureUtil {
         if (isNotNull(relayState))
             urlEncodedRelayState = URLEncoder.encode(relayState, "UTF-8");
 
-        byte[] sigValue = computeSignature(GeneralConstants.SAML_REQUEST_KEY, urlEncodedRequest, urlEncodedRelayState,
+        return getRedirectURLWithSignature(GeneralConstants.SAML_REQUEST_KEY, urlEncodedRequest, urlEncodedRelayState,
                 signingKey);
-
-        // Now construct the URL
-        return getRequestRedirectURLWithSignature(urlEncodedRequest, urlEncodedRelayState, sigValue, signingKey.getAlgorithm());
     }
 
     /**
@@ -116,12 +117,8 @@ public class RedirectBindingSignatureUtil {
         if (isNotNull(relayState))
             urlEncodedRelayState = URLEncoder.encode(relayState, "UTF-8");
 
-        byte[] sigValue = computeSignature(GeneralConstants.SAML_RESPONSE_KEY, urlEncodedResponse, urlEncodedRelayState,
+        return getRedirectURLWithSignature(GeneralConstants.SAML_RESPONSE_KEY, urlEncodedResponse, urlEncodedRelayState,
                 signingKey);
-
-        // Now construct the URL
-        return getResponseRedirectURLWithSignature(urlEncodedResponse, urlEncodedRelayState, sigValue,
-                signingKey.getAlgorithm());
     }
 
     /**
@@ -138,9 +135,8 @@ public class RedirectBindingSignatureUtil {
      */
     public static String getSAMLRequestURLWithSignature(String urlEncodedRequest, String urlEncodedRelayState,
                                                         PrivateKey signingKey) throws IOException, GeneralSecurityException {
-        byte[] sigValue = computeSignature(GeneralConstants.SAML_REQUEST_KEY, urlEncodedRequest, urlEncodedRelayState,
+        return getRedirectURLWithSignature(GeneralConstants.SAML_REQUEST_KEY, urlEncodedRequest, urlEncodedRelayState,
                 signingKey);
-        return getRequestRedirectURLWithSignature(urlEncodedRequest, urlEncodedRelayState, sigValue, signingKey.getAlgorithm());
     }
 
     /**
@@ -157,10 +153,8 @@ public class RedirectBindingSignatureUtil {
      */
     public static String getSAMLResponseURLWithSignature(String urlEncodedResponse, String urlEncodedRelayState,
                                                          PrivateKey signingKey) throws IOException, GeneralSecurityException {
-        byte[] sigValue = computeSignature(GeneralConstants.SAML_RESPONSE_KEY, urlEncodedResponse, urlEncodedRelayState,
+        return getRedirectURLWithSignature(GeneralConstants.SAML_RESPONSE_KEY, urlEncodedResponse, urlEncodedRelayState,
                 signingKey);
-        return getResponseRedirectURLWithSignature(urlEncodedResponse, urlEncodedRelayState, sigValue,
-                signingKey.getAlgorithm());
     }
 
     /**
@@ -216,11 +210,11 @@ public class RedirectBindingSignatureUtil {
     public static boolean validateSignature(String queryString, PublicKey validatingKey, byte[] sigValue)
             throws UnsupportedEncodingException, GeneralSecurityException {
         // Construct the url again
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = new StringBuilder(queryString.length());
+        String samlRequest = RedirectBindingSignatureUtil.getTokenValue(queryString, GeneralConstants.SAML_REQUEST_KEY);
 
-        if (isRequestQueryString(queryString)) {
-            addParameter(sb, GeneralConstants.SAML_REQUEST_KEY,
-                    RedirectBindingSignatureUtil.getTokenValue(queryString, GeneralConstants.SAML_REQUEST_KEY));
+        if (samlRequest != null) {
+            addParameter(sb, GeneralConstants.SAML_REQUEST_KEY, samlRequest);
         } else {
             addParameter(sb, GeneralConstants.SAML_RESPONSE_KEY,
                     RedirectBindingSignatureUtil.getTokenValue(queryString, GeneralConstants.SAML_RESPONSE_KEY));
@@ -238,15 +232,14 @@ public class RedirectBindingSignatureUtil {
         return SignatureUtil.validate(sb.toString().getBytes("UTF-8"), sigValue, validatingKey);
     }
 
-    private static boolean isRequestQueryString(String queryString) {
-        return RedirectBindingSignatureUtil.getTokenValue(queryString, GeneralConstants.SAML_REQUEST_KEY) != null;
-    }
-
     // ***************** Private Methods **************
 
-    private static byte[] computeSignature(String samlParameter, String urlEncoded, String urlEncodedRelayState,
-                                           PrivateKey signingKey) throws IOException, GeneralSecurityException {
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Builds the query string once, signs its octets and appends the signature.
+     */
+    private static String getRedirectURLWithSignature(String samlParameter, String urlEncoded, String urlEncodedRelayState,
+                                                      PrivateKey signingKey) throws IOException, GeneralSecurityException {
+        StringBuilder sb = new StringBuilder(urlEncoded.length() + 512);
 
         addParameter(sb, samlParameter, urlEncoded);
 
@@ -254,54 +247,24 @@ public class RedirectBindingSignatureUtil {
             addParameter(sb, GeneralConstants.RELAY_STATE, urlEncodedRelayState);
         }
 
-        // SigAlg
-        String algo = signingKey.getAlgorithm();
-        String sigAlg = SignatureUtil.getXMLSignatureAlgorithmURI(algo);
+        addParameter(sb, GeneralConstants.SAML_SIG_ALG_REQUEST_KEY, getURLEncodedSignatureAlgorithm(signingKey.getAlgorithm()));
 
-        sigAlg = URLEncoder.encode(sigAlg, "UTF-8");
+        byte[] sigValue = SignatureUtil.sign(sb.toString().getBytes("UTF-8"), signingKey);
 
-        addParameter(sb, GeneralConstants.SAML_SIG_ALG_REQUEST_KEY, sigAlg);
+        addParameter(sb, GeneralConstants.SAML_SIGNATURE_REQUEST_KEY, RedirectBindingUtil.base64URLEncode(sigValue));
 
-        byte[] sigValue = SignatureUtil.sign(sb.toString(), signingKey);
-
-        return sigValue;
-    }
-
-    private static String getRequestRedirectURLWithSignature(String urlEncodedRequest, String urlEncodedRelayState,
-                                                             byte[] signature, String sigAlgo) throws IOException {
-        return getRedirectURLWithSignature(GeneralConstants.SAML_REQUEST_KEY, urlEncodedRequest, urlEncodedRelayState,
-                signature, sigAlgo);
-    }
-
-    private static String getResponseRedirectURLWithSignature(String urlEncodedResponse, String urlEncodedRelayState,
-                                                              byte[] signature, String sigAlgo) throws IOException {
-        return getRedirectURLWithSignature(GeneralConstants.SAML_RESPONSE_KEY, urlEncodedResponse, urlEncodedRelayState,
-                signature, sigAlgo);
+        return sb.toString();
     }
 
-    private static String getRedirectURLWithSignature(String samlParameter, String urlEncoded, String urlEncodedRelayState,
-                                                      byte[] signature, String sigAlgo) throws IOException {
-        StringBuilder sb = new StringBuilder();
-
-        addParameter(sb, samlParameter, urlEncoded);
+    private static String getURLEncodedSignatureAlgorithm(String algorithm) throws UnsupportedEncodingException {
+        String sigAlg = urlEncodedSignatureAlgorithms.get(algorithm);
 
-        if (isNotNull(urlEncodedRelayState)) {
-            addParameter(sb, GeneralConstants.RELAY_STATE, urlEncodedRelayState);
+        if (sigAlg == null) {
+            sigAlg = URLEncoder.encode(SignatureUtil.getXMLSignatureAlgorithmURI(algorithm), "UTF-8");
+            urlEncodedSignatureAlgorithms.put(algorithm, sigAlg);
         }
 
-        // SigAlg
-        String sigAlg = SignatureUtil.getXMLSignatureAlgorithmURI(sigAlgo);
-
-        sigAlg = URLEncoder.encode(sigAlg, "UTF-8");
-
-        addParameter(sb, GeneralConstants.SAML_SIG_ALG_REQUEST_KEY, sigAlg);
-
-        // Encode the signature value
-        String encodedSig = RedirectBindingUtil.base64URLEncode(signature);
-
-        addParameter(sb, GeneralConstants.SAML_SIGNATURE_REQUEST_KEY, encodedSig);
-
-        return sb.toString();
+        return sigAlg;
     }
 
     private static void addParameter(StringBuilder queryString, String paramName, String paramValue) {
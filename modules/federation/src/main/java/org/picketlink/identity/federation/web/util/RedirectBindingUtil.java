@@ -17,6 +17,7 @@
  */
 package org.picketlink.identity.federation.web.util;
 
+import org.picketlink.common.exceptions.ProcessingException;
 import org.picketlink.common.util.Base64;
 import org.picketlink.identity.federation.api.util.DeflateUtil;
 
@@ -72,7 +73,24 @@ public class RedirectBindingUtil {
      */
     public static String base64URLEncode(byte[] stringToEncode) throws IOException {
         String base64Request = Base64.encodeBytes(stringToEncode, Base64.DONT_BREAK_LINES);
-        return urlEncode(base64Request);
+        StringBuilder urlEncoded = new StringBuilder(base64Request.length() + 16);
+
+        // only three characters of the base64 alphabet need to be escaped, same as urlEncode would do
+        for (int i = 0; i < base64Request.length(); i++) {
+            char c = base64Request.charAt(i);
+
+            if (c == '+') {
+                urlEncoded.append("%2B");
+            } else if (c == '/') {
+                urlEncoded.append("%2F");
+            } else if (c == '=') {
+                urlEncoded.append("%3D");
+            } else {
+                urlEncoded.append(c);
+            }
+        }
+
+        return urlEncoded.toString();
     }
 
     /**
@@ -138,8 +156,9 @@ public class RedirectBindingUtil {
      * @return
      *
      * @throws IOException
+     * @throws ProcessingException if the decoded message is larger than the maximum size
      */
-    public static InputStream urlBase64DeflateDecode(String encodedString) throws IOException {
+    public static InputStream urlBase64DeflateDecode(String encodedString) throws IOException, ProcessingException {
         byte[] deflatedString = urlBase64Decode(encodedString);
         return DeflateUtil.decode(deflatedString);
     }
@@ -150,8 +169,10 @@ public class RedirectBindingUtil {
      * @param encodedString
      *
      * @return
+     *
+     * @throws ProcessingException if the decoded message is larger than the maximum size
      */
-    public static InputStream base64DeflateDecode(String encodedString) {
+    public static InputStream base64DeflateDecode(String encodedString) throws ProcessingException {
         byte[] base64decodedMsg = Base64.decode(encodedString);
         return DeflateUtil.decode(base64decodedMsg);
     }
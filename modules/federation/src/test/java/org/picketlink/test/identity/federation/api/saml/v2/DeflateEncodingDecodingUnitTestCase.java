@@ -18,16 +18,24 @@
 package org.picketlink.test.identity.federation.api.saml.v2;
 
 import junit.framework.TestCase;
+import org.picketlink.common.exceptions.ProcessingException;
 import org.picketlink.common.util.Base64;
 import org.picketlink.identity.federation.api.saml.v2.request.SAML2Request;
 import org.picketlink.identity.federation.api.util.DeflateUtil;
 import org.picketlink.identity.federation.core.saml.v2.common.IDGenerator;
 import org.picketlink.identity.federation.saml.v2.protocol.AuthnRequestType;
+import org.picketlink.identity.federation.web.util.RedirectBindingUtil;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 /**
  * Unit test the DEFLATE compression encoding/decoding cycles
@@ -58,4 +66,98 @@ public class DeflateEncodingDecodingUnitTestCase extends TestCase {
 
         assertNotNull(decodedRequestType);
     }
-}
\ No newline at end of file
+
+    public void testDeflateRoundTrips() throws Exception {
+        Random random = new Random(42);
+
+        // messages larger than the reused buffers, and incompressible ones
+        for (int size : new int[] { 0, 10, 1000, 100 * 1024, 300 * 1024 }) {
+            byte[] message = new byte[size];
+
+            for (int i = 0; i < size; i++) {
+                message[i] = (byte) (i % 2 == 0 ? random.nextInt() : 'a');
+            }
+
+            for (int i = 0; i < 3; i++) {
+                byte[] deflatedMsg = DeflateUtil.encode(message);
+
+                assertTrue(Arrays.equals(deflateAsStream(message), deflatedMsg));
+                assertTrue(Arrays.equals(message, readFully(DeflateUtil.decode(deflatedMsg))));
+            }
+        }
+    }
+
+    public void testDecodeTruncatedMessage() throws Exception {
+        byte[] deflatedMsg = DeflateUtil.encode(new byte[10000]);
+        InputStream is = DeflateUtil.decode(Arrays.copyOf(deflatedMsg, deflatedMsg.length / 2));
+
+        try {
+            readFully(is);
+            fail("Truncated message should not be decoded");
+        } catch (IOException expected) {
+        }
+    }
+
+    public void testDecodeMaximumSize() throws Exception {
+        System.setProperty(DeflateUtil.MAX_INFLATED_SIZE, "20000");
+
+        try {
+            byte[] message = new byte[20000];
+
+            assertTrue(Arrays.equals(message, readFully(DeflateUtil.decode(DeflateUtil.encode(message)))));
+
+            try {
+                DeflateUtil.decode(DeflateUtil.encode(new byte[20001]));
+                fail("Message larger than the maximum size should not be decoded");
+            } catch (ProcessingException expected) {
+            }
+
+            // a truncated message is rejected as soon as it inflates beyond the maximum size
+            byte[] deflatedMsg = DeflateUtil.encode(new byte[1024 * 1024]);
+
+            try {
+                DeflateUtil.decode(Arrays.copyOf(deflatedMsg, deflatedMsg.length / 2));
+                fail("Message larger than the maximum size should not be decoded");
+            } catch (ProcessingException expected) {
+            }
+        } finally {
+            System.clearProperty(DeflateUtil.MAX_INFLATED_SIZE);
+        }
+    }
+
+    public void testBase64URLEncode() throws Exception {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100; i++) {
+            byte[] message = new byte[i];
+
+            random.nextBytes(message);
+
+            String base64 = Base64.encodeBytes(message, Base64.DONT_BREAK_LINES);
+
+            assertEquals(URLEncoder.encode(base64, "UTF-8"), RedirectBindingUtil.base64URLEncode(message));
+        }
+    }
+
+    private byte[] deflateAsStream(byte[] message) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DeflaterOutputStream deflaterStream = new DeflaterOutputStream(baos, new Deflater(Deflater.DEFLATED, true));
+
+        deflaterStream.write(message);
+        deflaterStream.finish();
+
+        return baos.toByteArray();
+    }
+
+    private byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+
+        while ((read = is.read(buffer)) != -1) {
+            baos.write(buffer, 0, read);
+        }
+
+        return baos.toByteArray();
+    }
+}
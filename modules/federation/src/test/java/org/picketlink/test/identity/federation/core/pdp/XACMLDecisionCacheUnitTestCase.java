@@ -0,0 +1,139 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.identity.federation.core.pdp;
+
+import org.jboss.security.xacml.core.model.context.ResultType;
+import org.junit.Test;
+import org.picketlink.common.constants.JBossSAMLURIConstants;
+import org.picketlink.common.util.DocumentUtil;
+import org.picketlink.identity.federation.core.pdp.XACMLDecisionCache;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit test the {@link XACMLDecisionCache}
+ */
+public class XACMLDecisionCacheUnitTestCase {
+
+    @Test
+    public void testKeyIgnoresOrderAndWhiteSpace() throws Exception {
+        XACMLDecisionCache cache = new XACMLDecisionCache(60000, 10);
+        Document document = getRequest();
+        String key = cache.createKey(document);
+
+        assertNotNull(key);
+
+        // move the first subject attribute after the second one and add some white space
+        Element subject = (Element) document.getElementsByTagNameNS(JBossSAMLURIConstants.XACML_NSURI.get(),
+            "Subject").item(0);
+        Element attribute = (Element) subject.getElementsByTagNameNS(JBossSAMLURIConstants.XACML_NSURI.get(),
+            "Attribute").item(0);
+
+        subject.removeChild(attribute);
+        subject.appendChild(document.createTextNode("\n    "));
+        subject.appendChild(attribute);
+
+        assertEquals(key, cache.createKey(document));
+
+        Node value = attribute.getElementsByTagNameNS(JBossSAMLURIConstants.XACML_NSURI.get(),
+            "AttributeValue").item(0);
+
+        value.setTextContent("Dr. Bob");
+
+        assertFalse(key.equals(cache.createKey(document)));
+    }
+
+    @Test
+    public void testCachedDecision() throws Exception {
+        XACMLDecisionCache cache = new XACMLDecisionCache(60000, 10);
+        String key = cache.createKey(getRequest());
+        ResultType result = new ResultType();
+
+        assertNull(cache.get(key));
+
+        cache.put(key, result, cache.getPolicyVersion());
+
+        assertSame(result, cache.get(key));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        XACMLDecisionCache cache = new XACMLDecisionCache(60000, 10);
+        String key = cache.createKey(getRequest());
+        long policyVersion = cache.getPolicyVersion();
+
+        cache.put(key, new ResultType(), policyVersion);
+        cache.invalidate();
+
+        assertNull(cache.get(key));
+
+        // a decision evaluated with the previous policies is not cached
+        cache.put(key, new ResultType(), policyVersion);
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testExpiredDecision() throws Exception {
+        XACMLDecisionCache cache = new XACMLDecisionCache(1, 10);
+        String key = cache.createKey(getRequest());
+
+        cache.put(key, new ResultType(), cache.getPolicyVersion());
+
+        Thread.sleep(10);
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        XACMLDecisionCache cache = new XACMLDecisionCache(60000, 10);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, new ResultType(), cache.getPolicyVersion());
+        }
+
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        XACMLDecisionCache cache = new XACMLDecisionCache(0, 10);
+
+        assertNull(cache.createKey(getRequest()));
+    }
+
+    private Document getRequest() throws Exception {
+        InputStream is = getClass().getClassLoader().getResourceAsStream("saml-xacml/saml-xacml-request.xml");
+
+        try {
+            return DocumentUtil.getDocument(is);
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.identity.federation.core.sts.registry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.picketlink.identity.federation.core.saml.v2.util.XMLTimeUtil;
+import org.picketlink.identity.federation.core.sts.registry.DefaultTokenRegistry;
+import org.picketlink.identity.federation.core.sts.registry.FileBasedTokenRegistry;
+import org.picketlink.identity.federation.saml.v2.assertion.AssertionType;
+import org.picketlink.identity.federation.saml.v2.assertion.ConditionsType;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test the {@link DefaultTokenRegistry} and {@link FileBasedTokenRegistry}
+ */
+public class TokenRegistryUnitTestCase {
+
+    private File registryFile;
+
+    @Before
+    public void onSetup() throws Exception {
+        this.registryFile = File.createTempFile("token", ".registry");
+    }
+
+    @After
+    public void onFinish() {
+        this.registryFile.delete();
+        new File(this.registryFile.getPath() + ".tmp").delete();
+    }
+
+    @Test
+    public void testDefaultRegistryPurgesExpiredTokens() throws Exception {
+        DefaultTokenRegistry registry = new DefaultTokenRegistry();
+
+        registry.addToken("expired", createAssertion("expired", -60000));
+        registry.addToken("valid", createAssertion("valid", 60000));
+        registry.addToken("noexpiration", "token");
+
+        registry.purgeExpiredTokens();
+
+        assertNull(registry.getToken("expired"));
+        assertNotNull(registry.getToken("valid"));
+        assertNotNull(registry.getToken("noexpiration"));
+    }
+
+    @Test
+    public void testFileRegistryAppendsRecords() throws Exception {
+        FileBasedTokenRegistry registry = new FileBasedTokenRegistry(this.registryFile.getPath());
+
+        for (int i = 0; i < 10; i++) {
+            registry.addToken("token" + i, "value" + i);
+        }
+
+        registry.removeToken("token3");
+
+        FileBasedTokenRegistry reloaded = new FileBasedTokenRegistry(this.registryFile.getPath());
+
+        assertNull(reloaded.getToken("token3"));
+
+        for (int i = 0; i < 10; i++) {
+            if (i != 3) {
+                assertEquals("value" + i, reloaded.getToken("token" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testFileRegistryIsCompacted() throws Exception {
+        FileBasedTokenRegistry registry = new FileBasedTokenRegistry(this.registryFile.getPath());
+
+        registry.addToken("kept", "value");
+
+        long singleRecordLength = this.registryFile.length();
+
+        for (int i = 0; i < 3000; i++) {
+            registry.addToken("token" + i, "value" + i);
+            registry.removeToken("token" + i);
+        }
+
+        // the file only holds the live token and the records written since the last compaction.
+        assertTrue(this.registryFile.length() < singleRecordLength * 1500);
+        assertEquals("value", new FileBasedTokenRegistry(this.registryFile.getPath()).getToken("kept"));
+    }
+
+    @Test
+    public void testFileRegistryPurgesExpiredTokens() throws Exception {
+        FileBasedTokenRegistry registry = new FileBasedTokenRegistry(this.registryFile.getPath());
+
+        registry.addToken("expired", createAssertion("expired", -60000));
+        registry.addToken("valid", createAssertion("valid", 60000));
+
+        registry.purgeExpiredTokens();
+
+        assertNull(registry.getToken("expired"));
+        assertNotNull(registry.getToken("valid"));
+
+        FileBasedTokenRegistry reloaded = new FileBasedTokenRegistry(this.registryFile.getPath());
+
+        assertNull(reloaded.getToken("expired"));
+        assertNotNull(reloaded.getToken("valid"));
+    }
+
+    private AssertionType createAssertion(String id, long validity) throws Exception {
+        XMLGregorianCalendar issueInstant = XMLTimeUtil.getIssueInstant();
+        AssertionType assertion = new AssertionType(id, issueInstant);
+        ConditionsType conditions = new ConditionsType();
+
+        conditions.setNotBefore(issueInstant);
+        conditions.setNotOnOrAfter(XMLTimeUtil.add(issueInstant, validity));
+        assertion.setConditions(conditions);
+
+        return assertion;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.identity.federation.core.wstrust;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.picketlink.common.constants.WSTrustConstants;
+import org.picketlink.common.util.DocumentUtil;
+import org.picketlink.config.federation.STSType;
+import org.picketlink.config.federation.parsers.STSConfigParser;
+import org.picketlink.identity.federation.core.sts.AbstractSecurityTokenProvider;
+import org.picketlink.identity.federation.core.util.XMLSignatureUtil;
+import org.picketlink.identity.federation.core.wstrust.CachingRequestHandler;
+import org.picketlink.identity.federation.core.wstrust.PicketLinkSTSConfiguration;
+import org.picketlink.identity.federation.core.wstrust.STSConfiguration;
+import org.picketlink.identity.federation.core.wstrust.WSTrustServiceFactory;
+import org.picketlink.identity.federation.core.wstrust.WSTrustUtil;
+import org.picketlink.identity.federation.core.wstrust.plugins.saml.SAMLUtil;
+import org.picketlink.identity.federation.core.wstrust.wrappers.RequestSecurityToken;
+import org.picketlink.identity.federation.core.wstrust.wrappers.RequestSecurityTokenResponseCollection;
+import org.picketlink.identity.federation.core.wstrust.writers.WSTrustResponseWriter;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.transform.dom.DOMResult;
+import java.net.URI;
+import java.security.Principal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test the {@link CachingRequestHandler}
+ */
+public class CachingRequestHandlerUnitTestCase {
+
+    private STSConfiguration config;
+
+    private CachingRequestHandler handler;
+
+    @Before
+    public void onSetup() throws Exception {
+        STSConfigParser configParser = new STSConfigParser();
+        STSType stsType = (STSType) configParser.parse(getClass().getClassLoader().getResourceAsStream(
+            "sts/picketlink-sts.xml"));
+
+        this.config = new PicketLinkSTSConfiguration(stsType);
+        this.handler = (CachingRequestHandler) WSTrustServiceFactory.getInstance().createRequestHandler(
+            CachingRequestHandler.class.getName(), this.config);
+    }
+
+    @Test
+    public void testEquivalentRequestsReuseToken() throws Exception {
+        String first = issue(createRequest(), new TestPrincipal("jduke"));
+
+        assertEquals(first, issue(createRequest(), new TestPrincipal("jduke")));
+        assertEquals(1, this.handler.size());
+        assertFalse(first.equals(issue(createRequest(), new TestPrincipal("admin"))));
+    }
+
+    @Test
+    public void testRequestsWithLifetimeAreNotCached() throws Exception {
+        RequestSecurityToken request = createRequest();
+
+        request.setLifetime(WSTrustUtil.createDefaultLifetime(3600000));
+
+        issue(request, new TestPrincipal("jduke"));
+
+        assertEquals(0, this.handler.size());
+    }
+
+    @Test
+    public void testExpiringTokenIsNotReused() throws Exception {
+        String first = issue(createRequest(), new TestPrincipal("jduke"));
+
+        this.handler.setMinRemainingValidity(Long.MAX_VALUE / 2);
+
+        assertFalse(first.equals(issue(createRequest(), new TestPrincipal("jduke"))));
+    }
+
+    @Test
+    public void testRevokedTokenIsNotReused() throws Exception {
+        String first = issue(createRequest(), new TestPrincipal("jduke"));
+
+        AbstractSecurityTokenProvider provider = (AbstractSecurityTokenProvider) this.config
+            .getProviderForTokenType(SAMLUtil.SAML2_TOKEN_TYPE);
+
+        provider.getRevocationRegistry().revokeToken(SAMLUtil.SAML2_TOKEN_TYPE, first);
+
+        assertFalse(first.equals(issue(createRequest(), new TestPrincipal("jduke"))));
+    }
+
+    private String issue(RequestSecurityToken request, Principal principal) throws Exception {
+        RequestSecurityTokenResponseCollection collection = new RequestSecurityTokenResponseCollection();
+
+        collection.addRequestSecurityTokenResponse(this.handler.issue(request, principal));
+
+        DOMResult result = new DOMResult(DocumentUtil.createDocument());
+
+        new WSTrustResponseWriter(result).write(collection);
+
+        Document document = this.handler.postProcess((Document) result.getNode(), request);
+        Element assertion = (Element) document.getElementsByTagNameNS(WSTrustConstants.SAML2_ASSERTION_NS, "Assertion")
+            .item(0);
+
+        assertNotNull(assertion);
+
+        // cached tokens must keep the signature created when they were issued.
+        Document tokenDocument = DocumentUtil.createDocument();
+        tokenDocument.appendChild(tokenDocument.importNode(assertion, true));
+        tokenDocument.getDocumentElement().setIdAttribute("ID", true);
+        assertTrue(XMLSignatureUtil.validate(tokenDocument, this.config.getSTSKeyPair().getPublic()));
+
+        return assertion.getAttribute("ID");
+    }
+
+    private RequestSecurityToken createRequest() {
+        RequestSecurityToken request = new RequestSecurityToken();
+
+        request.setContext("testcontext");
+        request.setRequestType(URI.create(WSTrustConstants.ISSUE_REQUEST));
+        request.setTokenType(URI.create(SAMLUtil.SAML2_TOKEN_TYPE));
+
+        return request;
+    }
+}
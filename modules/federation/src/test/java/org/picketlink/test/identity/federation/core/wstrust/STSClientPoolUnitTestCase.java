@@ -0,0 +1,314 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.identity.federation.core.wstrust;
+
+import junit.framework.TestCase;
+import org.picketlink.identity.federation.core.wstrust.STSClient;
+import org.picketlink.identity.federation.core.wstrust.STSClientConfig;
+import org.picketlink.identity.federation.core.wstrust.STSClientCreationCallBack;
+import org.picketlink.identity.federation.core.wstrust.STSClientFactory;
+import org.picketlink.identity.federation.core.wstrust.STSClientPool;
+import org.picketlink.identity.federation.core.wstrust.STSClientPoolFactory;
+import org.picketlink.identity.federation.core.wstrust.STSClientPoolStatistics;
+
+import javax.xml.transform.Source;
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.Dispatch;
+import javax.xml.ws.WebServiceException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit test for {@link STSClientPoolFactory}.
+ */
+public class STSClientPoolUnitTestCase extends TestCase {
+
+    private STSClientPoolFactory pool;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.pool = (STSClientPoolFactory) STSClientPoolFactory.getPoolInstance();
+        this.pool.setMaxPoolSize(2);
+        this.pool.setBorrowTimeout(100);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.pool.destroyPool((String) null);
+        this.pool.setMaxPoolSize(0);
+        this.pool.setBorrowTimeout(30000);
+        this.pool.setIdleTimeout(300000);
+    }
+
+    public void testFactoryReturnsDefaultPool() {
+        STSClientPool instance = STSClientFactory.getInstance();
+
+        assertNotNull(instance);
+        assertSame(instance, STSClientFactory.getInstance());
+    }
+
+    public void testClientIsReused() {
+        STSClientConfig config = createConfig("reuse");
+
+        this.pool.createPool(1, config);
+
+        assertTrue(this.pool.configExists(config));
+
+        STSClient client = this.pool.getClient(config);
+
+        assertNotNull(client.getDispatch());
+
+        this.pool.returnClient(client);
+
+        assertSame(client, this.pool.getClient(config));
+
+        STSClientPoolStatistics statistics = this.pool.getStatistics(config);
+
+        assertEquals(1, statistics.getCreatedClients());
+        assertEquals(2, statistics.getBorrowedClients());
+        assertEquals(1, statistics.getReturnedClients());
+        assertEquals(1, statistics.getClientsInUse());
+    }
+
+    public void testPoolIsCreatedOnDemand() {
+        STSClientConfig config = createConfig("onDemand");
+
+        assertFalse(this.pool.configExists(config));
+        assertNotNull(this.pool.getClient(config));
+        assertTrue(this.pool.configExists(config));
+    }
+
+    public void testBorrowTimeoutWhenExhausted() {
+        STSClientConfig config = createConfig("exhausted");
+
+        STSClient first = this.pool.getClient(config);
+        STSClient second = this.pool.getClient(config);
+
+        assertNotSame(first, second);
+
+        try {
+            this.pool.getClient(config);
+            fail("Pool should be exhausted.");
+        } catch (RuntimeException expected) {
+        }
+
+        assertEquals(1, this.pool.getStatistics(config).getBorrowTimeouts());
+
+        this.pool.returnClient(first);
+
+        assertSame(first, this.pool.getClient(config));
+    }
+
+    public void testWaitingBorrowerGetsReturnedClient() throws Exception {
+        final STSClientConfig config = createConfig("waiting");
+
+        this.pool.setBorrowTimeout(5000);
+
+        final STSClient first = this.pool.getClient(config);
+        this.pool.getClient(config);
+
+        final AtomicReference<STSClient> borrowed = new AtomicReference<STSClient>();
+
+        Thread borrower = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                borrowed.set(pool.getClient(config));
+            }
+        });
+
+        borrower.start();
+
+        Thread.sleep(100);
+
+        this.pool.returnClient(first);
+
+        borrower.join(5000);
+
+        assertSame(first, borrowed.get());
+        assertNotNull(borrowed.get().getDispatch());
+    }
+
+    public void testIdleClientsAreEvicted() throws Exception {
+        STSClientConfig config = createConfig("idle");
+
+        this.pool.setIdleTimeout(1);
+        this.pool.createPool(0, config);
+
+        STSClient first = this.pool.getClient(config);
+        STSClient second = this.pool.getClient(config);
+
+        this.pool.returnClient(first);
+
+        Thread.sleep(10);
+
+        this.pool.evictIdleClients();
+
+        STSClientPoolStatistics statistics = this.pool.getStatistics(config);
+
+        assertEquals(0, statistics.getIdleClients());
+        assertEquals(1, statistics.getEvictedClients());
+
+        // the sub pool is kept while a client is in use, and removed once unused for the idle time
+        this.pool.returnClient(second);
+
+        Thread.sleep(10);
+
+        this.pool.evictIdleClients();
+
+        assertFalse(this.pool.configExists(config));
+    }
+
+    public void testUsersShareSubPool() {
+        STSClientConfig admin = createConfig("users");
+        STSClientConfig other = new STSClientConfig.Builder().serviceName("PicketLinkSTS").portName("PicketLinkSTSPort")
+            .endpointAddress("http://localhost:8080/picketlink-sts/users").username("other").password("other").build();
+
+        STSClient client = this.pool.getClient(admin);
+
+        this.pool.returnClient(client);
+
+        assertSame(client, this.pool.getClient(other));
+        assertEquals(1, this.pool.getStatistics(admin).getCreatedClients());
+        assertEquals(this.pool.getStatistics(admin).getKey(), this.pool.getStatistics(other).getKey());
+    }
+
+    public void testCredentialsAreClearedOnReturn() {
+        STSClientConfig config = createConfig("cleared");
+
+        STSClient client = this.pool.getClient(config);
+        Map<String, Object> requestContext = client.getDispatch().getRequestContext();
+
+        assertEquals("admin", requestContext.get(BindingProvider.USERNAME_PROPERTY));
+        assertEquals("admin", requestContext.get(BindingProvider.PASSWORD_PROPERTY));
+
+        this.pool.returnClient(client);
+
+        assertNull(requestContext.get(BindingProvider.USERNAME_PROPERTY));
+        assertNull(requestContext.get(BindingProvider.PASSWORD_PROPERTY));
+
+        assertSame(client, this.pool.getClient(config));
+        assertEquals("admin", requestContext.get(BindingProvider.USERNAME_PROPERTY));
+    }
+
+    public void testDestroyPool() {
+        STSClientConfig config = createConfig("destroy");
+
+        STSClient client = this.pool.getClient(config);
+
+        this.pool.destroyPool(config);
+
+        assertFalse(this.pool.configExists(config));
+
+        // returning a client from a destroyed pool is a no-op.
+        this.pool.returnClient(client);
+    }
+
+    public void testPoolingDisabled() {
+        STSClientConfig config = createConfig("disabled");
+
+        this.pool.setMaxPoolSize(0);
+
+        this.pool.createPool(config);
+
+        assertFalse(this.pool.configExists(config));
+        assertNotSame(this.pool.getClient(config), this.pool.getClient(config));
+    }
+
+    public void testWrongPasswordIsRejectedAfterSuccessfulLogin() {
+        final STSClientConfig validCredentials = createConfig("credentials", "admin");
+        STSClientConfig invalidCredentials = createConfig("credentials", "wrong");
+
+        assertEquals(validCredentials.getSTSClientConfigKey(), invalidCredentials.getSTSClientConfigKey());
+
+        this.pool.createPool(1, new STSClientCreationCallBack() {
+            @Override
+            public STSClient createClient() {
+                STSClient client = new STSClient(validCredentials);
+
+                client.setDispatch(createAuthenticatingDispatch("admin", "admin"));
+
+                return client;
+            }
+
+            @Override
+            public String getKey() {
+                return validCredentials.getSTSClientConfigKey();
+            }
+        });
+
+        STSClient client = this.pool.getClient(validCredentials);
+
+        assertNull(client.getDispatch().invoke(null));
+
+        this.pool.returnClient(client);
+
+        STSClient pooledClient = this.pool.getClient(invalidCredentials);
+
+        assertSame(client, pooledClient);
+
+        try {
+            pooledClient.getDispatch().invoke(null);
+            fail("Wrong password should be rejected.");
+        } catch (WebServiceException expected) {
+        }
+    }
+
+    private STSClientConfig createConfig(String name) {
+        return createConfig(name, "admin");
+    }
+
+    private STSClientConfig createConfig(String name, String password) {
+        return new STSClientConfig.Builder().serviceName("PicketLinkSTS").portName("PicketLinkSTSPort")
+            .endpointAddress("http://localhost:8080/picketlink-sts/" + name).username("admin").password(password)
+            .build();
+    }
+
+    /**
+     * Creates a {@link Dispatch} that behaves like an STS protected by BASIC authentication, rejecting requests sent
+     * with credentials other than the given ones.
+     */
+    @SuppressWarnings("unchecked")
+    private Dispatch<Source> createAuthenticatingDispatch(final String username, final String password) {
+        final Map<String, Object> requestContext = new HashMap<String, Object>();
+
+        return (Dispatch<Source>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Dispatch.class},
+            new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if ("getRequestContext".equals(method.getName())) {
+                        return requestContext;
+                    }
+
+                    if ("invoke".equals(method.getName())) {
+                        if (!username.equals(requestContext.get(BindingProvider.USERNAME_PROPERTY))
+                            || !password.equals(requestContext.get(BindingProvider.PASSWORD_PROPERTY))) {
+                            throw new WebServiceException("HTTP 401: Unauthorized");
+                        }
+
+                        return null;
+                    }
+
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+}
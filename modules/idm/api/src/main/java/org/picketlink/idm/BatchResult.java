@@ -0,0 +1,88 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>The result of a batch operation, like {@link IdentityManager#addAll(java.util.Collection)}.</p>
+ *
+ * <p>Each item of a batch is processed on its own, so a failure does not prevent the other items from being
+ * processed. The items that were successfully processed and the ones that failed are reported separately, in the
+ * order they were given.</p>
+ */
+public class BatchResult<T> implements Serializable {
+
+    private static final long serialVersionUID = -3617394525370658237L;
+
+    private final List<T> processed = new ArrayList<T>();
+    private final List<Failure<T>> failures = new ArrayList<Failure<T>>();
+
+    public void addProcessed(T item) {
+        this.processed.add(item);
+    }
+
+    public void addFailure(T item, IdentityManagementException cause) {
+        this.failures.add(new Failure<T>(item, cause));
+    }
+
+    /**
+     * @return the items that were successfully processed
+     */
+    public List<T> getProcessed() {
+        return Collections.unmodifiableList(this.processed);
+    }
+
+    /**
+     * @return the items that could not be processed, with the cause of the failure
+     */
+    public List<Failure<T>> getFailures() {
+        return Collections.unmodifiableList(this.failures);
+    }
+
+    /**
+     * @return true if all items were successfully processed
+     */
+    public boolean isSuccessful() {
+        return this.failures.isEmpty();
+    }
+
+    public static class Failure<T> implements Serializable {
+
+        private static final long serialVersionUID = 6224578469830140214L;
+
+        private final T item;
+        private final IdentityManagementException cause;
+
+        public Failure(T item, IdentityManagementException cause) {
+            this.item = item;
+            this.cause = cause;
+        }
+
+        public T getItem() {
+            return this.item;
+        }
+
+        public IdentityManagementException getCause() {
+            return this.cause;
+        }
+    }
+}
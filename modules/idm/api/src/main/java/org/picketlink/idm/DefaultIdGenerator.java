@@ -18,11 +18,11 @@
 
 package org.picketlink.idm;
 
-
-import java.util.UUID;
+import org.picketlink.common.util.UUIDUtil;
 
 /**
- * Default IdGenerator implementation, used to generate unique identifier values for IdentityType implementations
+ * Default IdGenerator implementation, used to generate unique identifier values for IdentityType implementations.
+ * Identifiers are random UUIDs, see {@link TimeOrderedIdGenerator} for identifiers that sort by creation time.
  *
  * @author Shane Bryzak
  *
@@ -31,7 +31,7 @@ public class DefaultIdGenerator implements IdGenerator {
 
     @Override
     public final String generate() {
-        return UUID.randomUUID().toString();
+        return UUIDUtil.randomUUID();
     }
 
 }
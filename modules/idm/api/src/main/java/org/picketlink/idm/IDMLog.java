@@ -22,6 +22,7 @@
 
 package org.picketlink.idm;
 
+import org.jboss.logging.annotations.Cause;
 import org.jboss.logging.annotations.LogMessage;
 import org.jboss.logging.Logger.Level;
 import org.jboss.logging.annotations.Message;
@@ -75,4 +76,8 @@ public interface IDMLog extends Log {
     @LogMessage(level = Level.DEBUG)
     @Message(id = 1003, value = "Trying to find account [%s] using default account type [%s] with property [%s].")
     void credentialRetrievingAccount(String loginName, Class<? extends Account> accountType, String property);
+
+    @LogMessage(level = Level.WARN)
+    @Message(id = 1004, value = "Could not deliver event [%s].")
+    void eventDeliveryFailed(Object event, @Cause Throwable cause);
 }
\ No newline at end of file
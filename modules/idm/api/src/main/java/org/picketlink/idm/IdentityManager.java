@@ -24,6 +24,7 @@ import org.picketlink.idm.model.IdentityType;
 import org.picketlink.idm.query.IdentityQuery;
 import org.picketlink.idm.query.IdentityQueryBuilder;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -39,6 +40,41 @@ public interface IdentityManager extends AttributedTypeManager<IdentityType> {
      */
     String IDENTITY_MANAGER_CTX_PARAMETER = "IDENTITY_MANAGER_CTX_PARAMETER";
 
+    // Batch operations
+
+    /**
+     * <p>
+     * Adds the given {@link IdentityType} instances. Each instance is added as if by {@link #add}, but
+     * the writes to each identity store are grouped. The event raised by {@link #add} is raised for each instance
+     * added, followed by a single {@link org.picketlink.idm.event.AttributedTypesCreatedEvent} for the whole batch.
+     * </p>
+     * <p>
+     * A failure to add an instance does not prevent the others from being added. Failures are reported by the returned
+     * {@link BatchResult}.
+     * </p>
+     *
+     * @param identityTypes
+     * @return
+     */
+    BatchResult<IdentityType> addAll(Collection<? extends IdentityType> identityTypes);
+
+    /**
+     * <p>
+     * Updates the given {@link IdentityType} instances. Each instance is updated as if by
+     * {@link #update}, but the writes to each identity store are grouped. The event raised by {@link #update} is raised
+     * for each instance updated, followed by a single {@link org.picketlink.idm.event.AttributedTypesUpdatedEvent} for
+     * the whole batch.
+     * </p>
+     * <p>
+     * A failure to update an instance does not prevent the others from being updated. Failures are reported by the
+     * returned {@link BatchResult}.
+     * </p>
+     *
+     * @param identityTypes
+     * @return
+     */
+    BatchResult<IdentityType> updateAll(Collection<? extends IdentityType> identityTypes);
+
     // Query API
 
     /**
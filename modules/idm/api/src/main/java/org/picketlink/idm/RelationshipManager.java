@@ -21,6 +21,8 @@ import org.picketlink.idm.model.IdentityType;
 import org.picketlink.idm.model.Relationship;
 import org.picketlink.idm.query.RelationshipQuery;
 
+import java.util.Collection;
+
 /**
  * Defines relationship management operations
  *
@@ -60,6 +62,40 @@ public interface RelationshipManager extends AttributedTypeManager<Relationship>
      */
     void remove(Relationship relationship) throws IdentityManagementException;
 
+    /**
+     * <p>
+     * Adds the given {@link Relationship} instances, for instance when granting roles or group memberships to many
+     * identities at once. Each instance is added as if by {@link #add(Relationship)}, but the writes to each identity
+     * store are grouped. The event raised by {@link #add(Relationship)} is raised for each instance added, followed by a
+     * single {@link org.picketlink.idm.event.AttributedTypesCreatedEvent} for the whole batch.
+     * </p>
+     * <p>
+     * A failure to add an instance does not prevent the others from being added. Failures are reported by the returned
+     * {@link BatchResult}.
+     * </p>
+     *
+     * @param relationships
+     * @return
+     */
+    BatchResult<Relationship> addAll(Collection<? extends Relationship> relationships);
+
+    /**
+     * <p>
+     * Updates the given {@link Relationship} instances. Each instance is updated as if by {@link #update(Relationship)},
+     * but the writes to each identity store are grouped. The event raised by {@link #update(Relationship)} is raised for
+     * each instance updated, followed by a single {@link org.picketlink.idm.event.AttributedTypesUpdatedEvent} for the
+     * whole batch.
+     * </p>
+     * <p>
+     * A failure to update an instance does not prevent the others from being updated. Failures are reported by the
+     * returned {@link BatchResult}.
+     * </p>
+     *
+     * @param relationships
+     * @return
+     */
+    BatchResult<Relationship> updateAll(Collection<? extends Relationship> relationships);
+
     /**
      * <p>
      * Creates an {@link RelationshipQuery} that can be used to query for {@link Relationship} instances.
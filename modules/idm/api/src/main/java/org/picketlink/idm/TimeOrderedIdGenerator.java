@@ -0,0 +1,36 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm;
+
+import org.picketlink.common.util.UUIDUtil;
+
+/**
+ * <p>{@link IdGenerator} that generates time-ordered UUIDs.</p>
+ *
+ * <p>Identifiers start with their creation time, so new rows are appended to the end of the primary key indexes of
+ * database backed stores instead of being spread across the whole index. It can be enabled using
+ * {@link org.picketlink.idm.config.IdentityConfigurationBuilder#idGenerator(IdGenerator)}.</p>
+ */
+public class TimeOrderedIdGenerator implements IdGenerator {
+
+    @Override
+    public String generate() {
+        return UUIDUtil.timeOrderedUUID();
+    }
+
+}
@@ -18,6 +18,7 @@
 
 package org.picketlink.idm.config;
 
+import org.picketlink.idm.IdGenerator;
 import org.picketlink.idm.model.AttributedType;
 import org.picketlink.idm.model.basic.Agent;
 import org.picketlink.idm.model.basic.Grant;
@@ -61,10 +62,11 @@ public class IdentityConfiguration {
     private final String name;
     private final List<? extends IdentityStoreConfiguration> storeConfiguration;
     private final RelationshipPolicy relationshipPolicy;
+    private final IdGenerator idGenerator;
 
     @SuppressWarnings("unchecked")
     IdentityConfiguration(String name, List<? extends IdentityStoreConfiguration> identityStores,
-            RelationshipPolicy relationshipPolicy) {
+            RelationshipPolicy relationshipPolicy, IdGenerator idGenerator) {
         if (name == null) {
             throw new SecurityConfigurationException("You must specify a name for the IdentityConfiguration.");
         }
@@ -72,12 +74,22 @@ public class IdentityConfiguration {
         this.name = name;
         this.storeConfiguration = unmodifiableList(identityStores);
         this.relationshipPolicy = relationshipPolicy;
+        this.idGenerator = idGenerator;
     }
 
     public RelationshipPolicy getRelationshipPolicy() {
         return relationshipPolicy;
     }
 
+    /**
+     * <p>Returns the {@link IdGenerator} used to generate the identifiers of the types managed by this configuration.</p>
+     *
+     * @return the generator, or null if the default generator should be used
+     */
+    public IdGenerator getIdGenerator() {
+        return this.idGenerator;
+    }
+
     public String getName() {
         return this.name;
     }
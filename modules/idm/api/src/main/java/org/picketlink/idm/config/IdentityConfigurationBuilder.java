@@ -22,6 +22,8 @@
 
 package org.picketlink.idm.config;
 
+import org.picketlink.idm.IdGenerator;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
@@ -43,6 +45,7 @@ import static org.picketlink.idm.IDMMessages.MESSAGES;
 public class IdentityConfigurationBuilder extends Builder<List<IdentityConfiguration>> implements IdentityConfigurationChildBuilder {
 
     private final Map<String, NamedIdentityConfigurationBuilder> namedIdentityConfigurationBuilders;
+    private IdGenerator idGenerator;
 
     public IdentityConfigurationBuilder() {
         this.namedIdentityConfigurationBuilders = new LinkedHashMap<String, NamedIdentityConfigurationBuilder>();
@@ -80,6 +83,30 @@ public class IdentityConfigurationBuilder extends Builder<List<IdentityConfigura
         return namedIdentityConfiguration;
     }
 
+    /**
+     * <p>Sets the {@link IdGenerator} used to generate the identifiers of partitions, identity types and
+     * relationships. If not provided, {@link org.picketlink.idm.DefaultIdGenerator} is used.</p>
+     *
+     * <p>Database backed stores may use {@link org.picketlink.idm.TimeOrderedIdGenerator}, which keeps new rows at the
+     * end of the primary key indexes.</p>
+     *
+     * @param idGenerator
+     * @return
+     */
+    public IdentityConfigurationBuilder idGenerator(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+        return this;
+    }
+
+    /**
+     * <p>Returns the {@link IdGenerator} provided to this builder.</p>
+     *
+     * @return the generator, or null if none was provided
+     */
+    public IdGenerator getIdGenerator() {
+        return this.idGenerator;
+    }
+
     /**
      * <p>Builds a single {@link IdentityConfiguration}.</p> <p/> <p>This method should be called when only a single
      * configuration was provided. Otherwise an exception will be thrown.</p> <p/> <p>For building multiple
@@ -187,6 +214,10 @@ public class IdentityConfigurationBuilder extends Builder<List<IdentityConfigura
         }
 
         for (IdentityConfiguration identityConfiguration : fromConfiguration) {
+            if (this.idGenerator == null) {
+                this.idGenerator = identityConfiguration.getIdGenerator();
+            }
+
             named(identityConfiguration.getName()).readFrom(identityConfiguration);
         }
 
@@ -31,6 +31,7 @@ public class NamedIdentityConfigurationBuilder extends AbstractIdentityConfigura
 
     private final IdentityStoresConfigurationBuilder identityStoresConfigurationBuilder;
     private final String name;
+    private final IdentityConfigurationBuilder identityConfigurationBuilder;
 
     protected NamedIdentityConfigurationBuilder(String name, IdentityConfigurationBuilder builder) {
         super(builder);
@@ -41,6 +42,7 @@ public class NamedIdentityConfigurationBuilder extends AbstractIdentityConfigura
 
         this.identityStoresConfigurationBuilder = new IdentityStoresConfigurationBuilder(this);
         this.name = name;
+        this.identityConfigurationBuilder = builder;
     }
 
     /**
@@ -58,7 +60,8 @@ public class NamedIdentityConfigurationBuilder extends AbstractIdentityConfigura
         return new IdentityConfiguration(this.name,
                 this.identityStoresConfigurationBuilder.create(),
                 new RelationshipPolicy(this.identityStoresConfigurationBuilder.getSelfRelationships(),
-                        this.identityStoresConfigurationBuilder.getGlobalRelationships()));
+                        this.identityStoresConfigurationBuilder.getGlobalRelationships()),
+                this.identityConfigurationBuilder.getIdGenerator());
     }
 
     @Override
@@ -31,12 +31,18 @@ import org.picketlink.idm.spi.IdentityContext;
 import java.io.ByteArrayInputStream;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * This particular implementation supports the validation of {@link X509CertificateCredentials}, and updating {@link
  * X509Cert} credentials.
  *
+ * <p>Stored certificates are decoded once and kept by their Base64 representation. As the cache is keyed by the stored
+ * value itself, a certificate is never used after the credential of an account is updated, even by another node.</p>
+ *
  * @author Shane Bryzak
  * @author Pedro Igor
  */
@@ -46,6 +52,16 @@ import java.util.Date;
 public class X509CertificateCredentialHandler<S, V, U>
         extends AbstractCredentialHandler<CredentialStore<?>, X509CertificateCredentials, X509Certificate> {
 
+    private static final int MAX_CACHED_CERTIFICATES = 1000;
+
+    private final Map<String, X509Certificate> storedCertificates = Collections.synchronizedMap(
+            new LinkedHashMap<String, X509Certificate>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, X509Certificate> eldest) {
+                    return size() > MAX_CACHED_CERTIFICATES;
+                }
+            });
+
     @Override
     protected X509CertificateStorage getCredentialStorage(final IdentityContext context, Account account, final X509CertificateCredentials
             credentials, final CredentialStore<?> store) {
@@ -58,10 +74,7 @@ public class X509CertificateCredentialHandler<S, V, U>
 
         if (!credentials.isTrusted()) {
             try {
-                byte[] certBytes = Base64.decode(certificateStorage.getBase64Cert());
-                CertificateFactory certFactory = CertificateFactory.getInstance("X.509");
-                X509Certificate storedCert = (X509Certificate) certFactory
-                        .generateCertificate(new ByteArrayInputStream(certBytes));
+                X509Certificate storedCert = getStoredCertificate(certificateStorage.getBase64Cert());
                 X509Certificate providedCert = credentials.getCertificate();
 
                 return storedCert.equals(providedCert);
@@ -91,4 +104,19 @@ public class X509CertificateCredentialHandler<S, V, U>
 
         return storage;
     }
-}
\ No newline at end of file
+
+    private X509Certificate getStoredCertificate(String base64Cert) throws Exception {
+        X509Certificate certificate = this.storedCertificates.get(base64Cert);
+
+        if (certificate == null) {
+            CertificateFactory certFactory = CertificateFactory.getInstance("X.509");
+
+            certificate = (X509Certificate) certFactory
+                    .generateCertificate(new ByteArrayInputStream(Base64.decode(base64Cert)));
+
+            this.storedCertificates.put(base64Cert, certificate);
+        }
+
+        return certificate;
+    }
+}
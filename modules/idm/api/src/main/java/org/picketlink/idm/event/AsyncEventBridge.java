@@ -0,0 +1,451 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.event;
+
+import org.picketlink.idm.model.AttributedType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.picketlink.idm.IDMLog.ROOT_LOGGER;
+import static org.picketlink.idm.IDMMessages.MESSAGES;
+
+/**
+ * <p>An {@link EventBridge} that delivers events to another bridge, optionally outside the thread performing the
+ * identity management operation. Slow consumers do not add to the latency of the operations raising the events.</p>
+ *
+ * <p>Events are delivered accordingly to a {@link DeliveryMode}:</p>
+ *
+ * <ul>
+ *     <li>{@link DeliveryMode#SYNCHRONOUS}: events are delivered by the thread that raised them.</li>
+ *     <li>{@link DeliveryMode#ORDERED}: events are delivered by a pool of threads. Events about the same entity, like a
+ *     user or a relationship, are always delivered by the same thread in the order they were raised.</li>
+ *     <li>{@link DeliveryMode#BATCHED}: events are delivered by a single thread, in the order they were raised, grouped
+ *     in {@link EventBatch} instances. Only {@link EventBatch} instances are raised on the delegate, observers of a
+ *     specific event type, like {@link IdentityTypeCreatedEvent}, receive nothing in this mode and must observe
+ *     {@link EventBatch} instead.</li>
+ * </ul>
+ *
+ * <p>Queues are bounded. When a queue is full, the thread raising an event waits up to the offer timeout for room
+ * for it. If the queue is still full, the event is not dropped but delivered by the thread that raised it, slowing down
+ * producers to the pace of consumers. Such events may be delivered before events about the same entity that are still
+ * queued. Events raised by a delivering thread, for instance by an observer performing another identity management
+ * operation, never wait for room in a full queue and are delivered by that thread.</p>
+ *
+ * <p>Consumers of asynchronous events must not depend on the context of the thread performing the operation, for
+ * instance on a request scope or on a transaction. Failures to deliver an event are logged and do not affect other
+ * events. Once {@link #close()}d, pending events are delivered and new events are delivered synchronously.</p>
+ */
+public class AsyncEventBridge implements EventBridge {
+
+    public enum DeliveryMode {
+        SYNCHRONOUS, ORDERED, BATCHED
+    }
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final long DEFAULT_OFFER_TIMEOUT = 1000;
+
+    private static final Object STOP = new Object();
+
+    private final EventBridge delegate;
+    private final DeliveryMode mode;
+    private final int batchSize;
+    private final long offerTimeout;
+    private final Lane[] lanes;
+
+    private final AtomicLong raisedCount = new AtomicLong();
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong blockedCount = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong deliveryTime = new AtomicLong();
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public AsyncEventBridge(EventBridge delegate, DeliveryMode mode) {
+        this(delegate, mode, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param delegate the bridge events are delivered to
+     * @param mode the delivery mode
+     * @param threads the number of threads delivering events in the {@link DeliveryMode#ORDERED} mode
+     * @param queueCapacity the maximum number of pending events of each thread
+     * @param batchSize the maximum number of events of a batch in the {@link DeliveryMode#BATCHED} mode
+     */
+    public AsyncEventBridge(EventBridge delegate, DeliveryMode mode, int threads, int queueCapacity, int batchSize) {
+        this(delegate, mode, threads, queueCapacity, batchSize, DEFAULT_OFFER_TIMEOUT);
+    }
+
+    /**
+     * @param delegate the bridge events are delivered to
+     * @param mode the delivery mode
+     * @param threads the number of threads delivering events in the {@link DeliveryMode#ORDERED} mode
+     * @param queueCapacity the maximum number of pending events of each thread
+     * @param batchSize the maximum number of events of a batch in the {@link DeliveryMode#BATCHED} mode
+     * @param offerTimeout the maximum time, in milliseconds, to wait for room in a full queue before delivering an
+     * event by the thread that raised it
+     */
+    public AsyncEventBridge(EventBridge delegate, DeliveryMode mode, int threads, int queueCapacity, int batchSize,
+                            long offerTimeout) {
+        if (delegate == null) {
+            throw MESSAGES.nullArgument("EventBridge");
+        }
+
+        if (mode == null) {
+            throw MESSAGES.nullArgument("DeliveryMode");
+        }
+
+        this.delegate = delegate;
+        this.mode = mode;
+        this.batchSize = Math.max(1, batchSize);
+        this.offerTimeout = Math.max(0, offerTimeout);
+
+        int laneCount;
+
+        if (DeliveryMode.ORDERED.equals(mode)) {
+            laneCount = Math.max(1, threads);
+        } else if (DeliveryMode.BATCHED.equals(mode)) {
+            laneCount = 1;
+        } else {
+            laneCount = 0;
+        }
+
+        this.lanes = new Lane[laneCount];
+
+        for (int i = 0; i < laneCount; i++) {
+            this.lanes[i] = new Lane(i, Math.max(1, queueCapacity));
+            this.lanes[i].start();
+        }
+    }
+
+    @Override
+    public void raiseEvent(Object event) {
+        this.raisedCount.incrementAndGet();
+
+        Pending pending = new Pending(event);
+
+        if (this.lanes.length > 0 && !this.closed.get()) {
+            Lane lane = this.lanes[getLaneIndex(event)];
+
+            if (lane.enqueue(pending, isDeliveryThread() ? 0 : this.offerTimeout)) {
+                // the bridge may have been closed after the event was queued, once the thread of the lane is gone
+                // the event is delivered here unless close() already did it.
+                if (!this.closed.get() || lane.isAlive() || !lane.queue.remove(pending)) {
+                    return;
+                }
+            } else {
+                this.overflowCount.incrementAndGet();
+            }
+        }
+
+        deliver(pending);
+    }
+
+    /**
+     * <p>Delivers the pending events and stops the threads delivering events.</p>
+     */
+    public void close() {
+        if (!this.closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        for (Lane lane : this.lanes) {
+            try {
+                lane.queue.put(STOP);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        for (Lane lane : this.lanes) {
+            try {
+                lane.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            // events queued while closing are delivered by the current thread.
+            Object element;
+
+            while ((element = lane.queue.poll()) != null) {
+                if (element != STOP) {
+                    deliver((Pending) element);
+                }
+            }
+        }
+    }
+
+    public DeliveryMode getMode() {
+        return this.mode;
+    }
+
+    /**
+     * @return the number of events raised
+     */
+    public long getRaisedCount() {
+        return this.raisedCount.get();
+    }
+
+    /**
+     * @return the number of events delivered, including the ones that failed
+     */
+    public long getDeliveredCount() {
+        return this.deliveredCount.get();
+    }
+
+    /**
+     * @return the number of events that could not be delivered
+     */
+    public long getFailedCount() {
+        return this.failedCount.get();
+    }
+
+    /**
+     * @return the number of events that had to wait for room in a full queue
+     */
+    public long getBlockedCount() {
+        return this.blockedCount.get();
+    }
+
+    /**
+     * @return the number of events delivered by the thread that raised them because a queue remained full
+     */
+    public long getOverflowCount() {
+        return this.overflowCount.get();
+    }
+
+    /**
+     * @return the number of events waiting to be delivered
+     */
+    public int getPendingCount() {
+        int pending = 0;
+
+        for (Lane lane : this.lanes) {
+            pending += lane.queue.size();
+        }
+
+        return pending;
+    }
+
+    /**
+     * @return the average time, in milliseconds, from the moment an event is raised until it is delivered
+     */
+    public double getAverageDeliveryTime() {
+        long delivered = this.deliveredCount.get();
+
+        if (delivered == 0) {
+            return 0;
+        }
+
+        return this.deliveryTime.get() / 1000000D / delivered;
+    }
+
+    private void deliver(Pending pending) {
+        try {
+            this.delegate.raiseEvent(pending.event);
+        } catch (Exception e) {
+            this.failedCount.incrementAndGet();
+            ROOT_LOGGER.eventDeliveryFailed(pending.event, e);
+        } finally {
+            delivered(pending);
+        }
+    }
+
+    private void deliver(List<Pending> batch) {
+        List<Object> events = new ArrayList<Object>(batch.size());
+
+        for (Pending pending : batch) {
+            events.add(pending.event);
+        }
+
+        EventBatch eventBatch = new EventBatch(events);
+
+        try {
+            this.delegate.raiseEvent(eventBatch);
+        } catch (Exception e) {
+            this.failedCount.addAndGet(batch.size());
+            ROOT_LOGGER.eventDeliveryFailed(eventBatch, e);
+        } finally {
+            for (Pending pending : batch) {
+                delivered(pending);
+            }
+        }
+    }
+
+    private void delivered(Pending pending) {
+        this.deliveredCount.incrementAndGet();
+        this.deliveryTime.addAndGet(System.nanoTime() - pending.raisedAt);
+    }
+
+    /**
+     * <p>Events about the same entity are always handled by the same lane. Events that are not about a single entity
+     * are handled by the first lane.</p>
+     */
+    private int getLaneIndex(Object event) {
+        if (this.lanes.length == 1) {
+            return 0;
+        }
+
+        Object key = getEntityId(event);
+
+        if (key == null) {
+            return 0;
+        }
+
+        return (key.hashCode() & Integer.MAX_VALUE) % this.lanes.length;
+    }
+
+    private boolean isDeliveryThread() {
+        Thread currentThread = Thread.currentThread();
+
+        for (Lane lane : this.lanes) {
+            if (lane == currentThread) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private Object getEntityId(Object event) {
+        AttributedType entity = null;
+
+        if (event instanceof IdentityTypeCreatedEvent) {
+            entity = ((IdentityTypeCreatedEvent) event).getIdentityType();
+        } else if (event instanceof IdentityTypeUpdatedEvent) {
+            entity = ((IdentityTypeUpdatedEvent) event).getIdentityType();
+        } else if (event instanceof IdentityTypeDeletedEvent) {
+            entity = ((IdentityTypeDeletedEvent) event).getIdentityType();
+        } else if (event instanceof RelationshipCreatedEvent) {
+            entity = ((RelationshipCreatedEvent) event).getRelationship();
+        } else if (event instanceof RelationshipUpdatedEvent) {
+            entity = ((RelationshipUpdatedEvent) event).getRelationship();
+        } else if (event instanceof RelationshipDeletedEvent) {
+            entity = ((RelationshipDeletedEvent) event).getRelationship();
+        } else if (event instanceof PartitionCreatedEvent) {
+            entity = ((PartitionCreatedEvent) event).getPartition();
+        } else if (event instanceof PartitionUpdatedEvent) {
+            entity = ((PartitionUpdatedEvent) event).getPartition();
+        } else if (event instanceof PartitionDeletedEvent) {
+            entity = ((PartitionDeletedEvent) event).getPartition();
+        } else if (event instanceof CredentialUpdatedEvent) {
+            entity = ((CredentialUpdatedEvent) event).getAccount();
+        }
+
+        if (entity == null) {
+            return null;
+        }
+
+        return entity.getId();
+    }
+
+    private static class Pending {
+        private final Object event;
+        private final long raisedAt = System.nanoTime();
+
+        private Pending(Object event) {
+            this.event = event;
+        }
+    }
+
+    private class Lane extends Thread {
+
+        private final BlockingQueue<Object> queue;
+
+        private Lane(int index, int capacity) {
+            super("picketlink-idm-events-" + index);
+            this.queue = new LinkedBlockingQueue<Object>(capacity);
+            setDaemon(true);
+        }
+
+        /**
+         * <p>Adds an element to the queue, waiting up to the given timeout for room if the queue is full.</p>
+         *
+         * @return false if the queue remained full or if the current thread was interrupted while waiting
+         */
+        private boolean enqueue(Object element, long timeout) {
+            if (this.queue.offer(element)) {
+                return true;
+            }
+
+            if (timeout <= 0) {
+                return false;
+            }
+
+            blockedCount.incrementAndGet();
+
+            try {
+                return this.queue.offer(element, timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        @Override
+        public void run() {
+            List<Object> elements = new ArrayList<Object>();
+
+            while (true) {
+                try {
+                    elements.add(this.queue.take());
+                } catch (InterruptedException e) {
+                    continue;
+                }
+
+                if (DeliveryMode.BATCHED.equals(mode)) {
+                    this.queue.drainTo(elements, batchSize - 1);
+                }
+
+                List<Pending> batch = new ArrayList<Pending>(elements.size());
+                boolean stop = false;
+
+                for (Object element : elements) {
+                    if (element == STOP) {
+                        stop = true;
+                    } else {
+                        batch.add((Pending) element);
+                    }
+                }
+
+                elements.clear();
+
+                if (!batch.isEmpty()) {
+                    if (DeliveryMode.BATCHED.equals(mode)) {
+                        deliver(batch);
+                    } else {
+                        deliver(batch.get(0));
+                    }
+                }
+
+                if (stop) {
+                    return;
+                }
+            }
+        }
+    }
+}
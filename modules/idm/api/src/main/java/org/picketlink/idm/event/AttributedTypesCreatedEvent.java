@@ -0,0 +1,42 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.event;
+
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.model.AttributedType;
+
+import java.util.List;
+
+/**
+ * <p>This event is raised once a batch of {@link AttributedType} instances is created, for instance by
+ * {@link org.picketlink.idm.IdentityManager#addAll(java.util.Collection)}. It is raised after the events of each
+ * instance and only references the instances that were successfully created.</p>
+ */
+public class AttributedTypesCreatedEvent extends AbstractBaseEvent {
+
+    private final List<? extends AttributedType> attributedTypes;
+
+    public AttributedTypesCreatedEvent(List<? extends AttributedType> attributedTypes, PartitionManager partitionManager) {
+        super(partitionManager);
+        this.attributedTypes = attributedTypes;
+    }
+
+    public List<? extends AttributedType> getAttributedTypes() {
+        return this.attributedTypes;
+    }
+}
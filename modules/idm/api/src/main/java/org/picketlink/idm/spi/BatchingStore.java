@@ -0,0 +1,44 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.spi;
+
+/**
+ * <p>Optional interface for identity stores that are able to group the writes of a batch of operations, instead of
+ * persisting each operation on its own. For instance, by sharing a single connection or by flushing changes only once
+ * for the whole batch.</p>
+ *
+ * <p>Every call to {@link #beginBatch(IdentityContext)} is followed by a call to {@link #endBatch(IdentityContext)}
+ * once all the operations of the batch were performed, even if some of them failed. A failed operation must not
+ * prevent the changes of the other operations of the batch from being persisted.</p>
+ */
+public interface BatchingStore {
+
+    /**
+     * <p>Begins a batch of operations performed by the current thread with the given context.</p>
+     *
+     * @param context
+     */
+    void beginBatch(IdentityContext context);
+
+    /**
+     * <p>Ends the batch of operations, persisting any pending change.</p>
+     *
+     * @param context
+     */
+    void endBatch(IdentityContext context);
+}
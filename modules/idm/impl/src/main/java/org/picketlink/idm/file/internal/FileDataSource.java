@@ -28,6 +28,7 @@ import java.io.ObjectOutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -106,6 +107,14 @@ public class FileDataSource {
 
     private ExecutorService executorService;
 
+    /**
+     * <p>
+     * Holds the changes flushed by the current thread while a batch is open. They are only written to the filesystem
+     * when the batch ends, once per file.
+     * </p>
+     */
+    private final ThreadLocal<Batch> currentBatch = new ThreadLocal<Batch>();
+
     FileDataSource(FileIdentityStoreConfiguration configuration) {
         this.configuration = configuration;
         init();
@@ -162,6 +171,41 @@ public class FileDataSource {
         flush(filePartition, PERMISSIONS_FILE_NAME, filePartition.getPermissions());
     }
 
+    /**
+     * <p>
+     * Begins a batch for the current thread. Changes flushed until the batch ends are written only once.
+     * </p>
+     */
+    void beginBatch() {
+        Batch batch = this.currentBatch.get();
+
+        if (batch == null) {
+            batch = new Batch();
+            this.currentBatch.set(batch);
+        }
+
+        batch.depth++;
+    }
+
+    /**
+     * <p>
+     * Ends the batch of the current thread, writing the changes flushed since it began.
+     * </p>
+     */
+    void endBatch() {
+        Batch batch = this.currentBatch.get();
+
+        if (batch == null || --batch.depth > 0) {
+            return;
+        }
+
+        this.currentBatch.remove();
+
+        for (Entry<String, Object> pendingFlush : batch.pendingFlushes.entrySet()) {
+            flush(pendingFlush.getKey(), pendingFlush.getValue());
+        }
+    }
+
     /**
      * <p>
      * Initializes the working directory.
@@ -313,6 +357,13 @@ public class FileDataSource {
     }
 
     private void flush(final String fileName, final Object object) {
+        Batch batch = this.currentBatch.get();
+
+        if (batch != null) {
+            batch.pendingFlushes.put(fileName, object);
+            return;
+        }
+
         if (this.configuration.isAsyncWrite()) {
             this.executorService.execute(new Runnable() {
 
@@ -378,4 +429,8 @@ public class FileDataSource {
         return FILE_STORE_LOGGER.isDebugEnabled();
     }
 
-}
\ No newline at end of file
+    private static class Batch {
+        private final Map<String, Object> pendingFlushes = new LinkedHashMap<String, Object>();
+        private int depth;
+    }
+}
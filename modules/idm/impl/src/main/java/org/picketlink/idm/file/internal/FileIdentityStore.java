@@ -60,6 +60,7 @@ import org.picketlink.idm.query.internal.InCondition;
 import org.picketlink.idm.query.internal.LessThanCondition;
 import org.picketlink.idm.query.internal.LikeCondition;
 import org.picketlink.idm.spi.AttributeStore;
+import org.picketlink.idm.spi.BatchingStore;
 import org.picketlink.idm.spi.CredentialStore;
 import org.picketlink.idm.spi.IdentityContext;
 import org.picketlink.idm.spi.PartitionStore;
@@ -99,7 +100,7 @@ import static org.picketlink.idm.internal.util.PermissionUtil.hasAttributes;
 public class FileIdentityStore extends AbstractAttributeStore<FileIdentityStoreConfiguration>
     implements PartitionStore<FileIdentityStoreConfiguration>,
     CredentialStore<FileIdentityStoreConfiguration>,
-    AttributeStore<FileIdentityStoreConfiguration>, PermissionStore {
+    AttributeStore<FileIdentityStoreConfiguration>, PermissionStore, BatchingStore {
 
     private FileDataSource fileDataSource;
 
@@ -110,6 +111,16 @@ public class FileIdentityStore extends AbstractAttributeStore<FileIdentityStoreC
         this.fileDataSource = new FileDataSource(configuration);
     }
 
+    @Override
+    public void beginBatch(IdentityContext context) {
+        this.fileDataSource.beginBatch();
+    }
+
+    @Override
+    public void endBatch(IdentityContext context) {
+        this.fileDataSource.endBatch();
+    }
+
     @Override
     protected void removeFromRelationships(IdentityContext context, IdentityType identityType) {
         Map<String, Map<String, FileRelationship>> relationships = this.fileDataSource.getRelationships();
@@ -21,19 +21,29 @@ import org.picketlink.common.properties.Property;
 import org.picketlink.common.properties.query.AnnotatedPropertyCriteria;
 import org.picketlink.common.properties.query.PropertyQueries;
 import org.picketlink.idm.AttributedTypeManager;
+import org.picketlink.idm.BatchResult;
 import org.picketlink.idm.IdGenerator;
 import org.picketlink.idm.IdentityManagementException;
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.config.IdentityStoreConfiguration.IdentityOperation;
+import org.picketlink.idm.event.AttributedTypesCreatedEvent;
+import org.picketlink.idm.event.AttributedTypesUpdatedEvent;
 import org.picketlink.idm.event.EventBridge;
 import org.picketlink.idm.model.Attribute;
 import org.picketlink.idm.model.AttributedType;
 import org.picketlink.idm.model.Partition;
 import org.picketlink.idm.model.annotation.AttributeProperty;
 import org.picketlink.idm.spi.AttributeStore;
+import org.picketlink.idm.spi.BatchingStore;
 import org.picketlink.idm.spi.IdentityContext;
+import org.picketlink.idm.spi.IdentityStore;
 import org.picketlink.idm.spi.StoreSelector;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -62,6 +72,10 @@ public abstract class AbstractAttributedTypeManager<T extends AttributedType> im
 
     @Override
     public void add(T attributedType) throws IdentityManagementException {
+        add(attributedType, true);
+    }
+
+    private void add(T attributedType, boolean fireEvent) throws IdentityManagementException {
         if (attributedType == null) {
             throw MESSAGES.nullArgument("AttributedType");
         }
@@ -73,17 +87,94 @@ public abstract class AbstractAttributedTypeManager<T extends AttributedType> im
 
             addAttributes(identityContext, attributedType);
 
-            fireAttributedTypeAddedEvent(attributedType);
+            if (fireEvent) {
+                fireAttributedTypeAddedEvent(attributedType);
+            }
         } catch (Exception e) {
             throw MESSAGES.attributedTypeAddFailed(attributedType, e);
         }
     }
 
+    /**
+     * <p>Adds all the given types, grouping the writes to each identity store. See
+     * {@link org.picketlink.idm.IdentityManager#addAll(java.util.Collection)}.</p>
+     *
+     * <p>When the batch of a store cannot be started, its types are reported as failures and the other batches are
+     * still processed.</p>
+     *
+     * @param attributedTypes
+     * @return
+     */
+    protected BatchResult<T> addAll(Collection<? extends T> attributedTypes) throws IdentityManagementException {
+        if (attributedTypes == null) {
+            throw MESSAGES.nullArgument("AttributedType collection");
+        }
+
+        BatchResult<T> result = new BatchResult<T>();
+
+        try {
+            for (List<T> batch : groupByStore(attributedTypes, IdentityOperation.create, result)) {
+                List<BatchingStore> batchingStores;
+
+                try {
+                    batchingStores = beginBatch(batch.get(0), IdentityOperation.create);
+                } catch (RuntimeException e) {
+                    for (T attributedType : batch) {
+                        result.addFailure(attributedType, MESSAGES.attributedTypeAddFailed(attributedType, e));
+                    }
+
+                    continue;
+                }
+
+                List<T> added = new ArrayList<T>();
+
+                try {
+                    for (T attributedType : batch) {
+                        try {
+                            add(attributedType, false);
+                            added.add(attributedType);
+                        } catch (IdentityManagementException e) {
+                            result.addFailure(attributedType, e);
+                        } catch (RuntimeException e) {
+                            result.addFailure(attributedType, MESSAGES.attributedTypeAddFailed(attributedType, e));
+                        }
+                    }
+                } finally {
+                    RuntimeException failure = endBatch(batchingStores);
+
+                    for (T attributedType : added) {
+                        if (failure != null) {
+                            result.addFailure(attributedType, MESSAGES.attributedTypeAddFailed(attributedType, failure));
+                            continue;
+                        }
+
+                        try {
+                            fireAttributedTypeAddedEvent(attributedType);
+                            result.addProcessed(attributedType);
+                        } catch (RuntimeException e) {
+                            result.addFailure(attributedType, MESSAGES.attributedTypeAddFailed(attributedType, e));
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (!result.getProcessed().isEmpty()) {
+                fireEvent(new AttributedTypesCreatedEvent(result.getProcessed(), getPartitionManager()));
+            }
+        }
+
+        return result;
+    }
+
     protected abstract void fireAttributedTypeAddedEvent(T attributedType);
     protected abstract void doAdd(T attributedType);
 
     @Override
     public void update(T attributedType) throws IdentityManagementException {
+        update(attributedType, true);
+    }
+
+    private void update(T attributedType, boolean fireEvent) throws IdentityManagementException {
         if (attributedType == null) {
             throw MESSAGES.nullArgument("AttributedType");
         }
@@ -98,12 +189,85 @@ public abstract class AbstractAttributedTypeManager<T extends AttributedType> im
             removeAttributes(identityContext, attributedType, storedType);
             addAttributes(identityContext, attributedType);
 
-            fireAttributedTypeUpdatedEvent(attributedType);
+            if (fireEvent) {
+                fireAttributedTypeUpdatedEvent(attributedType);
+            }
         } catch (Exception e) {
             throw MESSAGES.attributedTypeUpdateFailed(attributedType, e);
         }
     }
 
+    /**
+     * <p>Updates all the given types, grouping the writes to each identity store. See
+     * {@link org.picketlink.idm.IdentityManager#updateAll(java.util.Collection)}.</p>
+     *
+     * <p>When the batch of a store cannot be started, its types are reported as failures and the other batches are
+     * still processed.</p>
+     *
+     * @param attributedTypes
+     * @return
+     */
+    protected BatchResult<T> updateAll(Collection<? extends T> attributedTypes) throws IdentityManagementException {
+        if (attributedTypes == null) {
+            throw MESSAGES.nullArgument("AttributedType collection");
+        }
+
+        BatchResult<T> result = new BatchResult<T>();
+
+        try {
+            for (List<T> batch : groupByStore(attributedTypes, IdentityOperation.update, result)) {
+                List<BatchingStore> batchingStores;
+
+                try {
+                    batchingStores = beginBatch(batch.get(0), IdentityOperation.update);
+                } catch (RuntimeException e) {
+                    for (T attributedType : batch) {
+                        result.addFailure(attributedType, MESSAGES.attributedTypeUpdateFailed(attributedType, e));
+                    }
+
+                    continue;
+                }
+
+                List<T> updated = new ArrayList<T>();
+
+                try {
+                    for (T attributedType : batch) {
+                        try {
+                            update(attributedType, false);
+                            updated.add(attributedType);
+                        } catch (IdentityManagementException e) {
+                            result.addFailure(attributedType, e);
+                        } catch (RuntimeException e) {
+                            result.addFailure(attributedType, MESSAGES.attributedTypeUpdateFailed(attributedType, e));
+                        }
+                    }
+                } finally {
+                    RuntimeException failure = endBatch(batchingStores);
+
+                    for (T attributedType : updated) {
+                        if (failure != null) {
+                            result.addFailure(attributedType, MESSAGES.attributedTypeUpdateFailed(attributedType, failure));
+                            continue;
+                        }
+
+                        try {
+                            fireAttributedTypeUpdatedEvent(attributedType);
+                            result.addProcessed(attributedType);
+                        } catch (RuntimeException e) {
+                            result.addFailure(attributedType, MESSAGES.attributedTypeUpdateFailed(attributedType, e));
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (!result.getProcessed().isEmpty()) {
+                fireEvent(new AttributedTypesUpdatedEvent(result.getProcessed(), getPartitionManager()));
+            }
+        }
+
+        return result;
+    }
+
     protected abstract void fireAttributedTypeUpdatedEvent(T attributedType);
     protected abstract void doUpdate(T attributedType);
 
@@ -134,6 +298,96 @@ public abstract class AbstractAttributedTypeManager<T extends AttributedType> im
     protected abstract void checkUniqueness(T attributedType) throws IdentityManagementException;
     protected abstract void checkIfExists(T attributedType) throws IdentityManagementException;
 
+    /**
+     * <p>Returns the identity store that performs the given operation for the given type.</p>
+     *
+     * @param attributedType
+     * @param operation
+     * @return
+     */
+    protected abstract IdentityStore<?> getStoreForOperation(T attributedType, IdentityOperation operation);
+
+    protected abstract PartitionManager getPartitionManager();
+
+    /**
+     * <p>Splits the given types in batches handled by the same identity store, keeping the order in which they were
+     * given. Types for which no store could be resolved are reported as failures.</p>
+     */
+    private List<List<T>> groupByStore(Collection<? extends T> attributedTypes, IdentityOperation operation,
+                                       BatchResult<T> result) {
+        Map<IdentityStore<?>, List<T>> batches = new LinkedHashMap<IdentityStore<?>, List<T>>();
+
+        for (T attributedType : attributedTypes) {
+            try {
+                if (attributedType == null) {
+                    throw MESSAGES.nullArgument("AttributedType");
+                }
+
+                IdentityStore<?> store = getStoreForOperation(attributedType, operation);
+                List<T> batch = batches.get(store);
+
+                if (batch == null) {
+                    batch = new ArrayList<T>();
+                    batches.put(store, batch);
+                }
+
+                batch.add(attributedType);
+            } catch (IdentityManagementException e) {
+                result.addFailure(attributedType, e);
+            }
+        }
+
+        return new ArrayList<List<T>>(batches.values());
+    }
+
+    private List<BatchingStore> beginBatch(T attributedType, IdentityOperation operation) {
+        List<BatchingStore> batchingStores = new ArrayList<BatchingStore>();
+        IdentityStore<?> store = getStoreForOperation(attributedType, operation);
+
+        if (store instanceof BatchingStore) {
+            batchingStores.add((BatchingStore) store);
+        }
+
+        AttributeStore<?> attributeStore = getStoreSelector().getStoreForAttributeOperation(identityContext);
+
+        if (attributeStore instanceof BatchingStore && attributeStore != store) {
+            batchingStores.add((BatchingStore) attributeStore);
+        }
+
+        for (int i = 0; i < batchingStores.size(); i++) {
+            try {
+                batchingStores.get(i).beginBatch(identityContext);
+            } catch (RuntimeException e) {
+                endBatch(batchingStores.subList(0, i));
+                throw e;
+            }
+        }
+
+        return batchingStores;
+    }
+
+    /**
+     * <p>Ends the batch of the given stores.</p>
+     *
+     * @return the first failure to end a batch, in which case the changes of the batch may not have been persisted,
+     * or null if all batches ended successfully
+     */
+    private RuntimeException endBatch(List<BatchingStore> batchingStores) {
+        RuntimeException failure = null;
+
+        for (int i = batchingStores.size() - 1; i >= 0; i--) {
+            try {
+                batchingStores.get(i).endBatch(identityContext);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+
+        return failure;
+    }
+
     protected void fireEvent(Object event) {
         getEventBridge().raiseEvent(event);
     }
@@ -21,9 +21,11 @@ import org.picketlink.common.properties.Property;
 import org.picketlink.common.properties.query.AnnotatedPropertyCriteria;
 import org.picketlink.common.properties.query.PropertyQueries;
 import org.picketlink.common.properties.query.PropertyQuery;
+import org.picketlink.idm.BatchResult;
 import org.picketlink.idm.IdGenerator;
 import org.picketlink.idm.IdentityManagementException;
 import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.PartitionManager;
 import org.picketlink.idm.PermissionManager;
 import org.picketlink.idm.RelationshipManager;
 import org.picketlink.idm.config.IdentityStoreConfiguration.IdentityOperation;
@@ -52,6 +54,7 @@ import org.picketlink.idm.spi.IdentityStore;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -101,6 +104,11 @@ public class ContextualIdentityManager extends AbstractAttributedTypeManager<Ide
         configureDefaultPartition(identityContext, attributedType, identityStore, this.partitionManager);
     }
 
+    @Override
+    public BatchResult<IdentityType> addAll(Collection<? extends IdentityType> identityTypes) {
+        return super.addAll(identityTypes);
+    }
+
     @Override
     protected void fireAttributedTypeAddedEvent(IdentityType attributedType) {
         fireEvent(new IdentityTypeCreatedEvent(attributedType, this.partitionManager));
@@ -118,6 +126,11 @@ public class ContextualIdentityManager extends AbstractAttributedTypeManager<Ide
                 .update(identityContext, attributedType);
     }
 
+    @Override
+    public BatchResult<IdentityType> updateAll(Collection<? extends IdentityType> identityTypes) {
+        return super.updateAll(identityTypes);
+    }
+
     @Override
     protected void fireAttributedTypeUpdatedEvent(IdentityType attributedType) {
         fireEvent(new IdentityTypeUpdatedEvent(attributedType, this.partitionManager));
@@ -303,6 +316,17 @@ public class ContextualIdentityManager extends AbstractAttributedTypeManager<Ide
         }
     }
 
+    @Override
+    protected IdentityStore<?> getStoreForOperation(IdentityType identityType, IdentityOperation operation) {
+        return getStoreSelector().getStoreForIdentityOperation(getIdentityContext(), IdentityStore.class,
+                identityType.getClass(), operation);
+    }
+
+    @Override
+    protected PartitionManager getPartitionManager() {
+        return this.partitionManager;
+    }
+
     @Override
     public IdentityQueryBuilder getQueryBuilder() {
         return new DefaultQueryBuilder(getIdentityContext(), this.partitionManager, getStoreSelector());
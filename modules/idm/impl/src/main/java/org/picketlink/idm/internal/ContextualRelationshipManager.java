@@ -17,6 +17,7 @@
  */
 package org.picketlink.idm.internal;
 
+import org.picketlink.idm.BatchResult;
 import org.picketlink.idm.IdentityManagementException;
 import org.picketlink.idm.PartitionManager;
 import org.picketlink.idm.RelationshipManager;
@@ -29,7 +30,9 @@ import org.picketlink.idm.model.Relationship;
 import org.picketlink.idm.query.RelationshipQuery;
 import org.picketlink.idm.query.internal.DefaultRelationshipQuery;
 import org.picketlink.idm.spi.IdentityContext;
+import org.picketlink.idm.spi.IdentityStore;
 
+import java.util.Collection;
 import java.util.List;
 
 import static org.picketlink.idm.IDMInternalMessages.MESSAGES;
@@ -89,6 +92,22 @@ public class ContextualRelationshipManager extends AbstractAttributedTypeManager
                 .remove(identityContext, relationship);
     }
 
+    @Override
+    public BatchResult<Relationship> addAll(Collection<? extends Relationship> relationships) {
+        return super.addAll(relationships);
+    }
+
+    @Override
+    public BatchResult<Relationship> updateAll(Collection<? extends Relationship> relationships) {
+        return super.updateAll(relationships);
+    }
+
+    @Override
+    protected IdentityStore<?> getStoreForOperation(Relationship relationship, IdentityOperation operation) {
+        return getStoreSelector().getStoreForRelationshipOperation(getIdentityContext(), relationship.getClass(),
+                relationship, operation);
+    }
+
     @Override
     public <T extends Relationship> RelationshipQuery<T> createRelationshipQuery(Class<T> relationshipClass) {
         if (relationshipClass == null) {
@@ -132,6 +151,7 @@ public class ContextualRelationshipManager extends AbstractAttributedTypeManager
         //no-op
     }
 
+    @Override
     public PartitionManager getPartitionManager() {
         return this.partitionManager;
     }
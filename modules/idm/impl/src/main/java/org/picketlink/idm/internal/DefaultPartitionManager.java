@@ -38,6 +38,7 @@ import org.picketlink.idm.query.IdentityQuery;
 import org.picketlink.idm.query.IdentityQueryBuilder;
 import org.picketlink.idm.spi.AttributeStore;
 import org.picketlink.idm.spi.IdentityContext;
+import org.picketlink.idm.spi.IdentityStore;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -55,6 +56,10 @@ import static org.picketlink.idm.IDMInternalMessages.MESSAGES;
  *
  * <p>This class is thread safe, and is intended to be used as an application-scoped component.</p>
  *
+ * <p>Partitions are kept in memory once loaded from the partition store, and callers always get a copy of them. A
+ * partition added, updated or removed through this manager is reloaded, the others are kept. When partitions are changed by other partition managers, like the ones
+ * of other nodes in a cluster, {@link #refreshPartitions()} must be called to discard the partitions in memory.</p>
+ *
  * @author Shane Bryzak
  */
 public class DefaultPartitionManager extends AbstractAttributedTypeManager<Partition> implements PartitionManager {
@@ -63,6 +68,8 @@ public class DefaultPartitionManager extends AbstractAttributedTypeManager<Parti
 
     private static final Realm DEFAULT_REALM = new Realm(Realm.DEFAULT_REALM);
 
+    private final PartitionRegistry partitionRegistry = new PartitionRegistry();
+
     public DefaultPartitionManager(IdentityConfiguration configuration) {
         this(Arrays.asList(configuration));
     }
@@ -144,12 +151,21 @@ public class DefaultPartitionManager extends AbstractAttributedTypeManager<Parti
             return (T) createDefaultPartition();
         }
 
+        T partition = this.partitionRegistry.getByName(partitionClass, name);
+
+        if (partition != null) {
+            return partition;
+        }
+
         try {
+            long registryVersion = this.partitionRegistry.getVersion();
             IdentityContext identityContext = getIdentityContext();
-            T partition = getStoreSelector().getStoreForPartitionOperation(identityContext, partitionClass).<T>get(identityContext, partitionClass, name);
+
+            partition = getStoreSelector().getStoreForPartitionOperation(identityContext, partitionClass).<T>get(identityContext, partitionClass, name);
 
             if (partition != null) {
                 loadAttributes(identityContext, (T) partition);
+                this.partitionRegistry.register(partitionClass, partition, registryVersion);
             }
 
             return partition;
@@ -169,7 +185,14 @@ public class DefaultPartitionManager extends AbstractAttributedTypeManager<Parti
         if (!getConfiguration().supportsPartition()) {
             partitions.add((T) createDefaultPartition());
         } else {
+            List<T> registeredPartitions = this.partitionRegistry.getAll(partitionClass);
+
+            if (registeredPartitions != null) {
+                return registeredPartitions;
+            }
+
             try {
+                long registryVersion = this.partitionRegistry.getVersion();
                 IdentityContext identityContext = getIdentityContext();
 
                 partitions.addAll(getStoreSelector().getStoreForPartitionOperation(identityContext, partitionClass).<T>get(identityContext, partitionClass));
@@ -177,6 +200,8 @@ public class DefaultPartitionManager extends AbstractAttributedTypeManager<Parti
                 for (T partition : partitions) {
                     loadAttributes(identityContext, partition);
                 }
+
+                this.partitionRegistry.registerAll(partitionClass, partitions, registryVersion);
             } catch (Exception e) {
                 throw MESSAGES.partitionGetFailed(partitionClass, "not specified", e);
             }
@@ -199,12 +224,21 @@ public class DefaultPartitionManager extends AbstractAttributedTypeManager<Parti
             return (T) createDefaultPartition();
         }
 
+        T partition = this.partitionRegistry.getById(partitionClass, id);
+
+        if (partition != null) {
+            return partition;
+        }
+
         try {
+            long registryVersion = this.partitionRegistry.getVersion();
             IdentityContext identityContext = getIdentityContext();
-            T partition = getStoreSelector().getStoreForPartitionOperation(identityContext, partitionClass).<T>lookupById(identityContext, partitionClass, id);
+
+            partition = getStoreSelector().getStoreForPartitionOperation(identityContext, partitionClass).<T>lookupById(identityContext, partitionClass, id);
 
             if (partition != null) {
                 loadAttributes(identityContext, (T) partition);
+                this.partitionRegistry.register(partitionClass, partition, registryVersion);
             }
 
             return partition;
@@ -247,9 +281,12 @@ public class DefaultPartitionManager extends AbstractAttributedTypeManager<Parti
                 IdentityContext identityContext = getIdentityContext();
 
                 getStoreSelector().getStoreForPartitionOperation(identityContext, partition.getClass()).add(identityContext, partition, configurationName);
+                getConfiguration().getStoreSelector().partitionAdded(partition, configurationName);
 
                 addAttributes(identityContext, partition);
 
+                this.partitionRegistry.evict(partition);
+
                 fireEvent(new PartitionCreatedEvent(partition, this));
             } catch (Exception e) {
                 throw MESSAGES.partitionAddFailed(partition, configurationName, e);
@@ -259,6 +296,7 @@ public class DefaultPartitionManager extends AbstractAttributedTypeManager<Parti
 
     @Override
     protected void fireAttributedTypeUpdatedEvent(Partition attributedType) {
+        this.partitionRegistry.evict(attributedType);
         fireEvent(new PartitionUpdatedEvent(attributedType, this));
     }
 
@@ -269,10 +307,13 @@ public class DefaultPartitionManager extends AbstractAttributedTypeManager<Parti
         IdentityContext identityContext = getIdentityContext();
 
         getStoreSelector().getStoreForPartitionOperation(identityContext, attributedType.getClass()).update(identityContext, attributedType);
+
+        this.partitionRegistry.evict(attributedType);
     }
 
     @Override
     protected void fireAttributedTypeRemovedEvent(Partition attributedType) {
+        this.partitionRegistry.evict(attributedType);
         fireEvent(new PartitionDeletedEvent(attributedType, this));
     }
 
@@ -290,6 +331,9 @@ public class DefaultPartitionManager extends AbstractAttributedTypeManager<Parti
         IdentityContext identityContext = getIdentityContext();
 
         getStoreSelector().getStoreForPartitionOperation(identityContext, attributedType.getClass()).remove(identityContext, attributedType);
+        getConfiguration().getStoreSelector().partitionRemoved(attributedType);
+
+        this.partitionRegistry.evict(attributedType);
     }
 
     @Override
@@ -312,6 +356,27 @@ public class DefaultPartitionManager extends AbstractAttributedTypeManager<Parti
         }
     }
 
+    @Override
+    protected IdentityStore<?> getStoreForOperation(Partition partition, IdentityOperation operation) {
+        return getStoreSelector().getStoreForPartitionOperation(getIdentityContext(), partition.getClass());
+    }
+
+    @Override
+    protected PartitionManager getPartitionManager() {
+        return this;
+    }
+
+    /**
+     * <p>Discards the partitions kept in memory, they are loaded again from the partition store when needed.</p>
+     *
+     * <p>This method should be called when partitions are changed by other partition managers, for instance when
+     * a {@link PartitionCreatedEvent}, {@link PartitionUpdatedEvent} or {@link PartitionDeletedEvent} is received
+     * from another node of a cluster.</p>
+     */
+    public void refreshPartitions() {
+        this.partitionRegistry.clear();
+    }
+
     @Override
     public Collection<IdentityConfiguration> getConfigurations() {
         return getConfiguration().getConfigurations();
@@ -26,8 +26,6 @@ import org.picketlink.idm.config.JDBCIdentityStoreConfiguration;
 import org.picketlink.idm.config.JPAIdentityStoreConfiguration;
 import org.picketlink.idm.config.LDAPIdentityStoreConfiguration;
 import org.picketlink.idm.config.TokenStoreConfiguration;
-import org.picketlink.idm.credential.handler.CredentialHandler;
-import org.picketlink.idm.credential.handler.annotations.SupportsCredentials;
 import org.picketlink.idm.credential.storage.CredentialStorage;
 import org.picketlink.idm.file.internal.FileIdentityStore;
 import org.picketlink.idm.internal.util.RelationshipMetadata;
@@ -52,9 +50,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.picketlink.idm.IDMInternalMessages.MESSAGES;
 import static org.picketlink.idm.config.IdentityStoreConfiguration.IdentityOperation.create;
@@ -81,18 +81,20 @@ public class DefaultStoreSelector implements StoreSelector {
     private final Map<Partition, IdentityConfiguration> partitionConfigurations = new ConcurrentHashMap<Partition, IdentityConfiguration>();
 
     /**
-     * The store instances for each IdentityConfiguration, mapped by their corresponding IdentityStoreConfiguration
+     * The routing table for each IdentityConfiguration, holding the store instances mapped by their corresponding
+     * IdentityStoreConfiguration
      */
-    private final Map<IdentityConfiguration, Map<IdentityStoreConfiguration, IdentityStore<?>>> stores;
+    private final Map<IdentityConfiguration, StoreRoutingTable> routingTables;
 
-    private final Map<String, Map<Class<? extends IdentityType>, Set<IdentityStoreConfiguration>>> identityQueryStoresCache = new ConcurrentHashMap<String, Map<Class<? extends IdentityType>, Set<IdentityStoreConfiguration>>>();
-    private final Map<String, Map<Class<?>, IdentityStoreConfiguration>> credentialStoresCache = new ConcurrentHashMap<String, Map<Class<?>, IdentityStoreConfiguration>>();
+    /**
+     * Whether a type is supported by a partition class, as defined by the {@link IdentityPartition} annotation
+     */
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, Boolean>> partitionSupportedTypes = new ConcurrentHashMap<Class<?>, ConcurrentMap<Class<?>, Boolean>>();
 
     public DefaultStoreSelector(PartitionManagerConfiguration configuration) {
         this.configuration = configuration;
 
-        Map<IdentityConfiguration, Map<IdentityStoreConfiguration, IdentityStore<?>>> configuredStores =
-                new HashMap<IdentityConfiguration, Map<IdentityStoreConfiguration, IdentityStore<?>>>();
+        Map<IdentityConfiguration, StoreRoutingTable> configuredRoutingTables = new HashMap<IdentityConfiguration, StoreRoutingTable>();
 
         for (IdentityConfiguration config : this.configuration.getConfigurations()) {
             Map<IdentityStoreConfiguration, IdentityStore<?>> storeMap = new HashMap<IdentityStoreConfiguration, IdentityStore<?>>();
@@ -101,10 +103,10 @@ public class DefaultStoreSelector implements StoreSelector {
                 storeMap.put(storeConfig, createIdentityStore(storeConfig));
             }
 
-            configuredStores.put(config, Collections.unmodifiableMap(storeMap));
+            configuredRoutingTables.put(config, new StoreRoutingTable(config, Collections.unmodifiableMap(storeMap)));
         }
 
-        this.stores = Collections.unmodifiableMap(configuredStores);
+        this.routingTables = Collections.unmodifiableMap(configuredRoutingTables);
     }
 
     @Override
@@ -125,108 +127,37 @@ public class DefaultStoreSelector implements StoreSelector {
     @Override
     public Set<IdentityStore<?>> getStoresForIdentityQuery(final IdentityContext context, final Class<? extends IdentityType> identityType) {
         IdentityConfiguration identityConfiguration = getConfigurationForPartition(context, context.getPartition());
-        Map<Class<? extends IdentityType>, Set<IdentityStoreConfiguration>> cachedStoresForType = this.identityQueryStoresCache.get(context.getPartition().getName());
-
-        if (cachedStoresForType != null) {
-            Set<IdentityStoreConfiguration> storeConfigs = cachedStoresForType.get(identityType);
-
-            if (storeConfigs != null) {
-                Set<IdentityStore<?>> identityStores = new HashSet<IdentityStore<?>>();
-
-                for (IdentityStoreConfiguration storeConfig : storeConfigs) {
-                    identityStores.add(getIdentityStoreAndInitializeContext(context, identityConfiguration, storeConfig));
-                }
+        List<IdentityStoreConfiguration> storeConfigs = getRoutingTable(identityConfiguration).getStoresForType(identityType, read);
 
-
-                return identityStores;
-            }
+        if (storeConfigs.isEmpty()) {
+            throw MESSAGES.attributedTypeUnsupportedOperation(identityType, read, identityType, read);
         }
 
         Set<IdentityStore<?>> identityStores = new HashSet<IdentityStore<?>>();
-        Set<IdentityStoreConfiguration> identityStoresConfig = new HashSet<IdentityStoreConfiguration>();
 
-        cachedStoresForType = new HashMap<Class<? extends IdentityType>, Set<IdentityStoreConfiguration>>();
-        cachedStoresForType.put(identityType, identityStoresConfig);
-
-        for (IdentityStoreConfiguration storeConfig : identityConfiguration.getStoreConfiguration()) {
-            if (storeConfig.supportsType(identityType, read)) {
-                identityStores.add(getIdentityStoreAndInitializeContext(context, identityConfiguration, storeConfig));
-                identityStoresConfig.add(storeConfig);
-            }
+        for (IdentityStoreConfiguration storeConfig : storeConfigs) {
+            identityStores.add(getIdentityStoreAndInitializeContext(context, identityConfiguration, storeConfig));
         }
 
-        if (identityStores.isEmpty()) {
-            throw MESSAGES.attributedTypeUnsupportedOperation(identityType, read, identityType, read);
-        }
-
-        this.identityQueryStoresCache.put(context.getPartition().getName(), cachedStoresForType);
-
         return identityStores;
     }
 
     @Override
     public <T extends CredentialStore<?>> T getStoreForCredentialOperation(IdentityContext context, Class<?> credentialClass) {
-        T store = null;
         IdentityConfiguration identityConfiguration = getConfigurationForPartition(context, context.getPartition());
+        IdentityStoreConfiguration storeConfig = getRoutingTable(identityConfiguration).getStoreForCredential(credentialClass);
 
-        if (identityConfiguration == null) {
-            for (IdentityConfiguration configuration : this.configuration.getConfigurations()) {
-                for (IdentityStoreConfiguration storeConfig : configuration.getStoreConfiguration()) {
-                    if (storeConfig.supportsCredential()) {
-                        identityConfiguration = configuration;
-                    }
-                }
-            }
+        if (storeConfig == null) {
+            throw MESSAGES.credentialNoStoreForCredentials(credentialClass);
         }
 
-        if (identityConfiguration != null) {
-            Map<Class<?>, IdentityStoreConfiguration> cachedStoresForType = this.credentialStoresCache.get(context.getPartition().getName());
-
-            if (cachedStoresForType != null) {
-                IdentityStoreConfiguration storeConfig = cachedStoresForType.get(credentialClass);
-
-                if (storeConfig != null) {
-                    return getIdentityStoreAndInitializeContext(context, identityConfiguration, storeConfig);
-                }
-            }
-
-            if (identityConfiguration.supportsCredential()) {
-                for (IdentityStoreConfiguration storeConfig : identityConfiguration.getStoreConfiguration()) {
-                    if (storeConfig.supportsCredential()) {
-                        for (@SuppressWarnings("rawtypes") Class<? extends CredentialHandler> handlerClass : storeConfig.getCredentialHandlers()) {
-                            if (handlerClass.isAnnotationPresent(SupportsCredentials.class)) {
-                                for (Class<?> cls : handlerClass.getAnnotation(SupportsCredentials.class).credentialClass()) {
-                                    if (cls.isAssignableFrom(credentialClass)) {
-                                        IdentityStore<?> identityStore = getIdentityStoreAndInitializeContext(context, identityConfiguration, storeConfig);
-
-                                        try {
-                                            store = (T) identityStore;
-                                        } catch (ClassCastException cce) {
-                                            throw MESSAGES.storeUnexpectedType(CredentialStore.class, identityStore.getClass());
-                                        }
-
-                                        // if we found a specific handler for the credential, immediately return.
-                                        if (cls.equals(credentialClass)) {
-                                            return store;
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
+        IdentityStore<?> identityStore = getIdentityStoreAndInitializeContext(context, identityConfiguration, storeConfig);
 
-            cachedStoresForType = new HashMap<Class<?>, IdentityStoreConfiguration>();
-            cachedStoresForType.put(credentialClass, store.getConfig());
-            this.credentialStoresCache.put(context.getPartition().getName(), cachedStoresForType);
+        if (!CredentialStore.class.isInstance(identityStore)) {
+            throw MESSAGES.storeUnexpectedType(CredentialStore.class, identityStore.getClass());
         }
 
-        if (store == null) {
-            throw MESSAGES.credentialNoStoreForCredentials(credentialClass);
-        }
-
-        return store;
+        return (T) identityStore;
     }
 
     @Override
@@ -240,11 +171,7 @@ public class DefaultStoreSelector implements StoreSelector {
             IdentityConfiguration config = getConfigurationForPartition(context, partitions.iterator().next());
 
             if (config.getRelationshipPolicy().isSelfRelationshipSupported(relationshipClass)) {
-                for (IdentityStoreConfiguration storeConfig : config.getStoreConfiguration()) {
-                    if (storeConfig.supportsType(relationshipClass, operation)) {
-                        store = getIdentityStoreAndInitializeContext(context, config, storeConfig);
-                    }
-                }
+                store = lookupLastStore(context, config, relationshipClass, operation);
             }
         } else {
             // This is a multi-partition relationship - use the configuration that supports the global relationship type
@@ -252,10 +179,10 @@ public class DefaultStoreSelector implements StoreSelector {
                 IdentityConfiguration config = getConfigurationForPartition(context, partition);
 
                 if (config.getRelationshipPolicy().isGlobalRelationshipSupported(relationshipClass)) {
-                    for (IdentityStoreConfiguration storeConfig : config.getStoreConfiguration()) {
-                        if (storeConfig.supportsType(relationshipClass, operation)) {
-                            store = getIdentityStoreAndInitializeContext(context, config, storeConfig);
-                        }
+                    IdentityStore<?> partitionStore = lookupLastStore(context, config, relationshipClass, operation);
+
+                    if (partitionStore != null) {
+                        store = partitionStore;
                     }
                 }
             }
@@ -267,10 +194,10 @@ public class DefaultStoreSelector implements StoreSelector {
             for (IdentityConfiguration cfg : this.configuration.getConfigurations()) {
                 if (cfg.getRelationshipPolicy().isGlobalRelationshipSupported(relationshipClass)) {
                     // found one
-                    for (IdentityStoreConfiguration storeConfig : cfg.getStoreConfiguration()) {
-                        if (storeConfig.supportsType(relationshipClass, operation)) {
-                            store = getIdentityStoreAndInitializeContext(context, cfg, storeConfig);
-                        }
+                    IdentityStore<?> globalStore = lookupLastStore(context, cfg, relationshipClass, operation);
+
+                    if (globalStore != null) {
+                        store = globalStore;
                     }
                 }
             }
@@ -294,11 +221,7 @@ public class DefaultStoreSelector implements StoreSelector {
             for (IdentityConfiguration config : this.configuration.getConfigurations()) {
                 if (config.getRelationshipPolicy().isGlobalRelationshipSupported(relationshipClass) ||
                         config.getRelationshipPolicy().isSelfRelationshipSupported(relationshipClass)) {
-                    for (IdentityStoreConfiguration storeConfig : config.getStoreConfiguration()) {
-                        if (storeConfig.supportsType(relationshipClass, create) || Relationship.class.equals(relationshipClass)) {
-                            identityStores.add(getIdentityStoreAndInitializeContext(context, config, storeConfig));
-                        }
-                    }
+                    addRelationshipStores(context, config, relationshipClass, identityStores);
                 }
             }
         } else {
@@ -306,11 +229,7 @@ public class DefaultStoreSelector implements StoreSelector {
                 IdentityConfiguration config = getConfigurationForPartition(context, partition);
 
                 if (config.getRelationshipPolicy().isGlobalRelationshipSupported(relationshipClass)) {
-                    for (IdentityStoreConfiguration storeConfig : config.getStoreConfiguration()) {
-                        if (storeConfig.supportsType(relationshipClass, create) || Relationship.class.equals(relationshipClass)) {
-                            identityStores.add(getIdentityStoreAndInitializeContext(context, config, storeConfig));
-                        }
-                    }
+                    addRelationshipStores(context, config, relationshipClass, identityStores);
                 }
             }
         }
@@ -325,11 +244,12 @@ public class DefaultStoreSelector implements StoreSelector {
     @Override
     public <T extends PartitionStore<?>> T getStoreForPartitionOperation(IdentityContext context, Class<? extends Partition> partitionClass) {
         IdentityConfiguration partitionManagementConfig = this.configuration.getPartitionManagementConfig();
-        Map<IdentityStoreConfiguration, IdentityStore<?>> configStores = stores.get(partitionManagementConfig);
 
-        for (IdentityStoreConfiguration cfg : configStores.keySet()) {
-            if (cfg.supportsType(partitionClass, create)) {
-                T store = getIdentityStoreAndInitializeContext(context, partitionManagementConfig, cfg);
+        if (partitionManagementConfig != null) {
+            List<IdentityStoreConfiguration> storeConfigs = getRoutingTable(partitionManagementConfig).getStoresForType(partitionClass, create);
+
+            if (!storeConfigs.isEmpty()) {
+                T store = getIdentityStoreAndInitializeContext(context, partitionManagementConfig, storeConfigs.get(0));
 
                 if (!PartitionStore.class.isInstance(store)) {
                     throw MESSAGES.storeUnexpectedType(store.getClass(), PartitionStore.class);
@@ -347,18 +267,16 @@ public class DefaultStoreSelector implements StoreSelector {
         IdentityConfiguration attributeManagementConfig = this.configuration.getAttributeManagementConfig();
 
         if (attributeManagementConfig != null) {
-            Map<IdentityStoreConfiguration, IdentityStore<?>> configStores = stores.get(attributeManagementConfig);
+            IdentityStoreConfiguration storeConfig = getRoutingTable(attributeManagementConfig).getAttributeStore();
 
-            for (IdentityStoreConfiguration cfg : configStores.keySet()) {
-                if (cfg.supportsAttribute()) {
-                    T store = getIdentityStoreAndInitializeContext(context, attributeManagementConfig, cfg);
+            if (storeConfig != null) {
+                T store = getIdentityStoreAndInitializeContext(context, attributeManagementConfig, storeConfig);
 
-                    if (!AttributeStore.class.isInstance(store)) {
-                        throw MESSAGES.storeUnexpectedType(store.getClass(), AttributeStore.class);
-                    }
-
-                    return store;
+                if (!AttributeStore.class.isInstance(store)) {
+                    throw MESSAGES.storeUnexpectedType(store.getClass(), AttributeStore.class);
                 }
+
+                return store;
             }
         }
 
@@ -368,23 +286,13 @@ public class DefaultStoreSelector implements StoreSelector {
     @Override
     public Set<CredentialStore<?>> getStoresForCredentialStorage(final IdentityContext context, Class<? extends CredentialStorage> storageClass) {
         IdentityConfiguration identityConfiguration = getConfigurationForPartition(context, context.getPartition());
-        Map<IdentityStoreConfiguration, IdentityStore<?>> storesConfig = this.stores.get(identityConfiguration);
         Set<CredentialStore<?>> credentialStores = new HashSet<CredentialStore<?>>();
+        StoreRoutingTable routingTable = this.routingTables.get(identityConfiguration);
 
-        if (storesConfig != null) {
-            for (IdentityStoreConfiguration storeConfig : storesConfig.keySet()) {
-                if (storeConfig.supportsCredential()) {
-                    for (Class<? extends CredentialHandler> credentialHandler : storeConfig.getCredentialHandlers()) {
-                        SupportsCredentials supportedCredentials = credentialHandler.getAnnotation(SupportsCredentials.class);
-
-                        if (supportedCredentials != null) {
-                            if (supportedCredentials.credentialStorage().equals(storageClass)) {
-                                CredentialStore<?> credentialStore = (CredentialStore<?>) getIdentityStoreAndInitializeContext(context, identityConfiguration, storeConfig);
-                                credentialStores.add(credentialStore);
-                            }
-                        }
-                    }
-                }
+        if (routingTable != null) {
+            for (IdentityStoreConfiguration storeConfig : routingTable.getStoresForCredentialStorage(storageClass)) {
+                CredentialStore<?> credentialStore = (CredentialStore<?>) getIdentityStoreAndInitializeContext(context, identityConfiguration, storeConfig);
+                credentialStores.add(credentialStore);
             }
         }
 
@@ -394,21 +302,10 @@ public class DefaultStoreSelector implements StoreSelector {
     @Override
     public PermissionStore getStoreForPermissionOperation(IdentityContext context) {
         IdentityConfiguration identityConfiguration = getConfigurationForPartition(context, context.getPartition());
+        IdentityStoreConfiguration storeConfig = getRoutingTable(identityConfiguration).getPermissionStore();
 
-        if (identityConfiguration == null) {
-            for (IdentityConfiguration configuration : this.configuration.getConfigurations()) {
-                for (IdentityStoreConfiguration storeConfig : configuration.getStoreConfiguration()) {
-                    if (storeConfig.supportsPermissions()) {
-                        return (PermissionStore) getIdentityStoreAndInitializeContext(context, configuration, storeConfig);
-                    }
-                }
-            }
-        } else {
-            for (IdentityStoreConfiguration storeConfig : identityConfiguration.getStoreConfiguration()) {
-                if (storeConfig.supportsPermissions()) {
-                    return (PermissionStore) getIdentityStoreAndInitializeContext(context, identityConfiguration, storeConfig);
-                }
-            }
+        if (storeConfig != null) {
+            return (PermissionStore) getIdentityStoreAndInitializeContext(context, identityConfiguration, storeConfig);
         }
 
         return null;
@@ -454,13 +351,65 @@ public class DefaultStoreSelector implements StoreSelector {
 
     public <T extends IdentityStore<?>> T lookupStore(IdentityContext context, IdentityConfiguration configuration,
                                                       Class<? extends AttributedType> type, IdentityOperation operation) {
-        for (IdentityStoreConfiguration storeConfig : configuration.getStoreConfiguration()) {
-            if (storeConfig.supportsType(type, operation)) {
-                return getIdentityStoreAndInitializeContext(context, configuration, storeConfig);
-            }
+        List<IdentityStoreConfiguration> storeConfigs = getRoutingTable(configuration).getStoresForType(type, operation);
+
+        if (storeConfigs.isEmpty()) {
+            return null;
         }
 
-        return null;
+        return getIdentityStoreAndInitializeContext(context, configuration, storeConfigs.get(0));
+    }
+
+    /**
+     * <p>Registers the configuration of a partition that was just created, so that it does not need to be looked up
+     * from the partition store.</p>
+     *
+     * @param partition
+     * @param configurationName
+     */
+    void partitionAdded(Partition partition, String configurationName) {
+        if (partition.getId() != null) {
+            this.partitionConfigurations.put(partition, this.configuration.getConfigurationByName(configurationName));
+        }
+    }
+
+    /**
+     * <p>Discards the configuration of a partition that was removed.</p>
+     *
+     * @param partition
+     */
+    void partitionRemoved(Partition partition) {
+        this.partitionConfigurations.remove(partition);
+    }
+
+    private <T extends IdentityStore<?>> T lookupLastStore(IdentityContext context, IdentityConfiguration configuration,
+                                                           Class<? extends AttributedType> type, IdentityOperation operation) {
+        List<IdentityStoreConfiguration> storeConfigs = getRoutingTable(configuration).getStoresForType(type, operation);
+
+        if (storeConfigs.isEmpty()) {
+            return null;
+        }
+
+        return getIdentityStoreAndInitializeContext(context, configuration, storeConfigs.get(storeConfigs.size() - 1));
+    }
+
+    private void addRelationshipStores(IdentityContext context, IdentityConfiguration config,
+                                       Class<? extends Relationship> relationshipClass, Set<IdentityStore<?>> identityStores) {
+        Collection<? extends IdentityStoreConfiguration> storeConfigs;
+
+        if (Relationship.class.equals(relationshipClass)) {
+            storeConfigs = config.getStoreConfiguration();
+        } else {
+            storeConfigs = getRoutingTable(config).getStoresForType(relationshipClass, create);
+        }
+
+        for (IdentityStoreConfiguration storeConfig : storeConfigs) {
+            identityStores.add(getIdentityStoreAndInitializeContext(context, config, storeConfig));
+        }
+    }
+
+    private StoreRoutingTable getRoutingTable(IdentityConfiguration configuration) {
+        return this.routingTables.get(configuration);
     }
 
     /**
@@ -477,7 +426,7 @@ public class DefaultStoreSelector implements StoreSelector {
      * @return
      */
     private <T extends IdentityStore<?>> T getIdentityStoreAndInitializeContext(final IdentityContext context, final IdentityConfiguration configuration, final IdentityStoreConfiguration storeConfig) {
-        IdentityStore<?> store = this.stores.get(configuration).get(storeConfig);
+        IdentityStore<?> store = getRoutingTable(configuration).getStore(storeConfig);
 
         storeConfig.initializeContext(context, store);
 
@@ -487,11 +436,31 @@ public class DefaultStoreSelector implements StoreSelector {
     private void checkSupportedTypes(Partition partition, Class<? extends AttributedType> type) {
         if (partition != null) {
             if (IdentityType.class.isAssignableFrom(type)) {
-                IdentityPartition identityPartition = partition.getClass().getAnnotation(IdentityPartition.class);
+                ConcurrentMap<Class<?>, Boolean> supportedTypes = this.partitionSupportedTypes.get(partition.getClass());
+
+                if (supportedTypes == null) {
+                    supportedTypes = new ConcurrentHashMap<Class<?>, Boolean>();
+
+                    ConcurrentMap<Class<?>, Boolean> existing = this.partitionSupportedTypes.putIfAbsent(partition.getClass(), supportedTypes);
+
+                    if (existing != null) {
+                        supportedTypes = existing;
+                    }
+                }
+
+                Boolean supported = supportedTypes.get(type);
+
+                if (supported == null) {
+                    IdentityPartition identityPartition = partition.getClass().getAnnotation(IdentityPartition.class);
+
+                    supported = identityPartition == null
+                            || isTypeSupported((Class<? extends IdentityType>) type, toSet(identityPartition.supportedTypes()),
+                            toSet(identityPartition.unsupportedTypes())) != -1;
+
+                    supportedTypes.put(type, supported);
+                }
 
-                if (identityPartition != null
-                        && isTypeSupported((Class<? extends IdentityType>) type, toSet(identityPartition.supportedTypes()),
-                        toSet(identityPartition.unsupportedTypes())) == -1) {
+                if (!supported) {
                     throw MESSAGES.partitionUnsupportedType(partition, type);
                 }
             }
@@ -130,6 +130,16 @@ class PartitionManagerConfiguration {
             this.eventBridge = eventBridge;
         }
 
+        if (idGenerator == null) {
+            // use the generator provided when building the configuration, if any
+            for (IdentityConfiguration configuration : configurations) {
+                if (configuration.getIdGenerator() != null) {
+                    idGenerator = configuration.getIdGenerator();
+                    break;
+                }
+            }
+        }
+
         if (idGenerator == null) {
             this.idGenerator = new DefaultIdGenerator();
         } else {
@@ -0,0 +1,227 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.internal;
+
+import org.picketlink.common.properties.Property;
+import org.picketlink.common.properties.query.AnnotatedPropertyCriteria;
+import org.picketlink.common.properties.query.PropertyQueries;
+import org.picketlink.common.properties.query.PropertyQuery;
+import org.picketlink.idm.model.Attribute;
+import org.picketlink.idm.model.Partition;
+import org.picketlink.idm.model.annotation.AttributeProperty;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.picketlink.common.reflection.Reflections.newInstance;
+import static org.picketlink.idm.IDMInternalMessages.MESSAGES;
+
+/**
+ * <p>Keeps the partitions loaded from the partition store in memory, by name, by identifier and by class.</p>
+ *
+ * <p>Partitions are only registered as they are loaded. Callers always get a copy, so changing a partition returned
+ * by the registry does not change the registered one.</p>
+ *
+ * <p>When a partition is created, updated or removed only that partition, and the lists of partitions it belongs to,
+ * are evicted. A partition loaded while the registry was being changed is not registered, so the registry never holds
+ * a partition older than the last change.</p>
+ */
+class PartitionRegistry {
+
+    private final Map<String, Partition> partitionsByName = new ConcurrentHashMap<String, Partition>();
+
+    private final Map<String, Partition> partitionsById = new ConcurrentHashMap<String, Partition>();
+
+    private final Map<Class<?>, List<Partition>> partitionsByClass = new ConcurrentHashMap<Class<?>, List<Partition>>();
+
+    private volatile long version;
+
+    /**
+     * <p>Returns the current version of the registry. It must be read before loading partitions from the store, and
+     * given back when registering them.</p>
+     *
+     * @return
+     */
+    long getVersion() {
+        return this.version;
+    }
+
+    <T extends Partition> T getByName(Class<T> partitionClass, String name) {
+        return copy(partitionClass, this.partitionsByName.get(createKey(partitionClass, name)));
+    }
+
+    <T extends Partition> T getById(Class<T> partitionClass, String id) {
+        return copy(partitionClass, this.partitionsById.get(createKey(partitionClass, id)));
+    }
+
+    /**
+     * @return copies of the partitions of the given class, or null if they were not registered
+     */
+    <T extends Partition> List<T> getAll(Class<T> partitionClass) {
+        List<Partition> partitions = this.partitionsByClass.get(partitionClass);
+
+        if (partitions == null) {
+            return null;
+        }
+
+        List<T> result = new ArrayList<T>(partitions.size());
+
+        for (Partition partition : partitions) {
+            result.add(copy(partitionClass, partition));
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Registers a partition loaded from the store with the given class.</p>
+     *
+     * @param partitionClass the class used to load the partition
+     * @param partition the loaded partition
+     * @param version the version of the registry when the partition was loaded
+     */
+    synchronized void register(Class<? extends Partition> partitionClass, Partition partition, long version) {
+        if (this.version == version) {
+            put(partitionClass, copy(Partition.class, partition));
+        }
+    }
+
+    /**
+     * <p>Registers all the partitions of the given class loaded from the store.</p>
+     *
+     * @param partitionClass the class used to load the partitions
+     * @param partitions the loaded partitions
+     * @param version the version of the registry when the partitions were loaded
+     */
+    synchronized void registerAll(Class<? extends Partition> partitionClass, List<? extends Partition> partitions, long version) {
+        if (this.version != version) {
+            return;
+        }
+
+        List<Partition> registered = new ArrayList<Partition>(partitions.size());
+
+        for (Partition partition : partitions) {
+            Partition copy = copy(Partition.class, partition);
+
+            put(partitionClass, copy);
+            registered.add(copy);
+        }
+
+        this.partitionsByClass.put(partitionClass, Collections.unmodifiableList(registered));
+    }
+
+    /**
+     * <p>Discards the given partition and the lists of partitions it belongs to, after it was created, updated or
+     * removed.</p>
+     *
+     * @param partition
+     */
+    synchronized void evict(Partition partition) {
+        this.version++;
+
+        evict(this.partitionsByName, partition);
+        evict(this.partitionsById, partition);
+
+        Iterator<Class<?>> classes = this.partitionsByClass.keySet().iterator();
+
+        while (classes.hasNext()) {
+            if (classes.next().isAssignableFrom(partition.getClass())) {
+                classes.remove();
+            }
+        }
+    }
+
+    /**
+     * <p>Discards all registered partitions.</p>
+     */
+    synchronized void clear() {
+        this.version++;
+        this.partitionsByName.clear();
+        this.partitionsById.clear();
+        this.partitionsByClass.clear();
+    }
+
+    private void put(Class<? extends Partition> partitionClass, Partition partition) {
+        if (partition.getId() == null || partition.getName() == null) {
+            return;
+        }
+
+        this.partitionsByName.put(createKey(partitionClass, partition.getName()), partition);
+        this.partitionsById.put(createKey(partitionClass, partition.getId()), partition);
+
+        if (!partitionClass.equals(partition.getClass())) {
+            this.partitionsByName.put(createKey(partition.getClass(), partition.getName()), partition);
+            this.partitionsById.put(createKey(partition.getClass(), partition.getId()), partition);
+        }
+    }
+
+    private void evict(Map<String, Partition> partitions, Partition partition) {
+        Iterator<Partition> iterator = partitions.values().iterator();
+
+        while (iterator.hasNext()) {
+            Partition registered = iterator.next();
+
+            if ((partition.getId() != null && partition.getId().equals(registered.getId()))
+                || (partition.getName() != null && partition.getName().equals(registered.getName())
+                    && registered.getClass().equals(partition.getClass()))) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private <T extends Partition> T copy(Class<T> partitionClass, Partition partition) {
+        if (partition == null) {
+            return null;
+        }
+
+        Partition copy;
+
+        try {
+            copy = newInstance(partition.getClass());
+        } catch (Exception e) {
+            throw MESSAGES.instantiationError(partition.getClass(), e);
+        }
+
+        copy.setId(partition.getId());
+
+        PropertyQuery<Serializable> query = PropertyQueries.createQuery(partition.getClass());
+
+        query.addCriteria(new AnnotatedPropertyCriteria(AttributeProperty.class));
+
+        for (Property<Serializable> property : query.getResultList()) {
+            if (!property.isReadOnly()) {
+                property.setValue(copy, property.getValue(partition));
+            }
+        }
+
+        for (Attribute<? extends Serializable> attribute : partition.getAttributes()) {
+            copy.setAttribute(new Attribute<Serializable>(attribute.getName(), attribute.getValue()));
+        }
+
+        return partitionClass.cast(copy);
+    }
+
+    private String createKey(Class<?> partitionClass, String value) {
+        return partitionClass.getName() + ':' + value;
+    }
+}
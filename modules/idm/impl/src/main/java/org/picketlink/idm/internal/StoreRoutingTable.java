@@ -0,0 +1,244 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.internal;
+
+import org.picketlink.idm.config.IdentityConfiguration;
+import org.picketlink.idm.config.IdentityStoreConfiguration;
+import org.picketlink.idm.config.IdentityStoreConfiguration.IdentityOperation;
+import org.picketlink.idm.credential.handler.CredentialHandler;
+import org.picketlink.idm.credential.handler.annotations.SupportsCredentials;
+import org.picketlink.idm.credential.storage.CredentialStorage;
+import org.picketlink.idm.model.AttributedType;
+import org.picketlink.idm.spi.IdentityStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Routes the operations of a {@link IdentityConfiguration} to its stores.</p>
+ *
+ * <p>The routes of the types and credentials declared by the store configurations are computed when the table is
+ * created. Routes for other types, like subclasses of the declared types, are computed once on their first lookup.
+ * Every lookup afterwards is a single map access.</p>
+ */
+class StoreRoutingTable {
+
+    private final IdentityConfiguration configuration;
+
+    private final Map<IdentityStoreConfiguration, IdentityStore<?>> stores;
+
+    private final Map<IdentityOperation, ConcurrentMap<Class<?>, List<IdentityStoreConfiguration>>> typeRoutes;
+
+    private final ConcurrentMap<Class<?>, List<IdentityStoreConfiguration>> credentialRoutes = new ConcurrentHashMap<Class<?>, List<IdentityStoreConfiguration>>();
+
+    private final ConcurrentMap<Class<?>, List<IdentityStoreConfiguration>> credentialStorageRoutes = new ConcurrentHashMap<Class<?>, List<IdentityStoreConfiguration>>();
+
+    private final IdentityStoreConfiguration permissionStore;
+
+    private final IdentityStoreConfiguration attributeStore;
+
+    StoreRoutingTable(IdentityConfiguration configuration, Map<IdentityStoreConfiguration, IdentityStore<?>> stores) {
+        this.configuration = configuration;
+        this.stores = stores;
+        this.typeRoutes = new EnumMap<IdentityOperation, ConcurrentMap<Class<?>, List<IdentityStoreConfiguration>>>(IdentityOperation.class);
+
+        for (IdentityOperation operation : IdentityOperation.values()) {
+            this.typeRoutes.put(operation, new ConcurrentHashMap<Class<?>, List<IdentityStoreConfiguration>>());
+        }
+
+        IdentityStoreConfiguration permissionStore = null;
+        IdentityStoreConfiguration attributeStore = null;
+
+        for (IdentityStoreConfiguration storeConfig : configuration.getStoreConfiguration()) {
+            for (Class<? extends AttributedType> supportedType : storeConfig.getSupportedTypes().keySet()) {
+                for (IdentityOperation operation : IdentityOperation.values()) {
+                    getStoresForType(supportedType, operation);
+                }
+            }
+
+            if (storeConfig.supportsCredential()) {
+                for (Class<? extends CredentialHandler> handlerClass : storeConfig.getCredentialHandlers()) {
+                    SupportsCredentials supportedCredentials = handlerClass.getAnnotation(SupportsCredentials.class);
+
+                    if (supportedCredentials != null) {
+                        for (Class<?> credentialClass : supportedCredentials.credentialClass()) {
+                            getStoreForCredential(credentialClass);
+                        }
+
+                        getStoresForCredentialStorage(supportedCredentials.credentialStorage());
+                    }
+                }
+            }
+
+            if (permissionStore == null && storeConfig.supportsPermissions()) {
+                permissionStore = storeConfig;
+            }
+
+            if (attributeStore == null && storeConfig.supportsAttribute()) {
+                attributeStore = storeConfig;
+            }
+        }
+
+        this.permissionStore = permissionStore;
+        this.attributeStore = attributeStore;
+    }
+
+    /**
+     * <p>Returns the configurations of the stores that support the given type and operation, in the order they were
+     * configured.</p>
+     *
+     * @param type
+     * @param operation
+     *
+     * @return
+     */
+    List<IdentityStoreConfiguration> getStoresForType(Class<? extends AttributedType> type, IdentityOperation operation) {
+        ConcurrentMap<Class<?>, List<IdentityStoreConfiguration>> routes = this.typeRoutes.get(operation);
+        List<IdentityStoreConfiguration> storeConfigs = routes.get(type);
+
+        if (storeConfigs == null) {
+            storeConfigs = new ArrayList<IdentityStoreConfiguration>();
+
+            for (IdentityStoreConfiguration storeConfig : this.configuration.getStoreConfiguration()) {
+                if (storeConfig.supportsType(type, operation)) {
+                    storeConfigs.add(storeConfig);
+                }
+            }
+
+            storeConfigs = Collections.unmodifiableList(storeConfigs);
+            routes.putIfAbsent(type, storeConfigs);
+        }
+
+        return storeConfigs;
+    }
+
+    /**
+     * <p>Returns the configuration of the store with the most specific {@link CredentialHandler} for the given
+     * credential class.</p>
+     *
+     * @param credentialClass
+     *
+     * @return the store configuration, or null if no store supports the credential class
+     */
+    IdentityStoreConfiguration getStoreForCredential(Class<?> credentialClass) {
+        List<IdentityStoreConfiguration> route = this.credentialRoutes.get(credentialClass);
+
+        if (route == null) {
+            IdentityStoreConfiguration credentialStore = null;
+
+            if (this.configuration.supportsCredential()) {
+                credentialStore = resolveCredentialStore(credentialClass);
+            }
+
+            if (credentialStore == null) {
+                route = Collections.emptyList();
+            } else {
+                route = Collections.singletonList(credentialStore);
+            }
+
+            this.credentialRoutes.putIfAbsent(credentialClass, route);
+        }
+
+        if (route.isEmpty()) {
+            return null;
+        }
+
+        return route.get(0);
+    }
+
+    /**
+     * <p>Returns the configurations of the stores with a {@link CredentialHandler} that uses the given storage.</p>
+     *
+     * @param storageClass
+     *
+     * @return
+     */
+    List<IdentityStoreConfiguration> getStoresForCredentialStorage(Class<? extends CredentialStorage> storageClass) {
+        List<IdentityStoreConfiguration> storeConfigs = this.credentialStorageRoutes.get(storageClass);
+
+        if (storeConfigs == null) {
+            storeConfigs = new ArrayList<IdentityStoreConfiguration>();
+
+            for (IdentityStoreConfiguration storeConfig : this.configuration.getStoreConfiguration()) {
+                if (storeConfig.supportsCredential()) {
+                    for (Class<? extends CredentialHandler> handlerClass : storeConfig.getCredentialHandlers()) {
+                        SupportsCredentials supportedCredentials = handlerClass.getAnnotation(SupportsCredentials.class);
+
+                        if (supportedCredentials != null && supportedCredentials.credentialStorage().equals(storageClass)
+                                && !storeConfigs.contains(storeConfig)) {
+                            storeConfigs.add(storeConfig);
+                        }
+                    }
+                }
+            }
+
+            storeConfigs = Collections.unmodifiableList(storeConfigs);
+            this.credentialStorageRoutes.putIfAbsent(storageClass, storeConfigs);
+        }
+
+        return storeConfigs;
+    }
+
+    IdentityStoreConfiguration getPermissionStore() {
+        return this.permissionStore;
+    }
+
+    IdentityStoreConfiguration getAttributeStore() {
+        return this.attributeStore;
+    }
+
+    IdentityStore<?> getStore(IdentityStoreConfiguration storeConfig) {
+        return this.stores.get(storeConfig);
+    }
+
+    IdentityConfiguration getConfiguration() {
+        return this.configuration;
+    }
+
+    private IdentityStoreConfiguration resolveCredentialStore(Class<?> credentialClass) {
+        IdentityStoreConfiguration credentialStore = null;
+
+        for (IdentityStoreConfiguration storeConfig : this.configuration.getStoreConfiguration()) {
+            if (storeConfig.supportsCredential()) {
+                for (Class<? extends CredentialHandler> handlerClass : storeConfig.getCredentialHandlers()) {
+                    SupportsCredentials supportedCredentials = handlerClass.getAnnotation(SupportsCredentials.class);
+
+                    if (supportedCredentials != null) {
+                        for (Class<?> cls : supportedCredentials.credentialClass()) {
+                            if (cls.isAssignableFrom(credentialClass)) {
+                                credentialStore = storeConfig;
+
+                                // if we found a specific handler for the credential, immediately return.
+                                if (cls.equals(credentialClass)) {
+                                    return credentialStore;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return credentialStore;
+    }
+}
@@ -18,12 +18,22 @@
 package org.picketlink.idm.jdbc.internal;
 
 import org.picketlink.idm.config.JDBCIdentityStoreConfiguration;
+import org.picketlink.idm.credential.Credentials;
+import org.picketlink.idm.credential.handler.DigestCredentialHandler;
+import org.picketlink.idm.credential.handler.PasswordCredentialHandler;
+import org.picketlink.idm.credential.handler.TOTPCredentialHandler;
+import org.picketlink.idm.credential.handler.TokenCredentialHandler;
+import org.picketlink.idm.credential.handler.X509CertificateCredentialHandler;
+import org.picketlink.idm.credential.handler.annotations.CredentialHandlers;
 import org.picketlink.idm.credential.storage.CredentialStorage;
 import org.picketlink.idm.internal.AbstractIdentityStore;
 import org.picketlink.idm.jdbc.internal.mappers.JdbcMapper;
 import org.picketlink.idm.jdbc.internal.model.AbstractJdbcType;
 import org.picketlink.idm.jdbc.internal.model.PartitionJdbcType;
 import org.picketlink.idm.jdbc.internal.model.RelationshipJdbcType;
+import org.picketlink.idm.jdbc.internal.model.db.CredentialStorageUtil;
+import org.picketlink.idm.jdbc.internal.model.db.JdbcSession;
+import org.picketlink.idm.model.AbstractPartition;
 import org.picketlink.idm.model.Account;
 import org.picketlink.idm.model.Attribute;
 import org.picketlink.idm.model.AttributedType;
@@ -32,10 +42,13 @@ import org.picketlink.idm.model.Partition;
 import org.picketlink.idm.model.Relationship;
 import org.picketlink.idm.model.basic.Realm;
 import org.picketlink.idm.query.AttributeParameter;
+import org.picketlink.idm.query.Condition;
 import org.picketlink.idm.query.IdentityQuery;
 import org.picketlink.idm.query.QueryParameter;
 import org.picketlink.idm.query.RelationshipQuery;
+import org.picketlink.idm.query.internal.EqualCondition;
 import org.picketlink.idm.spi.AttributeStore;
+import org.picketlink.idm.spi.BatchingStore;
 import org.picketlink.idm.spi.CredentialStore;
 import org.picketlink.idm.spi.IdentityContext;
 import org.picketlink.idm.spi.PartitionStore;
@@ -44,24 +57,39 @@ import javax.sql.DataSource;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import static org.picketlink.common.reflection.Reflections.classForName;
+import static org.picketlink.common.reflection.Reflections.newInstance;
 import static org.picketlink.idm.IDMMessages.MESSAGES;
+import static org.picketlink.idm.credential.util.CredentialUtils.getCurrentCredential;
 
 /**
  * Implementation of {@link IdentityStore} using JDBC
+ *
+ * <p>Each operation runs in a {@link JdbcSession}, so all the statements of an operation share the same connection
+ * and transaction. Batches of operations share a single connection and its prepared statements.</p>
+ *
  * @author Anil Saldhana
  * @since September 25, 2013
  */
+@CredentialHandlers({
+    PasswordCredentialHandler.class,
+    X509CertificateCredentialHandler.class,
+    DigestCredentialHandler.class,
+    TOTPCredentialHandler.class,
+    TokenCredentialHandler.class})
 public class JDBCIdentityStore extends AbstractIdentityStore<JDBCIdentityStoreConfiguration> implements
         CredentialStore<JDBCIdentityStoreConfiguration>, PartitionStore<JDBCIdentityStoreConfiguration>,
-        AttributeStore<JDBCIdentityStoreConfiguration> {
+        AttributeStore<JDBCIdentityStoreConfiguration>, BatchingStore {
 
     private DataSource dataSource = null;
     private JdbcMapper mapper = new JdbcMapper();
+    private CredentialStorageUtil credentialStorageUtil = new CredentialStorageUtil();
 
     @Override
     public void setup(JDBCIdentityStoreConfiguration config) {
@@ -76,6 +104,81 @@ public class JDBCIdentityStore extends AbstractIdentityStore<JDBCIdentityStoreCo
         }
     }
 
+    @Override
+    public void beginBatch(IdentityContext context) {
+        JdbcSession.beginBatch(this.dataSource);
+    }
+
+    @Override
+    public void endBatch(IdentityContext context) {
+        JdbcSession session = JdbcSession.getCurrent(this.dataSource);
+
+        if (session != null) {
+            session.end();
+        }
+    }
+
+    @Override
+    public void add(IdentityContext context, AttributedType attributedType) {
+        JdbcSession session = JdbcSession.begin(this.dataSource);
+
+        try {
+            super.add(context, attributedType);
+            session.commit();
+        } finally {
+            session.end();
+        }
+    }
+
+    @Override
+    public void update(IdentityContext context, AttributedType attributedType) {
+        JdbcSession session = JdbcSession.begin(this.dataSource);
+
+        try {
+            super.update(context, attributedType);
+            session.commit();
+        } finally {
+            session.end();
+        }
+    }
+
+    @Override
+    public void remove(IdentityContext context, AttributedType attributedType) {
+        JdbcSession session = JdbcSession.begin(this.dataSource);
+
+        try {
+            super.remove(context, attributedType);
+            session.commit();
+        } finally {
+            session.end();
+        }
+    }
+
+    @Override
+    public void validateCredentials(IdentityContext context, Credentials credentials) {
+        JdbcSession session = JdbcSession.begin(this.dataSource);
+
+        try {
+            super.validateCredentials(context, credentials);
+            session.commit();
+        } finally {
+            session.end();
+        }
+    }
+
+    @Override
+    public void updateCredential(IdentityContext context, Account account, Object credential, Date effectiveDate,
+            Date expiryDate) {
+        JdbcSession session = JdbcSession.begin(this.dataSource);
+
+        try {
+            super.updateCredential(context, account, credential, effectiveDate, expiryDate);
+            session.commit();
+        } finally {
+            session.end();
+        }
+    }
+
     @Override
     protected void removeFromRelationships(IdentityContext context, IdentityType identityType) {
         AbstractJdbcType att = mapper.getInstance(identityType.getClass());
@@ -85,7 +188,7 @@ public class JDBCIdentityStore extends AbstractIdentityStore<JDBCIdentityStoreCo
 
     @Override
     protected void removeCredentials(IdentityContext context, Account account) {
-        //TODO: Deal with removing account credentials
+        this.credentialStorageUtil.deleteCredentials(this.dataSource, account, null);
     }
 
     protected void addAttributedType(IdentityContext context, AttributedType attributedType) {
@@ -110,55 +213,85 @@ public class JDBCIdentityStore extends AbstractIdentityStore<JDBCIdentityStoreCo
 
     @Override
     public void storeCredential(IdentityContext context, Account account, CredentialStorage storage) {
-        throw MESSAGES.notImplemented();
+        JdbcSession session = JdbcSession.begin(this.dataSource);
+
+        try {
+            this.credentialStorageUtil.storeCredential(this.dataSource, context.getIdGenerator().generate(), account,
+                    storage);
+            session.commit();
+        } finally {
+            session.end();
+        }
     }
 
     @Override
     public <T extends CredentialStorage> T retrieveCurrentCredential(IdentityContext context, Account account,
             Class<T> storageClass) {
-        throw MESSAGES.notImplemented();
+        return getCurrentCredential(context, account, this, storageClass);
     }
 
     @Override
     public <T extends CredentialStorage> List<T> retrieveCredentials(IdentityContext context, Account account,
             Class<T> storageClass) {
-        throw MESSAGES.notImplemented();
+        JdbcSession session = JdbcSession.begin(this.dataSource);
+
+        try {
+            List<T> credentials = this.credentialStorageUtil.loadCredentials(this.dataSource, account, storageClass);
+            session.commit();
+            return credentials;
+        } finally {
+            session.end();
+        }
     }
 
     @Override
     public void removeCredential(IdentityContext context, Account account, Class<? extends CredentialStorage> storageClass) {
-        throw MESSAGES.notImplemented();
+        JdbcSession session = JdbcSession.begin(this.dataSource);
+
+        try {
+            this.credentialStorageUtil.deleteCredentials(this.dataSource, account, storageClass);
+            session.commit();
+        } finally {
+            session.end();
+        }
     }
 
     @Override
     public <V extends IdentityType> List<V> fetchQueryResults(IdentityContext context, IdentityQuery<V> identityQuery) {
-        List<V> result = new ArrayList<V>();
-        AttributedType attributedType = null;
-
-        if (identityQuery.getParameter(IdentityType.ID) != null) {
-            Object[] parameter = identityQuery.getParameter(IdentityType.ID);
-
-            if (parameter.length > 0) {
-                Object id = parameter[0];
-                // ADD to result
+        JdbcSession session = JdbcSession.begin(this.dataSource);
+
+        try {
+            List<V> result = new ArrayList<V>();
+            AttributedType attributedType = null;
+            Map<QueryParameter, Object[]> parameters = getParameters(identityQuery);
+
+            if (parameters.get(IdentityType.ID) != null) {
+                Object[] parameter = parameters.get(IdentityType.ID);
+
+                if (parameter.length > 0) {
+                    Object id = parameter[0];
+                    // ADD to result
+                    AbstractJdbcType ajt = mapper.getInstance(identityQuery.getIdentityType());
+                    ajt.setDataSource(dataSource);
+                    attributedType = ajt.load((String) id, identityQuery.getIdentityType());
+                    if (attributedType != null) {
+                        result.add((V) attributedType);
+                    }
+                } else {
+                    throw new RuntimeException();
+                }
+            } else {
                 AbstractJdbcType ajt = mapper.getInstance(identityQuery.getIdentityType());
                 ajt.setDataSource(dataSource);
-                attributedType = ajt.load((String) id, identityQuery.getIdentityType());
-                if (attributedType != null) {
-                    result.add((V) attributedType);
+                List<? extends AttributedType> list = ajt.load(parameters, identityQuery.getIdentityType());
+                if (!list.isEmpty()) {
+                    result.addAll((Collection<? extends V>) list);
                 }
-            } else {
-                throw new RuntimeException();
-            }
-        } else {
-            AbstractJdbcType ajt = mapper.getInstance(identityQuery.getIdentityType());
-            ajt.setDataSource(dataSource);
-            List<? extends AttributedType> list = ajt.load(identityQuery.getParameters(), identityQuery.getIdentityType());
-            if (!list.isEmpty()) {
-                result.addAll((Collection<? extends V>) list);
             }
+            return result;
+        } finally {
+            session.end();
         }
-        return result;
     }
 
     @Override
@@ -168,15 +301,21 @@ public class JDBCIdentityStore extends AbstractIdentityStore<JDBCIdentityStoreCo
 
     @Override
     public <V extends Relationship> List<V> fetchQueryResults(IdentityContext context, RelationshipQuery<V> query) {
-        RelationshipJdbcType relationshipJdbcType = new RelationshipJdbcType();
-        relationshipJdbcType.setDataSource(dataSource);
+        JdbcSession session = JdbcSession.begin(this.dataSource);
+
+        try {
+            RelationshipJdbcType relationshipJdbcType = new RelationshipJdbcType();
+            relationshipJdbcType.setDataSource(dataSource);
 
-        List<V> result = new ArrayList<V>();
-        List<? extends AttributedType> list = relationshipJdbcType.load(query.getParameters(), query.getRelationshipClass());
-        if (list.isEmpty() == false) {
-            result.addAll((Collection<? extends V>) list);
+            List<V> result = new ArrayList<V>();
+            List<? extends AttributedType> list = relationshipJdbcType.load(query.getParameters(), query.getRelationshipClass());
+            if (list.isEmpty() == false) {
+                result.addAll((Collection<? extends V>) list);
+            }
+            return result;
+        } finally {
+            session.end();
         }
-        return result;
     }
 
     @Override
@@ -186,46 +325,72 @@ public class JDBCIdentityStore extends AbstractIdentityStore<JDBCIdentityStoreCo
 
     @Override
     public void setAttribute(IdentityContext context, AttributedType attributedType, Attribute<? extends Serializable> attribute) {
-        AbstractJdbcType ajt = mapper.getInstance(attributedType.getClass());
-        ajt.setId(attributedType.getId());
-        ajt.setDataSource(dataSource);
-        ajt.setType(attributedType);
-        ajt.setAttribute(attribute);
+        JdbcSession session = JdbcSession.begin(this.dataSource);
+
+        try {
+            AbstractJdbcType ajt = mapper.getInstance(attributedType.getClass());
+            ajt.setId(attributedType.getId());
+            ajt.setDataSource(dataSource);
+            ajt.setType(attributedType);
+            ajt.setAttribute(attribute);
+            session.commit();
+        } finally {
+            session.end();
+        }
     }
 
     @Override
     public <V extends Serializable> Attribute<V> getAttribute(IdentityContext context, AttributedType attributedType,
             String attributeName) {
-        AbstractJdbcType ajt = mapper.getInstance(attributedType.getClass());
-        ajt.setId(attributedType.getId());
-        ajt.setDataSource(dataSource);
-        ajt.setType(attributedType);
-        return ajt.getAttribute(attributeName);
+        JdbcSession session = JdbcSession.begin(this.dataSource);
+
+        try {
+            AbstractJdbcType ajt = mapper.getInstance(attributedType.getClass());
+            ajt.setId(attributedType.getId());
+            ajt.setDataSource(dataSource);
+            ajt.setType(attributedType);
+            return ajt.getAttribute(attributeName);
+        } finally {
+            session.end();
+        }
     }
 
     @Override
     public void removeAttribute(IdentityContext context, AttributedType attributedType, String attributeName) {
-        AbstractJdbcType ajt = mapper.getInstance(attributedType.getClass());
-        ajt.setId(attributedType.getId());
-        ajt.setDataSource(dataSource);
-        ajt.setType(attributedType);
-        ajt.removeAttribute(attributeName);
+        JdbcSession session = JdbcSession.begin(this.dataSource);
+
+        try {
+            AbstractJdbcType ajt = mapper.getInstance(attributedType.getClass());
+            ajt.setId(attributedType.getId());
+            ajt.setDataSource(dataSource);
+            ajt.setType(attributedType);
+            ajt.removeAttribute(attributeName);
+            session.commit();
+        } finally {
+            session.end();
+        }
     }
 
     @Override
     public void loadAttributes(IdentityContext context, AttributedType attributedType) {
-        if (attributedType != null) {
-            // We need to load the attributes from DB into attributedType
-            AbstractJdbcType ajt = mapper.getInstance(attributedType.getClass());
-            ajt.setDataSource(dataSource);
-            ajt.setId(attributedType.getId());
+        JdbcSession session = JdbcSession.begin(this.dataSource);
+
+        try {
+            if (attributedType != null) {
+                // We need to load the attributes from DB into attributedType
+                AbstractJdbcType ajt = mapper.getInstance(attributedType.getClass());
+                ajt.setDataSource(dataSource);
+                ajt.setId(attributedType.getId());
 
-            Collection<? extends Attribute> attributes = ajt.getAttributes();
-            if (attributes != null) {
-                for (Attribute attribute : attributes) {
-                    attributedType.setAttribute(attribute);
+                Collection<? extends Attribute> attributes = ajt.getAttributes();
+                if (attributes != null) {
+                    for (Attribute attribute : attributes) {
+                        attributedType.setAttribute(attribute);
+                    }
                 }
             }
+        } finally {
+            session.end();
         }
     }
 
@@ -237,11 +402,55 @@ public class JDBCIdentityStore extends AbstractIdentityStore<JDBCIdentityStoreCo
 
     @Override
     public <P extends Partition> P get(IdentityContext identityContext, Class<P> partitionClass, String name) {
-        PartitionJdbcType pjt = new PartitionJdbcType(name);
-        pjt.setDataSource(dataSource);
-        Map<QueryParameter, Object[]> map = new HashMap<QueryParameter, Object[]>();
-        map.put(new AttributeParameter("name"), new Object[] { name });
-        return (P) pjt.load(map, Partition.class).get(0);
+        JdbcSession session = JdbcSession.begin(this.dataSource);
+
+        try {
+            PartitionJdbcType pjt = new PartitionJdbcType(name);
+            pjt.setDataSource(dataSource);
+            Map<QueryParameter, Object[]> map = new HashMap<QueryParameter, Object[]>();
+            map.put(new AttributeParameter("name"), new Object[] { name });
+            return toPartition(partitionClass, (PartitionJdbcType) pjt.load(map, Partition.class).get(0));
+        } finally {
+            session.end();
+        }
+    }
+
+    /**
+     * <p>Creates an instance of the partition type stored with the given row, or returns null if there is no row or if
+     * the stored type is not a subtype of the requested one.</p>
+     */
+    private <P extends Partition> P toPartition(Class<P> partitionClass, PartitionJdbcType storedPartition) {
+        if (storedPartition == null) {
+            return null;
+        }
+
+        Class<?> storedType;
+
+        try {
+            storedType = classForName(storedPartition.getTypeName(), partitionClass.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw MESSAGES.instantiationError(partitionClass, e);
+        }
+
+        if (!partitionClass.isAssignableFrom(storedType)) {
+            return null;
+        }
+
+        P partition;
+
+        try {
+            partition = partitionClass.cast(newInstance(storedType));
+        } catch (Exception e) {
+            throw MESSAGES.instantiationError(storedType, e);
+        }
+
+        partition.setId(storedPartition.getId());
+
+        if (AbstractPartition.class.isInstance(partition)) {
+            ((AbstractPartition) partition).setName(storedPartition.getName());
+        }
+
+        return partition;
     }
 
     @Override
@@ -256,17 +465,24 @@ public class JDBCIdentityStore extends AbstractIdentityStore<JDBCIdentityStoreCo
 
     @Override
     public void add(IdentityContext identityContext, Partition partition, String configurationName) {
-        PartitionJdbcType partitionJdbcType = new PartitionJdbcType(partition.getName());
-        partitionJdbcType.setDataSource(dataSource);
-        if (partition.getId() == null) {
-            if (partition instanceof Realm) {
-                partitionJdbcType.setId(Realm.DEFAULT_REALM);
-            } else {
-                partitionJdbcType.setId(identityContext.getIdGenerator().generate());
+        JdbcSession session = JdbcSession.begin(this.dataSource);
+
+        try {
+            PartitionJdbcType partitionJdbcType = new PartitionJdbcType(partition.getName());
+            partitionJdbcType.setDataSource(dataSource);
+            if (partition.getId() == null) {
+                if (partition instanceof Realm) {
+                    partitionJdbcType.setId(Realm.DEFAULT_REALM);
+                } else {
+                    partitionJdbcType.setId(identityContext.getIdGenerator().generate());
+                }
             }
+            partitionJdbcType.setConfigurationName(configurationName).setTypeName(partition.getClass().getName());
+            partitionJdbcType.persist(partitionJdbcType);
+            session.commit();
+        } finally {
+            session.end();
         }
-        partitionJdbcType.setConfigurationName(configurationName).setTypeName(partition.getClass().getName());
-        partitionJdbcType.persist(partitionJdbcType);
     }
 
     @Override
@@ -278,4 +494,20 @@ public class JDBCIdentityStore extends AbstractIdentityStore<JDBCIdentityStoreCo
     public void remove(IdentityContext identityContext, Partition partition) {
         throw MESSAGES.notImplemented();
     }
+
+    /**
+     * <p>Returns the parameters of the given query, including the ones defined by equality conditions.</p>
+     */
+    private Map<QueryParameter, Object[]> getParameters(IdentityQuery<?> identityQuery) {
+        Map<QueryParameter, Object[]> parameters = new HashMap<QueryParameter, Object[]>(identityQuery.getParameters());
+
+        for (Condition condition : identityQuery.getConditions()) {
+            if (EqualCondition.class.isInstance(condition)) {
+                EqualCondition equalCondition = (EqualCondition) condition;
+                parameters.put(equalCondition.getParameter(), new Object[] {equalCondition.getValue()});
+            }
+        }
+
+        return parameters;
+    }
 }
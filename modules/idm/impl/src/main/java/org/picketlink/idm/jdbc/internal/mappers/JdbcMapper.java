@@ -56,6 +56,10 @@ public class JdbcMapper {
 
     public <T extends AbstractJdbcType> T getInstance(Class<? extends AttributedType> clazz) {
         Class<?> storedClass = classMap.get(clazz.getName());
+        if (storedClass == null && Partition.class.isAssignableFrom(clazz)) {
+            // all partition types are stored in the same table
+            storedClass = PartitionJdbcType.class;
+        }
         if (storedClass != null) {
             try {
                 return (T) storedClass.newInstance();
@@ -110,10 +110,18 @@ public class PartitionJdbcType extends AbstractJdbcType implements Partition {
 
     @Override
     public void persist(AttributedType attributedType) {
-        PartitionJdbcType partition = (PartitionJdbcType) attributedType;
+        Partition partition = (Partition) attributedType;
         if (load(partition.getId(), partition) == null) {
+            PartitionJdbcType storedPartition;
+            if (partition instanceof PartitionJdbcType) {
+                storedPartition = (PartitionJdbcType) partition;
+            } else {
+                storedPartition = new PartitionJdbcType(partition.getName());
+                storedPartition.setId(partition.getId());
+                storedPartition.setTypeName(partition.getClass().getName());
+            }
             PartitionStorageUtil partitionStorageUtil = new PartitionStorageUtil();
-            partitionStorageUtil.storePartition(dataSource, partition);
+            partitionStorageUtil.storePartition(dataSource, storedPartition);
         }
     }
 
@@ -64,9 +64,9 @@ public abstract class AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select name from Partition where id =?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, id);
             resultSet = preparedStatement.executeQuery();
             while (resultSet.next()) {
@@ -83,8 +83,45 @@ public abstract class AbstractStorageUtil {
         return null;
     }
 
+    /**
+     * <p>Returns the connection of the {@link JdbcSession} open for the given {@link DataSource}, or a new connection
+     * if there is none.</p>
+     *
+     * @param dataSource
+     * @return
+     * @throws SQLException
+     */
+    protected Connection getConnection(DataSource dataSource) throws SQLException {
+        JdbcSession session = JdbcSession.getCurrent(dataSource);
+
+        if (session != null) {
+            return session.getConnection();
+        }
+
+        return dataSource.getConnection();
+    }
+
+    /**
+     * <p>Prepares a statement, reusing the statements of the current {@link JdbcSession} if the connection belongs to
+     * it.</p>
+     *
+     * @param connection
+     * @param sql
+     * @return
+     * @throws SQLException
+     */
+    protected PreparedStatement prepareStatement(Connection connection, String sql) throws SQLException {
+        JdbcSession session = getSession(connection);
+
+        if (session != null) {
+            return session.prepareStatement(sql);
+        }
+
+        return connection.prepareStatement(sql);
+    }
+
     protected void safeClose(Connection conn) {
-        if (conn != null) {
+        if (conn != null && getSession(conn) == null) {
             try {
                 conn.close();
             } catch (SQLException e) {
@@ -102,6 +139,15 @@ public abstract class AbstractStorageUtil {
     }
 
     protected void safeClose(Statement statement) {
+        if (statement instanceof PreparedStatement) {
+            JdbcSession session = getSession(statement);
+
+            if (session != null) {
+                session.release((PreparedStatement) statement);
+                return;
+            }
+        }
+
         if (statement != null) {
             try {
                 statement.close();
@@ -109,4 +155,24 @@ public abstract class AbstractStorageUtil {
             }
         }
     }
+
+    private JdbcSession getSession(Connection connection) {
+        JdbcSession session = JdbcSession.getCurrent();
+
+        if (session != null && session.getConnection() == connection) {
+            return session;
+        }
+
+        return null;
+    }
+
+    private JdbcSession getSession(Statement statement) {
+        JdbcSession session = JdbcSession.getCurrent();
+
+        if (session != null && session.isOwner((PreparedStatement) statement)) {
+            return session;
+        }
+
+        return null;
+    }
 }
@@ -55,9 +55,9 @@ public class AttributeStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select attributeType from Attributes where owner =? and name=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, id);
             preparedStatement.setString(2, attributeName);
             resultSet = preparedStatement.executeQuery();
@@ -115,9 +115,9 @@ public class AttributeStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select name,value from Attributes where owner =?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, ownerId);
             resultSet = preparedStatement.executeQuery();
             while (resultSet.next()) {
@@ -159,33 +159,29 @@ public class AttributeStorageUtil extends AbstractStorageUtil {
             values = new Serializable[] { serializedValues };
         }
 
-        for (Serializable attributeValue : (Serializable[]) values) {
-            UserStorageUtil userStorageUtil = new UserStorageUtil();
-            RoleStorageUtil roleStorageUtil = new RoleStorageUtil();
-            GroupStorageUtil groupStorageUtil = new GroupStorageUtil();
-
-            Connection connection = null;
-            PreparedStatement preparedStatement = null;
-            ResultSet resultSet = null;
-            try {
-                connection = dataSource.getConnection();
-                String sql = "insert into Attributes set owner =?, name=?, value=?,attributeType=?";
-                preparedStatement = connection.prepareStatement(sql);
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            connection = getConnection(dataSource);
+            String sql = "insert into Attributes set owner =?, name=?, value=?,attributeType=?";
+            preparedStatement = prepareStatement(connection, sql);
+            for (Serializable attributeValue : (Serializable[]) values) {
                 preparedStatement.setString(1, ownerId);
                 preparedStatement.setString(2, attribute.getName());
                 preparedStatement.setString(3, Base64.encodeObject(attributeValue));
                 preparedStatement.setString(4, attributeValue.getClass().getName());
-                int result = preparedStatement.executeUpdate();
+                preparedStatement.addBatch();
+            }
+            for (int result : preparedStatement.executeBatch()) {
                 if (result == 0) {
                     throw new RuntimeException("Update failed");
                 }
-            } catch (SQLException e) {
-                throw new RuntimeException(e);
-            } finally {
-                safeClose(resultSet);
-                safeClose(preparedStatement);
-                safeClose(connection);
             }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            safeClose(preparedStatement);
+            safeClose(connection);
         }
     }
 
@@ -204,9 +200,9 @@ public class AttributeStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "Delete from Attributes where owner =? and name=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, ownerId);
             preparedStatement.setString(2, attributeName);
             int result = preparedStatement.executeUpdate();
@@ -229,9 +225,9 @@ public class AttributeStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select value,attributeType from Attributes where owner =? and name=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, ownerId);
             preparedStatement.setString(2, attributeName);
             resultSet = preparedStatement.executeQuery();
@@ -0,0 +1,242 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.jdbc.internal.model.db;
+
+import org.picketlink.common.properties.Property;
+import org.picketlink.common.properties.query.AnnotatedPropertyCriteria;
+import org.picketlink.common.properties.query.PropertyQueries;
+import org.picketlink.common.util.Base64;
+import org.picketlink.idm.IDMMessages;
+import org.picketlink.idm.credential.storage.CredentialStorage;
+import org.picketlink.idm.credential.storage.annotations.Stored;
+import org.picketlink.idm.model.Account;
+
+import javax.sql.DataSource;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.picketlink.common.reflection.Reflections.newInstance;
+
+/**
+ * Storage utility for {@link CredentialStorage}
+ *
+ * <p>Each credential is stored in the <code>Credential</code> table with its owner, type and dates. The other
+ * {@link Stored} properties are stored in the <code>CredentialAttribute</code> table, encoded in the same way as the
+ * values of the <code>Attributes</code> table.</p>
+ */
+public class CredentialStorageUtil extends AbstractStorageUtil {
+
+    private static final String EFFECTIVE_DATE = "effectiveDate";
+    private static final String EXPIRY_DATE = "expiryDate";
+
+    /**
+     * Store a {@link CredentialStorage} for an {@link Account}
+     *
+     * @param dataSource
+     * @param id the identifier of the new credential
+     * @param account
+     * @param storage
+     */
+    public void storeCredential(DataSource dataSource, String id, Account account, CredentialStorage storage) {
+        if (dataSource == null) {
+            throw IDMMessages.MESSAGES.nullArgument("datasource");
+        }
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            connection = getConnection(dataSource);
+            String sql = "insert into Credential set id=?, ownerId=?, typeName=?, effectiveDate=?, expiryDate=?";
+            preparedStatement = prepareStatement(connection, sql);
+            preparedStatement.setString(1, id);
+            preparedStatement.setString(2, account.getId());
+            preparedStatement.setString(3, storage.getClass().getName());
+            preparedStatement.setTimestamp(4, toTimestamp(storage.getEffectiveDate()));
+            preparedStatement.setTimestamp(5, toTimestamp(storage.getExpiryDate()));
+            int result = preparedStatement.executeUpdate();
+            if (result == 0) {
+                throw new RuntimeException("Insert into Credential failed");
+            }
+            safeClose(preparedStatement);
+
+            sql = "insert into CredentialAttribute set credentialId=?, name=?, value=?";
+            preparedStatement = prepareStatement(connection, sql);
+            boolean hasAttributes = false;
+            for (Property<Serializable> property : getStoredProperties(storage.getClass())) {
+                Serializable value = property.getValue(storage);
+                if (value != null && !isDateProperty(property)) {
+                    preparedStatement.setString(1, id);
+                    preparedStatement.setString(2, property.getName());
+                    preparedStatement.setString(3, Base64.encodeObject(value));
+                    preparedStatement.addBatch();
+                    hasAttributes = true;
+                }
+            }
+            if (hasAttributes) {
+                preparedStatement.executeBatch();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            safeClose(preparedStatement);
+            safeClose(connection);
+        }
+    }
+
+    /**
+     * Load the {@link CredentialStorage} of an {@link Account}, the most recent first
+     *
+     * @param dataSource
+     * @param account
+     * @param storageClass
+     * @return
+     */
+    public <T extends CredentialStorage> List<T> loadCredentials(DataSource dataSource, Account account,
+            Class<T> storageClass) {
+        if (dataSource == null) {
+            throw IDMMessages.MESSAGES.nullArgument("datasource");
+        }
+        List<T> result = new ArrayList<T>();
+        List<Property<Serializable>> storedProperties = getStoredProperties(storageClass);
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = getConnection(dataSource);
+            String sql = "select c.id, c.effectiveDate, c.expiryDate, a.name, a.value from Credential c "
+                    + "left join CredentialAttribute a on a.credentialId = c.id "
+                    + "where c.ownerId=? and c.typeName=? order by c.effectiveDate desc, c.id";
+            preparedStatement = prepareStatement(connection, sql);
+            preparedStatement.setString(1, account.getId());
+            preparedStatement.setString(2, storageClass.getName());
+            resultSet = preparedStatement.executeQuery();
+            String currentId = null;
+            T storage = null;
+            while (resultSet.next()) {
+                String id = resultSet.getString(1);
+                if (!id.equals(currentId)) {
+                    currentId = id;
+                    storage = newInstance(storageClass);
+                    for (Property<Serializable> property : storedProperties) {
+                        if (EFFECTIVE_DATE.equals(property.getName())) {
+                            property.setValue(storage, toDate(resultSet.getTimestamp(2)));
+                        } else if (EXPIRY_DATE.equals(property.getName())) {
+                            property.setValue(storage, toDate(resultSet.getTimestamp(3)));
+                        }
+                    }
+                    result.add(storage);
+                }
+                String name = resultSet.getString(4);
+                if (name != null) {
+                    for (Property<Serializable> property : storedProperties) {
+                        if (property.getName().equals(name)) {
+                            property.setValue(storage, (Serializable) Base64.decodeToObject(resultSet.getString(5)));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        } catch (InstantiationException e) {
+            throw new RuntimeException(e);
+        } finally {
+            safeClose(resultSet);
+            safeClose(preparedStatement);
+            safeClose(connection);
+        }
+        return result;
+    }
+
+    /**
+     * Delete the {@link CredentialStorage} of an {@link Account}
+     *
+     * @param dataSource
+     * @param account
+     * @param storageClass the type of the credentials to delete, or null to delete all the credentials of the account
+     */
+    public void deleteCredentials(DataSource dataSource, Account account, Class<? extends CredentialStorage> storageClass) {
+        if (dataSource == null) {
+            throw IDMMessages.MESSAGES.nullArgument("datasource");
+        }
+        String criteria = "ownerId=?";
+        if (storageClass != null) {
+            criteria = criteria + " and typeName=?";
+        }
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            connection = getConnection(dataSource);
+            String sql = "delete from CredentialAttribute where credentialId in (select id from Credential where "
+                    + criteria + ")";
+            preparedStatement = prepareStatement(connection, sql);
+            setCriteria(preparedStatement, account, storageClass);
+            preparedStatement.executeUpdate();
+            safeClose(preparedStatement);
+
+            sql = "delete from Credential where " + criteria;
+            preparedStatement = prepareStatement(connection, sql);
+            setCriteria(preparedStatement, account, storageClass);
+            preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            safeClose(preparedStatement);
+            safeClose(connection);
+        }
+    }
+
+    private void setCriteria(PreparedStatement preparedStatement, Account account,
+            Class<? extends CredentialStorage> storageClass) throws SQLException {
+        preparedStatement.setString(1, account.getId());
+        if (storageClass != null) {
+            preparedStatement.setString(2, storageClass.getName());
+        }
+    }
+
+    private List<Property<Serializable>> getStoredProperties(Class<? extends CredentialStorage> storageClass) {
+        return PropertyQueries.<Serializable>createQuery(storageClass)
+                .addCriteria(new AnnotatedPropertyCriteria(Stored.class))
+                .getResultList();
+    }
+
+    private boolean isDateProperty(Property<Serializable> property) {
+        return EFFECTIVE_DATE.equals(property.getName()) || EXPIRY_DATE.equals(property.getName());
+    }
+
+    private Timestamp toTimestamp(Date date) {
+        if (date == null) {
+            return null;
+        }
+        return new Timestamp(date.getTime());
+    }
+
+    private Date toDate(Timestamp timestamp) {
+        if (timestamp == null) {
+            return null;
+        }
+        return new Date(timestamp.getTime());
+    }
+}
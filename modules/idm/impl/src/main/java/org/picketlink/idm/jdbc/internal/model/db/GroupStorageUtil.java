@@ -56,9 +56,9 @@ public class GroupStorageUtil extends AbstractStorageUtil {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "delete from Groups where id=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, group.getId());
             int result = preparedStatement.executeUpdate();
             if (result == 0) {
@@ -87,9 +87,9 @@ public class GroupStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select name,partitionID,parentGroup,path,enabled,createdDate,expirationDate from Groups where id =?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, id);
             resultSet = preparedStatement.executeQuery();
             while (resultSet.next()) {
@@ -174,10 +174,10 @@ public class GroupStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select id,partitionID,parentGroup,path,enabled,createdDate,expirationDate"
                     + " from Groups where name =?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, groupName);
             resultSet = preparedStatement.executeQuery();
             while (resultSet.next()) {
@@ -231,10 +231,10 @@ public class GroupStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select id,name,partitionID,parentGroup,enabled,createdDate,expirationDate"
                     + " from Groups where path =?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, path);
             resultSet = preparedStatement.executeQuery();
             while (resultSet.next()) {
@@ -287,10 +287,10 @@ public class GroupStorageUtil extends AbstractStorageUtil {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "insert into Groups set name=?,id=?,"
                     + "createdDate=?,expirationDate=?,partitionID=?,parentGroup=?,path=?,enabled=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, group.getName());
             preparedStatement.setString(2, group.getId());
             preparedStatement.setTimestamp(3, new Timestamp(group.getCreatedDate().getTime()));
@@ -349,9 +349,9 @@ public class GroupStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
 
-            preparedStatement = connection.prepareStatement(updateSql);
+            preparedStatement = prepareStatement(connection, updateSql);
             preparedStatement.setString(1, group.getName());
             if (group.getParentGroup() == null) {
                 preparedStatement.setString(2, null);
@@ -0,0 +1,303 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.jdbc.internal.model.db;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>A unit of work bound to the current thread, sharing a single {@link Connection} between all the statements
+ * executed by an identity store operation.</p>
+ *
+ * <p>Statements are prepared once per SQL and reused while the session is open. A statement that is still in use, for
+ * instance while iterating over its results, is never handed out twice. In that case a new statement is prepared and
+ * closed once released.</p>
+ *
+ * <p>All statements run in a single transaction that is committed by the outermost operation. Sessions can be nested,
+ * in which case only the outermost one commits or rolls back. The session only takes ownership of the transaction when
+ * the connection is in auto-commit mode and the session switched it off. Otherwise, for instance when the connection is
+ * enlisted in a JTA transaction, commit and rollback are left to the caller.</p>
+ *
+ * <p>A batch session, opened by {@link #beginBatch(DataSource)}, keeps the connection and the prepared statements
+ * between the operations of a batch. When the session owns the transaction, each operation nested in a batch session
+ * runs in its own transaction, so a failed operation does not roll back the work of the others.</p>
+ *
+ * <p>Usage:</p>
+ *
+ * <pre>
+ *     JdbcSession session = JdbcSession.begin(dataSource);
+ *
+ *     try {
+ *         // perform the operation
+ *         session.commit();
+ *     } finally {
+ *         session.end();
+ *     }
+ * </pre>
+
+ */
+public class JdbcSession {
+
+    private static final ThreadLocal<JdbcSession> currentSession = new ThreadLocal<JdbcSession>();
+
+    private final DataSource dataSource;
+    private final JdbcSession previous;
+    private final Connection connection;
+    private final boolean ownsTransaction;
+    private final boolean batch;
+    private final Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+    private final Map<PreparedStatement, String> statementsInUse = new IdentityHashMap<PreparedStatement, String>();
+    private int depth = 1;
+    private boolean committed;
+
+    private JdbcSession(DataSource dataSource, JdbcSession previous, boolean batch) throws SQLException {
+        this.dataSource = dataSource;
+        this.previous = previous;
+        this.batch = batch;
+        this.connection = dataSource.getConnection();
+
+        boolean ownsTransaction = false;
+
+        try {
+            if (this.connection.getAutoCommit()) {
+                this.connection.setAutoCommit(false);
+                ownsTransaction = true;
+            }
+        } catch (SQLException e) {
+            // the connection is enlisted in a transaction managed by the container.
+        }
+
+        this.ownsTransaction = ownsTransaction;
+    }
+
+    /**
+     * <p>Begins a session for the given {@link DataSource}, or joins the one already open by the current thread.</p>
+     *
+     * @param dataSource
+     * @return
+     */
+    public static JdbcSession begin(DataSource dataSource) {
+        return begin(dataSource, false);
+    }
+
+    /**
+     * <p>Begins a batch session for the given {@link DataSource}, or joins the one already open by the current
+     * thread.</p>
+     *
+     * @param dataSource
+     * @return
+     */
+    public static JdbcSession beginBatch(DataSource dataSource) {
+        return begin(dataSource, true);
+    }
+
+    private static JdbcSession begin(DataSource dataSource, boolean batch) {
+        JdbcSession session = currentSession.get();
+
+        if (session != null && session.dataSource == dataSource) {
+            session.depth++;
+            return session;
+        }
+
+        try {
+            session = new JdbcSession(dataSource, session, batch);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        currentSession.set(session);
+
+        return session;
+    }
+
+    /**
+     * <p>Returns the session open by the current thread for the given {@link DataSource}.</p>
+     *
+     * @param dataSource
+     * @return the current session, or null if there is none
+     */
+    public static JdbcSession getCurrent(DataSource dataSource) {
+        JdbcSession session = currentSession.get();
+
+        if (session != null && session.dataSource == dataSource) {
+            return session;
+        }
+
+        return null;
+    }
+
+    /**
+     * <p>Returns the session open by the current thread.</p>
+     *
+     * @return the current session, or null if there is none
+     */
+    public static JdbcSession getCurrent() {
+        return currentSession.get();
+    }
+
+    public Connection getConnection() {
+        return this.connection;
+    }
+
+    /**
+     * <p>Returns a prepared statement for the given SQL, reusing the one prepared before if it is not in use.</p>
+     *
+     * @param sql
+     * @return
+     * @throws SQLException
+     */
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        PreparedStatement statement = this.statements.get(sql);
+
+        if (statement == null) {
+            statement = this.connection.prepareStatement(sql);
+            this.statements.put(sql, statement);
+        } else if (this.statementsInUse.containsKey(statement)) {
+            statement = this.connection.prepareStatement(sql);
+        } else {
+            statement.clearParameters();
+        }
+
+        this.statementsInUse.put(statement, sql);
+
+        return statement;
+    }
+
+    /**
+     * <p>Indicates if the given statement was prepared by this session.</p>
+     *
+     * @param statement
+     * @return
+     */
+    public boolean isOwner(PreparedStatement statement) {
+        return this.statementsInUse.containsKey(statement);
+    }
+
+    /**
+     * <p>Releases a statement prepared by this session, so it can be reused.</p>
+     *
+     * @param statement
+     */
+    public void release(PreparedStatement statement) {
+        String sql = this.statementsInUse.remove(statement);
+
+        if (sql != null && this.statements.get(sql) != statement) {
+            close(statement);
+        }
+    }
+
+    /**
+     * <p>Commits the work done by the session. Nested sessions leave the commit to the outermost one, or to the
+     * operation of a batch they are part of.</p>
+     */
+    public void commit() {
+        if (this.depth > getTransactionDepth()) {
+            return;
+        }
+
+        if (this.ownsTransaction) {
+            try {
+                this.connection.commit();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        this.committed = true;
+    }
+
+    /**
+     * <p>Ends the session. If the outermost session was not committed, its work is rolled back.</p>
+     */
+    public void end() {
+        if (this.batch && this.depth == getTransactionDepth()) {
+            // ends an operation of the batch, rolling back its work if it failed.
+            if (!this.committed && this.ownsTransaction) {
+                try {
+                    this.connection.rollback();
+                } catch (SQLException ignore) {
+                }
+            }
+
+            this.committed = false;
+            this.depth--;
+
+            return;
+        }
+
+        if (--this.depth > 0) {
+            return;
+        }
+
+        try {
+            if (!this.committed && this.ownsTransaction) {
+                try {
+                    this.connection.rollback();
+                } catch (SQLException ignore) {
+                }
+            }
+
+            List<PreparedStatement> statements = new ArrayList<PreparedStatement>(this.statements.values());
+
+            statements.addAll(this.statementsInUse.keySet());
+
+            for (PreparedStatement statement : statements) {
+                close(statement);
+            }
+
+            this.statements.clear();
+            this.statementsInUse.clear();
+
+            if (this.ownsTransaction) {
+                try {
+                    this.connection.setAutoCommit(true);
+                } catch (SQLException ignore) {
+                }
+            }
+
+            try {
+                this.connection.close();
+            } catch (SQLException ignore) {
+            }
+        } finally {
+            if (this.previous != null) {
+                currentSession.set(this.previous);
+            } else {
+                currentSession.remove();
+            }
+        }
+    }
+
+    private int getTransactionDepth() {
+        return this.batch ? 2 : 1;
+    }
+
+    private void close(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignore) {
+        }
+    }
+}
@@ -49,9 +49,9 @@ public class PartitionStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select name,typeName,configurationName from Partition where id =?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, id);
             resultSet = preparedStatement.executeQuery();
             while (resultSet.next()) {
@@ -86,9 +86,9 @@ public class PartitionStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select id,typeName,configurationName from Partition where name =?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, name);
             resultSet = preparedStatement.executeQuery();
             while (resultSet.next()) {
@@ -122,9 +122,9 @@ public class PartitionStorageUtil extends AbstractStorageUtil {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "insert into Partition set name=?,id=?,typeName=?,configurationName=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, partition.getName());
             preparedStatement.setString(2, partition.getId());
             preparedStatement.setString(3, partition.getTypeName());
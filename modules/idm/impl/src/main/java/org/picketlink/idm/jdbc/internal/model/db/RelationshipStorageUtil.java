@@ -57,9 +57,9 @@ public class RelationshipStorageUtil extends AbstractStorageUtil {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "delete from Relationship where id=? and type=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, id);
             preparedStatement.setString(2, Grant.class.getName());
             int result = preparedStatement.executeUpdate();
@@ -91,9 +91,9 @@ public class RelationshipStorageUtil extends AbstractStorageUtil {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "delete from Relationship where id=? and type=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, id);
             preparedStatement.setString(2, GroupMembership.class.getName());
             int result = preparedStatement.executeUpdate();
@@ -129,9 +129,9 @@ public class RelationshipStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select relBegin,relEnd from Relationship where id =? " + "and type=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, id);
             preparedStatement.setString(2, Grant.class.getName());
             resultSet = preparedStatement.executeQuery();
@@ -174,9 +174,9 @@ public class RelationshipStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select relBegin,relEnd from Relationship where id =?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, id);
             resultSet = preparedStatement.executeQuery();
             while (resultSet.next()) {
@@ -218,9 +218,9 @@ public class RelationshipStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select id,relEnd from Relationship where relBegin =? " + "and type=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, agent.getId());
             preparedStatement.setString(2, Grant.class.getName());
             resultSet = preparedStatement.executeQuery();
@@ -262,9 +262,9 @@ public class RelationshipStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select id,relEnd from Relationship where relBegin =? " + "and type=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, user.getId());
             preparedStatement.setString(2, Grant.class.getName());
             resultSet = preparedStatement.executeQuery();
@@ -307,9 +307,9 @@ public class RelationshipStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select id,relEnd from Relationship where relBegin =? " + "and type=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, agent.getId());
             preparedStatement.setString(2, GroupMembership.class.getName());
             resultSet = preparedStatement.executeQuery();
@@ -353,9 +353,9 @@ public class RelationshipStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select id,relEnd from Relationship where relBegin =? " + "and type=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, user.getId());
             preparedStatement.setString(2, GroupMembership.class.getName());
             resultSet = preparedStatement.executeQuery();
@@ -398,9 +398,9 @@ public class RelationshipStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select id,relBegin from Relationship where relEnd =? " + "and type=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, role.getId());
             preparedStatement.setString(2, Grant.class.getName());
             resultSet = preparedStatement.executeQuery();
@@ -442,9 +442,9 @@ public class RelationshipStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select id,relBegin from Relationship where relEnd =? " + "and type=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, group.getId());
             preparedStatement.setString(2, GroupMembership.class.getName());
             resultSet = preparedStatement.executeQuery();
@@ -481,9 +481,9 @@ public class RelationshipStorageUtil extends AbstractStorageUtil {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "insert into Relationship set id=?,relBegin=?,relEnd=?,type=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, grant.getId());
             preparedStatement.setString(2, grant.getAssignee().getId());
             preparedStatement.setString(3, grant.getRole().getId());
@@ -513,9 +513,9 @@ public class RelationshipStorageUtil extends AbstractStorageUtil {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "insert into Relationship set id=?,relBegin=?,relEnd=?,type=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, groupMembership.getId());
             preparedStatement.setString(2, groupMembership.getMember().getId());
             preparedStatement.setString(3, groupMembership.getGroup().getId());
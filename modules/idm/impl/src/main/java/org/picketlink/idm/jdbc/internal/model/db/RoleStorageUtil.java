@@ -54,9 +54,9 @@ public class RoleStorageUtil extends AbstractStorageUtil {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "delete from Role where id=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, role.getId());
             int result = preparedStatement.executeUpdate();
             if (result == 0) {
@@ -84,9 +84,9 @@ public class RoleStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select name,partitionID,enabled,createdDate,expirationDate from Role where id =?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, id);
             resultSet = preparedStatement.executeQuery();
             while (resultSet.next()) {
@@ -163,9 +163,9 @@ public class RoleStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select id,partitionID,enabled,createdDate,expirationDate from Role where name =?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, roleName);
             resultSet = preparedStatement.executeQuery();
             while (resultSet.next()) {
@@ -214,9 +214,9 @@ public class RoleStorageUtil extends AbstractStorageUtil {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "insert into Role set name=?,id=?," + "createdDate=?,expirationDate=?,partitionID=?," + "enabled=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, role.getName());
             preparedStatement.setString(2, role.getId());
             preparedStatement.setTimestamp(3, new Timestamp(role.getCreatedDate().getTime()));
@@ -266,9 +266,9 @@ public class RoleStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
 
-            preparedStatement = connection.prepareStatement(updateSql);
+            preparedStatement = prepareStatement(connection, updateSql);
             preparedStatement.setString(1, role.getName());
             if (role.isEnabled()) {
                 preparedStatement.setString(2, "y");
@@ -32,6 +32,7 @@ import javax.sql.DataSource;
 import org.picketlink.idm.IDMMessages;
 import org.picketlink.idm.jdbc.internal.model.PartitionJdbcType;
 import org.picketlink.idm.model.Attribute;
+import org.picketlink.idm.model.Partition;
 import org.picketlink.idm.model.basic.Agent;
 import org.picketlink.idm.model.basic.User;
 import org.picketlink.idm.query.AttributeParameter;
@@ -59,9 +60,9 @@ public class UserStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select count(*) from User where id =?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, id);
             resultSet = preparedStatement.executeQuery();
             while (resultSet.next()) {
@@ -90,9 +91,9 @@ public class UserStorageUtil extends AbstractStorageUtil {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "delete from User where id=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, agent.getId());
             int result = preparedStatement.executeUpdate();
             if (result == 0) {
@@ -119,9 +120,9 @@ public class UserStorageUtil extends AbstractStorageUtil {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "delete from User where id=?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, user.getId());
             int result = preparedStatement.executeUpdate();
             if (result == 0) {
@@ -146,6 +147,8 @@ public class UserStorageUtil extends AbstractStorageUtil {
         if (dataSource == null) {
             throw IDMMessages.MESSAGES.nullArgument("datasource");
         }
+        String loginName = null;
+        Partition partition = null;
         Set<QueryParameter> queryParameters = params.keySet();
         for (QueryParameter queryParameter : queryParameters) {
             if (queryParameter instanceof AttributeParameter) {
@@ -153,13 +156,23 @@ public class UserStorageUtil extends AbstractStorageUtil {
                 Object[] paramValues = getValuesFromParamMap(params,attributeParameter);
                 String attributeName = attributeParameter.getName();
                 if ("loginName".equals(attributeName)) {
-                    String loginNameValue = (String) paramValues[0];
-                    return loadUserByLoginName(dataSource, loginNameValue);
+                    loginName = (String) paramValues[0];
+                } else if ("partition".equals(attributeName)) {
+                    partition = (Partition) paramValues[0];
                 } else
                     throw new RuntimeException();
             }
         }
-        throw new RuntimeException();
+        if (loginName == null) {
+            throw new RuntimeException();
+        }
+        User user = loadUserByLoginName(dataSource, loginName);
+        // partitions are loaded by name
+        if (user != null && partition != null && user.getPartition() != null
+                && !partition.getName().equals(user.getPartition().getName())) {
+            return null;
+        }
+        return user;
     }
 
     /**
@@ -177,10 +190,10 @@ public class UserStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select firstName,lastName,email,loginName,partitionID,enabled,"
                     + "createdDate,expirationDate from User where id =?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, id);
             resultSet = preparedStatement.executeQuery();
             while (resultSet.next()) {
@@ -237,10 +250,10 @@ public class UserStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
             String sql = "select id, firstName,lastName,email,partitionID,enabled,createdDate,expirationDate"
                     + " from User where loginName =?";
-            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement = prepareStatement(connection, sql);
             preparedStatement.setString(1, loginName);
             resultSet = preparedStatement.executeQuery();
             while (resultSet.next()) {
@@ -299,8 +312,8 @@ public class UserStorageUtil extends AbstractStorageUtil {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         try {
-            connection = dataSource.getConnection();
-            preparedStatement = connection.prepareStatement(storeSql);
+            connection = getConnection(dataSource);
+            preparedStatement = prepareStatement(connection, storeSql);
             preparedStatement.setString(1, agent.getLoginName());
             preparedStatement.setString(2, agent.getId());
 
@@ -352,8 +365,8 @@ public class UserStorageUtil extends AbstractStorageUtil {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         try {
-            connection = dataSource.getConnection();
-            preparedStatement = connection.prepareStatement(storeSql);
+            connection = getConnection(dataSource);
+            preparedStatement = prepareStatement(connection, storeSql);
             preparedStatement.setString(1, user.getFirstName());
             preparedStatement.setString(2, user.getLastName());
             preparedStatement.setString(3, user.getEmail());
@@ -408,9 +421,9 @@ public class UserStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
 
-            preparedStatement = connection.prepareStatement(updateSql);
+            preparedStatement = prepareStatement(connection, updateSql);
             preparedStatement.setString(1, agent.getLoginName());
             if (agent.isEnabled()) {
                 preparedStatement.setString(2, "y");
@@ -460,9 +473,9 @@ public class UserStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection(dataSource);
 
-            preparedStatement = connection.prepareStatement(updateSql);
+            preparedStatement = prepareStatement(connection, updateSql);
             preparedStatement.setString(1, user.getFirstName());
             preparedStatement.setString(2, user.getLastName());
             preparedStatement.setString(3, user.getEmail());
@@ -0,0 +1,262 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.idm.basic;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.picketlink.idm.BatchResult;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.config.AbstractIdentityStoreConfiguration;
+import org.picketlink.idm.config.IdentityConfigurationBuilder;
+import org.picketlink.idm.config.IdentityStoreConfigurationBuilder;
+import org.picketlink.idm.config.IdentityStoresConfigurationBuilder;
+import org.picketlink.idm.credential.Credentials;
+import org.picketlink.idm.credential.handler.CredentialHandler;
+import org.picketlink.idm.event.AttributedTypesCreatedEvent;
+import org.picketlink.idm.event.AttributedTypesUpdatedEvent;
+import org.picketlink.idm.event.EventBridge;
+import org.picketlink.idm.internal.DefaultPartitionManager;
+import org.picketlink.idm.model.Account;
+import org.picketlink.idm.model.AttributedType;
+import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.model.Relationship;
+import org.picketlink.idm.model.basic.Realm;
+import org.picketlink.idm.model.basic.Role;
+import org.picketlink.idm.model.basic.User;
+import org.picketlink.idm.query.IdentityQuery;
+import org.picketlink.idm.query.RelationshipQuery;
+import org.picketlink.idm.spi.BatchingStore;
+import org.picketlink.idm.spi.ContextInitializer;
+import org.picketlink.idm.spi.IdentityContext;
+import org.picketlink.idm.spi.IdentityStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>
+ * Test case for the batch operations of {@link IdentityManager} when the batch of one of the stores can not be started.
+ * Users are kept by a file store, roles by a store that always fails to begin a batch.
+ * </p>
+ */
+public class BatchOperationFailureTestCase {
+
+    private final List<Object> events = new ArrayList<Object>();
+    private IdentityManager identityManager;
+
+    @Before
+    public void onSetup() {
+        IdentityConfigurationBuilder builder = new IdentityConfigurationBuilder();
+
+        builder
+            .named("default")
+                .stores()
+                    .file()
+                        .preserveState(false)
+                        .supportType(Realm.class, User.class)
+                        .supportAttributes(true)
+                        .supportCredentials(true)
+                    .add(FailingBatchStoreConfiguration.class, FailingBatchStoreConfigurationBuilder.class)
+                        .supportType(Role.class);
+
+        DefaultPartitionManager partitionManager = new DefaultPartitionManager(builder.buildAll(), new EventBridge() {
+            @Override
+            public void raiseEvent(Object event) {
+                events.add(event);
+            }
+        }, null);
+
+        partitionManager.add(new Realm(Realm.DEFAULT_REALM));
+
+        this.identityManager = partitionManager.createIdentityManager();
+        this.events.clear();
+    }
+
+    @Test
+    public void testAddAll() throws Exception {
+        List<IdentityType> identityTypes = new ArrayList<IdentityType>();
+
+        identityTypes.add(new User("john"));
+        identityTypes.add(new Role("admin"));
+        identityTypes.add(new User("mary"));
+
+        BatchResult<IdentityType> result = this.identityManager.addAll(identityTypes);
+
+        assertFalse(result.isSuccessful());
+        assertEquals(2, result.getProcessed().size());
+        assertSame(identityTypes.get(0), result.getProcessed().get(0));
+        assertSame(identityTypes.get(2), result.getProcessed().get(1));
+        assertEquals(1, result.getFailures().size());
+        assertSame(identityTypes.get(1), result.getFailures().get(0).getItem());
+        assertNotNull(result.getFailures().get(0).getCause());
+
+        AttributedTypesCreatedEvent event = getLastEvent(AttributedTypesCreatedEvent.class);
+
+        assertEquals(result.getProcessed(), event.getAttributedTypes());
+    }
+
+    @Test
+    public void testUpdateAll() throws Exception {
+        User john = new User("john");
+        Role admin = new Role("admin");
+
+        this.identityManager.add(john);
+        admin.setId("admin");
+
+        john.setEmail("john@picketlink.org");
+
+        List<IdentityType> identityTypes = new ArrayList<IdentityType>();
+
+        identityTypes.add(admin);
+        identityTypes.add(john);
+
+        BatchResult<IdentityType> result = this.identityManager.updateAll(identityTypes);
+
+        assertEquals(1, result.getProcessed().size());
+        assertSame(john, result.getProcessed().get(0));
+        assertEquals(1, result.getFailures().size());
+        assertSame(admin, result.getFailures().get(0).getItem());
+
+        AttributedTypesUpdatedEvent event = getLastEvent(AttributedTypesUpdatedEvent.class);
+
+        assertEquals(result.getProcessed(), event.getAttributedTypes());
+    }
+
+    private <T> T getLastEvent(Class<T> eventType) {
+        assertFalse(this.events.isEmpty());
+
+        Object event = this.events.get(this.events.size() - 1);
+
+        assertTrue(eventType.isInstance(event));
+
+        return eventType.cast(event);
+    }
+
+    public static class FailingBatchStoreConfigurationBuilder extends
+            IdentityStoreConfigurationBuilder<FailingBatchStoreConfiguration, FailingBatchStoreConfigurationBuilder> {
+
+        public FailingBatchStoreConfigurationBuilder(IdentityStoresConfigurationBuilder builder) {
+            super(builder);
+        }
+
+        @Override
+        protected FailingBatchStoreConfiguration create() {
+            return new FailingBatchStoreConfiguration(getSupportedTypes(), getUnsupportedTypes(),
+                getContextInitializers(), getCredentialHandlerProperties(), getCredentialHandlers());
+        }
+    }
+
+    public static class FailingBatchStoreConfiguration extends AbstractIdentityStoreConfiguration {
+
+        protected FailingBatchStoreConfiguration(Map<Class<? extends AttributedType>,
+                Set<IdentityOperation>> supportedTypes, Map<Class<? extends AttributedType>,
+                Set<IdentityOperation>> unsupportedTypes, List<ContextInitializer> contextInitializers, Map<String,
+                Object> credentialHandlerProperties, Set<Class<? extends CredentialHandler>> credentialHandlers) {
+            super(supportedTypes, unsupportedTypes, contextInitializers, credentialHandlerProperties,
+                credentialHandlers, false, false, false);
+        }
+
+        @Override
+        public Class<? extends IdentityStore> getIdentityStoreType() {
+            return FailingBatchStore.class;
+        }
+
+        @Override
+        public boolean supportsPartition() {
+            return false;
+        }
+    }
+
+    public static class FailingBatchStore implements IdentityStore<FailingBatchStoreConfiguration>, BatchingStore {
+
+        private FailingBatchStoreConfiguration config;
+
+        @Override
+        public void setup(FailingBatchStoreConfiguration config) {
+            this.config = config;
+        }
+
+        @Override
+        public FailingBatchStoreConfiguration getConfig() {
+            return this.config;
+        }
+
+        @Override
+        public void beginBatch(IdentityContext context) {
+            throw new IllegalStateException("Store not available.");
+        }
+
+        @Override
+        public void endBatch(IdentityContext context) {
+        }
+
+        @Override
+        public void add(IdentityContext context, AttributedType value) {
+            throw new IllegalStateException("Store not available.");
+        }
+
+        @Override
+        public void update(IdentityContext context, AttributedType value) {
+            throw new IllegalStateException("Store not available.");
+        }
+
+        @Override
+        public void remove(IdentityContext context, AttributedType value) {
+            throw new IllegalStateException("Store not available.");
+        }
+
+        @Override
+        public <V extends IdentityType> List<V> fetchQueryResults(IdentityContext context, IdentityQuery<V> identityQuery) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public <V extends IdentityType> int countQueryResults(IdentityContext context, IdentityQuery<V> identityQuery) {
+            return 0;
+        }
+
+        @Override
+        public <V extends Relationship> List<V> fetchQueryResults(IdentityContext context, RelationshipQuery<V> query) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public <V extends Relationship> int countQueryResults(IdentityContext context, RelationshipQuery<V> query) {
+            return 0;
+        }
+
+        @Override
+        public void validateCredentials(IdentityContext context, Credentials credentials) {
+        }
+
+        @Override
+        public void updateCredential(IdentityContext context, Account account, Object credential, Date effectiveDate,
+                                     Date expiryDate) {
+        }
+    }
+}
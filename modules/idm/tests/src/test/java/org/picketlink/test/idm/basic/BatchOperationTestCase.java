@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.picketlink.test.idm.basic;
+
+import org.junit.Test;
+import org.picketlink.idm.BatchResult;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.RelationshipManager;
+import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.model.Relationship;
+import org.picketlink.idm.model.basic.BasicModel;
+import org.picketlink.idm.model.basic.Grant;
+import org.picketlink.idm.model.basic.Role;
+import org.picketlink.idm.model.basic.User;
+import org.picketlink.test.idm.AbstractPartitionManagerTestCase;
+import org.picketlink.test.idm.Configuration;
+import org.picketlink.test.idm.testers.FileStoreConfigurationTester;
+import org.picketlink.test.idm.testers.IdentityConfigurationTester;
+import org.picketlink.test.idm.testers.JDBCStoreConfigurationTester;
+import org.picketlink.test.idm.testers.JPAStoreConfigurationTester;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>
+ * Test case for the batch operations of {@link IdentityManager} and {@link RelationshipManager}.
+ * </p>
+ */
+@Configuration(include = {JPAStoreConfigurationTester.class, FileStoreConfigurationTester.class,
+        JDBCStoreConfigurationTester.class})
+public class BatchOperationTestCase extends AbstractPartitionManagerTestCase {
+
+    public BatchOperationTestCase(IdentityConfigurationTester builder) {
+        super(builder);
+    }
+
+    @Test
+    public void testAddAll() throws Exception {
+        createUser("existing");
+
+        List<User> users = new ArrayList<User>();
+
+        users.add(new User("batch1"));
+        users.add(new User("existing"));
+        users.add(new User("batch2"));
+
+        IdentityManager identityManager = getIdentityManager();
+
+        BatchResult<IdentityType> result = identityManager.addAll(users);
+
+        assertFalse(result.isSuccessful());
+        assertEquals(2, result.getProcessed().size());
+        assertSame(users.get(0), result.getProcessed().get(0));
+        assertSame(users.get(2), result.getProcessed().get(1));
+        assertEquals(1, result.getFailures().size());
+        assertSame(users.get(1), result.getFailures().get(0).getItem());
+        assertNotNull(result.getFailures().get(0).getCause());
+
+        assertNotNull(BasicModel.getUser(identityManager, "batch1"));
+        assertNotNull(BasicModel.getUser(identityManager, "batch2"));
+    }
+
+    @Test
+    public void testUpdateAll() throws Exception {
+        User john = createUser("john");
+        User mary = createUser("mary");
+        User notStored = new User("notStored");
+
+        john.setEmail("john@picketlink.org");
+        mary.setEmail("mary@picketlink.org");
+
+        List<User> users = new ArrayList<User>();
+
+        users.add(john);
+        users.add(notStored);
+        users.add(mary);
+
+        IdentityManager identityManager = getIdentityManager();
+
+        BatchResult<IdentityType> result = identityManager.updateAll(users);
+
+        assertEquals(2, result.getProcessed().size());
+        assertEquals(1, result.getFailures().size());
+        assertSame(notStored, result.getFailures().get(0).getItem());
+
+        assertEquals("john@picketlink.org", BasicModel.getUser(identityManager, "john").getEmail());
+        assertEquals("mary@picketlink.org", BasicModel.getUser(identityManager, "mary").getEmail());
+    }
+
+    @Test
+    public void testAddAllRelationships() throws Exception {
+        Role role = createRole("batchRole");
+        List<Grant> grants = new ArrayList<Grant>();
+
+        for (int i = 0; i < 5; i++) {
+            grants.add(new Grant(createUser("grantee" + i), role));
+        }
+
+        RelationshipManager relationshipManager = getPartitionManager().createRelationshipManager();
+
+        BatchResult<Relationship> result = relationshipManager.addAll(grants);
+
+        assertTrue(result.isSuccessful());
+        assertEquals(grants.size(), result.getProcessed().size());
+
+        for (Grant grant : grants) {
+            assertTrue(BasicModel.hasRole(relationshipManager, grant.getAssignee(), role));
+        }
+    }
+}
@@ -26,6 +26,7 @@ import org.junit.Test;
 import org.picketlink.idm.IdentityManagementException;
 import org.picketlink.idm.IdentityManager;
 import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.TimeOrderedIdGenerator;
 import org.picketlink.idm.config.IdentityConfigurationBuilder;
 import org.picketlink.idm.config.OperationNotSupportedException;
 import org.picketlink.idm.config.SecurityConfigurationException;
@@ -49,6 +50,7 @@ import org.picketlink.idm.model.basic.Role;
 import org.picketlink.idm.model.basic.User;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.picketlink.test.idm.partition.CustomPartitionTestCase.CustomPartition;
 
 /**
@@ -304,4 +306,38 @@ public class ConfigurationTestCase {
         builder.buildAll();
     }
 
+    @Test
+    public void testIdGeneratorFromConfiguration() {
+        IdentityConfigurationBuilder builder = new IdentityConfigurationBuilder();
+
+        builder
+            .idGenerator(new TimeOrderedIdGenerator())
+            .named("default")
+                .stores()
+                    .file()
+                        .preserveState(false)
+                        .supportAllFeatures();
+
+        PartitionManager partitionManager = new DefaultPartitionManager(builder.buildAll());
+
+        partitionManager.add(new Realm(Realm.DEFAULT_REALM));
+
+        IdentityManager identityManager = partitionManager.createIdentityManager();
+        String previousId = null;
+
+        for (int i = 0; i < 10; i++) {
+            User user = new User("someUser" + i);
+
+            identityManager.add(user);
+
+            assertEquals('7', user.getId().charAt(14));
+
+            if (previousId != null) {
+                assertTrue(previousId.compareTo(user.getId()) < 0);
+            }
+
+            previousId = user.getId();
+        }
+    }
+
 }
@@ -0,0 +1,346 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.idm.event;
+
+import org.junit.Test;
+import org.picketlink.idm.event.AsyncEventBridge;
+import org.picketlink.idm.event.AsyncEventBridge.DeliveryMode;
+import org.picketlink.idm.event.EventBatch;
+import org.picketlink.idm.event.EventBridge;
+import org.picketlink.idm.event.IdentityTypeUpdatedEvent;
+import org.picketlink.idm.model.basic.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>Test case for the {@link AsyncEventBridge}.</p>
+ */
+public class AsyncEventBridgeTestCase {
+
+    @Test
+    public void testOrderedDeliveryPerEntity() throws Exception {
+        final Map<String, List<Integer>> deliveredVersions = Collections.synchronizedMap(new HashMap<String, List<Integer>>());
+        AsyncEventBridge eventBridge = new AsyncEventBridge(new EventBridge() {
+            @Override
+            public void raiseEvent(Object event) {
+                User user = (User) ((IdentityTypeUpdatedEvent) event).getIdentityType();
+
+                deliveredVersions.get(user.getId()).add(Integer.valueOf(user.getFirstName()));
+            }
+        }, DeliveryMode.ORDERED, 4, 10, 1);
+
+        int userCount = 10;
+        int versionCount = 100;
+
+        for (int i = 0; i < userCount; i++) {
+            deliveredVersions.put("user" + i, Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+
+        for (int version = 0; version < versionCount; version++) {
+            for (int i = 0; i < userCount; i++) {
+                eventBridge.raiseEvent(new IdentityTypeUpdatedEvent(createUser("user" + i, version), null));
+            }
+        }
+
+        eventBridge.close();
+
+        assertEquals(userCount * versionCount, eventBridge.getRaisedCount());
+        assertEquals(userCount * versionCount, eventBridge.getDeliveredCount());
+        assertEquals(0, eventBridge.getPendingCount());
+
+        for (List<Integer> versions : deliveredVersions.values()) {
+            assertEquals(versionCount, versions.size());
+
+            for (int version = 0; version < versionCount; version++) {
+                assertEquals(version, versions.get(version).intValue());
+            }
+        }
+    }
+
+    @Test
+    public void testBatchedDelivery() throws Exception {
+        final List<Object> deliveredEvents = Collections.synchronizedList(new ArrayList<Object>());
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        AsyncEventBridge eventBridge = new AsyncEventBridge(new EventBridge() {
+            @Override
+            public void raiseEvent(Object event) {
+                List<Object> events = ((EventBatch) event).getEvents();
+
+                batchSizes.add(events.size());
+                deliveredEvents.addAll(events);
+            }
+        }, DeliveryMode.BATCHED, 1, 1000, 10);
+
+        List<Object> raisedEvents = new ArrayList<Object>();
+
+        for (int i = 0; i < 500; i++) {
+            Object event = new IdentityTypeUpdatedEvent(createUser("user" + i, i), null);
+
+            raisedEvents.add(event);
+            eventBridge.raiseEvent(event);
+        }
+
+        eventBridge.close();
+
+        assertEquals(raisedEvents, deliveredEvents);
+
+        for (Integer batchSize : batchSizes) {
+            assertTrue(batchSize <= 10);
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        final CountDownLatch deliveryStarted = new CountDownLatch(1);
+        final CountDownLatch releaseDelivery = new CountDownLatch(1);
+        final AsyncEventBridge eventBridge = new AsyncEventBridge(new EventBridge() {
+            @Override
+            public void raiseEvent(Object event) {
+                deliveryStarted.countDown();
+
+                try {
+                    releaseDelivery.await();
+                } catch (InterruptedException ignore) {
+                }
+            }
+        }, DeliveryMode.ORDERED, 1, 1, 1);
+
+        eventBridge.raiseEvent("first");
+
+        assertTrue(deliveryStarted.await(10, TimeUnit.SECONDS));
+
+        eventBridge.raiseEvent("second");
+
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                eventBridge.raiseEvent("third");
+            }
+        };
+
+        producer.start();
+
+        long timeout = System.currentTimeMillis() + 10000;
+
+        while (eventBridge.getBlockedCount() == 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, eventBridge.getBlockedCount());
+        assertTrue(producer.isAlive());
+
+        releaseDelivery.countDown();
+        producer.join(10000);
+        eventBridge.close();
+
+        assertEquals(3, eventBridge.getDeliveredCount());
+    }
+
+    @Test
+    public void testOverflowDeliveredByRaisingThread() throws Exception {
+        final CountDownLatch deliveryStarted = new CountDownLatch(1);
+        final CountDownLatch releaseDelivery = new CountDownLatch(1);
+        final List<Thread> deliveryThreads = Collections.synchronizedList(new ArrayList<Thread>());
+        AsyncEventBridge eventBridge = new AsyncEventBridge(new EventBridge() {
+            @Override
+            public void raiseEvent(Object event) {
+                deliveryThreads.add(Thread.currentThread());
+
+                if ("first".equals(event)) {
+                    deliveryStarted.countDown();
+
+                    try {
+                        releaseDelivery.await();
+                    } catch (InterruptedException ignore) {
+                    }
+                }
+            }
+        }, DeliveryMode.ORDERED, 1, 1, 1, 10);
+
+        eventBridge.raiseEvent("first");
+
+        assertTrue(deliveryStarted.await(10, TimeUnit.SECONDS));
+
+        eventBridge.raiseEvent("second");
+        eventBridge.raiseEvent("third");
+
+        assertEquals(1, eventBridge.getOverflowCount());
+        assertTrue(deliveryThreads.contains(Thread.currentThread()));
+
+        releaseDelivery.countDown();
+        eventBridge.close();
+
+        assertEquals(3, eventBridge.getDeliveredCount());
+    }
+
+    @Test
+    public void testEventRaisedByDeliveryThreadIntoFullQueue() throws Exception {
+        final AtomicReference<AsyncEventBridge> bridgeReference = new AtomicReference<AsyncEventBridge>();
+        final CountDownLatch nestedDelivered = new CountDownLatch(1);
+        final CountDownLatch releaseDelivery = new CountDownLatch(1);
+        AsyncEventBridge eventBridge = new AsyncEventBridge(new EventBridge() {
+            @Override
+            public void raiseEvent(Object event) {
+                if ("first".equals(event)) {
+                    try {
+                        releaseDelivery.await();
+                    } catch (InterruptedException ignore) {
+                    }
+
+                    // the queue of this thread is full, the nested event must not wait for room.
+                    bridgeReference.get().raiseEvent("nested");
+                } else if ("nested".equals(event)) {
+                    nestedDelivered.countDown();
+                }
+            }
+        }, DeliveryMode.ORDERED, 1, 1, 1, TimeUnit.MINUTES.toMillis(1));
+
+        bridgeReference.set(eventBridge);
+
+        eventBridge.raiseEvent("first");
+        eventBridge.raiseEvent("second");
+
+        releaseDelivery.countDown();
+
+        assertTrue(nestedDelivered.await(10, TimeUnit.SECONDS));
+
+        eventBridge.close();
+
+        assertEquals(3, eventBridge.getDeliveredCount());
+    }
+
+    @Test
+    public void testCloseWhileProducerWaits() throws Exception {
+        final CountDownLatch deliveryStarted = new CountDownLatch(1);
+        final CountDownLatch releaseDelivery = new CountDownLatch(1);
+        final AsyncEventBridge eventBridge = new AsyncEventBridge(new EventBridge() {
+            @Override
+            public void raiseEvent(Object event) {
+                if ("first".equals(event)) {
+                    deliveryStarted.countDown();
+
+                    try {
+                        releaseDelivery.await();
+                    } catch (InterruptedException ignore) {
+                    }
+                }
+            }
+        }, DeliveryMode.ORDERED, 1, 1, 1, TimeUnit.MINUTES.toMillis(1));
+
+        eventBridge.raiseEvent("first");
+
+        assertTrue(deliveryStarted.await(10, TimeUnit.SECONDS));
+
+        eventBridge.raiseEvent("second");
+
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                eventBridge.raiseEvent("third");
+            }
+        };
+
+        producer.start();
+
+        long timeout = System.currentTimeMillis() + 10000;
+
+        while (eventBridge.getBlockedCount() == 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+
+        Thread closer = new Thread() {
+            @Override
+            public void run() {
+                eventBridge.close();
+            }
+        };
+
+        closer.start();
+        releaseDelivery.countDown();
+
+        closer.join(10000);
+        producer.join(10000);
+
+        assertFalse(closer.isAlive());
+        assertFalse(producer.isAlive());
+        assertEquals(3, eventBridge.getDeliveredCount());
+        assertEquals(0, eventBridge.getPendingCount());
+    }
+
+    @Test
+    public void testFailedDelivery() throws Exception {
+        final List<Object> deliveredEvents = Collections.synchronizedList(new ArrayList<Object>());
+        AsyncEventBridge eventBridge = new AsyncEventBridge(new EventBridge() {
+            @Override
+            public void raiseEvent(Object event) {
+                if ("invalid".equals(event)) {
+                    throw new IllegalStateException("Invalid event.");
+                }
+
+                deliveredEvents.add(event);
+            }
+        }, DeliveryMode.ORDERED, 2, 10, 1);
+
+        eventBridge.raiseEvent("first");
+        eventBridge.raiseEvent("invalid");
+        eventBridge.raiseEvent("second");
+
+        eventBridge.close();
+
+        assertEquals(3, eventBridge.getDeliveredCount());
+        assertEquals(1, eventBridge.getFailedCount());
+        assertEquals(2, deliveredEvents.size());
+    }
+
+    @Test
+    public void testSynchronousDelivery() throws Exception {
+        final List<Thread> deliveryThreads = new ArrayList<Thread>();
+        AsyncEventBridge eventBridge = new AsyncEventBridge(new EventBridge() {
+            @Override
+            public void raiseEvent(Object event) {
+                deliveryThreads.add(Thread.currentThread());
+            }
+        }, DeliveryMode.SYNCHRONOUS);
+
+        eventBridge.raiseEvent("event");
+
+        assertEquals(1, deliveryThreads.size());
+        assertSame(Thread.currentThread(), deliveryThreads.get(0));
+    }
+
+    private User createUser(String id, int version) {
+        User user = new User(id);
+
+        user.setId(id);
+        user.setFirstName(String.valueOf(version));
+
+        return user;
+    }
+}
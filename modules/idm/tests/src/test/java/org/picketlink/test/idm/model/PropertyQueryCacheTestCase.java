@@ -0,0 +1,209 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.idm.model;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.picketlink.common.properties.Property;
+import org.picketlink.common.properties.query.AnnotatedPropertyCriteria;
+import org.picketlink.common.properties.query.NamedPropertyCriteria;
+import org.picketlink.common.properties.query.PropertyCriteria;
+import org.picketlink.common.properties.query.PropertyQueries;
+import org.picketlink.common.properties.query.PropertyQuery;
+import org.picketlink.common.properties.query.TypedPropertyCriteria;
+import org.picketlink.idm.model.annotation.AttributeProperty;
+import org.picketlink.idm.model.annotation.Unique;
+import org.picketlink.idm.model.basic.Realm;
+import org.picketlink.idm.model.basic.User;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * <p>Checks that the cached results of {@link PropertyQuery} are the same as the results of uncached queries.</p>
+ */
+public class PropertyQueryCacheTestCase {
+
+    @Before
+    public void onSetup() {
+        PropertyQueries.clearCache();
+    }
+
+    @Test
+    public void testCachedResultsMatchUncachedResults() {
+        assertSameResults(User.class, new AnnotatedPropertyCriteria(AttributeProperty.class));
+        assertSameResults(User.class, new AnnotatedPropertyCriteria(Unique.class));
+        assertSameResults(User.class, new NamedPropertyCriteria("loginName", "email"));
+        assertSameResults(User.class, new TypedPropertyCriteria(String.class));
+        assertSameResults(Realm.class, new AnnotatedPropertyCriteria(AttributeProperty.class));
+        assertSameResults(MyCustomAccount.class, new AnnotatedPropertyCriteria(AttributeProperty.class),
+            new TypedPropertyCriteria(String.class));
+    }
+
+    @Test
+    public void testResultsAreCached() {
+        List<Property<Object>> first = createQuery(User.class, new AnnotatedPropertyCriteria(AttributeProperty.class))
+            .getResultList();
+        List<Property<Object>> second = createQuery(User.class, new AnnotatedPropertyCriteria(AttributeProperty.class))
+            .getResultList();
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testClearCache() {
+        List<Property<Object>> first = createQuery(User.class, new AnnotatedPropertyCriteria(AttributeProperty.class))
+            .getResultList();
+
+        PropertyQueries.clearCache(User.class.getClassLoader());
+
+        List<Property<Object>> second = createQuery(User.class, new AnnotatedPropertyCriteria(AttributeProperty.class))
+            .getResultList();
+
+        assertFalse(first == second);
+        assertEquals(describe(first), describe(second));
+    }
+
+    @Test
+    public void testApplicationClassesAreCached() throws Exception {
+        // a class not visible from the class loader of the cache, as the ones of a deployed application
+        URLClassLoader applicationClassLoader = new URLClassLoader(new URL[] {
+            User.class.getProtectionDomain().getCodeSource().getLocation(),
+            Property.class.getProtectionDomain().getCodeSource().getLocation()}, null);
+        Class<?> applicationClass = applicationClassLoader.loadClass(User.class.getName());
+
+        List<Property<Object>> first = createQuery(applicationClass, new TypedPropertyCriteria(String.class))
+            .getResultList();
+
+        assertSame(first, createQuery(applicationClass, new TypedPropertyCriteria(String.class)).getResultList());
+        assertEquals(describe(createUncachedQuery(applicationClass, new TypedPropertyCriteria(String.class))
+            .getResultList()), describe(first));
+
+        PropertyQueries.clearCache(applicationClassLoader);
+
+        assertFalse(first == createQuery(applicationClass, new TypedPropertyCriteria(String.class)).getResultList());
+    }
+
+    @Test
+    public void testConcurrentQueries() throws Exception {
+        final Set<String> expected = describe(createUncachedQuery(User.class,
+            new AnnotatedPropertyCriteria(AttributeProperty.class)).getResultList());
+
+        PropertyQueries.clearCache();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<Set<String>>> results = new ArrayList<Future<Set<String>>>();
+
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(new Callable<Set<String>>() {
+                    @Override
+                    public Set<String> call() {
+                        return describe(createQuery(User.class, new AnnotatedPropertyCriteria(AttributeProperty.class))
+                            .getResultList());
+                    }
+                }));
+            }
+
+            for (Future<Set<String>> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void assertSameResults(Class<?> targetClass, PropertyCriteria... criteria) {
+        Set<String> uncached = describe(createUncachedQuery(targetClass, criteria).getResultList());
+        Set<String> uncachedWritable = describe(createUncachedQuery(targetClass, criteria).getWritableResultList());
+
+        // the first query fills the cache, the second one reads it
+        for (int i = 0; i < 2; i++) {
+            assertEquals(uncached, describe(createQuery(targetClass, criteria).getResultList()));
+            assertEquals(uncachedWritable, describe(createQuery(targetClass, criteria).getWritableResultList()));
+        }
+    }
+
+    private PropertyQuery<Object> createQuery(Class<?> targetClass, PropertyCriteria... criteria) {
+        PropertyQuery<Object> query = PropertyQueries.createQuery(targetClass);
+
+        for (PropertyCriteria criterion : criteria) {
+            query.addCriteria(criterion);
+        }
+
+        return query;
+    }
+
+    private PropertyQuery<Object> createUncachedQuery(Class<?> targetClass, PropertyCriteria... criteria) {
+        PropertyQuery<Object> query = PropertyQueries.createQuery(targetClass);
+
+        for (PropertyCriteria criterion : criteria) {
+            query.addCriteria(new UncachedCriteria(criterion));
+        }
+
+        return query;
+    }
+
+    private static Set<String> describe(List<Property<Object>> properties) {
+        Set<String> result = new TreeSet<String>();
+
+        for (Property<Object> property : properties) {
+            result.add(property.getName() + ":" + property.getJavaClass().getName() + ":" + property.isReadOnly()
+                + ":" + property.getDeclaringClass().getName());
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Criteria that are not provided by the property query package are never cached.</p>
+     */
+    private static class UncachedCriteria implements PropertyCriteria {
+
+        private final PropertyCriteria delegate;
+
+        private UncachedCriteria(PropertyCriteria delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean fieldMatches(Field f) {
+            return this.delegate.fieldMatches(f);
+        }
+
+        @Override
+        public boolean methodMatches(Method m) {
+            return this.delegate.methodMatches(m);
+        }
+    }
+}
@@ -57,6 +57,15 @@ public class JDBCStoreConfigurationTester implements IdentityConfigurationTester
     private void setupDB(JdbcDataSource ds) throws Exception{
         Connection connection = ds.getConnection();
 
+        try {
+            createTables(connection);
+        } finally {
+            // a connection left open keeps the database open after its file is deleted by afterTest
+            connection.close();
+        }
+    }
+
+    private void createTables(Connection connection) throws Exception {
         //User
         connection.createStatement().executeUpdate("drop table if exists User");
         connection.createStatement().executeUpdate("create table User(id varchar,firstName varchar,lastName varchar," +
@@ -86,6 +95,16 @@ public class JDBCStoreConfigurationTester implements IdentityConfigurationTester
         connection.createStatement().executeUpdate("drop table if exists Relationship");
         connection.createStatement().executeUpdate("create table Relationship(id varchar,relBegin varchar," +
                 "relEnd varchar,type varchar,enabled varchar)");
+
+        //Credential
+        connection.createStatement().executeUpdate("drop table if exists Credential");
+        connection.createStatement().executeUpdate("create table Credential(id varchar,ownerId varchar," +
+                "typeName varchar,effectiveDate timestamp,expiryDate timestamp)");
+
+        //Credential Attribute
+        connection.createStatement().executeUpdate("drop table if exists CredentialAttribute");
+        connection.createStatement().executeUpdate("create table CredentialAttribute(credentialId varchar,name varchar," +
+                "value varchar)");
     }
 
     @Override
@@ -20,6 +20,8 @@ package org.picketlink.oauth.client;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.PropertyNamingStrategy;
+import org.picketlink.common.http.OutboundHttpClient;
+import org.picketlink.common.http.OutboundHttpResponse;
 import org.picketlink.oauth.common.OAuthConstants;
 import org.picketlink.oauth.messages.AccessTokenRequest;
 import org.picketlink.oauth.messages.AccessTokenResponse;
@@ -31,11 +33,6 @@ import org.picketlink.oauth.messages.RegistrationResponse;
 import org.picketlink.oauth.messages.ResourceAccessRequest;
 
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLConnection;
 
 /**
  * OAuth Client
@@ -145,12 +142,13 @@ public class ClientOAuth {
             try {
                 AuthorizationRequest authorizationRequest = (AuthorizationRequest) request;
                 String locationURL = authorizationRequest.getLocation() + "?" + authorizationRequest.asQueryParams();
-                URL url = new URL(locationURL);
-                HttpURLConnection c = (HttpURLConnection) url.openConnection();
-                c.setInstanceFollowRedirects(true);
-                c.connect();
-                response.setStatusCode(c.getResponseCode());
-                response.setResponseMessage(c.getResponseMessage());
+                OutboundHttpResponse httpResponse = OutboundHttpClient.getDefault().get(locationURL, null);
+                try {
+                    response.setStatusCode(httpResponse.getStatusCode());
+                    response.setResponseMessage(httpResponse.getStatusMessage());
+                } finally {
+                    httpResponse.close();
+                }
             } catch (Exception e) {
                 throw new OAuthClientException(e);
             }
@@ -387,38 +385,22 @@ public class ClientOAuth {
     }
 
     private InputStream executePost(String endpointURL, String body, boolean isJSON) throws OAuthClientException {
-        InputStream inputStream = null;
+        String contentType = isJSON ? "application/json" : "application/x-www-form-urlencoded";
+        OutboundHttpResponse response;
         try {
-            URL resUrl = new URL(endpointURL);
-            URLConnection urlConnection = resUrl.openConnection();
-            if (urlConnection instanceof HttpURLConnection) {
-                HttpURLConnection httpURLConnection = (HttpURLConnection) urlConnection;
-                httpURLConnection.setRequestMethod("POST");
-                httpURLConnection.setDoOutput(true);
-                httpURLConnection.setAllowUserInteraction(false);
-                if (isJSON) {
-                    httpURLConnection.setRequestProperty("Content-Type", "application/json");
-                } else {
-                    httpURLConnection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-                }
-                httpURLConnection.setRequestProperty("Content-Length", Integer.toString(body.length()));
-                OutputStream ost = httpURLConnection.getOutputStream();
-                PrintWriter pw = new PrintWriter(ost);
-                pw.print(body);
-                pw.flush();
-                pw.close();
-
-                if (httpURLConnection.getResponseCode() == 400) {
-                    inputStream = httpURLConnection.getErrorStream();
-                } else {
-                    inputStream = httpURLConnection.getInputStream();
-                }
-            } else {
-                throw new RuntimeException("Wrong url conn");
-            }
+            response = OutboundHttpClient.getDefault().post(endpointURL, null, contentType, body);
         } catch (Exception e) {
             throw new OAuthClientException(e);
         }
-        return inputStream;
+
+        // 400 carries an OAuth error response, any other error has no body we can read
+        if (response.getStatusCode() > 400) {
+            response.close();
+            throw new OAuthClientException("Server returned HTTP response code: " + response.getStatusCode()
+                + " for URL: " + endpointURL);
+        }
+
+        // the caller reads the body and closes the stream, which releases the connection
+        return response.getInputStream();
     }
-}
\ No newline at end of file
+}
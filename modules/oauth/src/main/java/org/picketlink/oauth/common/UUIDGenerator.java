@@ -17,7 +17,7 @@
  */
 package org.picketlink.oauth.common;
 
-import java.util.UUID;
+import org.picketlink.common.util.UUIDUtil;
 
 public class UUIDGenerator implements ValueGenerator {
 
@@ -25,6 +25,6 @@ public class UUIDGenerator implements ValueGenerator {
 
     @Override
     public String value() {
-        return UUID.randomUUID().toString();
+        return UUIDUtil.randomUUID();
     }
 }
\ No newline at end of file
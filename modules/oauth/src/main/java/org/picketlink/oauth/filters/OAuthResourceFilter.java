@@ -18,10 +18,11 @@
 package org.picketlink.oauth.filters;
 
 import org.picketlink.idm.IdentityManager;
-import org.picketlink.idm.model.basic.User;
-import org.picketlink.idm.query.IdentityQuery;
 import org.picketlink.oauth.common.OAuthConstants;
 import org.picketlink.oauth.messages.ResourceAccessRequest;
+import org.picketlink.oauth.server.token.JWTAccessTokenValidator;
+import org.picketlink.oauth.server.token.OAuthToken;
+import org.picketlink.oauth.server.token.TokenStore;
 import org.picketlink.oauth.server.util.OAuthServerUtil;
 
 import javax.persistence.EntityManager;
@@ -37,7 +38,6 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.List;
 import java.util.Properties;
 
 /**
@@ -49,6 +49,8 @@ import java.util.Properties;
 public class OAuthResourceFilter implements Filter {
 
     protected IdentityManager identityManager = null;
+    protected TokenStore tokenStore = null;
+    protected JWTAccessTokenValidator accessTokenValidator = null;
     protected ServletContext context;
 
     private EntityManagerFactory entityManagerFactory;
@@ -59,6 +61,8 @@ public class OAuthResourceFilter implements Filter {
         try {
             context = filterConfig.getServletContext();
             identityManager = OAuthServerUtil.handleIdentityManager(context);
+            tokenStore = OAuthServerUtil.handleTokenStore(context);
+            accessTokenValidator = OAuthServerUtil.handleAccessTokenValidator(context);
         } catch (IOException e1) {
             throw new RuntimeException(e1);
         }
@@ -75,49 +79,25 @@ public class OAuthResourceFilter implements Filter {
             ResourceAccessRequest resourceAccessRequest = OAuthServerUtil.parseResourceRequest((HttpServletRequest) request);
             // Get the access token
             String passedClientID = httpRequest.getParameter(OAuthConstants.CLIENT_ID);
-            String accessToken = resourceAccessRequest.getAccessToken();
+            OAuthToken accessToken = OAuthServerUtil.getAccessToken(resourceAccessRequest.getAccessToken(), tokenStore,
+                    accessTokenValidator);
 
-            IdentityQuery<User> userQuery = identityManager.createIdentityQuery(User.class);
-            userQuery.setParameter(User.ID, passedClientID);
-
-            List<User> users = userQuery.getResultList();
-
-            if (users.size() == 0) {
-                httpResponse.sendError(HttpServletResponse.SC_FORBIDDEN, "client_id not found");
+            // Check if the token is valid and not expired
+            if (accessToken == null) {
+                httpResponse.sendError(HttpServletResponse.SC_FORBIDDEN, "UnAuthorized");
                 return;
             }
 
-            if (users.size() > 1) {
-                httpResponse.sendError(HttpServletResponse.SC_FORBIDDEN, "More than one user with the same client id");
-                return;
-            }
-
-            User clientApp = users.get(0);
-
-            // Get the values from DB
-            String clientID = (String) clientApp.getAttribute("clientID").getValue();
-            String tokenCode = (String) clientApp.getAttribute("accessToken").getValue();
-
             // check if clientid is valid
-            if (!clientID.equals(passedClientID)) {
+            if (passedClientID != null && !passedClientID.equals(accessToken.getClientId())) {
                 httpResponse.sendError(HttpServletResponse.SC_FORBIDDEN, "Client ID is wrong");
                 return;
             }
-            // Check if the token is valid
-            if (tokenCode.equals(accessToken)) {
-                // Return the resource
-                chain.doFilter(httpRequest, httpResponse);
-                return;
-            }
 
-            // TODO: Check if the token is not expired
             // TODO: Check if the token is sufficient
 
-            // Return the OAuth error message
-
-            httpResponse.sendError(HttpServletResponse.SC_FORBIDDEN, "UnAuthorized");
-            return;
-
+            // Return the resource
+            chain.doFilter(httpRequest, httpResponse);
         } catch (Exception e) {
             httpResponse.sendError(HttpServletResponse.SC_FORBIDDEN, e.getLocalizedMessage());
             return;
@@ -126,6 +106,9 @@ public class OAuthResourceFilter implements Filter {
 
     @Override
     public void destroy() {
+        if (context != null) {
+            OAuthServerUtil.releaseTokenStore(context);
+        }
     }
 
     private Properties getProperties() throws IOException {
@@ -58,10 +58,13 @@ public class AuthorizationEndpoint extends BaseEndpoint {
                 throw new RuntimeException("Identity Manager has not been created");
             }
         }
+        if (tokenStore == null) {
+            tokenStore = OAuthServerUtil.handleTokenStore(context);
+        }
 
         OAuthResponse response = null;
         try {
-            response = OAuthServerUtil.authorizationCodeRequest(request, identityManager);
+            response = OAuthServerUtil.authorizationCodeRequest(request, identityManager, tokenStore);
         } catch (Exception e) {
             log.log(Level.SEVERE, "OAuth Server Authorization Processing:", e);
             return Response.serverError().build();
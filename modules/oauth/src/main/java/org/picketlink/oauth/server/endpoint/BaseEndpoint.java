@@ -18,6 +18,9 @@
 package org.picketlink.oauth.server.endpoint;
 
 import org.picketlink.idm.IdentityManager;
+import org.picketlink.oauth.server.token.JWTAccessTokenIssuer;
+import org.picketlink.oauth.server.token.JWTAccessTokenValidator;
+import org.picketlink.oauth.server.token.TokenStore;
 import org.picketlink.oauth.server.util.OAuthServerUtil;
 
 import javax.inject.Inject;
@@ -41,6 +44,12 @@ public class BaseEndpoint implements Serializable {
     @Inject
     protected IdentityManager identityManager = null;
 
+    protected TokenStore tokenStore = null;
+
+    protected JWTAccessTokenIssuer accessTokenIssuer = null;
+
+    protected JWTAccessTokenValidator accessTokenValidator = null;
+
     @Context
     protected ServletContext context;
 
@@ -59,6 +68,15 @@ public class BaseEndpoint implements Serializable {
                 throw new RuntimeException("Identity Manager has not been created");
             }
         }
+        if (tokenStore == null) {
+            tokenStore = OAuthServerUtil.handleTokenStore(context);
+        }
+        if (accessTokenIssuer == null) {
+            accessTokenIssuer = OAuthServerUtil.handleAccessTokenIssuer(context);
+        }
+        if (accessTokenValidator == null) {
+            accessTokenValidator = OAuthServerUtil.handleAccessTokenValidator(context);
+        }
     }
 
 }
\ No newline at end of file
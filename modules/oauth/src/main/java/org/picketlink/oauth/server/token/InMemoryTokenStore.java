@@ -0,0 +1,226 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.oauth.server.token;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * <p>A {@link TokenStore} that keeps the tokens in memory.</p>
+ *
+ * <p>Tokens are indexed by identifier, by client, by user and by expiration time, so every operation only visits the
+ * tokens it returns or removes. Tokens are lost when the server is restarted and are not shared between nodes.</p>
+ */
+public class InMemoryTokenStore implements TokenStore {
+
+    private static final Comparator<OAuthToken> EXPIRATION_ORDER = new Comparator<OAuthToken>() {
+        @Override
+        public int compare(OAuthToken token1, OAuthToken token2) {
+            if (token1.getExpiresAt() != token2.getExpiresAt()) {
+                return token1.getExpiresAt() < token2.getExpiresAt() ? -1 : 1;
+            }
+
+            return token1.getId().compareTo(token2.getId());
+        }
+    };
+
+    private final ConcurrentMap<String, OAuthToken> tokens = new ConcurrentHashMap<String, OAuthToken>();
+    private final ConcurrentMap<String, Set<String>> tokensByClient = new ConcurrentHashMap<String, Set<String>>();
+    private final ConcurrentMap<String, Set<String>> tokensByUser = new ConcurrentHashMap<String, Set<String>>();
+    private final ConcurrentSkipListSet<OAuthToken> tokensByExpiration = new ConcurrentSkipListSet<OAuthToken>(EXPIRATION_ORDER);
+
+    @Override
+    public void store(OAuthToken token) {
+        OAuthToken previous = this.tokens.put(token.getId(), token);
+
+        if (previous != null) {
+            unindex(previous);
+        }
+
+        addToIndex(this.tokensByClient, token.getClientId(), token.getId());
+        addToIndex(this.tokensByUser, token.getUserId(), token.getId());
+        this.tokensByExpiration.add(token);
+    }
+
+    @Override
+    public OAuthToken lookup(OAuthToken.Type type, String value) {
+        OAuthToken token = this.tokens.get(OAuthToken.hash(value));
+
+        if (token == null || !token.getType().equals(type) || token.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+
+        return token;
+    }
+
+    @Override
+    public OAuthToken consume(OAuthToken.Type type, String value) {
+        OAuthToken token = lookup(type, value);
+
+        if (token == null || !remove(token)) {
+            return null;
+        }
+
+        return token;
+    }
+
+    @Override
+    public List<OAuthToken> getTokensByClient(String clientId) {
+        return getTokens(this.tokensByClient.get(clientId));
+    }
+
+    @Override
+    public List<OAuthToken> getTokensByUser(String userId) {
+        return getTokens(this.tokensByUser.get(userId));
+    }
+
+    @Override
+    public int revokeByClient(String clientId) {
+        return removeAll(getTokensByClient(clientId));
+    }
+
+    @Override
+    public int revokeByUser(String userId) {
+        return removeAll(getTokensByUser(userId));
+    }
+
+    @Override
+    public int removeExpired(long now) {
+        int removed = 0;
+        Iterator<OAuthToken> iterator = this.tokensByExpiration.iterator();
+
+        while (iterator.hasNext()) {
+            OAuthToken token = iterator.next();
+
+            if (!token.isExpired(now)) {
+                break;
+            }
+
+            if (remove(token)) {
+                removed++;
+            } else {
+                // replaced or removed by another thread, which already cleaned its indexes up.
+                this.tokensByExpiration.remove(token);
+            }
+        }
+
+        return removed;
+    }
+
+    private List<OAuthToken> getTokens(Set<String> ids) {
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+
+        long now = System.currentTimeMillis();
+        List<OAuthToken> result = new ArrayList<OAuthToken>(ids.size());
+
+        for (String id : ids) {
+            OAuthToken token = this.tokens.get(id);
+
+            if (token != null && !token.isExpired(now)) {
+                result.add(token);
+            }
+        }
+
+        return result;
+    }
+
+    private int removeAll(List<OAuthToken> tokens) {
+        int removed = 0;
+
+        for (OAuthToken token : tokens) {
+            if (remove(token)) {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * <p>Removes the given token, if it is still stored.</p>
+     *
+     * @return true if the token was removed by this call
+     */
+    private boolean remove(OAuthToken token) {
+        if (!this.tokens.remove(token.getId(), token)) {
+            return false;
+        }
+
+        unindex(token);
+
+        return true;
+    }
+
+    private void unindex(OAuthToken token) {
+        removeFromIndex(this.tokensByClient, token.getClientId(), token.getId());
+        removeFromIndex(this.tokensByUser, token.getUserId(), token.getId());
+        this.tokensByExpiration.remove(token);
+    }
+
+    private static void addToIndex(ConcurrentMap<String, Set<String>> index, String key, String id) {
+        if (key == null) {
+            return;
+        }
+
+        while (true) {
+            Set<String> ids = index.get(key);
+
+            if (ids == null) {
+                Set<String> newIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+                ids = index.putIfAbsent(key, newIds);
+
+                if (ids == null) {
+                    ids = newIds;
+                }
+            }
+
+            ids.add(id);
+
+            // the set may have been discarded as empty by a concurrent removal, in that case add the id again.
+            if (index.get(key) == ids) {
+                return;
+            }
+        }
+    }
+
+    private static void removeFromIndex(ConcurrentMap<String, Set<String>> index, String key, String id) {
+        if (key == null) {
+            return;
+        }
+
+        Set<String> ids = index.get(key);
+
+        if (ids != null) {
+            ids.remove(id);
+
+            if (ids.isEmpty()) {
+                index.remove(key, ids);
+            }
+        }
+    }
+}
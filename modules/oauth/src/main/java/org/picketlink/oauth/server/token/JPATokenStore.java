@@ -0,0 +1,212 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.oauth.server.token;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>A {@link TokenStore} that keeps the tokens in a database, using {@link OAuthTokenEntity}.</p>
+ *
+ * <p>Every operation runs in its own resource local transaction, with an {@link EntityManager} created from the given
+ * {@link EntityManagerFactory}. Tokens are stored by all the nodes sharing the database.</p>
+ */
+public class JPATokenStore implements TokenStore {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public JPATokenStore(EntityManagerFactory entityManagerFactory) {
+        if (entityManagerFactory == null) {
+            throw new IllegalArgumentException("entityManagerFactory is null");
+        }
+
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void store(final OAuthToken token) {
+        execute(new Operation<Void>() {
+            @Override
+            public Void execute(EntityManager entityManager) {
+                OAuthTokenEntity entity = new OAuthTokenEntity();
+
+                entity.setId(token.getId());
+                entity.setType(token.getType());
+                entity.setClientId(token.getClientId());
+                entity.setUserId(token.getUserId());
+                entity.setScope(token.getScope());
+                entity.setIssuedAt(token.getIssuedAt());
+                entity.setExpiresAt(token.getExpiresAt());
+
+                entityManager.merge(entity);
+
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public OAuthToken lookup(final OAuthToken.Type type, String value) {
+        final String id = OAuthToken.hash(value);
+
+        return execute(new Operation<OAuthToken>() {
+            @Override
+            public OAuthToken execute(EntityManager entityManager) {
+                return toToken(type, entityManager.find(OAuthTokenEntity.class, id));
+            }
+        });
+    }
+
+    @Override
+    public OAuthToken consume(final OAuthToken.Type type, String value) {
+        final String id = OAuthToken.hash(value);
+
+        return execute(new Operation<OAuthToken>() {
+            @Override
+            public OAuthToken execute(EntityManager entityManager) {
+                OAuthToken token = toToken(type, entityManager.find(OAuthTokenEntity.class, id));
+
+                if (token == null) {
+                    return null;
+                }
+
+                // only one of the transactions consuming the token deletes its row.
+                int deleted = entityManager.createQuery("DELETE FROM OAuthTokenEntity t WHERE t.id = :id")
+                        .setParameter("id", id)
+                        .executeUpdate();
+
+                if (deleted != 1) {
+                    return null;
+                }
+
+                return token;
+            }
+        });
+    }
+
+    @Override
+    public List<OAuthToken> getTokensByClient(String clientId) {
+        return getTokens("clientId", clientId);
+    }
+
+    @Override
+    public List<OAuthToken> getTokensByUser(String userId) {
+        return getTokens("userId", userId);
+    }
+
+    @Override
+    public int revokeByClient(String clientId) {
+        return removeTokens("clientId", clientId);
+    }
+
+    @Override
+    public int revokeByUser(String userId) {
+        return removeTokens("userId", userId);
+    }
+
+    @Override
+    public int removeExpired(final long now) {
+        return execute(new Operation<Integer>() {
+            @Override
+            public Integer execute(EntityManager entityManager) {
+                return entityManager.createQuery("DELETE FROM OAuthTokenEntity t WHERE t.expiresAt <= :now")
+                        .setParameter("now", now)
+                        .executeUpdate();
+            }
+        });
+    }
+
+    private List<OAuthToken> getTokens(final String property, final String value) {
+        return execute(new Operation<List<OAuthToken>>() {
+            @Override
+            public List<OAuthToken> execute(EntityManager entityManager) {
+                List<OAuthTokenEntity> entities = entityManager
+                        .createQuery("SELECT t FROM OAuthTokenEntity t WHERE t." + property + " = :value AND t.expiresAt > :now",
+                                OAuthTokenEntity.class)
+                        .setParameter("value", value)
+                        .setParameter("now", System.currentTimeMillis())
+                        .getResultList();
+
+                List<OAuthToken> tokens = new ArrayList<OAuthToken>(entities.size());
+
+                for (OAuthTokenEntity entity : entities) {
+                    tokens.add(toToken(entity.getType(), entity));
+                }
+
+                return tokens;
+            }
+        });
+    }
+
+    private int removeTokens(final String property, final String value) {
+        return execute(new Operation<Integer>() {
+            @Override
+            public Integer execute(EntityManager entityManager) {
+                return entityManager.createQuery("DELETE FROM OAuthTokenEntity t WHERE t." + property + " = :value")
+                        .setParameter("value", value)
+                        .executeUpdate();
+            }
+        });
+    }
+
+    private OAuthToken toToken(OAuthToken.Type type, OAuthTokenEntity entity) {
+        if (entity == null || !entity.getType().equals(type)) {
+            return null;
+        }
+
+        OAuthToken token = new OAuthToken(entity.getId(), entity.getType(), entity.getClientId(), entity.getUserId(),
+                entity.getScope(), entity.getIssuedAt(), entity.getExpiresAt());
+
+        if (token.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+
+        return token;
+    }
+
+    private <T> T execute(Operation<T> operation) {
+        EntityManager entityManager = this.entityManagerFactory.createEntityManager();
+
+        try {
+            EntityTransaction transaction = entityManager.getTransaction();
+
+            transaction.begin();
+
+            try {
+                T result = operation.execute(entityManager);
+
+                transaction.commit();
+
+                return result;
+            } finally {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+            }
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private interface Operation<T> {
+        T execute(EntityManager entityManager);
+    }
+}
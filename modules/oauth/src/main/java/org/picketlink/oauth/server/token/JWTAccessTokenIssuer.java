@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.oauth.server.token;
+
+import org.picketlink.common.util.UUIDUtil;
+import org.picketlink.json.jose.JWK;
+import org.picketlink.json.jose.JWKBuilder;
+import org.picketlink.json.jose.JWKSet;
+import org.picketlink.json.jose.JWSBuilder;
+
+import java.security.KeyPair;
+import java.security.interfaces.RSAPublicKey;
+
+import static org.picketlink.json.JsonConstants.RSA;
+
+/**
+ * <p>Issues self-contained access tokens: JWTs signed with RSA using SHA-256.</p>
+ *
+ * <p>The tokens carry the client, the user, the scope and the expiration time, so they can be validated by a
+ * {@link JWTAccessTokenValidator} with the public key only, without looking them up in a {@link TokenStore}.</p>
+ */
+public class JWTAccessTokenIssuer {
+
+    public static final String CLAIM_CLIENT_ID = "client_id";
+    public static final String CLAIM_SCOPE = "scope";
+
+    private final byte[] privateKey;
+    private final String keyId;
+    private final String issuer;
+    private final String audience;
+    private final JWKSet keySet;
+
+    /**
+     * @param keyPair the RSA key pair used to sign the tokens
+     * @param keyId the identifier of the key pair, sent in the header of the tokens
+     * @param issuer the issuer of the tokens
+     * @param audience the audience of the tokens, usually the resource servers
+     */
+    public JWTAccessTokenIssuer(KeyPair keyPair, String keyId, String issuer, String audience) {
+        if (!(keyPair.getPublic() instanceof RSAPublicKey)) {
+            throw new IllegalArgumentException("Only RSA keys are supported");
+        }
+
+        RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+
+        this.privateKey = keyPair.getPrivate().getEncoded();
+        this.keyId = keyId;
+        this.issuer = issuer;
+        this.audience = audience;
+
+        JWK jwk = new JWKBuilder()
+            .modulus(publicKey.getModulus())
+            .publicExponent(publicKey.getPublicExponent())
+            .keyIdentifier(keyId)
+            .keyType(RSA)
+            .keyUse("sig")
+            .build();
+
+        this.keySet = new JWKSet(jwk);
+    }
+
+    /**
+     * <p>Issues an access token.</p>
+     *
+     * @param clientId the client the token is issued to
+     * @param userId the user that authorized the client, or null if the client acts on its own behalf
+     * @param scope the granted scope, or null
+     * @param expiresIn the lifetime of the token, in seconds
+     * @return the encoded token
+     */
+    public String issue(String clientId, String userId, String scope, long expiresIn) {
+        int issuedAt = (int) (System.currentTimeMillis() / 1000);
+
+        JWSBuilder builder = new JWSBuilder()
+            .rsa256(this.privateKey)
+            .kid(this.keyId)
+            .id(UUIDUtil.randomUUID())
+            .issuer(this.issuer)
+            .audience(this.audience)
+            .issuedAt(issuedAt)
+            .expiration(issuedAt + (int) expiresIn)
+            .claim(CLAIM_CLIENT_ID, clientId);
+
+        if (userId != null) {
+            builder.subject(userId);
+        }
+
+        if (scope != null) {
+            builder.claim(CLAIM_SCOPE, scope);
+        }
+
+        return builder.build().encode();
+    }
+
+    /**
+     * <p>Returns the public key used to validate the tokens, as a JSON Web Key Set.</p>
+     *
+     * @return
+     */
+    public JWKSet getKeySet() {
+        return this.keySet;
+    }
+
+    public String getIssuer() {
+        return this.issuer;
+    }
+
+    public String getAudience() {
+        return this.audience;
+    }
+}
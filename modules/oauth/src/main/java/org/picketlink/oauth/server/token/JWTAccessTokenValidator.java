@@ -0,0 +1,309 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.oauth.server.token;
+
+import org.jboss.logging.Logger;
+import org.picketlink.json.jose.JWK;
+import org.picketlink.json.jose.JWKSet;
+import org.picketlink.json.jose.JWS;
+import org.picketlink.json.jose.JWSBuilder;
+import org.picketlink.json.jose.crypto.Algorithm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.picketlink.json.JsonConstants.COMMON.KEY_ID;
+import static org.picketlink.json.JsonConstants.RSA;
+
+/**
+ * <p>Validates the access tokens issued by a {@link JWTAccessTokenIssuer} without any store lookup.</p>
+ *
+ * <p>A token is valid if it is signed with RSA using SHA-256 by one of the keys of the issuer, was issued by the
+ * expected issuer for the expected audience and did not expire. The public keys are decoded once and cached by key
+ * identifier.</p>
+ *
+ * <p>The keys are either given as a {@link JWKSet} or read from the URL of a JSON Web Key Set, for instance the one
+ * published by the authorization server. Such a key set is read on first use and kept. It is only read again when a
+ * token is signed by an unknown key, at most once every {@link #KEY_SET_REFRESH_INTERVAL} milliseconds, so that
+ * a key rollover is picked up without reading the key set for every forged token.</p>
+ *
+ * <p>Signed tokens are not kept in the {@link TokenStore}. They are revoked through the {@link TokenRevocationList}
+ * of the validator, by token or for all the tokens of a user or a client, which is checked for every token. Tokens
+ * that live longer than the maximum lifetime of the list are rejected, so that a revocation always outlives the tokens
+ * it covers.</p>
+ */
+public class JWTAccessTokenValidator {
+
+    private static Logger log = Logger.getLogger(JWTAccessTokenValidator.class);
+
+    /**
+     * Minimum delay, in milliseconds, between two reads of a key set given by its URL.
+     */
+    public static final long KEY_SET_REFRESH_INTERVAL = 60 * 1000L;
+
+    /**
+     * Default maximum lifetime, in milliseconds, of the accepted tokens.
+     */
+    public static final long DEFAULT_MAX_TOKEN_LIFETIME = 3600 * 1000L;
+
+    private final String issuer;
+    private final String audience;
+    private final URL keySetLocation;
+    private final ConcurrentMap<String, byte[]> publicKeys = new ConcurrentHashMap<String, byte[]>();
+    private volatile JWKSet keySet;
+    private volatile long keySetReadAt;
+    private volatile TokenRevocationList revocationList = new TokenRevocationList(DEFAULT_MAX_TOKEN_LIFETIME);
+
+    /**
+     * @param keySet the public keys of the issuer
+     * @param issuer the expected issuer
+     * @param audience the expected audience
+     */
+    public JWTAccessTokenValidator(JWKSet keySet, String issuer, String audience) {
+        if (keySet == null) {
+            throw new IllegalArgumentException("keySet is null");
+        }
+
+        this.keySet = keySet;
+        this.keySetLocation = null;
+        this.issuer = issuer;
+        this.audience = audience;
+    }
+
+    /**
+     * @param keySetLocation the URL of the JSON Web Key Set with the public keys of the issuer
+     * @param issuer the expected issuer
+     * @param audience the expected audience
+     */
+    public JWTAccessTokenValidator(URL keySetLocation, String issuer, String audience) {
+        if (keySetLocation == null) {
+            throw new IllegalArgumentException("keySetLocation is null");
+        }
+
+        this.keySet = null;
+        this.keySetLocation = keySetLocation;
+        this.issuer = issuer;
+        this.audience = audience;
+    }
+
+    /**
+     * <p>Indicates if the given access token looks like a JWT and should be validated by this class.</p>
+     *
+     * @param value
+     * @return
+     */
+    public static boolean isJWT(String value) {
+        int firstPeriod = value.indexOf('.');
+
+        return firstPeriod != -1 && value.indexOf('.', firstPeriod + 1) != -1;
+    }
+
+    /**
+     * <p>Validates the given access token.</p>
+     *
+     * @param value the encoded token
+     * @return the token, or null if the token is not valid
+     */
+    public OAuthToken validate(String value) {
+        JWS jws;
+
+        try {
+            JWS unverified = new JWSBuilder().build(value);
+
+            if (!Algorithm.RS256.name().equals(unverified.getAlgorithm())) {
+                return null;
+            }
+
+            byte[] publicKey = getPublicKey(unverified.getHeader(KEY_ID));
+
+            if (publicKey == null) {
+                return null;
+            }
+
+            jws = new JWSBuilder().build(value, publicKey);
+        } catch (RuntimeException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Invalid access token", e);
+            }
+
+            return null;
+        }
+
+        if (this.issuer != null && !this.issuer.equals(jws.getIssuer())) {
+            return null;
+        }
+
+        List<String> audience = jws.getAudience();
+
+        if (this.audience != null && (audience == null || !audience.contains(this.audience))) {
+            return null;
+        }
+
+        Integer issuedAt = jws.getIssuedAt();
+        Integer expiration = jws.getExpiration();
+
+        if (issuedAt == null || expiration == null) {
+            return null;
+        }
+
+        OAuthToken token = new OAuthToken(OAuthToken.hash(value), OAuthToken.Type.ACCESS_TOKEN,
+            jws.getClaim(JWTAccessTokenIssuer.CLAIM_CLIENT_ID), jws.getSubject(),
+            jws.getClaim(JWTAccessTokenIssuer.CLAIM_SCOPE), issuedAt * 1000L, expiration * 1000L);
+
+        TokenRevocationList revocationList = this.revocationList;
+
+        if (token.isExpired(System.currentTimeMillis())
+            || token.getExpiresAt() - token.getIssuedAt() > revocationList.getMaxTokenLifetime()
+            || revocationList.isRevoked(getTokenId(jws, token), token)) {
+            return null;
+        }
+
+        return token;
+    }
+
+    /**
+     * <p>Revokes the given access token, if it is valid.</p>
+     *
+     * @param value the encoded token
+     * @return true if the token was revoked
+     */
+    public boolean revoke(String value) {
+        OAuthToken token = validate(value);
+
+        if (token == null) {
+            return false;
+        }
+
+        this.revocationList.revoke(getTokenId(new JWSBuilder().build(value), token), token.getExpiresAt());
+
+        return true;
+    }
+
+    public TokenRevocationList getRevocationList() {
+        return this.revocationList;
+    }
+
+    /**
+     * <p>Replaces the revocation list, for instance to accept tokens with a longer lifetime.</p>
+     *
+     * @param revocationList
+     */
+    public void setRevocationList(TokenRevocationList revocationList) {
+        if (revocationList == null) {
+            throw new IllegalArgumentException("revocationList is null");
+        }
+
+        this.revocationList = revocationList;
+    }
+
+    /**
+     * <p>Replaces the public keys of the issuer, for instance after a key rollover.</p>
+     *
+     * @param keySet
+     */
+    public void setKeySet(JWKSet keySet) {
+        this.keySet = keySet;
+        this.publicKeys.clear();
+    }
+
+    private String getTokenId(JWS jws, OAuthToken token) {
+        // tokens without a jti are identified by the hash of their value
+        return jws.getId() != null ? jws.getId() : token.getId();
+    }
+
+    private byte[] getPublicKey(String keyId) {
+        if (keyId == null) {
+            return null;
+        }
+
+        byte[] publicKey = this.publicKeys.get(keyId);
+
+        if (publicKey == null) {
+            JWK jwk = getKey(keyId);
+
+            if (jwk == null || !RSA.equals(jwk.getKeyType())) {
+                return null;
+            }
+
+            publicKey = jwk.toRSAPublicKey().getEncoded();
+
+            this.publicKeys.putIfAbsent(keyId, publicKey);
+        }
+
+        return publicKey;
+    }
+
+    private JWK getKey(String keyId) {
+        JWKSet keySet = this.keySet;
+        JWK jwk = keySet != null ? keySet.get(keyId) : null;
+
+        if (jwk == null && this.keySetLocation != null) {
+            keySet = readKeySet();
+
+            if (keySet != null) {
+                jwk = keySet.get(keyId);
+            }
+        }
+
+        return jwk;
+    }
+
+    private synchronized JWKSet readKeySet() {
+        long now = System.currentTimeMillis();
+
+        if (this.keySetReadAt != 0 && now - this.keySetReadAt < KEY_SET_REFRESH_INTERVAL) {
+            return this.keySet;
+        }
+
+        this.keySetReadAt = now;
+
+        InputStream input = null;
+
+        try {
+            input = this.keySetLocation.openStream();
+
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+
+            while ((read = input.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+
+            setKeySet(new JWKSet(content.toString("UTF-8")));
+        } catch (IOException e) {
+            log.warn("Could not read the key set from " + this.keySetLocation, e);
+        } catch (RuntimeException e) {
+            log.warn("Invalid key set at " + this.keySetLocation, e);
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+
+        return this.keySet;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.oauth.server.token;
+
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <p>A token issued by the authorization server: an authorization code, an access token or a refresh token.</p>
+ *
+ * <p>The value sent to the client is never kept. Tokens are identified by the SHA-256 hash of their value, so the
+ * contents of a store can not be used to access resources.</p>
+ */
+public class OAuthToken implements Serializable {
+
+    private static final long serialVersionUID = 6201851853318414781L;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    public enum Type {
+        AUTHORIZATION_CODE, ACCESS_TOKEN, REFRESH_TOKEN
+    }
+
+    private final String id;
+    private final Type type;
+    private final String clientId;
+    private final String userId;
+    private final String scope;
+    private final long issuedAt;
+    private final long expiresAt;
+
+    /**
+     * <p>Creates a token for the given value.</p>
+     *
+     * @param type the type of the token
+     * @param value the value sent to the client
+     * @param clientId the client the token was issued to
+     * @param userId the user that authorized the client, or null if the client acts on its own behalf
+     * @param scope the granted scope, or null
+     * @param expiresIn the lifetime of the token, in seconds
+     */
+    public static OAuthToken create(Type type, String value, String clientId, String userId, String scope,
+                                    long expiresIn) {
+        long issuedAt = System.currentTimeMillis();
+
+        return new OAuthToken(hash(value), type, clientId, userId, scope, issuedAt, issuedAt + expiresIn * 1000);
+    }
+
+    public OAuthToken(String id, Type type, String clientId, String userId, String scope, long issuedAt,
+                      long expiresAt) {
+        if (id == null) {
+            throw new IllegalArgumentException("id is null");
+        }
+
+        if (type == null) {
+            throw new IllegalArgumentException("type is null");
+        }
+
+        this.id = id;
+        this.type = type;
+        this.clientId = clientId;
+        this.userId = userId;
+        this.scope = scope;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * <p>Returns the identifier of a token with the given value.</p>
+     *
+     * @param value
+     * @return the SHA-256 hash of the value, hex encoded
+     */
+    public static String hash(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value is null");
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes("UTF-8"));
+            char[] chars = new char[digest.length * 2];
+
+            for (int i = 0; i < digest.length; i++) {
+                chars[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+                chars[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+            }
+
+            return new String(chars);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public Type getType() {
+        return this.type;
+    }
+
+    public String getClientId() {
+        return this.clientId;
+    }
+
+    public String getUserId() {
+        return this.userId;
+    }
+
+    public String getScope() {
+        return this.scope;
+    }
+
+    public long getIssuedAt() {
+        return this.issuedAt;
+    }
+
+    public long getExpiresAt() {
+        return this.expiresAt;
+    }
+
+    public boolean isExpired(long now) {
+        return this.expiresAt <= now;
+    }
+}
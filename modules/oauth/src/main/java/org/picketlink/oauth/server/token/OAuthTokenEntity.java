@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.oauth.server.token;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import java.io.Serializable;
+
+/**
+ * <p>The table used by {@link JPATokenStore}. The class must be listed in the persistence unit given to the store:</p>
+ *
+ * <pre>
+ * &lt;class&gt;org.picketlink.oauth.server.token.OAuthTokenEntity&lt;/class&gt;
+ * </pre>
+ *
+ * <p>Tokens are looked up by their primary key. The <code>clientId</code>, <code>userId</code> and
+ * <code>expiresAt</code> columns should be indexed, as they are used to revoke and to expire tokens.</p>
+ */
+@Entity
+public class OAuthTokenEntity implements Serializable {
+
+    private static final long serialVersionUID = -3547426640826734613L;
+
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private OAuthToken.Type type;
+
+    private String clientId;
+
+    private String userId;
+
+    @Column(length = 1024)
+    private String scope;
+
+    private long issuedAt;
+
+    private long expiresAt;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public OAuthToken.Type getType() {
+        return type;
+    }
+
+    public void setType(OAuthToken.Type type) {
+        this.type = type;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    public void setScope(String scope) {
+        this.scope = scope;
+    }
+
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    public void setIssuedAt(long issuedAt) {
+        this.issuedAt = issuedAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.oauth.server.token;
+
+import org.jboss.logging.Logger;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Periodically removes the expired tokens from a {@link TokenStore}, in a background daemon thread.</p>
+ *
+ * <p>Expired tokens are never returned by a store, the sweeper only reclaims the space they use.</p>
+ */
+public class TokenExpirationSweeper {
+
+    private static Logger log = Logger.getLogger(TokenExpirationSweeper.class);
+
+    private final TokenStore tokenStore;
+    private final long interval;
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param tokenStore the store to sweep
+     * @param interval the interval between two sweeps, in seconds
+     */
+    public TokenExpirationSweeper(TokenStore tokenStore, long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+
+        this.tokenStore = tokenStore;
+        this.interval = interval;
+    }
+
+    public synchronized void start() {
+        if (this.executor != null) {
+            return;
+        }
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PicketLink OAuth Token Sweeper");
+
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+
+        this.executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                sweep();
+            }
+        }, this.interval, this.interval, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    /**
+     * <p>Removes the expired tokens from the store.</p>
+     *
+     * @return the number of tokens removed
+     */
+    public int sweep() {
+        try {
+            int removed = this.tokenStore.removeExpired(System.currentTimeMillis());
+
+            if (removed > 0 && log.isDebugEnabled()) {
+                log.debug("Removed " + removed + " expired tokens");
+            }
+
+            return removed;
+        } catch (Exception e) {
+            // keep sweeping, the store may be temporarily unavailable.
+            log.error("Could not remove the expired tokens", e);
+            return 0;
+        }
+    }
+}
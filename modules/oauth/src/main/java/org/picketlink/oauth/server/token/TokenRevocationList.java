@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.oauth.server.token;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>The self-contained tokens revoked before their expiration.</p>
+ *
+ * <p>A single token is revoked by its identifier, the <code>jti</code> of a JWT, and kept only until it expires, as it
+ * is rejected from then on anyway. All the tokens of a user or of a client are revoked by recording when they were
+ * revoked: tokens issued until then are rejected. Such an entry is kept for the maximum lifetime of a token, after which
+ * every token it covers has expired.</p>
+ */
+public class TokenRevocationList {
+
+    private final long maxTokenLifetime;
+    private final ConcurrentMap<String, Long> revokedTokens = new ConcurrentHashMap<String, Long>();
+    private final ConcurrentMap<String, Long> revokedUsers = new ConcurrentHashMap<String, Long>();
+    private final ConcurrentMap<String, Long> revokedClients = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * @param maxTokenLifetime the maximum lifetime of the tokens, in milliseconds
+     */
+    public TokenRevocationList(long maxTokenLifetime) {
+        this.maxTokenLifetime = maxTokenLifetime;
+    }
+
+    /**
+     * <p>Revokes a single token.</p>
+     *
+     * @param tokenId the identifier of the token
+     * @param expiresAt the expiration time of the token, in milliseconds
+     */
+    public void revoke(String tokenId, long expiresAt) {
+        long now = System.currentTimeMillis();
+
+        if (expiresAt > now) {
+            this.revokedTokens.put(tokenId, expiresAt);
+        }
+
+        removeExpired(now);
+    }
+
+    /**
+     * <p>Revokes all the tokens authorized by the given user so far.</p>
+     *
+     * @param userId
+     */
+    public void revokeByUser(String userId) {
+        long now = System.currentTimeMillis();
+
+        this.revokedUsers.put(userId, now);
+
+        removeExpired(now);
+    }
+
+    /**
+     * <p>Revokes all the tokens issued to the given client so far.</p>
+     *
+     * @param clientId
+     */
+    public void revokeByClient(String clientId) {
+        long now = System.currentTimeMillis();
+
+        this.revokedClients.put(clientId, now);
+
+        removeExpired(now);
+    }
+
+    /**
+     * @param tokenId the identifier of the token
+     * @param token the token
+     * @return true if the token was revoked by its identifier, its user or its client
+     */
+    public boolean isRevoked(String tokenId, OAuthToken token) {
+        if (this.revokedTokens.containsKey(tokenId)) {
+            return true;
+        }
+
+        return isRevokedBefore(this.revokedUsers, token.getUserId(), token.getIssuedAt())
+            || isRevokedBefore(this.revokedClients, token.getClientId(), token.getIssuedAt());
+    }
+
+    public long getMaxTokenLifetime() {
+        return this.maxTokenLifetime;
+    }
+
+    public int size() {
+        return this.revokedTokens.size() + this.revokedUsers.size() + this.revokedClients.size();
+    }
+
+    /**
+     * <p>Removes the entries that no longer cover any token at the given time.</p>
+     *
+     * @param now the current time, in milliseconds
+     * @return the number of entries removed
+     */
+    public int removeExpired(long now) {
+        return removeBefore(this.revokedTokens, now)
+            + removeBefore(this.revokedUsers, now - this.maxTokenLifetime)
+            + removeBefore(this.revokedClients, now - this.maxTokenLifetime);
+    }
+
+    private boolean isRevokedBefore(Map<String, Long> revoked, String key, long issuedAt) {
+        if (key == null) {
+            return false;
+        }
+
+        Long revokedAt = revoked.get(key);
+
+        // issuedAt is truncated to the second, a token issued during the second of the revocation is rejected
+        return revokedAt != null && issuedAt <= revokedAt;
+    }
+
+    private int removeBefore(Map<String, Long> revoked, long time) {
+        int removed = 0;
+        Iterator<Map.Entry<String, Long>> iterator = revoked.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue() <= time) {
+                iterator.remove();
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.oauth.server.token;
+
+import java.util.List;
+
+/**
+ * <p>Stores the authorization codes, access tokens and refresh tokens issued by the authorization server.</p>
+ *
+ * <p>Tokens are looked up by the hash of their value, as returned by {@link OAuthToken#hash(String)}. A client or an
+ * user may hold any number of tokens. Implementations must be thread-safe.</p>
+ */
+public interface TokenStore {
+
+    /**
+     * <p>Stores a newly issued token.</p>
+     *
+     * @param token
+     */
+    void store(OAuthToken token);
+
+    /**
+     * <p>Returns the token of the given type with the given value.</p>
+     *
+     * @param type
+     * @param value the value sent to the client
+     * @return the token, or null if it is unknown or expired
+     */
+    OAuthToken lookup(OAuthToken.Type type, String value);
+
+    /**
+     * <p>Removes and returns the token of the given type with the given value. Only one of the callers consuming the
+     * same token gets it, which is required for single use tokens like authorization codes.</p>
+     *
+     * @param type
+     * @param value the value sent to the client
+     * @return the token, or null if it is unknown, expired or was already consumed
+     */
+    OAuthToken consume(OAuthToken.Type type, String value);
+
+    /**
+     * <p>Returns the tokens issued to the given client.</p>
+     *
+     * @param clientId
+     * @return
+     */
+    List<OAuthToken> getTokensByClient(String clientId);
+
+    /**
+     * <p>Returns the tokens authorized by the given user.</p>
+     *
+     * @param userId
+     * @return
+     */
+    List<OAuthToken> getTokensByUser(String userId);
+
+    /**
+     * <p>Removes all the tokens issued to the given client. Signed access tokens are not kept in the store, they
+     * are revoked through the {@link TokenRevocationList} of their {@link JWTAccessTokenValidator}.</p>
+     *
+     * @param clientId
+     * @return the number of tokens removed
+     */
+    int revokeByClient(String clientId);
+
+    /**
+     * <p>Removes all the tokens authorized by the given user. Signed access tokens are not kept in the store, they
+     * are revoked through the {@link TokenRevocationList} of their {@link JWTAccessTokenValidator}.</p>
+     *
+     * @param userId
+     * @return the number of tokens removed
+     */
+    int revokeByUser(String userId);
+
+    /**
+     * <p>Removes the tokens that expired before the given time.</p>
+     *
+     * @param now the current time, in milliseconds
+     * @return the number of tokens removed
+     */
+    int removeExpired(long now);
+}
@@ -17,7 +17,20 @@
  */
 package org.picketlink.oauth.server.util;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
 import java.util.List;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -29,6 +42,7 @@ import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.PropertyNamingStrategy;
 import org.jboss.logging.Logger;
+import org.picketlink.common.util.UUIDUtil;
 import org.picketlink.idm.IdentityManager;
 import org.picketlink.idm.config.IdentityConfigurationBuilder;
 import org.picketlink.idm.credential.Password;
@@ -47,6 +61,7 @@ import org.picketlink.idm.jpa.model.sample.simple.RelationshipIdentityTypeEntity
 import org.picketlink.idm.jpa.model.sample.simple.RelationshipTypeEntity;
 import org.picketlink.idm.jpa.model.sample.simple.RoleTypeEntity;
 import org.picketlink.idm.jpa.model.sample.simple.X509CredentialTypeEntity;
+import org.picketlink.idm.model.Account;
 import org.picketlink.idm.model.Attribute;
 import org.picketlink.idm.model.AttributedType;
 import org.picketlink.idm.model.basic.Agent;
@@ -59,13 +74,23 @@ import org.picketlink.oauth.common.OAuthConstants;
 import org.picketlink.oauth.grants.AuthorizationCodeGrant;
 import org.picketlink.oauth.grants.ResourceOwnerPasswordCredentialsGrant;
 import org.picketlink.oauth.grants.ResourceOwnerPasswordCredentialsGrant.PasswordAccessTokenRequest;
+import org.picketlink.oauth.common.ValueGenerator;
 import org.picketlink.oauth.messages.AccessTokenRequest;
+import org.picketlink.oauth.messages.AccessTokenResponse;
 import org.picketlink.oauth.messages.AuthorizationRequest;
 import org.picketlink.oauth.messages.ErrorResponse;
 import org.picketlink.oauth.messages.ErrorResponse.ErrorResponseCode;
 import org.picketlink.oauth.messages.OAuthResponse;
+import org.picketlink.oauth.messages.RefreshTokenRequest;
 import org.picketlink.oauth.messages.RegistrationRequest;
 import org.picketlink.oauth.messages.ResourceAccessRequest;
+import org.picketlink.oauth.server.token.InMemoryTokenStore;
+import org.picketlink.oauth.server.token.JPATokenStore;
+import org.picketlink.oauth.server.token.JWTAccessTokenIssuer;
+import org.picketlink.oauth.server.token.JWTAccessTokenValidator;
+import org.picketlink.oauth.server.token.OAuthToken;
+import org.picketlink.oauth.server.token.TokenExpirationSweeper;
+import org.picketlink.oauth.server.token.TokenStore;
 
 /**
  * Utility
@@ -76,6 +101,54 @@ import org.picketlink.oauth.messages.ResourceAccessRequest;
 public class OAuthServerUtil {
     private static Logger log = Logger.getLogger(OAuthServerUtil.class);
 
+    /**
+     * Name of the context parameter selecting the {@link TokenStore}: <code>memory</code> (the default) or
+     * <code>jpa</code>, which uses the <code>picketlink-oauth-pu</code> persistence unit. That persistence unit is
+     * provided by the application and must list {@link org.picketlink.oauth.server.token.OAuthTokenEntity} next to
+     * the identity entities.
+     */
+    public static final String TOKEN_STORE_TYPE = "org.picketlink.oauth.TOKEN_STORE";
+
+    /**
+     * Name of the context parameter selecting the format of the access tokens: random values kept in the
+     * {@link TokenStore} (the default) or <code>jwt</code>, signed tokens validated without any store lookup.
+     */
+    public static final String ACCESS_TOKEN_FORMAT = "org.picketlink.oauth.ACCESS_TOKEN_FORMAT";
+
+    /**
+     * Names of the context parameters with the issuer and the audience of the <code>jwt</code> access tokens.
+     */
+    public static final String ACCESS_TOKEN_ISSUER = "org.picketlink.oauth.ACCESS_TOKEN_ISSUER";
+    public static final String ACCESS_TOKEN_AUDIENCE = "org.picketlink.oauth.ACCESS_TOKEN_AUDIENCE";
+
+    /**
+     * Names of the context parameters with the keystore holding the RSA key pair that signs the <code>jwt</code> access
+     * tokens. The keystore is looked up in the web application, then on the file system. Its type defaults to
+     * {@link KeyStore#getDefaultType()} and the password of the key defaults to the password of the keystore.
+     */
+    public static final String ACCESS_TOKEN_KEYSTORE = "org.picketlink.oauth.ACCESS_TOKEN_KEYSTORE";
+    public static final String ACCESS_TOKEN_KEYSTORE_TYPE = "org.picketlink.oauth.ACCESS_TOKEN_KEYSTORE_TYPE";
+    public static final String ACCESS_TOKEN_KEYSTORE_PASSWORD = "org.picketlink.oauth.ACCESS_TOKEN_KEYSTORE_PASSWORD";
+    public static final String ACCESS_TOKEN_KEY_ALIAS = "org.picketlink.oauth.ACCESS_TOKEN_KEY_ALIAS";
+    public static final String ACCESS_TOKEN_KEY_PASSWORD = "org.picketlink.oauth.ACCESS_TOKEN_KEY_PASSWORD";
+
+    /**
+     * Name of the context parameter with the URL of the JSON Web Key Set used to validate the <code>jwt</code> access
+     * tokens, for resource servers that do not issue them. Without it, the keys of the local issuer are used.
+     */
+    public static final String ACCESS_TOKEN_KEY_SET = "org.picketlink.oauth.ACCESS_TOKEN_KEY_SET";
+
+    private static final String DEFAULT_ACCESS_TOKEN_ISSUER = "picketlink-oauth";
+
+    /**
+     * Lifetime of the issued tokens, in seconds.
+     */
+    public static final long AUTHORIZATION_CODE_EXPIRY = 600L;
+    public static final long ACCESS_TOKEN_EXPIRY = 3600L;
+    public static final long REFRESH_TOKEN_EXPIRY = 14 * 24 * 3600L;
+
+    private static final long TOKEN_SWEEP_INTERVAL = 300L;
+
     private static EntityManagerFactory entityManagerFactory;
     private static ThreadLocal<EntityManager> entityManagerThreadLocal = new ThreadLocal<EntityManager>();
 
@@ -141,14 +214,270 @@ public class OAuthServerUtil {
         return identityManager;
     }
 
+    /**
+     * Centralize the token store setup. Expired tokens are swept from the store in the background until
+     * {@link #releaseTokenStore(ServletContext)} is called.
+     *
+     * @param context
+     * @return
+     */
+    public static TokenStore handleTokenStore(ServletContext context) {
+        if (context == null) {
+            throw new IllegalArgumentException("context is null");
+        }
+
+        TokenStore tokenStore = (TokenStore) context.getAttribute("tokenStore");
+
+        if (tokenStore == null) {
+            tokenStore = createTokenStore(context);
+        }
+
+        return tokenStore;
+    }
+
+    private static synchronized TokenStore createTokenStore(ServletContext context) {
+        TokenStore tokenStore = (TokenStore) context.getAttribute("tokenStore");
+
+        if (tokenStore == null) {
+            if ("jpa".equals(context.getInitParameter(TOKEN_STORE_TYPE))) {
+                if (entityManagerFactory == null) {
+                    entityManagerFactory = Persistence.createEntityManagerFactory("picketlink-oauth-pu");
+                }
+
+                tokenStore = new JPATokenStore(entityManagerFactory);
+            } else {
+                tokenStore = new InMemoryTokenStore();
+            }
+
+            TokenExpirationSweeper sweeper = new TokenExpirationSweeper(tokenStore, TOKEN_SWEEP_INTERVAL);
+
+            sweeper.start();
+
+            context.setAttribute("tokenStore", tokenStore);
+            context.setAttribute("tokenExpirationSweeper", sweeper);
+        }
+
+        return tokenStore;
+    }
+
+    /**
+     * Stop sweeping the token store created by {@link #handleTokenStore(ServletContext)}
+     *
+     * @param context
+     */
+    public static synchronized void releaseTokenStore(ServletContext context) {
+        TokenExpirationSweeper sweeper = (TokenExpirationSweeper) context.getAttribute("tokenExpirationSweeper");
+
+        if (sweeper != null) {
+            sweeper.stop();
+            context.removeAttribute("tokenExpirationSweeper");
+        }
+    }
+
+    /**
+     * Centralize the setup of the signed access tokens. An issuer can be provided by the application as the
+     * <code>accessTokenIssuer</code> context attribute, otherwise one is created with the key pair of the
+     * {@link #ACCESS_TOKEN_KEYSTORE}. If no keystore is configured, a new key pair is generated: the tokens are then
+     * rejected by the other nodes of a cluster and after a restart.
+     *
+     * @param context
+     * @return the issuer, or null if the access tokens are not signed
+     */
+    public static JWTAccessTokenIssuer handleAccessTokenIssuer(ServletContext context) {
+        JWTAccessTokenIssuer issuer = (JWTAccessTokenIssuer) context.getAttribute("accessTokenIssuer");
+
+        if (issuer == null && "jwt".equals(context.getInitParameter(ACCESS_TOKEN_FORMAT))) {
+            issuer = createAccessTokenIssuer(context);
+        }
+
+        return issuer;
+    }
+
+    /**
+     * Centralize the validation of the signed access tokens. A validator can be provided by the application as the
+     * <code>accessTokenValidator</code> context attribute, otherwise one is created with the keys read from the
+     * {@link #ACCESS_TOKEN_KEY_SET} URL, or with the keys of the local issuer.
+     *
+     * @param context
+     * @return the validator, or null if the access tokens are not signed
+     */
+    public static JWTAccessTokenValidator handleAccessTokenValidator(ServletContext context) {
+        JWTAccessTokenValidator validator = (JWTAccessTokenValidator) context.getAttribute("accessTokenValidator");
+
+        if (validator == null && (context.getInitParameter(ACCESS_TOKEN_KEY_SET) != null
+                || "jwt".equals(context.getInitParameter(ACCESS_TOKEN_FORMAT)))) {
+            validator = createAccessTokenValidator(context);
+        }
+
+        return validator;
+    }
+
+    /**
+     * Revoke all the tokens authorized by the given user: the tokens kept in the token store and the signed access
+     * tokens accepted by the validator of the context
+     *
+     * @param context
+     * @param userId
+     * @return the number of tokens removed from the token store
+     */
+    public static int revokeTokensByUser(ServletContext context, String userId) {
+        JWTAccessTokenValidator validator = handleAccessTokenValidator(context);
+
+        if (validator != null) {
+            validator.getRevocationList().revokeByUser(userId);
+        }
+
+        return handleTokenStore(context).revokeByUser(userId);
+    }
+
+    /**
+     * Revoke all the tokens issued to the given client: the tokens kept in the token store and the signed access
+     * tokens accepted by the validator of the context
+     *
+     * @param context
+     * @param clientId
+     * @return the number of tokens removed from the token store
+     */
+    public static int revokeTokensByClient(ServletContext context, String clientId) {
+        JWTAccessTokenValidator validator = handleAccessTokenValidator(context);
+
+        if (validator != null) {
+            validator.getRevocationList().revokeByClient(clientId);
+        }
+
+        return handleTokenStore(context).revokeByClient(clientId);
+    }
+
+    private static synchronized JWTAccessTokenIssuer createAccessTokenIssuer(ServletContext context) {
+        JWTAccessTokenIssuer issuer = (JWTAccessTokenIssuer) context.getAttribute("accessTokenIssuer");
+
+        if (issuer == null) {
+            String keyId = context.getInitParameter(ACCESS_TOKEN_KEY_ALIAS);
+            KeyPair keyPair;
+
+            if (context.getInitParameter(ACCESS_TOKEN_KEYSTORE) != null) {
+                keyPair = loadAccessTokenKeyPair(context);
+            } else {
+                log.warn("No " + ACCESS_TOKEN_KEYSTORE + " configured, signing the access tokens with a generated key "
+                        + "pair. They will not be accepted by other nodes or after a restart.");
+
+                try {
+                    KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+                    keyPairGenerator.initialize(2048);
+                    keyPair = keyPairGenerator.generateKeyPair();
+                } catch (NoSuchAlgorithmException e) {
+                    throw new RuntimeException(e);
+                }
+
+                keyId = UUIDUtil.randomUUID();
+            }
+
+            issuer = new JWTAccessTokenIssuer(keyPair, keyId, getAccessTokenIssuerName(context),
+                    getAccessTokenAudience(context));
+
+            context.setAttribute("accessTokenIssuer", issuer);
+        }
+
+        return issuer;
+    }
+
+    private static synchronized JWTAccessTokenValidator createAccessTokenValidator(ServletContext context) {
+        JWTAccessTokenValidator validator = (JWTAccessTokenValidator) context.getAttribute("accessTokenValidator");
+
+        if (validator == null) {
+            String keySetLocation = context.getInitParameter(ACCESS_TOKEN_KEY_SET);
+
+            if (keySetLocation != null) {
+                try {
+                    validator = new JWTAccessTokenValidator(new URL(keySetLocation), getAccessTokenIssuerName(context),
+                            getAccessTokenAudience(context));
+                } catch (MalformedURLException e) {
+                    throw new RuntimeException("Invalid " + ACCESS_TOKEN_KEY_SET + ": " + keySetLocation, e);
+                }
+            } else {
+                JWTAccessTokenIssuer issuer = handleAccessTokenIssuer(context);
+
+                validator = new JWTAccessTokenValidator(issuer.getKeySet(), issuer.getIssuer(), issuer.getAudience());
+            }
+
+            context.setAttribute("accessTokenValidator", validator);
+        }
+
+        return validator;
+    }
+
+    private static KeyPair loadAccessTokenKeyPair(ServletContext context) {
+        String location = context.getInitParameter(ACCESS_TOKEN_KEYSTORE);
+        String type = context.getInitParameter(ACCESS_TOKEN_KEYSTORE_TYPE);
+        String password = context.getInitParameter(ACCESS_TOKEN_KEYSTORE_PASSWORD);
+        String alias = context.getInitParameter(ACCESS_TOKEN_KEY_ALIAS);
+        String keyPassword = context.getInitParameter(ACCESS_TOKEN_KEY_PASSWORD);
+
+        if (alias == null) {
+            throw new RuntimeException(ACCESS_TOKEN_KEY_ALIAS + " is required with " + ACCESS_TOKEN_KEYSTORE);
+        }
+
+        if (keyPassword == null) {
+            keyPassword = password;
+        }
+
+        InputStream input = null;
+
+        try {
+            input = context.getResourceAsStream(location);
+
+            if (input == null) {
+                input = new FileInputStream(new File(location));
+            }
+
+            KeyStore keyStore = KeyStore.getInstance(type != null ? type : KeyStore.getDefaultType());
+
+            keyStore.load(input, password != null ? password.toCharArray() : null);
+
+            Key key = keyStore.getKey(alias, keyPassword != null ? keyPassword.toCharArray() : null);
+            Certificate certificate = keyStore.getCertificate(alias);
+
+            if (!(key instanceof PrivateKey) || certificate == null) {
+                throw new RuntimeException("No key pair with alias " + alias + " in " + location);
+            }
+
+            return new KeyPair(certificate.getPublicKey(), (PrivateKey) key);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read the keystore " + location, e);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Could not load the key pair " + alias + " from " + location, e);
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    private static String getAccessTokenIssuerName(ServletContext context) {
+        String issuerName = context.getInitParameter(ACCESS_TOKEN_ISSUER);
+
+        return issuerName != null ? issuerName : DEFAULT_ACCESS_TOKEN_ISSUER;
+    }
+
+    private static String getAccessTokenAudience(ServletContext context) {
+        String audience = context.getInitParameter(ACCESS_TOKEN_AUDIENCE);
+
+        return audience != null ? audience : getAccessTokenIssuerName(context);
+    }
+
     /**
      * Handle an Authorization Code Grant Type Request
      *
      * @param request
      * @param identityManager
+     * @param tokenStore
      * @return
      */
-    public static OAuthResponse authorizationCodeRequest(HttpServletRequest request, IdentityManager identityManager) {
+    public static OAuthResponse authorizationCodeRequest(HttpServletRequest request, IdentityManager identityManager,
+            TokenStore tokenStore) {
 
         AuthorizationCodeGrant grant = new AuthorizationCodeGrant();
 
@@ -220,8 +549,9 @@ public class OAuthServerUtil {
             String authorizationCode = grant.getValueGenerator().value();
             grant.setAuthorizationCode(authorizationCode);
 
-            clientApp.setAttribute(new Attribute<String>("authorizationCode", authorizationCode));
-            identityManager.update(clientApp);
+            // the resource owner, authenticated by the container protecting the authorization endpoint
+            tokenStore.store(OAuthToken.create(OAuthToken.Type.AUTHORIZATION_CODE, authorizationCode, clientID,
+                    request.getRemoteUser(), authorizationRequest.getScope(), AUTHORIZATION_CODE_EXPIRY));
 
             oauthResponse = grant.authorizationResponse();
             oauthResponse.setStatusCode(HttpServletResponse.SC_FOUND);
@@ -245,19 +575,35 @@ public class OAuthServerUtil {
      *
      * @param request
      * @param identityManager
+     * @param tokenStore
      * @return
      */
-    public static OAuthResponse tokenRequest(HttpServletRequest request, IdentityManager identityManager) {
+    public static OAuthResponse tokenRequest(HttpServletRequest request, IdentityManager identityManager,
+            TokenStore tokenStore) {
+        return tokenRequest(request, identityManager, tokenStore, null);
+    }
+
+    /**
+     * Handle Token Request
+     *
+     * @param request
+     * @param identityManager
+     * @param tokenStore
+     * @param accessTokenIssuer the issuer of signed access tokens, or null to issue access tokens kept in the store
+     * @return
+     */
+    public static OAuthResponse tokenRequest(HttpServletRequest request, IdentityManager identityManager,
+            TokenStore tokenStore, JWTAccessTokenIssuer accessTokenIssuer) {
         String grantType = request.getParameter(OAuthConstants.GRANT_TYPE);
         // Authorization Code Grant
         if (grantType.equals(AuthorizationCodeGrant.GRANT_TYPE)) {
-            return authorizationCodeGrantTypeTokenRequest(request, identityManager);
+            return authorizationCodeGrantTypeTokenRequest(request, identityManager, tokenStore, accessTokenIssuer);
         }
         if (grantType.equals(OAuthConstants.PASSWORD)) {
-            return passwordGrantTypeTokenRequest(request, identityManager);
+            return passwordGrantTypeTokenRequest(request, identityManager, tokenStore, accessTokenIssuer);
         }
         if (grantType.equals(OAuthConstants.REFRESH_TOKEN)) {
-            return refreshTokenRequest(request);
+            return refreshTokenRequest(request, identityManager, tokenStore, accessTokenIssuer);
         }
         return null;
     }
@@ -266,20 +612,56 @@ public class OAuthServerUtil {
      * Validate the access token
      *
      * @param passedAccessToken
-     * @param identityManager
+     * @param tokenStore
      * @return
      */
-    public static boolean validateAccessToken(String passedAccessToken, IdentityManager identityManager) {
-        IdentityQuery<Agent> agentQuery = identityManager.createIdentityQuery(Agent.class);
-        agentQuery.setParameter(AttributedType.QUERY_ATTRIBUTE.byName("accessToken"), passedAccessToken);
+    public static boolean validateAccessToken(String passedAccessToken, TokenStore tokenStore) {
+        return getAccessToken(passedAccessToken, tokenStore) != null;
+    }
 
-        List<Agent> agents = agentQuery.getResultList();
-        int size = agents.size();
+    /**
+     * Validate the access token, signed access tokens are validated without any store lookup
+     *
+     * @param passedAccessToken
+     * @param tokenStore
+     * @param accessTokenValidator the validator of signed access tokens, or null
+     * @return
+     */
+    public static boolean validateAccessToken(String passedAccessToken, TokenStore tokenStore,
+            JWTAccessTokenValidator accessTokenValidator) {
+        return getAccessToken(passedAccessToken, tokenStore, accessTokenValidator) != null;
+    }
 
-        if (size == 0 || size != 1) {
-            return false;
+    /**
+     * Get the access token with the given value
+     *
+     * @param passedAccessToken
+     * @param tokenStore
+     * @return the token, or null if the token is unknown or expired
+     */
+    public static OAuthToken getAccessToken(String passedAccessToken, TokenStore tokenStore) {
+        return getAccessToken(passedAccessToken, tokenStore, null);
+    }
+
+    /**
+     * Get the access token with the given value, signed access tokens are validated without any store lookup
+     *
+     * @param passedAccessToken
+     * @param tokenStore
+     * @param accessTokenValidator the validator of signed access tokens, or null
+     * @return the token, or null if the token is unknown, invalid or expired
+     */
+    public static OAuthToken getAccessToken(String passedAccessToken, TokenStore tokenStore,
+            JWTAccessTokenValidator accessTokenValidator) {
+        if (passedAccessToken == null) {
+            return null;
         }
-        return true;
+
+        if (accessTokenValidator != null && JWTAccessTokenValidator.isJWT(passedAccessToken)) {
+            return accessTokenValidator.validate(passedAccessToken);
+        }
+
+        return tokenStore.lookup(OAuthToken.Type.ACCESS_TOKEN, passedAccessToken);
     }
 
     /**
@@ -334,19 +716,55 @@ public class OAuthServerUtil {
     // Private Methods
 
     /**
-     * Refresh Token Request
+     * Refresh Token Request. The refresh token is single use, a new one is issued with the access token.
      *
      * @param request
      * @param identityManager
+     * @param tokenStore
+     * @param accessTokenIssuer
      * @return
      */
-    private static OAuthResponse refreshTokenRequest(HttpServletRequest request) {
+    private static OAuthResponse refreshTokenRequest(HttpServletRequest request, IdentityManager identityManager,
+            TokenStore tokenStore, JWTAccessTokenIssuer accessTokenIssuer) {
+        RefreshTokenRequest refreshTokenRequest = parseRefreshTokenRequest(request);
 
-        ErrorResponse errorResponse = new ErrorResponse();
-        errorResponse.setErrorDescription("refresh_token not supported").setError(ErrorResponseCode.invalid_client)
-                .setStatusCode(HttpServletResponse.SC_BAD_REQUEST);
+        String passedClientID = request.getParameter(OAuthConstants.CLIENT_ID);
+        ErrorResponse clientError = checkClient(identityManager, passedClientID);
 
-        return errorResponse;
+        if (clientError != null) {
+            return clientError;
+        }
+
+        // the token is only consumed by the client it was issued to
+        String value = refreshTokenRequest.getRefreshToken();
+        OAuthToken refreshToken = null;
+
+        if (value != null) {
+            refreshToken = tokenStore.lookup(OAuthToken.Type.REFRESH_TOKEN, value);
+
+            if (refreshToken != null && passedClientID.equals(refreshToken.getClientId())) {
+                refreshToken = tokenStore.consume(OAuthToken.Type.REFRESH_TOKEN, value);
+            } else {
+                refreshToken = null;
+            }
+        }
+
+        if (refreshToken == null) {
+            log.error("refresh_token not found");
+
+            ErrorResponse errorResponse = new ErrorResponse();
+            errorResponse.setErrorDescription("refresh_token not found").setError(ErrorResponseCode.invalid_grant)
+                    .setStatusCode(HttpServletResponse.SC_BAD_REQUEST);
+
+            return errorResponse;
+        }
+
+        OAuthResponse oauthResponse = issueTokens(tokenStore, accessTokenIssuer,
+                new AuthorizationCodeGrant().getValueGenerator(), refreshToken.getClientId(), refreshToken.getUserId(),
+                refreshToken.getScope());
+        oauthResponse.setStatusCode(HttpServletResponse.SC_OK);
+
+        return oauthResponse;
     }
 
     /**
@@ -356,7 +774,8 @@ public class OAuthServerUtil {
      * @param identityManager
      * @return
      */
-    private static OAuthResponse passwordGrantTypeTokenRequest(HttpServletRequest request, IdentityManager identityManager) {
+    private static OAuthResponse passwordGrantTypeTokenRequest(HttpServletRequest request, IdentityManager identityManager,
+            TokenStore tokenStore, JWTAccessTokenIssuer accessTokenIssuer) {
 
         OAuthResponse oauthResponse = null;
 
@@ -366,23 +785,34 @@ public class OAuthServerUtil {
         grant.setAccessTokenRequest(accessTokenRequest);
 
         String passedClientID = accessTokenRequest.getClientId();
-        if (passedClientID == null) {
+        ErrorResponse clientError = checkClient(identityManager, passedClientID);
 
-            ErrorResponse errorResponse = new ErrorResponse();
-            errorResponse.setErrorDescription("client_id is null").setError(ErrorResponseCode.invalid_client)
-                    .setStatusCode(HttpServletResponse.SC_BAD_REQUEST);
-
-            return errorResponse;
+        if (clientError != null) {
+            return clientError;
         }
+
         String username = accessTokenRequest.getUsername();
         String password = accessTokenRequest.getPassword();
 
-        UsernamePasswordCredentials usernamePasswordCredentials = new UsernamePasswordCredentials();
-        usernamePasswordCredentials.setUsername(username);
-        usernamePasswordCredentials.setPassword(new Password(password.toCharArray()));
-        try {
-            identityManager.validateCredentials(usernamePasswordCredentials);
-        } catch (Exception e) {
+        Account account = null;
+
+        if (username != null && password != null) {
+            UsernamePasswordCredentials usernamePasswordCredentials = new UsernamePasswordCredentials();
+            usernamePasswordCredentials.setUsername(username);
+            usernamePasswordCredentials.setPassword(new Password(password.toCharArray()));
+
+            try {
+                identityManager.validateCredentials(usernamePasswordCredentials);
+
+                if (usernamePasswordCredentials.getStatus() == UsernamePasswordCredentials.Status.VALID) {
+                    account = usernamePasswordCredentials.getValidatedAccount();
+                }
+            } catch (Exception e) {
+                log.warn("Could not validate the credentials of " + username + ": " + e.getMessage());
+            }
+        }
+
+        if (account == null) {
 
             ErrorResponse errorResponse = new ErrorResponse();
             errorResponse.setErrorDescription("invalid username or password").setError(ErrorResponseCode.invalid_grant)
@@ -391,6 +821,10 @@ public class OAuthServerUtil {
             return errorResponse;
         }
 
+        oauthResponse = issueTokens(tokenStore, accessTokenIssuer, new AuthorizationCodeGrant().getValueGenerator(),
+                passedClientID, account.getId(), null);
+        oauthResponse.setStatusCode(HttpServletResponse.SC_OK);
+
         return oauthResponse;
     }
 
@@ -402,7 +836,7 @@ public class OAuthServerUtil {
      * @return
      */
     private static OAuthResponse authorizationCodeGrantTypeTokenRequest(HttpServletRequest request,
-            IdentityManager identityManager) {
+            IdentityManager identityManager, TokenStore tokenStore, JWTAccessTokenIssuer accessTokenIssuer) {
         OAuthResponse oauthResponse = null;
 
         AuthorizationCodeGrant grant = new AuthorizationCodeGrant();
@@ -411,88 +845,135 @@ public class OAuthServerUtil {
         grant.setAccessTokenRequest(accessTokenRequest);
 
         String passedClientID = accessTokenRequest.getClientId();
-        if (passedClientID == null) {
+        ErrorResponse clientError = checkClient(identityManager, passedClientID);
+
+        if (clientError != null) {
+            return clientError;
+        }
+
+        Agent clientApp = findClients(identityManager, passedClientID).get(0);
+
+        // Get the values from DB
+        Attribute<String> clientIDAttr = clientApp.getAttribute("clientID");
+        String clientID = clientIDAttr.getValue();
+        if (accessTokenRequest.getCode() == null) {
+            log.error("authorization code is null");
 
             ErrorResponse errorResponse = new ErrorResponse();
-            errorResponse.setErrorDescription("client_id is null").setError(ErrorResponseCode.invalid_client)
+            errorResponse.setErrorDescription("authorization code null").setError(ErrorResponseCode.invalid_client)
                     .setStatusCode(HttpServletResponse.SC_BAD_REQUEST);
 
             return errorResponse;
         }
 
-        IdentityQuery<Agent> agentQuery = identityManager.createIdentityQuery(Agent.class);
-        agentQuery.setParameter(AttributedType.QUERY_ATTRIBUTE.byName("clientID"), passedClientID);
+        // check if clientid is valid
+        if (!clientID.equals(passedClientID)) {
 
-        List<Agent> agents = agentQuery.getResultList();
-        if (agents.size() == 0) {
-            log.error(passedClientID + " not found");
+            log.error("client_id does not match");
 
             ErrorResponse errorResponse = new ErrorResponse();
-            errorResponse.setErrorDescription("passed client_id not found").setError(ErrorResponseCode.invalid_client)
+            errorResponse.setErrorDescription("client_id does not match").setError(ErrorResponseCode.invalid_client)
                     .setStatusCode(HttpServletResponse.SC_BAD_REQUEST);
-
             return errorResponse;
         }
-        if (agents.size() > 1) {
-            log.error(passedClientID + " multiple found");
 
-            ErrorResponse errorResponse = new ErrorResponse();
-            errorResponse.setErrorDescription("passed client_id multiple found").setError(ErrorResponseCode.invalid_client)
-                    .setStatusCode(HttpServletResponse.SC_BAD_REQUEST);
+        // the code is only consumed by the client it was issued to, authorization codes are single use
+        String code = accessTokenRequest.getCode();
+        OAuthToken authorizationCode = tokenStore.lookup(OAuthToken.Type.AUTHORIZATION_CODE, code);
+
+        if (authorizationCode != null && clientID.equals(authorizationCode.getClientId())) {
+            authorizationCode = tokenStore.consume(OAuthToken.Type.AUTHORIZATION_CODE, code);
+        } else {
+            authorizationCode = null;
+        }
 
+        if (authorizationCode == null) {
+
+            log.error("authorization_code does not match");
+
+            ErrorResponse errorResponse = new ErrorResponse();
+            errorResponse.setErrorDescription("authorization_code does not match")
+                    .setError(ErrorResponseCode.invalid_grant).setStatusCode(HttpServletResponse.SC_BAD_REQUEST);
             return errorResponse;
         }
 
-        Agent clientApp = agents.get(0);
+        oauthResponse = issueTokens(tokenStore, accessTokenIssuer, grant.getValueGenerator(), clientID,
+                authorizationCode.getUserId(), authorizationCode.getScope());
+        oauthResponse.setStatusCode(HttpServletResponse.SC_FOUND);
 
-        // Get the values from DB
-        Attribute<String> clientIDAttr = clientApp.getAttribute("clientID");
-        String clientID = clientIDAttr.getValue();
-        Attribute<String> authorizationCodeAttr = clientApp.getAttribute("authorizationCode");
-        if (authorizationCodeAttr == null) {
-            log.error("authorization code is null");
+        return oauthResponse;
+    }
+
+    /**
+     * Check that the given client id identifies exactly one registered client
+     *
+     * @param identityManager
+     * @param passedClientID
+     * @return the error to send back, or null if the client is known
+     */
+    private static ErrorResponse checkClient(IdentityManager identityManager, String passedClientID) {
+        if (passedClientID == null) {
 
             ErrorResponse errorResponse = new ErrorResponse();
-            errorResponse.setErrorDescription("authorization code null").setError(ErrorResponseCode.invalid_client)
+            errorResponse.setErrorDescription("client_id is null").setError(ErrorResponseCode.invalid_client)
                     .setStatusCode(HttpServletResponse.SC_BAD_REQUEST);
 
             return errorResponse;
         }
-        String authorizationCode = authorizationCodeAttr.getValue();
 
-        // check if clientid is valid
-        if (!clientID.equals(passedClientID)) {
+        List<Agent> agents = findClients(identityManager, passedClientID);
+        if (agents.size() == 0) {
+            log.error(passedClientID + " not found");
 
-            log.error("client_id does not match");
+            ErrorResponse errorResponse = new ErrorResponse();
+            errorResponse.setErrorDescription("passed client_id not found").setError(ErrorResponseCode.invalid_client)
+                    .setStatusCode(HttpServletResponse.SC_BAD_REQUEST);
+
+            return errorResponse;
+        }
+        if (agents.size() > 1) {
+            log.error(passedClientID + " multiple found");
 
             ErrorResponse errorResponse = new ErrorResponse();
-            errorResponse.setErrorDescription("client_id does not match").setError(ErrorResponseCode.invalid_client)
+            errorResponse.setErrorDescription("passed client_id multiple found").setError(ErrorResponseCode.invalid_client)
                     .setStatusCode(HttpServletResponse.SC_BAD_REQUEST);
+
             return errorResponse;
         }
 
-        if (accessTokenRequest.getGrantType().equals(AuthorizationCodeGrant.GRANT_TYPE)) {
-            if (!authorizationCode.equals(accessTokenRequest.getCode())) {
+        return null;
+    }
 
-                log.error("authorization_code does not match");
+    private static List<Agent> findClients(IdentityManager identityManager, String passedClientID) {
+        IdentityQuery<Agent> agentQuery = identityManager.createIdentityQuery(Agent.class);
+        agentQuery.setParameter(AttributedType.QUERY_ATTRIBUTE.byName("clientID"), passedClientID);
 
-                ErrorResponse errorResponse = new ErrorResponse();
-                errorResponse.setErrorDescription("authorization_code does not match")
-                        .setError(ErrorResponseCode.invalid_grant).setStatusCode(HttpServletResponse.SC_BAD_REQUEST);
-                return errorResponse;
-            }
-        }
+        return agentQuery.getResultList();
+    }
 
-        String accessToken = grant.getValueGenerator().value();
-        clientApp.setAttribute(new Attribute<String>("accessToken", accessToken));
-        identityManager.update(clientApp);
+    /**
+     * Issue a new access token and refresh token. Signed access tokens are not stored, refresh tokens always are.
+     */
+    private static AccessTokenResponse issueTokens(TokenStore tokenStore, JWTAccessTokenIssuer accessTokenIssuer,
+            ValueGenerator valueGenerator, String clientID, String userID, String scope) {
+        String accessToken;
+
+        if (accessTokenIssuer != null) {
+            accessToken = accessTokenIssuer.issue(clientID, userID, scope, ACCESS_TOKEN_EXPIRY);
+        } else {
+            accessToken = valueGenerator.value();
+            tokenStore.store(OAuthToken.create(OAuthToken.Type.ACCESS_TOKEN, accessToken, clientID, userID, scope,
+                    ACCESS_TOKEN_EXPIRY));
+        }
 
-        grant.setAccessToken(accessToken);
+        String refreshToken = valueGenerator.value();
+        tokenStore.store(OAuthToken.create(OAuthToken.Type.REFRESH_TOKEN, refreshToken, clientID, userID, scope,
+                REFRESH_TOKEN_EXPIRY));
 
-        oauthResponse = grant.accessTokenResponse();
-        oauthResponse.setStatusCode(HttpServletResponse.SC_FOUND);
+        AccessTokenResponse response = new AccessTokenResponse();
+        response.setAccessToken(accessToken).setRefreshToken(refreshToken).setScope(scope).setExpires(ACCESS_TOKEN_EXPIRY);
 
-        return oauthResponse;
+        return response;
     }
 
     private static AuthorizationRequest parseAuthorizationRequest(HttpServletRequest request) {
@@ -500,7 +981,8 @@ public class OAuthServerUtil {
 
         authorizationRequest.setClientId(request.getParameter(OAuthConstants.CLIENT_ID))
                 .setRedirectUri(request.getParameter(OAuthConstants.REDIRECT_URI))
-                .setResponseType(request.getParameter(OAuthConstants.RESPONSE_TYPE));
+                .setResponseType(request.getParameter(OAuthConstants.RESPONSE_TYPE))
+                .setScope(request.getParameter(OAuthConstants.SCOPE));
 
         return authorizationRequest;
     }
@@ -516,6 +998,14 @@ public class OAuthServerUtil {
         return accessTokenRequest;
     }
 
+    private static RefreshTokenRequest parseRefreshTokenRequest(HttpServletRequest request) {
+        RefreshTokenRequest refreshTokenRequest = new RefreshTokenRequest();
+        refreshTokenRequest.setRefreshToken(request.getParameter(OAuthConstants.REFRESH_TOKEN))
+                .setGrantType(request.getParameter(OAuthConstants.GRANT_TYPE))
+                .setScope(request.getParameter(OAuthConstants.SCOPE));
+        return refreshTokenRequest;
+    }
+
     private static PasswordAccessTokenRequest parsePasswordAccessTokenRequest(HttpServletRequest request) {
         ResourceOwnerPasswordCredentialsGrant grant = new ResourceOwnerPasswordCredentialsGrant();
         PasswordAccessTokenRequest accessTokenRequest = grant.new PasswordAccessTokenRequest();
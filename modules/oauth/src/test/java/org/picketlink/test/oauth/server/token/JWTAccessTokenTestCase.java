@@ -0,0 +1,181 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.oauth.server.token;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.picketlink.json.jose.JWSBuilder;
+import org.picketlink.oauth.server.token.JWTAccessTokenIssuer;
+import org.picketlink.oauth.server.token.JWTAccessTokenValidator;
+import org.picketlink.oauth.server.token.OAuthToken;
+import org.picketlink.oauth.server.token.TokenRevocationList;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test the signed access tokens issued by {@link JWTAccessTokenIssuer}
+ */
+public class JWTAccessTokenTestCase {
+
+    private static KeyPair keyPair;
+
+    @BeforeClass
+    public static void onBeforeClass() throws Exception {
+        keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+    }
+
+    @Test
+    public void testValidToken() {
+        JWTAccessTokenIssuer issuer = new JWTAccessTokenIssuer(keyPair, "1", "issuer", "resources");
+        JWTAccessTokenValidator validator = createValidator(issuer, "resources");
+
+        String value = issuer.issue("client", "user", "read", 60);
+
+        assertTrue(JWTAccessTokenValidator.isJWT(value));
+
+        OAuthToken token = validator.validate(value);
+
+        assertNotNull(token);
+        assertEquals(OAuthToken.Type.ACCESS_TOKEN, token.getType());
+        assertEquals("client", token.getClientId());
+        assertEquals("user", token.getUserId());
+        assertEquals("read", token.getScope());
+
+        OAuthToken clientToken = validator.validate(issuer.issue("client", null, null, 60));
+
+        assertNotNull(clientToken);
+        assertNull(clientToken.getUserId());
+    }
+
+    @Test
+    public void testInvalidToken() throws Exception {
+        JWTAccessTokenIssuer issuer = new JWTAccessTokenIssuer(keyPair, "1", "issuer", "resources");
+        JWTAccessTokenValidator validator = createValidator(issuer, "resources");
+
+        String value = issuer.issue("client", "user", "read", 60);
+
+        // tampered signature
+        assertNull(validator.validate(value.substring(0, value.length() - 4) + "AAAA"));
+
+        // unsigned token
+        assertNull(validator.validate(new JWSBuilder().kid("1").issuer("issuer").audience("resources")
+            .expiration(Integer.MAX_VALUE).build().encode()));
+
+        // signed by another key with the same identifier
+        KeyPair otherKeyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        JWTAccessTokenIssuer otherIssuer = new JWTAccessTokenIssuer(otherKeyPair, "1", "issuer", "resources");
+
+        assertNull(validator.validate(otherIssuer.issue("client", "user", "read", 60)));
+
+        // wrong audience
+        assertNull(createValidator(issuer, "other").validate(value));
+
+        // expired
+        assertNull(validator.validate(issuer.issue("client", "user", "read", -10)));
+
+        assertNull(validator.validate("not.a.token"));
+    }
+
+    @Test
+    public void testRevokedToken() {
+        JWTAccessTokenIssuer issuer = new JWTAccessTokenIssuer(keyPair, "1", "issuer", "resources");
+        JWTAccessTokenValidator validator = createValidator(issuer, "resources");
+
+        String revoked = issuer.issue("client", "user", "read", 60);
+        String other = issuer.issue("client", "user", "read", 60);
+
+        assertTrue(validator.revoke(revoked));
+        assertNull(validator.validate(revoked));
+        assertNotNull(validator.validate(other));
+
+        // all the tokens of a user or a client
+        String otherUser = issuer.issue("client", "other", "read", 60);
+        String otherClient = issuer.issue("other", "other", "read", 60);
+
+        validator.getRevocationList().revokeByUser("user");
+
+        assertNull(validator.validate(other));
+        assertNotNull(validator.validate(otherUser));
+
+        validator.getRevocationList().revokeByClient("client");
+
+        assertNull(validator.validate(otherUser));
+        assertNotNull(validator.validate(otherClient));
+
+        // tokens outliving a revocation are not accepted
+        assertNull(validator.validate(issuer.issue("other", "other", "read", 2 * 3600)));
+    }
+
+    @Test
+    public void testRevocationListExpiration() {
+        TokenRevocationList revocationList = new TokenRevocationList(60 * 1000L);
+        long now = System.currentTimeMillis();
+
+        revocationList.revoke("expired", now - 1);
+        revocationList.revoke("token", now + 30 * 1000L);
+        revocationList.revokeByUser("user");
+
+        assertEquals(2, revocationList.size());
+        assertEquals(1, revocationList.removeExpired(now + 45 * 1000L));
+        assertEquals(1, revocationList.removeExpired(now + 90 * 1000L));
+        assertEquals(0, revocationList.size());
+    }
+
+    @Test
+    public void testKeySetLocation() throws Exception {
+        JWTAccessTokenIssuer issuer = new JWTAccessTokenIssuer(keyPair, "1", "issuer", "resources");
+        File keySetFile = File.createTempFile("jwks", ".json");
+
+        keySetFile.deleteOnExit();
+
+        FileOutputStream output = new FileOutputStream(keySetFile);
+
+        try {
+            output.write(issuer.getKeySet().toString().getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+
+        JWTAccessTokenValidator validator = new JWTAccessTokenValidator(keySetFile.toURI().toURL(), "issuer",
+            "resources");
+
+        assertNotNull(validator.validate(issuer.issue("client", "user", "read", 60)));
+
+        // the key set is kept, unknown keys are not read again right away
+        assertTrue(keySetFile.delete());
+        assertNotNull(validator.validate(issuer.issue("client", "user", "read", 60)));
+
+        JWTAccessTokenIssuer otherIssuer = new JWTAccessTokenIssuer(KeyPairGenerator.getInstance("RSA")
+            .generateKeyPair(), "2", "issuer", "resources");
+
+        assertNull(validator.validate(otherIssuer.issue("client", "user", "read", 60)));
+        assertNotNull(validator.validate(issuer.issue("client", "user", "read", 60)));
+    }
+
+    private JWTAccessTokenValidator createValidator(JWTAccessTokenIssuer issuer, String audience) {
+        return new JWTAccessTokenValidator(issuer.getKeySet(), issuer.getIssuer(), audience);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.oauth.server.token;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.picketlink.oauth.server.token.InMemoryTokenStore;
+import org.picketlink.oauth.server.token.JPATokenStore;
+import org.picketlink.oauth.server.token.OAuthToken;
+import org.picketlink.oauth.server.token.TokenStore;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test the {@link TokenStore} implementations
+ */
+public class TokenStoreTestCase {
+
+    private static EntityManagerFactory entityManagerFactory;
+
+    @BeforeClass
+    public static void onBeforeClass() {
+        entityManagerFactory = Persistence.createEntityManagerFactory("picketlink-oauth-pu");
+    }
+
+    @AfterClass
+    public static void onAfterClass() {
+        entityManagerFactory.close();
+    }
+
+    @Test
+    public void testInMemoryStore() {
+        assertTokenStore(new InMemoryTokenStore());
+    }
+
+    @Test
+    public void testJPAStore() {
+        assertTokenStore(new JPATokenStore(entityManagerFactory));
+    }
+
+    @Test
+    public void testTokenValueIsNotStored() {
+        OAuthToken token = OAuthToken.create(OAuthToken.Type.ACCESS_TOKEN, "secret", "client", null, null, 60);
+
+        assertFalse(token.getId().contains("secret"));
+        assertEquals(OAuthToken.hash("secret"), token.getId());
+    }
+
+    private void assertTokenStore(TokenStore tokenStore) {
+        String clientId = "client-" + System.nanoTime();
+        String userId = "user-" + System.nanoTime();
+
+        tokenStore.store(OAuthToken.create(OAuthToken.Type.AUTHORIZATION_CODE, "code-" + clientId, clientId, userId, "read", 60));
+        tokenStore.store(OAuthToken.create(OAuthToken.Type.ACCESS_TOKEN, "access1-" + clientId, clientId, userId, "read", 60));
+        tokenStore.store(OAuthToken.create(OAuthToken.Type.ACCESS_TOKEN, "access2-" + clientId, clientId, null, null, 60));
+        tokenStore.store(OAuthToken.create(OAuthToken.Type.ACCESS_TOKEN, "expired-" + clientId, clientId, userId, null, -1));
+        tokenStore.store(OAuthToken.create(OAuthToken.Type.REFRESH_TOKEN, "refresh-" + clientId, clientId, userId, "read", 60));
+
+        OAuthToken accessToken = tokenStore.lookup(OAuthToken.Type.ACCESS_TOKEN, "access1-" + clientId);
+
+        assertNotNull(accessToken);
+        assertEquals(clientId, accessToken.getClientId());
+        assertEquals(userId, accessToken.getUserId());
+        assertEquals("read", accessToken.getScope());
+
+        // tokens are only found by their own type, and never once expired
+        assertNull(tokenStore.lookup(OAuthToken.Type.AUTHORIZATION_CODE, "access1-" + clientId));
+        assertNull(tokenStore.lookup(OAuthToken.Type.ACCESS_TOKEN, "expired-" + clientId));
+        assertNull(tokenStore.lookup(OAuthToken.Type.ACCESS_TOKEN, "unknown"));
+
+        assertNull(tokenStore.lookup(OAuthToken.Type.ACCESS_TOKEN, "refresh-" + clientId));
+        assertNotNull(tokenStore.lookup(OAuthToken.Type.REFRESH_TOKEN, "refresh-" + clientId));
+
+        assertEquals(4, tokenStore.getTokensByClient(clientId).size());
+        assertEquals(3, tokenStore.getTokensByUser(userId).size());
+
+        // authorization codes are single use
+        assertNotNull(tokenStore.consume(OAuthToken.Type.AUTHORIZATION_CODE, "code-" + clientId));
+        assertNull(tokenStore.consume(OAuthToken.Type.AUTHORIZATION_CODE, "code-" + clientId));
+
+        assertTrue(tokenStore.removeExpired(System.currentTimeMillis()) >= 1);
+        assertEquals(3, tokenStore.getTokensByClient(clientId).size());
+
+        // refresh tokens are revoked with the access tokens of the user
+        assertEquals(2, tokenStore.revokeByUser(userId));
+        assertNull(tokenStore.lookup(OAuthToken.Type.ACCESS_TOKEN, "access1-" + clientId));
+        assertNull(tokenStore.lookup(OAuthToken.Type.REFRESH_TOKEN, "refresh-" + clientId));
+        assertNotNull(tokenStore.lookup(OAuthToken.Type.ACCESS_TOKEN, "access2-" + clientId));
+
+        assertEquals(1, tokenStore.revokeByClient(clientId));
+        assertTrue(tokenStore.getTokensByClient(clientId).isEmpty());
+    }
+}
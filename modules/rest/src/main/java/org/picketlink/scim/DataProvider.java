@@ -20,8 +20,11 @@ package org.picketlink.scim;
 import org.picketlink.scim.model.v11.SCIMGroups;
 import org.picketlink.scim.model.v11.SCIMResource;
 import org.picketlink.scim.model.v11.SCIMUser;
+import org.picketlink.scim.query.SCIMQuery;
+import org.picketlink.scim.query.SCIMResults;
 
 import javax.inject.Named;
+import java.util.List;
 
 /**
  * Interface for implementation that provide the data for the SCIM endpoints
@@ -52,6 +55,22 @@ public interface DataProvider {
      */
     String createGroup(SCIMGroups group);
 
+    /**
+     * Create users in a single batch
+     *
+     * @param users
+     * @return the ids, in the same order as the users, or null for the users that could not be created
+     */
+    List<String> createUsers(List<SCIMUser> users);
+
+    /**
+     * Create groups in a single batch
+     *
+     * @param groups
+     * @return the ids, in the same order as the groups, or null for the groups that could not be created
+     */
+    List<String> createGroups(List<SCIMGroups> groups);
+
     /**
      * Get {@link SCIMUser}
      *
@@ -82,6 +101,26 @@ public interface DataProvider {
      */
     SCIMGroups getGroups(String id);
 
+    /**
+     * List the users matching a query. The results may be loaded while they are iterated, before the connection is
+     * closed.
+     *
+     * @param query
+     * @return
+     * @throws IllegalArgumentException if the query filters or sorts by an unsupported attribute
+     */
+    SCIMResults<SCIMUser> listUsers(SCIMQuery query);
+
+    /**
+     * List the groups matching a query. The results may be loaded while they are iterated, before the connection is
+     * closed.
+     *
+     * @param query
+     * @return
+     * @throws IllegalArgumentException if the query filters or sorts by an unsupported attribute
+     */
+    SCIMResults<SCIMGroups> listGroups(SCIMQuery query);
+
     /**
      * Get {@link SCIMResource}
      *
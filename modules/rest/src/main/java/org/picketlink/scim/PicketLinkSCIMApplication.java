@@ -17,6 +17,7 @@
  */
 package org.picketlink.scim;
 
+import org.picketlink.scim.endpoints.BulkEndpoint;
 import org.picketlink.scim.endpoints.GroupsEndpoint;
 import org.picketlink.scim.endpoints.UsersEndpoint;
 
@@ -38,6 +39,7 @@ public class PicketLinkSCIMApplication extends Application {
         // initialize restful services
         services.add(new UsersEndpoint());
         services.add(new GroupsEndpoint());
+        services.add(new BulkEndpoint());
     }
 
     @Override
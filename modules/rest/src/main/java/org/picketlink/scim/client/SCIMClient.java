@@ -17,17 +17,16 @@
  */
 package org.picketlink.scim.client;
 
+import org.picketlink.common.http.OutboundHttpClient;
+import org.picketlink.common.http.OutboundHttpResponse;
 import org.picketlink.scim.codec.SCIMParser;
 import org.picketlink.scim.codec.SCIMWriter;
 import org.picketlink.scim.model.v11.SCIMGroups;
 import org.picketlink.scim.model.v11.SCIMUser;
 
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * SCIM client class
@@ -107,107 +106,49 @@ public class SCIMClient {
 
     private InputStream executeGet(String endpointURL, String body, boolean isJSON, String authorizationHeader)
             throws Exception {
-        InputStream inputStream = null;
-        try {
-            URL resUrl = new URL(endpointURL);
-            URLConnection urlConnection = resUrl.openConnection();
-            if (urlConnection instanceof HttpURLConnection) {
-                HttpURLConnection httpURLConnection = (HttpURLConnection) urlConnection;
-                httpURLConnection.setRequestMethod("GET");
-                httpURLConnection.setDoOutput(true);
-                httpURLConnection.setAllowUserInteraction(false);
-                httpURLConnection.setRequestProperty(OAUTH2_BEARER_HEADER, authorizationHeader);
-                if (isJSON) {
-                    httpURLConnection.setRequestProperty("Content-Type", "application/json");
-                } else {
-                    httpURLConnection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-                }
-                if (body != null) {
-                    httpURLConnection.setRequestProperty("Content-Length", Integer.toString(body.length()));
-                    OutputStream ost = httpURLConnection.getOutputStream();
-                    PrintWriter pw = new PrintWriter(ost);
-                    pw.print(body);
-                    pw.flush();
-                    pw.close();
-                }
-
-                if (httpURLConnection.getResponseCode() == 400) {
-                    inputStream = httpURLConnection.getErrorStream();
-                } else {
-                    inputStream = httpURLConnection.getInputStream();
-                }
-            } else {
-                throw new RuntimeException("Wrong url conn");
-            }
-        } catch (Exception e) {
-            throw new Exception(e);
-        }
-        return inputStream;
+        return execute("GET", endpointURL, body, isJSON, authorizationHeader).getInputStream();
     }
 
     private InputStream executePost(String endpointURL, String body, boolean isJSON, String authorizationHeader)
             throws Exception {
-        InputStream inputStream = null;
-        try {
-            URL resUrl = new URL(endpointURL);
-            URLConnection urlConnection = resUrl.openConnection();
-            if (urlConnection instanceof HttpURLConnection) {
-                HttpURLConnection httpURLConnection = (HttpURLConnection) urlConnection;
-                httpURLConnection.setRequestMethod("POST");
-                httpURLConnection.setDoOutput(true);
-                httpURLConnection.setAllowUserInteraction(false);
-
-                httpURLConnection.setRequestProperty(OAUTH2_BEARER_HEADER, authorizationHeader);
-
-                if (isJSON) {
-                    httpURLConnection.setRequestProperty("Content-Type", "application/json");
-                } else {
-                    httpURLConnection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-                }
-                if (body != null) {
-                    httpURLConnection.setRequestProperty("Content-Length", Integer.toString(body.length()));
-                    OutputStream ost = httpURLConnection.getOutputStream();
-                    PrintWriter pw = new PrintWriter(ost);
-                    pw.print(body);
-                    pw.flush();
-                    pw.close();
-                }
-
-                if (httpURLConnection.getResponseCode() == 400) {
-                    inputStream = httpURLConnection.getErrorStream();
-                } else {
-                    inputStream = httpURLConnection.getInputStream();
-                }
-            } else {
-                throw new RuntimeException("Wrong url conn");
-            }
-        } catch (Exception e) {
-            throw new Exception(e);
-        }
-        return inputStream;
+        return execute("POST", endpointURL, body, isJSON, authorizationHeader).getInputStream();
     }
 
     private int executeDelete(String endpointURL, String authorizationHeader)
             throws Exception {
+        OutboundHttpResponse response = execute("DELETE", endpointURL, null, false, authorizationHeader);
+
         try {
-            URL resUrl = new URL(endpointURL);
-            URLConnection urlConnection = resUrl.openConnection();
-            if (urlConnection instanceof HttpURLConnection) {
-                HttpURLConnection httpURLConnection = (HttpURLConnection) urlConnection;
-                httpURLConnection.setRequestMethod("DELETE");
-                httpURLConnection.setDoOutput(true);
-                httpURLConnection.setAllowUserInteraction(false);
-                httpURLConnection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-                httpURLConnection.setRequestProperty(OAUTH2_BEARER_HEADER, authorizationHeader);
-
-                httpURLConnection.connect();
-
-                return httpURLConnection.getResponseCode();
-            } else {
-                throw new RuntimeException("Wrong url conn");
-            }
+            return response.getStatusCode();
+        } finally {
+            response.close();
+        }
+    }
+
+    private OutboundHttpResponse execute(String method, String endpointURL, String body, boolean isJSON,
+                                         String authorizationHeader) throws Exception {
+        String contentType = isJSON ? "application/json" : "application/x-www-form-urlencoded";
+        Map<String, String> headers = new HashMap<String, String>();
+
+        headers.put(OAUTH2_BEARER_HEADER, authorizationHeader);
+        headers.put("Content-Type", contentType);
+
+        OutboundHttpResponse response;
+
+        try {
+            response = OutboundHttpClient.getDefault().execute(method, endpointURL, headers, contentType,
+                body != null ? body.getBytes("UTF-8") : null);
         } catch (Exception e) {
             throw new Exception(e);
         }
+
+        // 400 carries an error response, any other error has no body we can read
+        if (response.getStatusCode() > 400 && !"DELETE".equals(method)) {
+            response.close();
+            throw new Exception("Server returned HTTP response code: " + response.getStatusCode() + " for URL: "
+                + endpointURL);
+        }
+
+        return response;
     }
-}
\ No newline at end of file
+}
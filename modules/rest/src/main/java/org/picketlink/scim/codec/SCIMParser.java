@@ -18,11 +18,13 @@
 package org.picketlink.scim.codec;
 
 import org.codehaus.jackson.JsonGenerator.Feature;
+import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.JsonMappingException;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.picketlink.scim.model.v11.BulkRequest;
 import org.picketlink.scim.model.v11.SCIMGroups;
 import org.picketlink.scim.model.v11.SCIMResource;
 import org.picketlink.scim.model.v11.SCIMUser;
@@ -95,6 +97,63 @@ public class SCIMParser {
 
     }
 
+    /**
+     * Parse the data of a bulk operation into a {@link SCIMUser}
+     *
+     * @param node
+     * @return
+     * @throws SCIMParsingException
+     */
+    public SCIMUser parseUser(JsonNode node) throws SCIMParsingException {
+        try {
+            return mapper.readValue(node, SCIMUser.class);
+        } catch (JsonParseException e) {
+            throw new SCIMParsingException(e);
+        } catch (JsonMappingException e) {
+            throw new SCIMParsingException(e);
+        } catch (IOException e) {
+            throw new SCIMParsingException(e);
+        }
+    }
+
+    /**
+     * Parse the data of a bulk operation into a {@link SCIMGroups}
+     *
+     * @param node
+     * @return
+     * @throws SCIMParsingException
+     */
+    public SCIMGroups parseGroup(JsonNode node) throws SCIMParsingException {
+        try {
+            return mapper.readValue(node, SCIMGroups.class);
+        } catch (JsonParseException e) {
+            throw new SCIMParsingException(e);
+        } catch (JsonMappingException e) {
+            throw new SCIMParsingException(e);
+        } catch (IOException e) {
+            throw new SCIMParsingException(e);
+        }
+    }
+
+    /**
+     * Parse {@link BulkRequest}
+     *
+     * @param is
+     * @return
+     * @throws SCIMParsingException
+     */
+    public BulkRequest parseBulkRequest(InputStream is) throws SCIMParsingException {
+        try {
+            return mapper.readValue(is, BulkRequest.class);
+        } catch (JsonParseException e) {
+            throw new SCIMParsingException(e);
+        } catch (JsonMappingException e) {
+            throw new SCIMParsingException(e);
+        } catch (IOException e) {
+            throw new SCIMParsingException(e);
+        }
+    }
+
     /**
      * Parse {@link Resource}
      *
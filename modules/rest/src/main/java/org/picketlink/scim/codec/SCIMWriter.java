@@ -19,14 +19,26 @@ package org.picketlink.scim.codec;
 
 import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonGenerationException;
+import org.codehaus.jackson.JsonEncoding;
 import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.JsonMappingException;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ObjectNode;
+import org.picketlink.scim.model.v11.AbstractResource;
+import org.picketlink.scim.model.v11.BulkResponse;
 import org.picketlink.scim.model.v11.SCIMGroups;
 import org.picketlink.scim.model.v11.SCIMUser;
+import org.picketlink.scim.query.SCIMResults;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Writing SCIM Classes into JSON
@@ -35,6 +47,8 @@ import java.io.StringWriter;
  * @since Apr 9, 2013
  */
 public class SCIMWriter {
+    public static final String SCHEMA_CORE = "urn:scim:schemas:core:1.0";
+
     private ObjectMapper objectMapper = new ObjectMapper();
     private JsonFactory jsonFactory = new JsonFactory();
 
@@ -46,6 +60,54 @@ public class SCIMWriter {
         return jsonify(groups);
     }
 
+    public String json(BulkResponse response) throws SCIMWriterException {
+        return jsonify(response);
+    }
+
+    /**
+     * <p>Writes a list response to the given stream. Each resource is written as soon as it is returned by the results,
+     * so the whole list is never held in memory.</p>
+     *
+     * @param outputStream the stream to write to, it is flushed but not closed
+     * @param results the resources to write
+     * @param attributes the attributes to return, or an empty collection to return all the attributes
+     * @throws SCIMWriterException
+     */
+    public void json(OutputStream outputStream, SCIMResults<? extends AbstractResource> results,
+                     Collection<String> attributes) throws SCIMWriterException {
+        try {
+            JsonGenerator jg = jsonFactory.createJsonGenerator(outputStream, JsonEncoding.UTF8);
+            Projection projection = new Projection(attributes);
+
+            jg.writeStartObject();
+
+            jg.writeArrayFieldStart("schemas");
+            jg.writeString(SCHEMA_CORE);
+            jg.writeEndArray();
+
+            jg.writeNumberField("totalResults", results.getTotalResults());
+            jg.writeNumberField("itemsPerPage", results.getItemsPerPage());
+            jg.writeNumberField("startIndex", results.getStartIndex());
+
+            jg.writeArrayFieldStart("Resources");
+
+            for (AbstractResource resource : results) {
+                objectMapper.writeTree(jg, projection.apply(objectMapper.<JsonNode>valueToTree(resource)));
+            }
+
+            jg.writeEndArray();
+            jg.writeEndObject();
+
+            jg.flush();
+        } catch (JsonGenerationException e) {
+            throw new SCIMWriterException(e);
+        } catch (JsonMappingException e) {
+            throw new SCIMWriterException(e);
+        } catch (IOException e) {
+            throw new SCIMWriterException(e);
+        }
+    }
+
     private String jsonify(Object object) throws SCIMWriterException {
         try {
             StringWriter stringWriter = new StringWriter();
@@ -60,4 +122,75 @@ public class SCIMWriter {
             throw new SCIMWriterException(e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Retains the requested attributes of a resource. Sub-attributes, like <code>name.givenName</code>, are applied to
+     * complex and multi-valued attributes.
+     */
+    private static class Projection {
+        private final Set<String> attributes = new HashSet<String>();
+        private final Map<String, Set<String>> subAttributes = new HashMap<String, Set<String>>();
+
+        Projection(Collection<String> attributes) {
+            if (attributes == null || attributes.isEmpty()) {
+                return;
+            }
+
+            // always returned
+            this.attributes.add("id");
+            this.attributes.add("schemas");
+
+            for (String attribute : attributes) {
+                int separator = attribute.indexOf('.');
+
+                if (separator == -1) {
+                    this.attributes.add(attribute);
+                } else {
+                    String parent = attribute.substring(0, separator);
+                    Set<String> children = this.subAttributes.get(parent);
+
+                    if (children == null) {
+                        children = new HashSet<String>();
+                        this.subAttributes.put(parent, children);
+                    }
+
+                    children.add(attribute.substring(separator + 1));
+                }
+            }
+
+            // sub-attributes are ignored if the whole attribute is requested
+            this.subAttributes.keySet().removeAll(this.attributes);
+            this.attributes.addAll(this.subAttributes.keySet());
+        }
+
+        JsonNode apply(JsonNode node) {
+            if (this.attributes.isEmpty() || !node.isObject()) {
+                return node;
+            }
+
+            ObjectNode object = (ObjectNode) node;
+
+            object.retain(this.attributes);
+
+            for (Map.Entry<String, Set<String>> entry : this.subAttributes.entrySet()) {
+                JsonNode value = object.get(entry.getKey());
+
+                if (value == null) {
+                    continue;
+                }
+
+                if (value.isObject()) {
+                    ((ObjectNode) value).retain(entry.getValue());
+                } else if (value.isArray()) {
+                    for (JsonNode element : value) {
+                        if (element.isObject()) {
+                            ((ObjectNode) element).retain(entry.getValue());
+                        }
+                    }
+                }
+            }
+
+            return object;
+        }
+    }
+}
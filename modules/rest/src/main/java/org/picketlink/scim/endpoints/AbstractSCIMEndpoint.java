@@ -19,7 +19,12 @@ package org.picketlink.scim.endpoints;
 
 import org.jboss.logging.Logger;
 import org.picketlink.scim.DataProvider;
+import org.picketlink.scim.codec.SCIMWriter;
+import org.picketlink.scim.codec.SCIMWriterException;
+import org.picketlink.scim.model.v11.AbstractResource;
 import org.picketlink.scim.providers.PicketLinkIDMDataProvider;
+import org.picketlink.scim.query.SCIMQuery;
+import org.picketlink.scim.query.SCIMResults;
 
 import javax.enterprise.context.spi.CreationalContext;
 import javax.enterprise.inject.spi.Bean;
@@ -28,6 +33,11 @@ import javax.inject.Inject;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.servlet.ServletContext;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * Base class for SCIM Endpoints
@@ -98,4 +108,29 @@ public class AbstractSCIMEndpoint {
             dataProvider = createDefaultDataProvider();
         }
     }
+
+    /**
+     * Streams the results of a list request to the response. The results are loaded while they are written, so the
+     * connection to the data provider is only closed once the response is written.
+     *
+     * @param results
+     * @param query
+     * @return
+     */
+    protected Response streamResults(final SCIMResults<? extends AbstractResource> results, final SCIMQuery query) {
+        StreamingOutput output = new StreamingOutput() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                try {
+                    new SCIMWriter().json(outputStream, results, query.getAttributes());
+                } catch (SCIMWriterException e) {
+                    throw new IOException(e);
+                } finally {
+                    dataProvider.closeConnection();
+                }
+            }
+        };
+
+        return Response.status(200).type(MediaType.APPLICATION_JSON).entity(output).build();
+    }
 }
\ No newline at end of file
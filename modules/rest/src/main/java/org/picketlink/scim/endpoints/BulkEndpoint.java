@@ -0,0 +1,262 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.scim.endpoints;
+
+import org.jboss.logging.Logger;
+import org.picketlink.scim.codec.SCIMParser;
+import org.picketlink.scim.codec.SCIMParsingException;
+import org.picketlink.scim.codec.SCIMWriter;
+import org.picketlink.scim.codec.SCIMWriterException;
+import org.picketlink.scim.model.v11.BulkOperation;
+import org.picketlink.scim.model.v11.BulkRequest;
+import org.picketlink.scim.model.v11.BulkResponse;
+import org.picketlink.scim.model.v11.SCIMGroups;
+import org.picketlink.scim.model.v11.SCIMUser;
+
+import javax.enterprise.context.RequestScoped;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * REST Endpoint for Bulk operations
+ *
+ * <p>Consecutive creations of users or groups are sent to the data provider as a single batch, which never holds more
+ * operations than the errors still allowed by <code>failOnErrors</code>. Deletions are processed one at a time. Each
+ * batch and each deletion uses its own connection to the data provider, so it is committed on its own: a failure does
+ * not undo the operations already reported, and a creation is only reported once it is committed.</p>
+ */
+@Path("/Bulk")
+@RequestScoped
+public class BulkEndpoint extends AbstractSCIMEndpoint {
+    private static Logger log = Logger.getLogger(BulkEndpoint.class);
+
+    public static final int MAX_OPERATIONS = 1000;
+
+    private static final String USERS_PATH = "/Users";
+    private static final String GROUPS_PATH = "/Groups";
+
+    @POST
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response bulk(@Context HttpServletRequest request, @Context ServletContext sc, @Context UriInfo uriInfo) {
+        verifyDataProvider(sc);
+
+        BulkRequest bulkRequest;
+        try {
+            bulkRequest = new SCIMParser().parseBulkRequest(request.getInputStream());
+        } catch (Exception e) {
+            return Response.status(400).entity(e.getMessage()).build();
+        }
+
+        BulkOperation[] operations = bulkRequest.getOperations();
+
+        if (operations == null) {
+            operations = new BulkOperation[0];
+        }
+
+        if (operations.length > MAX_OPERATIONS) {
+            return Response.status(413).entity("Too many operations, the maximum is " + MAX_OPERATIONS).build();
+        }
+
+        int failOnErrors = Integer.MAX_VALUE;
+
+        if (bulkRequest.getFailOnErrors() != null && bulkRequest.getFailOnErrors() > 0) {
+            failOnErrors = bulkRequest.getFailOnErrors();
+        }
+
+        List<BulkOperation> results = new ArrayList<BulkOperation>();
+
+        int errors = 0;
+        int index = 0;
+
+        while (index < operations.length && errors < failOnErrors) {
+            BulkOperation operation = operations[index];
+            String path = operation.getPath();
+
+            if (isCreation(operation, USERS_PATH) || isCreation(operation, GROUPS_PATH)) {
+                int end = index + 1;
+                long maxEnd = (long) index + failOnErrors - errors;
+
+                while (end < operations.length && end < maxEnd && isCreation(operations[end], path)) {
+                    end++;
+                }
+
+                errors += create(path, operations, index, end, results, uriInfo);
+                index = end;
+            } else if ("DELETE".equalsIgnoreCase(operation.getMethod()) && path != null
+                && (path.startsWith(USERS_PATH + "/") || path.startsWith(GROUPS_PATH + "/"))) {
+                errors += delete(operation, results);
+                index++;
+            } else {
+                results.add(createResult(operation, null, 400, "Unsupported operation"));
+                errors++;
+                index++;
+            }
+        }
+
+        BulkResponse bulkResponse = new BulkResponse();
+
+        bulkResponse.setSchemas(new String[] {SCIMWriter.SCHEMA_CORE});
+        bulkResponse.setOperations(results.toArray(new BulkOperation[results.size()]));
+
+        String json;
+        try {
+            json = new SCIMWriter().json(bulkResponse);
+        } catch (SCIMWriterException e) {
+            throw new RuntimeException(e);
+        }
+        return Response.status(200).entity(json).build();
+    }
+
+    private boolean isCreation(BulkOperation operation, String path) {
+        return "POST".equalsIgnoreCase(operation.getMethod()) && path.equals(operation.getPath());
+    }
+
+    private int create(String path, BulkOperation[] operations, int start, int end, List<BulkOperation> results,
+        UriInfo uriInfo) {
+        SCIMParser parser = new SCIMParser();
+        List<Integer> batch = new ArrayList<Integer>();
+        List<SCIMUser> users = new ArrayList<SCIMUser>();
+        List<SCIMGroups> groups = new ArrayList<SCIMGroups>();
+        BulkOperation[] batchResults = new BulkOperation[end - start];
+        int errors = 0;
+
+        for (int i = start; i < end; i++) {
+            BulkOperation operation = operations[i];
+
+            try {
+                if (operation.getData() == null) {
+                    throw new SCIMParsingException("Missing data");
+                }
+
+                if (USERS_PATH.equals(path)) {
+                    users.add(parser.parseUser(operation.getData()));
+                } else {
+                    groups.add(parser.parseGroup(operation.getData()));
+                }
+
+                batch.add(i);
+            } catch (SCIMParsingException e) {
+                batchResults[i - start] = createResult(operation, null, 400, e.getMessage());
+                errors++;
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            List<String> ids = null;
+
+            try {
+                dataProvider.initializeConnection();
+
+                try {
+                    if (USERS_PATH.equals(path)) {
+                        ids = dataProvider.createUsers(users);
+                    } else {
+                        ids = dataProvider.createGroups(groups);
+                    }
+                } finally {
+                    dataProvider.closeConnection();
+                }
+            } catch (RuntimeException e) {
+                log.error("Bulk creation failed for " + path, e);
+                ids = null;
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                BulkOperation operation = operations[batch.get(i)];
+                String id = ids != null ? ids.get(i) : null;
+                BulkOperation result;
+
+                if (ids == null) {
+                    result = createResult(operation, null, 500, "Could not commit the resource");
+                    errors++;
+                } else if (id != null) {
+                    String location = uriInfo.getBaseUriBuilder().path(path).path(id).build().toString();
+                    result = createResult(operation, location, 201, null);
+                } else {
+                    result = createResult(operation, null, 400, "Could not create the resource");
+                    errors++;
+                }
+
+                batchResults[batch.get(i) - start] = result;
+            }
+        }
+
+        for (BulkOperation result : batchResults) {
+            results.add(result);
+        }
+
+        return errors;
+    }
+
+    private int delete(BulkOperation operation, List<BulkOperation> results) {
+        String path = operation.getPath();
+        String id = path.substring(path.indexOf('/', 1) + 1);
+        boolean deleted;
+
+        try {
+            dataProvider.initializeConnection();
+
+            try {
+                if (path.startsWith(USERS_PATH + "/")) {
+                    deleted = dataProvider.deleteUser(id);
+                } else {
+                    deleted = dataProvider.deleteGroup(id);
+                }
+            } finally {
+                dataProvider.closeConnection();
+            }
+        } catch (RuntimeException e) {
+            log.error("Bulk deletion failed for " + path, e);
+            results.add(createResult(operation, null, 500, "Could not commit the deletion"));
+            return 1;
+        }
+
+        if (deleted) {
+            results.add(createResult(operation, null, 200, null));
+            return 0;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Bulk deletion failed for " + path);
+        }
+
+        results.add(createResult(operation, null, 404, "Resource not found"));
+
+        return 1;
+    }
+
+    private BulkOperation createResult(BulkOperation operation, String location, int code, String description) {
+        BulkOperation result = new BulkOperation();
+
+        result.setMethod(operation.getMethod());
+        result.setBulkId(operation.getBulkId());
+        result.setLocation(location);
+        result.setStatus(new BulkOperation.Status().setCode(String.valueOf(code)).setDescription(description));
+
+        return result;
+    }
+}
@@ -25,15 +25,18 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import org.jboss.logging.Logger;
 import org.picketlink.scim.codec.SCIMParser;
+import org.picketlink.scim.codec.SCIMParsingException;
 import org.picketlink.scim.codec.SCIMWriter;
 import org.picketlink.scim.codec.SCIMWriterException;
 import org.picketlink.scim.model.v11.SCIMGroups;
+import org.picketlink.scim.query.SCIMQuery;
 
 /**
  * REST Endpoint for Groups
@@ -67,6 +70,35 @@ public class GroupsEndpoint extends AbstractSCIMEndpoint {
         }
     }
 
+    // List the groups matching a filter
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response listGroups(@Context HttpServletRequest request, @Context ServletContext sc,
+        @QueryParam("filter") String filter, @QueryParam("startIndex") Integer startIndex,
+        @QueryParam("count") Integer count, @QueryParam("sortBy") String sortBy,
+        @QueryParam("sortOrder") String sortOrder, @QueryParam("attributes") String attributes) {
+        verifyDataProvider(sc);
+
+        SCIMQuery query;
+        try {
+            query = SCIMQuery.parse(filter, startIndex, count, sortBy, sortOrder, attributes);
+        } catch (SCIMParsingException e) {
+            return Response.status(400).entity(e.getMessage()).build();
+        }
+
+        dataProvider.initializeConnection();
+        try {
+            // the connection is closed once the results are written
+            return streamResults(dataProvider.listGroups(query), query);
+        } catch (IllegalArgumentException e) {
+            dataProvider.closeConnection();
+            return Response.status(400).entity(e.getMessage()).build();
+        } catch (RuntimeException e) {
+            dataProvider.closeConnection();
+            throw e;
+        }
+    }
+
     // Create a group
     @POST
     @Produces(MediaType.APPLICATION_JSON)
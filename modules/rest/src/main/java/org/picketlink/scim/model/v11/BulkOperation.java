@@ -0,0 +1,122 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.scim.model.v11;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+
+/**
+ * An operation of a SCIM Bulk request or response
+ */
+@JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
+public class BulkOperation {
+    private String method;
+    private String bulkId;
+    private String version;
+    private String path;
+    private String location;
+    private JsonNode data;
+    private Status status;
+
+    public String getMethod() {
+        return method;
+    }
+
+    public BulkOperation setMethod(String method) {
+        this.method = method;
+        return this;
+    }
+
+    public String getBulkId() {
+        return bulkId;
+    }
+
+    public BulkOperation setBulkId(String bulkId) {
+        this.bulkId = bulkId;
+        return this;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public BulkOperation setVersion(String version) {
+        this.version = version;
+        return this;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public BulkOperation setPath(String path) {
+        this.path = path;
+        return this;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public BulkOperation setLocation(String location) {
+        this.location = location;
+        return this;
+    }
+
+    public JsonNode getData() {
+        return data;
+    }
+
+    public BulkOperation setData(JsonNode data) {
+        this.data = data;
+        return this;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public BulkOperation setStatus(Status status) {
+        this.status = status;
+        return this;
+    }
+
+    @JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
+    public static class Status {
+        private String code;
+        private String description;
+
+        public String getCode() {
+            return code;
+        }
+
+        public Status setCode(String code) {
+            this.code = code;
+            return this;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public Status setDescription(String description) {
+            this.description = description;
+            return this;
+        }
+    }
+}
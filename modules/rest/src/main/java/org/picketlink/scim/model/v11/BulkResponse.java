@@ -0,0 +1,48 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.scim.model.v11;
+
+import org.codehaus.jackson.annotate.JsonProperty;
+
+/**
+ * A SCIM Bulk response
+ */
+public class BulkResponse {
+    private String[] schemas;
+    private BulkOperation[] operations;
+
+    public String[] getSchemas() {
+        return schemas;
+    }
+
+    public BulkResponse setSchemas(String[] schemas) {
+        this.schemas = schemas;
+        return this;
+    }
+
+    @JsonProperty("Operations")
+    public BulkOperation[] getOperations() {
+        return operations;
+    }
+
+    @JsonProperty("Operations")
+    public BulkResponse setOperations(BulkOperation[] operations) {
+        this.operations = operations;
+        return this;
+    }
+}
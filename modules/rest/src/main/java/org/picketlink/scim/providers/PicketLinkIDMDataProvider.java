@@ -18,6 +18,7 @@
 package org.picketlink.scim.providers;
 
 import org.jboss.logging.Logger;
+import org.picketlink.idm.BatchResult;
 import org.picketlink.idm.IdentityManager;
 import org.picketlink.idm.PartitionManager;
 import org.picketlink.idm.config.IdentityConfigurationBuilder;
@@ -34,6 +35,7 @@ import org.picketlink.idm.jpa.model.sample.simple.RelationshipTypeEntity;
 import org.picketlink.idm.jpa.model.sample.simple.RoleTypeEntity;
 import org.picketlink.idm.model.Attribute;
 import org.picketlink.idm.model.AttributedType;
+import org.picketlink.idm.model.IdentityType;
 import org.picketlink.idm.model.Partition;
 import org.picketlink.idm.model.Relationship;
 import org.picketlink.idm.model.basic.BasicModel;
@@ -42,21 +44,37 @@ import org.picketlink.idm.model.basic.Realm;
 import org.picketlink.idm.model.basic.User;
 import org.picketlink.idm.query.IdentityQuery;
 import org.picketlink.idm.query.IdentityQueryBuilder;
+import org.picketlink.idm.query.QueryParameter;
 import org.picketlink.idm.spi.ContextInitializer;
 import org.picketlink.idm.spi.IdentityContext;
 import org.picketlink.idm.spi.IdentityStore;
 import org.picketlink.scim.DataProvider;
+import org.picketlink.scim.model.v11.AbstractResource;
+import org.picketlink.scim.model.v11.Meta;
 import org.picketlink.scim.model.v11.SCIMGroups;
 import org.picketlink.scim.model.v11.SCIMResource;
 import org.picketlink.scim.model.v11.SCIMUser;
 import org.picketlink.scim.model.v11.UserName;
+import org.picketlink.scim.query.SCIMFilter;
+import org.picketlink.scim.query.SCIMQuery;
+import org.picketlink.scim.query.SCIMResults;
 
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import javax.xml.bind.DatatypeConverter;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * An IDM implementation of the {@link DataProvider}
@@ -68,10 +86,39 @@ public class PicketLinkIDMDataProvider implements DataProvider {
 
     private static Logger log = Logger.getLogger(PicketLinkIDMDataProvider.class);
 
+    //Number of identity types loaded at once when iterating the results of a list request
+    private static final int FETCH_SIZE = 500;
+
+    //SCIM attributes supported in filters and sorting, in lower case as SCIM attribute names are case insensitive
+    private static final Map<String, QueryParameter> USER_ATTRIBUTES = new HashMap<String, QueryParameter>();
+    private static final Map<String, QueryParameter> GROUP_ATTRIBUTES = new HashMap<String, QueryParameter>();
+
+    static {
+        USER_ATTRIBUTES.put("id", AttributedType.ID);
+        USER_ATTRIBUTES.put("username", User.LOGIN_NAME);
+        USER_ATTRIBUTES.put("displayname", User.LOGIN_NAME);
+        USER_ATTRIBUTES.put("name.givenname", User.FIRST_NAME);
+        USER_ATTRIBUTES.put("name.familyname", User.LAST_NAME);
+        USER_ATTRIBUTES.put("emails", User.EMAIL);
+        USER_ATTRIBUTES.put("emails.value", User.EMAIL);
+        USER_ATTRIBUTES.put("active", IdentityType.ENABLED);
+        USER_ATTRIBUTES.put("meta.created", IdentityType.CREATED_DATE);
+
+        GROUP_ATTRIBUTES.put("id", AttributedType.ID);
+        GROUP_ATTRIBUTES.put("displayname", Group.NAME);
+        GROUP_ATTRIBUTES.put("meta.created", IdentityType.CREATED_DATE);
+    }
+
+    //Shared by all the providers in a non-EE environment, created on first use
+    private static volatile EntityManagerFactory sharedEntityManagerFactory;
+
+    private static volatile PartitionManager sharedPartitionManager;
+
     //EntityManagerFactory will be null if the IdentityManager is injected in an EE environment
     protected EntityManagerFactory entityManagerFactory;
 
-    protected ThreadLocal<EntityManager> entityManagerThreadLocal = new ThreadLocal<EntityManager>();
+    //The EntityManager of the current connection, bound to the stores by the shared PartitionManager
+    protected static final ThreadLocal<EntityManager> entityManagerThreadLocal = new ThreadLocal<EntityManager>();
 
     @Inject
     private IdentityManager identityManager;
@@ -170,6 +217,30 @@ public class PicketLinkIDMDataProvider implements DataProvider {
         return false;
     }
 
+    @Override
+    public SCIMResults<SCIMUser> listUsers(SCIMQuery query) {
+        verifyIdentityManager();
+
+        return new IdentityTypeResults<User, SCIMUser>(createIdentityQuery(User.class, query, USER_ATTRIBUTES), query) {
+            @Override
+            protected SCIMUser toResource(User user) {
+                return toSCIMUser(user);
+            }
+        };
+    }
+
+    @Override
+    public SCIMResults<SCIMGroups> listGroups(SCIMQuery query) {
+        verifyIdentityManager();
+
+        return new IdentityTypeResults<Group, SCIMGroups>(createIdentityQuery(Group.class, query, GROUP_ATTRIBUTES), query) {
+            @Override
+            protected SCIMGroups toResource(Group group) {
+                return toSCIMGroup(group);
+            }
+        };
+    }
+
     @Override
     public SCIMResource getResource(String id) {
         SCIMResource scimResource = new SCIMResource();
@@ -198,6 +269,48 @@ public class PicketLinkIDMDataProvider implements DataProvider {
         return id;
     }
 
+    @Override
+    public List<String> createUsers(List<SCIMUser> users) {
+        verifyIdentityManager();
+
+        List<User> simpleUsers = new ArrayList<User>(users.size());
+
+        for (SCIMUser user : users) {
+            User simpleUser = new User();
+            simpleUser.setLoginName(user.getDisplayName());
+            UserName userName = user.getName();
+
+            if(userName != null){
+                simpleUser.setFirstName(userName.getGivenName());
+                simpleUser.setLastName(userName.getFamilyName());
+
+                simpleUser.setAttribute(new Attribute<Serializable>("FullName", userName.getFormatted()));
+            }
+
+            simpleUsers.add(simpleUser);
+        }
+
+        return getIds(simpleUsers, identityManager.addAll(simpleUsers));
+    }
+
+    @Override
+    public List<String> createGroups(List<SCIMGroups> groups) {
+        verifyIdentityManager();
+
+        List<Group> simpleGroups = new ArrayList<Group>(groups.size());
+
+        for (SCIMGroups group : groups) {
+            Group simpleGroup = new Group(group.getDisplayName());
+            if(group.getId() != null){
+                simpleGroup.setId(group.getId());
+            }
+
+            simpleGroups.add(simpleGroup);
+        }
+
+        return getIds(simpleGroups, identityManager.addAll(simpleGroups));
+    }
+
     @Override
     public String createGroup(SCIMGroups group) {
         verifyIdentityManager();
@@ -220,6 +333,231 @@ public class PicketLinkIDMDataProvider implements DataProvider {
         return this;
     }
 
+    private List<String> getIds(List<? extends IdentityType> identityTypes, BatchResult<IdentityType> result) {
+        Set<IdentityType> failed = Collections.newSetFromMap(new IdentityHashMap<IdentityType, Boolean>());
+
+        for (BatchResult.Failure<IdentityType> failure : result.getFailures()) {
+            log.error("Could not create " + failure.getItem() + ": " + failure.getCause().getMessage());
+            failed.add(failure.getItem());
+        }
+
+        List<String> ids = new ArrayList<String>(identityTypes.size());
+
+        for (IdentityType identityType : identityTypes) {
+            if (failed.contains(identityType)) {
+                ids.add(null);
+            } else {
+                ids.add(identityType.getId());
+            }
+        }
+
+        return ids;
+    }
+
+    private <T extends IdentityType> IdentityQuery<T> createIdentityQuery(Class<T> identityType, SCIMQuery scimQuery,
+                                                                           Map<String, QueryParameter> attributes) {
+        IdentityQueryBuilder queryBuilder = identityManager.getQueryBuilder();
+        IdentityQuery<T> query = queryBuilder.createIdentityQuery(identityType);
+
+        for (SCIMFilter filter : scimQuery.getFilters()) {
+            QueryParameter parameter = getQueryParameter(attributes, filter.getAttribute());
+            Object value = filter.getValue();
+
+            if (value == null && !SCIMFilter.Operator.PR.equals(filter.getOperator())) {
+                throw new IllegalArgumentException("Unsupported null value in filter: " + filter);
+            }
+
+            if (IdentityType.CREATED_DATE.equals(parameter) && value instanceof String) {
+                value = DatatypeConverter.parseDateTime(value.toString()).getTime();
+            }
+
+            switch (filter.getOperator()) {
+                case EQ:
+                    query.where(queryBuilder.equal(parameter, value));
+                    break;
+                case CO:
+                    query.where(queryBuilder.like(parameter, "%" + value + "%"));
+                    break;
+                case SW:
+                    query.where(queryBuilder.like(parameter, value + "%"));
+                    break;
+                case GT:
+                    query.where(queryBuilder.greaterThan(parameter, value));
+                    break;
+                case GE:
+                    query.where(queryBuilder.greaterThanOrEqualTo(parameter, value));
+                    break;
+                case LT:
+                    query.where(queryBuilder.lessThan(parameter, value));
+                    break;
+                case LE:
+                    query.where(queryBuilder.lessThanOrEqualTo(parameter, value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported filter: " + filter);
+            }
+        }
+
+        if (scimQuery.getSortBy() != null) {
+            QueryParameter parameter = getQueryParameter(attributes, scimQuery.getSortBy());
+
+            if (scimQuery.isSortAscending()) {
+                query.sortBy(queryBuilder.asc(parameter));
+            } else {
+                query.sortBy(queryBuilder.desc(parameter));
+            }
+        } else {
+            // results are loaded in several queries, they need a stable order
+            query.sortBy(queryBuilder.asc(AttributedType.ID));
+        }
+
+        return query;
+    }
+
+    private QueryParameter getQueryParameter(Map<String, QueryParameter> attributes, String attribute) {
+        QueryParameter parameter = attributes.get(attribute.toLowerCase());
+
+        if (parameter == null) {
+            throw new IllegalArgumentException("Unsupported attribute: " + attribute);
+        }
+
+        return parameter;
+    }
+
+    private SCIMUser toSCIMUser(User user) {
+        SCIMUser scimUser = new SCIMUser();
+
+        scimUser.setId(user.getId());
+        scimUser.setMeta(toMeta(user));
+        scimUser.setDisplayName(user.getLoginName());
+        scimUser.setActive(user.isEnabled());
+
+        UserName userName = new UserName();
+        userName.setGivenName(user.getFirstName());
+        userName.setFamilyName(user.getLastName());
+        scimUser.setName(userName);
+
+        return scimUser;
+    }
+
+    private SCIMGroups toSCIMGroup(Group group) {
+        SCIMGroups scimGroup = new SCIMGroups();
+
+        scimGroup.setId(group.getId());
+        scimGroup.setMeta(toMeta(group));
+        scimGroup.setDisplayName(group.getName());
+
+        return scimGroup;
+    }
+
+    private Meta toMeta(IdentityType identityType) {
+        Meta meta = new Meta();
+
+        if (identityType.getCreatedDate() != null) {
+            Calendar created = Calendar.getInstance();
+            created.setTime(identityType.getCreatedDate());
+            meta.setCreated(DatatypeConverter.printDateTime(created));
+        }
+
+        return meta;
+    }
+
+    /**
+     * Runs an {@link IdentityQuery} in pages of {@link #FETCH_SIZE} identity types while the results are iterated.
+     */
+    private abstract class IdentityTypeResults<I extends IdentityType, T extends AbstractResource> implements SCIMResults<T> {
+        private final IdentityQuery<I> query;
+        private final int totalResults;
+        private final int startIndex;
+        private final int itemsPerPage;
+
+        IdentityTypeResults(IdentityQuery<I> query, SCIMQuery scimQuery) {
+            this.query = query;
+            this.totalResults = query.getResultCount();
+            this.startIndex = scimQuery.getStartIndex();
+
+            int remaining = Math.max(0, this.totalResults - (this.startIndex - 1));
+
+            if (scimQuery.getCount() != null) {
+                this.itemsPerPage = Math.min(scimQuery.getCount(), remaining);
+            } else {
+                this.itemsPerPage = remaining;
+            }
+        }
+
+        protected abstract T toResource(I identityType);
+
+        @Override
+        public int getTotalResults() {
+            return this.totalResults;
+        }
+
+        @Override
+        public int getStartIndex() {
+            return this.startIndex;
+        }
+
+        @Override
+        public int getItemsPerPage() {
+            return this.itemsPerPage;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private Iterator<I> page = Collections.<I>emptyList().iterator();
+                private int returned;
+                private boolean exhausted;
+
+                @Override
+                public boolean hasNext() {
+                    if (this.page.hasNext()) {
+                        return true;
+                    }
+
+                    if (this.exhausted || this.returned >= itemsPerPage) {
+                        return false;
+                    }
+
+                    int limit = Math.min(FETCH_SIZE, itemsPerPage - this.returned);
+
+                    query.setOffset(startIndex - 1 + this.returned);
+                    query.setLimit(limit);
+
+                    //The previous pages are not needed anymore, don't keep them in the persistence context
+                    EntityManager entityManager = entityManagerThreadLocal.get();
+
+                    if (entityManager != null && this.returned > 0) {
+                        entityManager.clear();
+                    }
+
+                    List<I> result = query.getResultList();
+
+                    this.exhausted = result.size() < limit;
+                    this.page = result.iterator();
+
+                    return this.page.hasNext();
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    this.returned++;
+
+                    return toResource(this.page.next());
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
     @Override
     public void initializeConnection() {
         verifyIdentityManager();
@@ -229,7 +567,7 @@ public class PicketLinkIDMDataProvider implements DataProvider {
             EntityManager entityManager = entityManagerThreadLocal.get();
             if(entityManager == null){
                 entityManager = this.entityManagerFactory.createEntityManager();
-                this.entityManagerThreadLocal.set(entityManager);
+                entityManagerThreadLocal.set(entityManager);
             }
 
             entityManager.getTransaction().begin();
@@ -240,16 +578,19 @@ public class PicketLinkIDMDataProvider implements DataProvider {
     public void closeConnection() {
         //If we are in a non-EE environment, we have to manage the JPA stuff ourselves
         if (this.entityManagerFactory != null) {
-            EntityManager entityManager = this.entityManagerThreadLocal.get();
-            if (entityManager != null) {
-                entityManager.getTransaction().commit();
-                entityManager.close();
-            }
+            EntityManager entityManager = entityManagerThreadLocal.get();
 
-            this.entityManagerThreadLocal.remove();
+            entityManagerThreadLocal.remove();
 
-            //Not originally injected. We need to create fresh
-            identityManager = null;
+            if (entityManager != null) {
+                try {
+                    if (entityManager.getTransaction().isActive()) {
+                        entityManager.getTransaction().commit();
+                    }
+                } finally {
+                    entityManager.close();
+                }
+            }
         }
     }
 
@@ -263,12 +604,50 @@ public class PicketLinkIDMDataProvider implements DataProvider {
     }
 
     /**
-     * This is created for each connection in a non-EE environment
+     * Creates an {@link IdentityManager} from the JPA driven {@link PartitionManager} shared by all the providers in a
+     * non-EE environment. Each connection only binds its own {@link EntityManager}.
      */
     protected void createJPADrivenIdentityManager() {
+        this.entityManagerFactory = getSharedEntityManagerFactory();
+        identityManager = getSharedPartitionManager().createIdentityManager();
+    }
+
+    private static EntityManagerFactory getSharedEntityManagerFactory() {
+        EntityManagerFactory entityManagerFactory = sharedEntityManagerFactory;
+
+        if (entityManagerFactory == null) {
+            synchronized (PicketLinkIDMDataProvider.class) {
+                entityManagerFactory = sharedEntityManagerFactory;
+
+                if (entityManagerFactory == null) {
+                    entityManagerFactory = Persistence.createEntityManagerFactory("picketlink-scim-pu");
+                    sharedEntityManagerFactory = entityManagerFactory;
+                }
+            }
+        }
+
+        return entityManagerFactory;
+    }
+
+    private static PartitionManager getSharedPartitionManager() {
+        PartitionManager partitionManager = sharedPartitionManager;
+
+        if (partitionManager == null) {
+            synchronized (PicketLinkIDMDataProvider.class) {
+                partitionManager = sharedPartitionManager;
+
+                if (partitionManager == null) {
+                    partitionManager = createJPADrivenPartitionManager(getSharedEntityManagerFactory());
+                    sharedPartitionManager = partitionManager;
+                }
+            }
+        }
+
+        return partitionManager;
+    }
+
+    private static PartitionManager createJPADrivenPartitionManager(EntityManagerFactory entityManagerFactory) {
         // Use JPA
-        final EntityManager entityManager = createEntityManager();
-        this.entityManagerThreadLocal.set(entityManager);
         IdentityConfigurationBuilder builder = new IdentityConfigurationBuilder();
 
         builder
@@ -289,7 +668,12 @@ public class PicketLinkIDMDataProvider implements DataProvider {
                 .addContextInitializer(new ContextInitializer() {
                     @Override
                     public void initContextForStore(IdentityContext context, IdentityStore<?> store) {
-                        context.setParameter(JPAIdentityStore.INVOCATION_CTX_ENTITY_MANAGER,entityManager);
+                        // the entity manager of the current connection
+                        EntityManager entityManager = entityManagerThreadLocal.get();
+
+                        if (entityManager != null) {
+                            context.setParameter(JPAIdentityStore.INVOCATION_CTX_ENTITY_MANAGER, entityManager);
+                        }
                     }
                 })
                 // Specify that this identity store configuration supports all features
@@ -297,26 +681,43 @@ public class PicketLinkIDMDataProvider implements DataProvider {
 
         PartitionManager partitionManager = new DefaultPartitionManager(builder.build());
 
-        List<? extends Partition> partitions = partitionManager.getPartitions(Realm.class);
-        boolean foundPartition = false;
-        if(partitions != null){
-            for(Partition partition: partitions){
-                if(partition.getName().equalsIgnoreCase(Realm.DEFAULT_REALM)){
-                    foundPartition = true;
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        EntityManager previousEntityManager = entityManagerThreadLocal.get();
+
+        entityManagerThreadLocal.set(entityManager);
+
+        try {
+            entityManager.getTransaction().begin();
+
+            List<? extends Partition> partitions = partitionManager.getPartitions(Realm.class);
+            boolean foundPartition = false;
+            if(partitions != null){
+                for(Partition partition: partitions){
+                    if(partition.getName().equalsIgnoreCase(Realm.DEFAULT_REALM)){
+                        foundPartition = true;
+                    }
                 }
             }
-        }
 
-        if(!foundPartition){
-            partitionManager.add(new Realm(Realm.DEFAULT_REALM));
-        }
+            if(!foundPartition){
+                partitionManager.add(new Realm(Realm.DEFAULT_REALM));
+            }
 
-        identityManager = partitionManager.createIdentityManager();
-    }
+            entityManager.getTransaction().commit();
+        } finally {
+            if (entityManager.getTransaction().isActive()) {
+                entityManager.getTransaction().rollback();
+            }
 
-    private EntityManager createEntityManager(){
-        // Use JPA
-        entityManagerFactory = Persistence.createEntityManagerFactory("picketlink-scim-pu");
-        return this.entityManagerFactory.createEntityManager();
+            entityManager.close();
+
+            if (previousEntityManager != null) {
+                entityManagerThreadLocal.set(previousEntityManager);
+            } else {
+                entityManagerThreadLocal.remove();
+            }
+        }
+
+        return partitionManager;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,215 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.scim.query;
+
+import org.picketlink.scim.codec.SCIMParsingException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>A single expression of a SCIM filter, like <code>userName eq "john"</code>.</p>
+ *
+ * <p>Only conjunctions of expressions are supported: a filter like <code>userName sw "j" and active eq true</code>
+ * is parsed into two expressions that must all match.</p>
+ */
+public class SCIMFilter {
+
+    public enum Operator {
+        EQ, CO, SW, PR, GT, GE, LT, LE
+    }
+
+    private final String attribute;
+    private final Operator operator;
+    private final Object value;
+
+    public SCIMFilter(String attribute, Operator operator, Object value) {
+        this.attribute = attribute;
+        this.operator = operator;
+        this.value = value;
+    }
+
+    /**
+     * <p>Parses the given filter.</p>
+     *
+     * @param filter the value of the <code>filter</code> parameter
+     * @return the expressions of the filter, all of them must match
+     * @throws SCIMParsingException if the filter is invalid or uses an unsupported construct
+     */
+    public static List<SCIMFilter> parse(String filter) throws SCIMParsingException {
+        List<SCIMFilter> filters = new ArrayList<SCIMFilter>();
+
+        if (filter == null || filter.trim().length() == 0) {
+            return filters;
+        }
+
+        Tokenizer tokenizer = new Tokenizer(filter);
+
+        while (true) {
+            String attribute = tokenizer.nextWord();
+
+            if (attribute == null) {
+                throw new SCIMParsingException("Missing attribute in filter: " + filter);
+            }
+
+            String operatorName = tokenizer.nextWord();
+
+            if (operatorName == null) {
+                throw new SCIMParsingException("Missing operator in filter: " + filter);
+            }
+
+            Operator operator;
+
+            try {
+                operator = Operator.valueOf(operatorName.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new SCIMParsingException("Unsupported operator [" + operatorName + "] in filter: " + filter);
+            }
+
+            Object value = null;
+
+            if (!Operator.PR.equals(operator)) {
+                value = tokenizer.nextValue();
+            }
+
+            filters.add(new SCIMFilter(attribute, operator, value));
+
+            String logicalOperator = tokenizer.nextWord();
+
+            if (logicalOperator == null) {
+                break;
+            }
+
+            if (!"and".equalsIgnoreCase(logicalOperator)) {
+                throw new SCIMParsingException("Unsupported logical operator [" + logicalOperator + "] in filter: "
+                    + filter);
+            }
+        }
+
+        return filters;
+    }
+
+    public String getAttribute() {
+        return this.attribute;
+    }
+
+    public Operator getOperator() {
+        return this.operator;
+    }
+
+    /**
+     * @return the value to compare with: a {@link String}, a {@link Boolean}, a {@link Number} or null
+     */
+    public Object getValue() {
+        return this.value;
+    }
+
+    @Override
+    public String toString() {
+        return this.attribute + " " + this.operator.name().toLowerCase() + (this.value != null ? " " + this.value : "");
+    }
+
+    private static class Tokenizer {
+
+        private final String filter;
+        private int position;
+
+        Tokenizer(String filter) {
+            this.filter = filter;
+        }
+
+        String nextWord() throws SCIMParsingException {
+            skipWhitespaces();
+
+            if (this.position == this.filter.length()) {
+                return null;
+            }
+
+            char c = this.filter.charAt(this.position);
+
+            if (c == '"' || c == '(' || c == ')') {
+                throw new SCIMParsingException("Unexpected character [" + c + "] at position " + this.position
+                    + " in filter: " + this.filter);
+            }
+
+            int start = this.position;
+
+            while (this.position < this.filter.length() && !Character.isWhitespace(this.filter.charAt(this.position))) {
+                this.position++;
+            }
+
+            return this.filter.substring(start, this.position);
+        }
+
+        Object nextValue() throws SCIMParsingException {
+            skipWhitespaces();
+
+            if (this.position == this.filter.length()) {
+                throw new SCIMParsingException("Missing value in filter: " + this.filter);
+            }
+
+            if (this.filter.charAt(this.position) != '"') {
+                String word = nextWord();
+
+                if ("true".equals(word) || "false".equals(word)) {
+                    return Boolean.valueOf(word);
+                }
+
+                if ("null".equals(word)) {
+                    return null;
+                }
+
+                try {
+                    if (word.indexOf('.') != -1) {
+                        return Double.valueOf(word);
+                    }
+
+                    return Long.valueOf(word);
+                } catch (NumberFormatException e) {
+                    throw new SCIMParsingException("Invalid value [" + word + "] in filter: " + this.filter);
+                }
+            }
+
+            StringBuilder value = new StringBuilder();
+
+            this.position++;
+
+            while (this.position < this.filter.length()) {
+                char c = this.filter.charAt(this.position++);
+
+                if (c == '"') {
+                    return value.toString();
+                }
+
+                if (c == '\\' && this.position < this.filter.length()) {
+                    c = this.filter.charAt(this.position++);
+                }
+
+                value.append(c);
+            }
+
+            throw new SCIMParsingException("Unterminated string in filter: " + this.filter);
+        }
+
+        private void skipWhitespaces() {
+            while (this.position < this.filter.length() && Character.isWhitespace(this.filter.charAt(this.position))) {
+                this.position++;
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.scim.query;
+
+import org.picketlink.scim.codec.SCIMParsingException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>A list request of a SCIM endpoint.</p>
+ *
+ * <p>Indexes are 1-based, as in the SCIM protocol. A null count means that all the results from the start index are
+ * requested.</p>
+ */
+public class SCIMQuery {
+
+    private List<SCIMFilter> filters = Collections.emptyList();
+    private int startIndex = 1;
+    private Integer count;
+    private String sortBy;
+    private boolean sortAscending = true;
+    private List<String> attributes = Collections.emptyList();
+
+    /**
+     * <p>Creates a query from the parameters of a list request.</p>
+     *
+     * @param filter the <code>filter</code> parameter, or null
+     * @param startIndex the <code>startIndex</code> parameter, or null
+     * @param count the <code>count</code> parameter, or null
+     * @param sortBy the <code>sortBy</code> parameter, or null
+     * @param sortOrder the <code>sortOrder</code> parameter, or null
+     * @param attributes the <code>attributes</code> parameter, or null
+     * @return
+     * @throws SCIMParsingException if any of the parameters is invalid
+     */
+    public static SCIMQuery parse(String filter, Integer startIndex, Integer count, String sortBy, String sortOrder,
+                                  String attributes) throws SCIMParsingException {
+        SCIMQuery query = new SCIMQuery();
+
+        query.setFilters(SCIMFilter.parse(filter));
+
+        if (startIndex != null) {
+            // values less than 1 are interpreted as 1
+            query.setStartIndex(Math.max(1, startIndex));
+        }
+
+        if (count != null) {
+            // negative values are interpreted as 0
+            query.setCount(Math.max(0, count));
+        }
+
+        query.setSortBy(sortBy);
+
+        if (sortOrder != null) {
+            if ("descending".equalsIgnoreCase(sortOrder)) {
+                query.setSortAscending(false);
+            } else if (!"ascending".equalsIgnoreCase(sortOrder)) {
+                throw new SCIMParsingException("Invalid sortOrder: " + sortOrder);
+            }
+        }
+
+        if (attributes != null) {
+            List<String> attributeNames = new ArrayList<String>();
+
+            for (String attribute : attributes.split(",")) {
+                if (attribute.trim().length() > 0) {
+                    attributeNames.add(attribute.trim());
+                }
+            }
+
+            query.setAttributes(attributeNames);
+        }
+
+        return query;
+    }
+
+    public List<SCIMFilter> getFilters() {
+        return this.filters;
+    }
+
+    public SCIMQuery setFilters(List<SCIMFilter> filters) {
+        this.filters = filters;
+        return this;
+    }
+
+    public int getStartIndex() {
+        return this.startIndex;
+    }
+
+    public SCIMQuery setStartIndex(int startIndex) {
+        this.startIndex = startIndex;
+        return this;
+    }
+
+    public Integer getCount() {
+        return this.count;
+    }
+
+    public SCIMQuery setCount(Integer count) {
+        this.count = count;
+        return this;
+    }
+
+    public String getSortBy() {
+        return this.sortBy;
+    }
+
+    public SCIMQuery setSortBy(String sortBy) {
+        this.sortBy = sortBy;
+        return this;
+    }
+
+    public boolean isSortAscending() {
+        return this.sortAscending;
+    }
+
+    public SCIMQuery setSortAscending(boolean sortAscending) {
+        this.sortAscending = sortAscending;
+        return this;
+    }
+
+    /**
+     * @return the attributes to return, or an empty list if all the attributes should be returned
+     */
+    public List<String> getAttributes() {
+        return this.attributes;
+    }
+
+    public SCIMQuery setAttributes(List<String> attributes) {
+        this.attributes = attributes;
+        return this;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.scim.query;
+
+import org.picketlink.scim.model.v11.AbstractResource;
+
+/**
+ * <p>The results of a {@link SCIMQuery}.</p>
+ *
+ * <p>Implementations may load the resources lazily while they are iterated, so the results must be consumed before
+ * the connection to the {@link org.picketlink.scim.DataProvider} is closed.</p>
+ */
+public interface SCIMResults<T extends AbstractResource> extends Iterable<T> {
+
+    /**
+     * @return the number of resources matching the query, regardless of the requested page
+     */
+    int getTotalResults();
+
+    /**
+     * @return the 1-based index of the first returned resource
+     */
+    int getStartIndex();
+
+    /**
+     * @return the number of returned resources
+     */
+    int getItemsPerPage();
+}
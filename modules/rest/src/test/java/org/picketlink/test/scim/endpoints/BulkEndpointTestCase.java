@@ -0,0 +1,279 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.scim.endpoints;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+import org.picketlink.scim.DataProvider;
+import org.picketlink.scim.endpoints.BulkEndpoint;
+import org.picketlink.scim.model.v11.SCIMGroups;
+import org.picketlink.scim.model.v11.SCIMResource;
+import org.picketlink.scim.model.v11.SCIMUser;
+import org.picketlink.scim.query.SCIMQuery;
+import org.picketlink.scim.query.SCIMResults;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.UriInfo;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test the {@link BulkEndpoint} with a data provider that commits on close
+ */
+public class BulkEndpointTestCase {
+
+    @Test
+    public void testMixedSuccessAndFailure() throws Exception {
+        RecordingDataProvider dataProvider = new RecordingDataProvider();
+
+        dataProvider.committedUsers.add("existing");
+        dataProvider.failingCommits.add("broken");
+
+        JsonNode operations = bulk(dataProvider, "{\"schemas\":[\"urn:scim:schemas:core:1.0\"],\"Operations\":["
+            + "{\"method\":\"POST\",\"bulkId\":\"1\",\"path\":\"/Users\",\"data\":{\"displayName\":\"alice\"}},"
+            + "{\"method\":\"POST\",\"bulkId\":\"2\",\"path\":\"/Users\"},"
+            + "{\"method\":\"DELETE\",\"bulkId\":\"3\",\"path\":\"/Users/unknown\"},"
+            + "{\"method\":\"POST\",\"bulkId\":\"4\",\"path\":\"/Groups\",\"data\":{\"displayName\":\"broken\"}},"
+            + "{\"method\":\"DELETE\",\"bulkId\":\"5\",\"path\":\"/Users/existing\"}]}");
+
+        assertEquals(5, operations.size());
+        assertEquals("201", getStatus(operations, 0));
+        assertEquals("400", getStatus(operations, 1));
+        assertEquals("404", getStatus(operations, 2));
+        assertEquals("500", getStatus(operations, 3));
+        assertEquals("200", getStatus(operations, 4));
+
+        // the failures did not undo the operations reported as successful
+        assertTrue(dataProvider.committedUsers.contains("alice"));
+        assertFalse(dataProvider.committedUsers.contains("existing"));
+        assertTrue(dataProvider.committedGroups.isEmpty());
+        assertEquals(0, dataProvider.openConnections);
+    }
+
+    @Test
+    public void testFailOnErrorsBoundsBatches() throws Exception {
+        RecordingDataProvider dataProvider = new RecordingDataProvider();
+
+        JsonNode operations = bulk(dataProvider, "{\"schemas\":[\"urn:scim:schemas:core:1.0\"],\"failOnErrors\":1,"
+            + "\"Operations\":["
+            + "{\"method\":\"POST\",\"bulkId\":\"1\",\"path\":\"/Users\"},"
+            + "{\"method\":\"POST\",\"bulkId\":\"2\",\"path\":\"/Users\",\"data\":{\"displayName\":\"alice\"}},"
+            + "{\"method\":\"POST\",\"bulkId\":\"3\",\"path\":\"/Users\",\"data\":{\"displayName\":\"bob\"}}]}");
+
+        assertEquals(1, operations.size());
+        assertEquals("400", getStatus(operations, 0));
+        assertTrue(dataProvider.committedUsers.isEmpty());
+    }
+
+    private JsonNode bulk(DataProvider dataProvider, String json) throws Exception {
+        TestBulkEndpoint endpoint = new TestBulkEndpoint(dataProvider);
+        Response response = endpoint.bulk(createRequest(json), null, createUriInfo());
+
+        assertEquals(200, response.getStatus());
+
+        return new ObjectMapper().readTree((String) response.getEntity()).get("Operations");
+    }
+
+    private String getStatus(JsonNode operations, int index) {
+        return operations.get(index).get("status").get("code").getTextValue();
+    }
+
+    private HttpServletRequest createRequest(final String json) throws Exception {
+        final ByteArrayInputStream content = new ByteArrayInputStream(json.getBytes("UTF-8"));
+        final ServletInputStream inputStream = new ServletInputStream() {
+            @Override
+            public int read() {
+                return content.read();
+            }
+        };
+
+        return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if ("getInputStream".equals(method.getName())) {
+                        return inputStream;
+                    }
+
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    private UriInfo createUriInfo() {
+        return (UriInfo) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {UriInfo.class},
+            new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if ("getBaseUriBuilder".equals(method.getName())) {
+                        return UriBuilder.fromUri("http://localhost:11080/scim");
+                    }
+
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    private static class TestBulkEndpoint extends BulkEndpoint {
+
+        TestBulkEndpoint(DataProvider dataProvider) {
+            this.dataProvider = dataProvider;
+        }
+
+        @Override
+        protected void verifyDataProvider(ServletContext servletContext) {
+        }
+    }
+
+    /**
+     * <p>Keeps the changes made through a connection until it is closed, where they are committed. Creating a resource
+     * with one of the failing names makes the commit fail.</p>
+     */
+    private static class RecordingDataProvider implements DataProvider {
+
+        private final Set<String> committedUsers = new HashSet<String>();
+        private final Set<String> committedGroups = new HashSet<String>();
+        private final Set<String> failingCommits = new HashSet<String>();
+        private final List<String> createdUsers = new ArrayList<String>();
+        private final List<String> createdGroups = new ArrayList<String>();
+        private final List<String> deletedUsers = new ArrayList<String>();
+        private int openConnections;
+
+        @Override
+        public void initializeConnection() {
+            this.openConnections++;
+        }
+
+        @Override
+        public void closeConnection() {
+            this.openConnections--;
+
+            try {
+                for (String name : this.createdUsers) {
+                    if (this.failingCommits.contains(name)) {
+                        throw new IllegalStateException("Commit failed");
+                    }
+                }
+
+                for (String name : this.createdGroups) {
+                    if (this.failingCommits.contains(name)) {
+                        throw new IllegalStateException("Commit failed");
+                    }
+                }
+
+                this.committedUsers.addAll(this.createdUsers);
+                this.committedGroups.addAll(this.createdGroups);
+                this.committedUsers.removeAll(this.deletedUsers);
+            } finally {
+                this.createdUsers.clear();
+                this.createdGroups.clear();
+                this.deletedUsers.clear();
+            }
+        }
+
+        @Override
+        public List<String> createUsers(List<SCIMUser> users) {
+            List<String> ids = new ArrayList<String>();
+
+            for (SCIMUser user : users) {
+                this.createdUsers.add(user.getDisplayName());
+                ids.add(user.getDisplayName());
+            }
+
+            return ids;
+        }
+
+        @Override
+        public List<String> createGroups(List<SCIMGroups> groups) {
+            List<String> ids = new ArrayList<String>();
+
+            for (SCIMGroups group : groups) {
+                this.createdGroups.add(group.getDisplayName());
+                ids.add(group.getDisplayName());
+            }
+
+            return ids;
+        }
+
+        @Override
+        public boolean deleteUser(String id) {
+            if (!this.committedUsers.contains(id)) {
+                return false;
+            }
+
+            this.deletedUsers.add(id);
+
+            return true;
+        }
+
+        @Override
+        public boolean deleteGroup(String id) {
+            return false;
+        }
+
+        @Override
+        public String createUser(SCIMUser user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String createGroup(SCIMGroups group) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SCIMUser getUser(String id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SCIMGroups getGroups(String id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SCIMResults<SCIMUser> listUsers(SCIMQuery query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SCIMResults<SCIMGroups> listGroups(SCIMQuery query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SCIMResource getResource(String id) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
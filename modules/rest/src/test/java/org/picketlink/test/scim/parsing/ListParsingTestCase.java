@@ -0,0 +1,164 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.scim.parsing;
+
+import org.junit.Test;
+import org.picketlink.scim.codec.SCIMParser;
+import org.picketlink.scim.codec.SCIMParsingException;
+import org.picketlink.scim.codec.SCIMWriter;
+import org.picketlink.scim.model.v11.BulkRequest;
+import org.picketlink.scim.model.v11.SCIMUser;
+import org.picketlink.scim.model.v11.UserName;
+import org.picketlink.scim.query.SCIMFilter;
+import org.picketlink.scim.query.SCIMQuery;
+import org.picketlink.scim.query.SCIMResults;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Validate parsing of SCIM list and bulk requests, and writing of list responses
+ */
+public class ListParsingTestCase {
+
+    @Test
+    public void parseFilter() throws Exception {
+        List<SCIMFilter> filters = SCIMFilter.parse("userName sw \"j\\\"o\" AND active eq true and meta.created gt \"2013-01-01T00:00:00Z\" and emails pr");
+
+        assertEquals(4, filters.size());
+
+        assertEquals("userName", filters.get(0).getAttribute());
+        assertEquals(SCIMFilter.Operator.SW, filters.get(0).getOperator());
+        assertEquals("j\"o", filters.get(0).getValue());
+
+        assertEquals(Boolean.TRUE, filters.get(1).getValue());
+        assertEquals(SCIMFilter.Operator.GT, filters.get(2).getOperator());
+        assertEquals(SCIMFilter.Operator.PR, filters.get(3).getOperator());
+        assertNull(filters.get(3).getValue());
+
+        assertTrue(SCIMFilter.parse(null).isEmpty());
+    }
+
+    @Test
+    public void parseInvalidFilter() throws Exception {
+        for (String filter : Arrays.asList("userName eq \"john\" or userName eq \"mary\"", "userName xx \"john\"",
+            "userName eq \"john", "(userName eq \"john\")", "userName eq")) {
+            try {
+                SCIMFilter.parse(filter);
+                fail("Filter should be rejected: " + filter);
+            } catch (SCIMParsingException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void parseQuery() throws Exception {
+        SCIMQuery query = SCIMQuery.parse(null, 0, -1, "userName", "descending", "userName, name.givenName");
+
+        assertEquals(1, query.getStartIndex());
+        assertEquals(Integer.valueOf(0), query.getCount());
+        assertFalse(query.isSortAscending());
+        assertEquals(Arrays.asList("userName", "name.givenName"), query.getAttributes());
+
+        query = SCIMQuery.parse(null, null, null, null, null, null);
+
+        assertEquals(1, query.getStartIndex());
+        assertNull(query.getCount());
+        assertTrue(query.isSortAscending());
+        assertTrue(query.getAttributes().isEmpty());
+    }
+
+    @Test
+    public void parseBulkRequest() throws Exception {
+        String json = "{\"schemas\":[\"urn:scim:schemas:core:1.0\"],\"failOnErrors\":1,\"Operations\":["
+            + "{\"method\":\"POST\",\"path\":\"/Users\",\"bulkId\":\"qwerty\",\"data\":{\"displayName\":\"john\"}},"
+            + "{\"method\":\"DELETE\",\"path\":\"/Users/b7c14771\"}]}";
+
+        SCIMParser parser = new SCIMParser();
+        BulkRequest request = parser.parseBulkRequest(new ByteArrayInputStream(json.getBytes("UTF-8")));
+
+        assertEquals(Integer.valueOf(1), request.getFailOnErrors());
+        assertEquals(2, request.getOperations().length);
+        assertEquals("qwerty", request.getOperations()[0].getBulkId());
+        assertEquals("john", parser.parseUser(request.getOperations()[0].getData()).getDisplayName());
+        assertEquals("/Users/b7c14771", request.getOperations()[1].getPath());
+    }
+
+    @Test
+    public void writeList() throws Exception {
+        List<SCIMUser> users = new ArrayList<SCIMUser>();
+
+        for (int i = 0; i < 3; i++) {
+            SCIMUser user = new SCIMUser();
+            user.setId("id" + i);
+            user.setDisplayName("user" + i);
+            user.setName(new UserName().setGivenName("given" + i).setFamilyName("family" + i));
+            users.add(user);
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        new SCIMWriter().json(outputStream, new ListResults(users, 10), Arrays.asList("name.givenName"));
+
+        String json = outputStream.toString("UTF-8");
+
+        assertTrue(json.contains("\"totalResults\":10"));
+        assertTrue(json.contains("\"itemsPerPage\":3"));
+        assertTrue(json.contains("\"Resources\":[{"));
+        assertTrue(json.contains("\"id\":\"id2\""));
+        assertTrue(json.contains("\"givenName\":\"given2\""));
+        assertFalse(json.contains("familyName"));
+        assertFalse(json.contains("displayName"));
+    }
+
+    private static class ListResults implements SCIMResults<SCIMUser> {
+        private final List<SCIMUser> users;
+        private final int totalResults;
+
+        ListResults(List<SCIMUser> users, int totalResults) {
+            this.users = users;
+            this.totalResults = totalResults;
+        }
+
+        @Override
+        public int getTotalResults() {
+            return this.totalResults;
+        }
+
+        @Override
+        public int getStartIndex() {
+            return 1;
+        }
+
+        @Override
+        public int getItemsPerPage() {
+            return this.users.size();
+        }
+
+        @Override
+        public Iterator<SCIMUser> iterator() {
+            return this.users.iterator();
+        }
+    }
+}
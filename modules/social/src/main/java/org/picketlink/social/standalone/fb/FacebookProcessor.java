@@ -20,17 +20,15 @@ package org.picketlink.social.standalone.fb;
 import org.apache.log4j.Logger;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.picketlink.common.http.OutboundHttpClient;
+import org.picketlink.common.http.OutboundHttpResponse;
 import org.picketlink.social.standalone.oauth.OAuthConstants;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.io.UnsupportedEncodingException;
-import java.net.URL;
-import java.net.URLConnection;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.security.Principal;
@@ -159,9 +157,9 @@ public class FacebookProcessor {
                 return null;
             }
 
-            URLConnection connection = sendAccessTokenRequest(returnUrl, authorizationCode, response);
+            OutboundHttpResponse accessTokenResponse = sendAccessTokenRequest(returnUrl, authorizationCode, response);
 
-            Map<String, String> params = formUrlDecode(readUrlContent(connection));
+            Map<String, String> params = formUrlDecode(readUrlContent(accessTokenResponse));
             String accessToken = params.get(OAuthConstants.ACCESS_TOKEN_PARAMETER);
             String expires = params.get(FacebookConstants.EXPIRES);
 
@@ -176,7 +174,7 @@ public class FacebookProcessor {
         }
     }
 
-    protected URLConnection sendAccessTokenRequest(String returnUrl, String authorizationCode, HttpServletResponse response) {
+    protected OutboundHttpResponse sendAccessTokenRequest(String returnUrl, String authorizationCode, HttpServletResponse response) {
         String returnUri = returnURL;
 
         Map<String, String> params = new HashMap<String, String>();
@@ -191,9 +189,7 @@ public class FacebookProcessor {
         try {
             if (trace)
                 log.trace("AccessToken Request=" + location);
-            URL url = new URL(location);
-            URLConnection connection = url.openConnection();
-            return connection;
+            return OutboundHttpClient.getDefault().get(location, null);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -208,8 +204,7 @@ public class FacebookProcessor {
             if (trace)
                 log.trace("Profile read:" + urlString);
 
-            URL profileUrl = new URL(urlString);
-            String profileContent = readUrlContent(profileUrl.openConnection());
+            String profileContent = readUrlContent(OutboundHttpClient.getDefault().get(urlString, null));
             JSONObject jsonObject = new JSONObject(profileContent);
 
             facebookPrincipal = new FacebookPrincipal();
@@ -251,27 +246,12 @@ public class FacebookProcessor {
         return facebookPrincipal;
     }
 
-    private String readUrlContent(URLConnection connection) {
-        StringBuilder result = new StringBuilder();
-        Reader reader = null;
+    private String readUrlContent(OutboundHttpResponse response) {
         try {
-            reader = new InputStreamReader(connection.getInputStream());
-            char[] buffer = new char[50];
-            int nrOfChars;
-            while ((nrOfChars = reader.read(buffer)) != -1) {
-                result.append(buffer, 0, nrOfChars);
-            }
+            return response.getContentAsString();
         } catch (IOException e) {
             throw new RuntimeException(e);
-        } finally{
-            try{
-                if(reader != null){
-                    reader.close();
-                }
-            }catch(IOException ioe){
-            }
         }
-        return result.toString();
     }
 
     private Map<String, String> formUrlDecode(String encodedData) {
@@ -32,6 +32,8 @@ import org.openid4java.message.ParameterList;
 import org.openid4java.message.ax.AxMessage;
 import org.openid4java.message.ax.FetchRequest;
 import org.openid4java.message.ax.FetchResponse;
+import org.picketlink.common.http.OutboundHttpClient;
+import org.picketlink.common.http.OutboundHttpResponse;
 import org.picketlink.social.standalone.fb.FacebookConstants;
 import org.picketlink.social.standalone.fb.FacebookPrincipal;
 import org.picketlink.social.standalone.fb.FacebookProcessor;
@@ -39,16 +41,14 @@ import org.picketlink.social.standalone.oauth.OAuthConstants;
 import org.picketlink.social.standalone.oauth.OpenIDProcessor;
 import org.picketlink.social.standalone.oauth.OpenIdPrincipal;
 import org.picketlink.social.standalone.oauth.StringUtil;
+import org.picketlink.social.standalone.openid.api.OpenIDManager;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.security.Principal;
@@ -75,7 +75,7 @@ public class ExternalAuthentication {
         FACEBOOK, OPENID;
     }
 
-    private ConsumerManager openIdConsumerManager;
+    private ConsumerManager openIdConsumerManager = OpenIDManager.getSharedConsumerManager();
     private FetchRequest fetchRequest;
     private String openIdServiceUrl = null;
 
@@ -361,9 +361,9 @@ public class ExternalAuthentication {
                 return null;
             }
 
-            URLConnection connection = sendFacebookAccessTokenRequest(returnUrl, authorizationCode, response);
+            OutboundHttpResponse accessTokenResponse = sendFacebookAccessTokenRequest(returnUrl, authorizationCode, response);
 
-            Map<String, String> params = formUrlDecode(readUrlContent(connection));
+            Map<String, String> params = formUrlDecode(readUrlContent(accessTokenResponse));
             String accessToken = params.get(OAuthConstants.ACCESS_TOKEN_PARAMETER);
             String expires = params.get(FacebookConstants.EXPIRES);
 
@@ -378,7 +378,7 @@ public class ExternalAuthentication {
         }
     }
 
-    protected URLConnection sendFacebookAccessTokenRequest(String returnUrl, String authorizationCode, HttpServletResponse response) {
+    protected OutboundHttpResponse sendFacebookAccessTokenRequest(String returnUrl, String authorizationCode, HttpServletResponse response) {
         String returnUri = returnURL;
 
         Map<String, String> params = new HashMap<String, String>();
@@ -393,9 +393,7 @@ public class ExternalAuthentication {
         try {
             if (trace)
                 log.trace("AccessToken Request=" + location);
-            URL url = new URL(location);
-            URLConnection connection = url.openConnection();
-            return connection;
+            return OutboundHttpClient.getDefault().get(location, null);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -416,7 +414,7 @@ public class ExternalAuthentication {
             session.setAttribute("openid", openId);
             List<DiscoveryInformation> discoveries;
             try {
-                discoveries = openIdConsumerManager.discover(openId);
+                discoveries = OpenIDManager.getSharedDiscoveryCache().discover(openIdConsumerManager, openId);
             } catch (DiscoveryException e) {
                 throw new RuntimeException(e);
             }
@@ -489,8 +487,7 @@ public class ExternalAuthentication {
             if (trace)
                 log.trace("Profile read:" + urlString);
 
-            URL profileUrl = new URL(urlString);
-            String profileContent = readUrlContent(profileUrl.openConnection());
+            String profileContent = readUrlContent(OutboundHttpClient.getDefault().get(urlString, null));
             JSONObject jsonObject = new JSONObject(profileContent);
 
             facebookPrincipal = new FacebookPrincipal();
@@ -514,27 +511,12 @@ public class ExternalAuthentication {
         return facebookPrincipal;
     }
 
-    private String readUrlContent(URLConnection connection) {
-        StringBuilder result = new StringBuilder();
-        Reader reader = null;
+    private String readUrlContent(OutboundHttpResponse response) {
         try {
-            reader = new InputStreamReader(connection.getInputStream());
-            char[] buffer = new char[50];
-            int nrOfChars;
-            while ((nrOfChars = reader.read(buffer)) != -1) {
-                result.append(buffer, 0, nrOfChars);
-            }
+            return response.getContentAsString();
         } catch (IOException e) {
             throw new RuntimeException(e);
-        } finally{
-            try{
-                if(reader != null){
-                    reader.close();
-                }
-            }catch (IOException ignore){
-            }
         }
-        return result.toString();
     }
 
     private Map<String, String> formUrlDecode(String encodedData) {
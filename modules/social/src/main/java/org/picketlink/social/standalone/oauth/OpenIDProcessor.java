@@ -30,6 +30,7 @@ import org.openid4java.message.ParameterList;
 import org.openid4java.message.ax.AxMessage;
 import org.openid4java.message.ax.FetchRequest;
 import org.openid4java.message.ax.FetchResponse;
+import org.picketlink.social.standalone.openid.api.OpenIDManager;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -115,7 +116,7 @@ public class OpenIDProcessor {
      */
     public void initialize(List<String> requiredRoles) throws MessageException, ConsumerException {
         if (openIdConsumerManager == null)
-            openIdConsumerManager = new ConsumerManager();
+            openIdConsumerManager = OpenIDManager.getSharedConsumerManager();
 
         fetchRequest = FetchRequest.createFetchRequest();
         // Work on the required attributes
@@ -156,7 +157,7 @@ public class OpenIDProcessor {
             session.setAttribute("openid", openId);
             List<DiscoveryInformation> discoveries;
             try {
-                discoveries = openIdConsumerManager.discover(openId);
+                discoveries = OpenIDManager.getSharedDiscoveryCache().discover(openIdConsumerManager, openId);
             } catch (DiscoveryException e) {
                 throw new RuntimeException(e);
             }
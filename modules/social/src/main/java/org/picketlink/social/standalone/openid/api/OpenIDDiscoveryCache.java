@@ -0,0 +1,157 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.social.standalone.openid.api;
+
+import org.openid4java.consumer.ConsumerManager;
+import org.openid4java.discovery.DiscoveryException;
+import org.openid4java.discovery.DiscoveryInformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of the results of the OpenID discovery, by user supplied identifier.
+ *
+ * Each identifier, usually the identifier of a provider endpoint, can be given its own time to live. The number of
+ * cached identifiers is bounded, as identifiers may be supplied by the users.
+ */
+public class OpenIDDiscoveryCache {
+
+    public static final long DEFAULT_TIME_TO_LIVE = 60 * 60;
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    private final ConcurrentMap<String, Long> timeToLiveByIdentifier = new ConcurrentHashMap<String, Long>();
+
+    private final long defaultTimeToLive;
+
+    private final int maxEntries;
+
+    public OpenIDDiscoveryCache() {
+        this(DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param defaultTimeToLive time to live of the discovery results, in seconds. 0 disables the cache.
+     * @param maxEntries maximum number of cached identifiers
+     */
+    public OpenIDDiscoveryCache(long defaultTimeToLive, int maxEntries) {
+        this.defaultTimeToLive = defaultTimeToLive * 1000;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Set the time to live of the discovery results of an identifier
+     *
+     * @param identifier user supplied identifier, such as a provider endpoint
+     * @param timeToLive time to live in seconds. 0 disables the cache for this identifier.
+     */
+    public void setTimeToLive(String identifier, long timeToLive) {
+        this.timeToLiveByIdentifier.put(identifier, timeToLive * 1000);
+        this.entries.remove(identifier);
+    }
+
+    /**
+     * Perform the discovery on the user supplied identifier, unless its results are cached
+     *
+     * @param consumerManager manager performing the discovery
+     * @param identifier user supplied identifier
+     *
+     * @return the discovered endpoints. The returned list must not be modified.
+     *
+     * @throws DiscoveryException
+     */
+    @SuppressWarnings("unchecked")
+    public List<DiscoveryInformation> discover(ConsumerManager consumerManager, String identifier) throws DiscoveryException {
+        long now = System.currentTimeMillis();
+        Entry entry = this.entries.get(identifier);
+
+        if (entry != null && entry.expiration > now) {
+            return entry.discoveries;
+        }
+
+        List<DiscoveryInformation> discoveries = consumerManager.discover(identifier);
+
+        Long timeToLive = this.timeToLiveByIdentifier.get(identifier);
+
+        if (timeToLive == null) {
+            timeToLive = this.defaultTimeToLive;
+        }
+
+        if (timeToLive > 0 && discoveries != null && !discoveries.isEmpty()) {
+            if (this.entries.size() >= this.maxEntries) {
+                removeExpired(now);
+            }
+
+            if (this.entries.size() < this.maxEntries || this.entries.containsKey(identifier)) {
+                discoveries = Collections.unmodifiableList(new ArrayList<DiscoveryInformation>(discoveries));
+                this.entries.put(identifier, new Entry(discoveries, now + timeToLive));
+            }
+        }
+
+        return discoveries;
+    }
+
+    /**
+     * Remove the cached discovery results of an identifier
+     *
+     * @param identifier
+     */
+    public void invalidate(String identifier) {
+        this.entries.remove(identifier);
+    }
+
+    public void clear() {
+        this.entries.clear();
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    private void removeExpired(long now) {
+        Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().expiration <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class Entry {
+        private final List<DiscoveryInformation> discoveries;
+        private final long expiration;
+
+        Entry(List<DiscoveryInformation> discoveries, long expiration) {
+            this.discoveries = discoveries;
+            this.expiration = expiration;
+        }
+    }
+}
@@ -22,6 +22,7 @@
 package org.picketlink.social.standalone.openid.api;
 
 import org.openid4java.association.AssociationException;
+import org.openid4java.consumer.ConsumerAssociationStore;
 import org.openid4java.consumer.ConsumerException;
 import org.openid4java.consumer.ConsumerManager;
 import org.openid4java.consumer.InMemoryConsumerAssociationStore;
@@ -43,6 +44,7 @@ import org.picketlink.social.standalone.openid.api.exceptions.OpenIDLifeCycleExc
 import org.picketlink.social.standalone.openid.api.exceptions.OpenIDMessageException;
 import org.picketlink.social.standalone.openid.api.exceptions.OpenIDProtocolException;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -69,20 +71,80 @@ public class OpenIDManager {
         }
     }
 
+    private static volatile ConsumerManager sharedConsumerManager = null;
+
+    private static final OpenIDDiscoveryCache sharedDiscoveryCache = new OpenIDDiscoveryCache();
+
     private OpenIDRequest request = null;
 
     private ConsumerManager consumerManager = null;
 
+    private OpenIDDiscoveryCache discoveryCache = null;
+
     private String userString = null;
 
     public OpenIDManager(OpenIDRequest theReq) {
+        this(theReq, getSharedConsumerManager(), sharedDiscoveryCache);
+    }
+
+    /**
+     * Create a manager using the given consumer manager and discovery cache
+     *
+     * @param theReq
+     * @param consumerManager must be the same instance for the authentication and the verification of an user
+     * @param discoveryCache
+     */
+    public OpenIDManager(OpenIDRequest theReq, ConsumerManager consumerManager, OpenIDDiscoveryCache discoveryCache) {
         this.request = theReq;
-        consumerManager = new ConsumerManager();
-        consumerManager.setAssociations(new InMemoryConsumerAssociationStore());
-        consumerManager.setNonceVerifier(new InMemoryNonceVerifier(5000));
+        this.consumerManager = consumerManager;
+        this.discoveryCache = discoveryCache;
         userString = request.getURL();
     }
 
+    /**
+     * Get the {@link ConsumerManager} shared by all the managers, so that the associations with the providers are reused
+     * across requests. A {@link ConsumerManager} is thread safe.
+     *
+     * @return
+     */
+    public static ConsumerManager getSharedConsumerManager() {
+        ConsumerManager manager = sharedConsumerManager;
+
+        if (manager == null) {
+            synchronized (OpenIDManager.class) {
+                manager = sharedConsumerManager;
+
+                if (manager == null) {
+                    manager = new ConsumerManager();
+                    manager.setAssociations(new InMemoryConsumerAssociationStore());
+                    manager.setNonceVerifier(new InMemoryNonceVerifier(5000));
+                    sharedConsumerManager = manager;
+                }
+            }
+        }
+
+        return manager;
+    }
+
+    /**
+     * Set the association store of the shared {@link ConsumerManager}, for instance a store backed by a database to share
+     * the associations between the nodes of a cluster. Should be called before any authentication.
+     *
+     * @param associationStore
+     */
+    public static void setSharedAssociationStore(ConsumerAssociationStore associationStore) {
+        getSharedConsumerManager().setAssociations(associationStore);
+    }
+
+    /**
+     * Get the discovery cache shared by all the managers
+     *
+     * @return
+     */
+    public static OpenIDDiscoveryCache getSharedDiscoveryCache() {
+        return sharedDiscoveryCache;
+    }
+
     /**
      * Set the user string
      *
@@ -101,17 +163,16 @@ public class OpenIDManager {
         return this.request;
     }
 
-    @SuppressWarnings("unchecked")
     public OpenIDProviderList discoverProviders() throws OpenIDDiscoveryException, OpenIDConsumerException {
-        // perform discovery on the user-supplied identifier
+        // perform discovery on the user-supplied identifier, unless it was recently performed
         List<DiscoveryInformation> discoveries;
         try {
-            discoveries = consumerManager.discover(userString);
+            discoveries = discoveryCache.discover(consumerManager, userString);
         } catch (DiscoveryException e1) {
             throw new OpenIDDiscoveryException(e1);
         }
 
-        return new OpenIDProviderList(discoveries);
+        return new OpenIDProviderList(new ArrayList<DiscoveryInformation>(discoveries));
     }
 
     /**